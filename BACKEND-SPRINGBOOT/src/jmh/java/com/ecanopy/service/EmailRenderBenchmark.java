@@ -0,0 +1,49 @@
+package com.ecanopy.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTML bodies of the notification emails (rendering only, no SMTP).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailRenderBenchmark {
+
+    private EmailService emailService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        emailService = new EmailService(null, null);
+    }
+
+    @Benchmark
+    public String visitorAlert() {
+        return emailService.renderVisitorAlert("Asha Verma", "Ravi Kumar", "Delivery");
+    }
+
+    @Benchmark
+    public String joinRequestStatus() {
+        return emailService.renderJoinRequestStatus("Asha Verma", "APPROVED", "Greenwood Residency", "A-101");
+    }
+
+    @Benchmark
+    public String bookingStatus() {
+        return emailService.renderBookingStatus("Asha Verma", "Clubhouse", "APPROVED", "2024-01-20", "18:00 - 20:00");
+    }
+}
@@ -0,0 +1,182 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.FileUploadProperties;
+import com.ecanopy.dto.response.ComplaintResponse;
+import com.ecanopy.dto.response.MaintenanceBillResponse;
+import com.ecanopy.dto.response.VisitorResponse;
+import com.ecanopy.entity.Building;
+import com.ecanopy.entity.Complaint;
+import com.ecanopy.entity.Flat;
+import com.ecanopy.entity.MaintenanceBill;
+import com.ecanopy.entity.Resident;
+import com.ecanopy.entity.Role;
+import com.ecanopy.entity.Society;
+import com.ecanopy.entity.User;
+import com.ecanopy.entity.Visitor;
+import com.ecanopy.entity.VisitorLog;
+import com.ecanopy.entity.enums.ApprovalStatus;
+import com.ecanopy.repository.ResidentRepository;
+import com.ecanopy.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mappers used by every list endpoint. Repositories are in-memory stubs,
+ * so the numbers are the per-row CPU cost (including the lookups each mapper makes)
+ * without the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    private static final String GUARD_EMAIL = "guard@greenwood.com";
+    private static final String PHOTO_URL = "/uploads/blobs/3f/"
+            + "3f1c8a5e0b7d4c2a9e6f1b3d5a7c9e0f2b4d6a8c0e1f3a5b7d9c1e3f5a7b9d0c.jpg";
+
+    private VisitorService visitorService;
+    private ComplaintService complaintService;
+    private BillingService billingService;
+
+    private VisitorLog visitorLog;
+    private Complaint complaint;
+    private MaintenanceBill bill;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Society society = new Society();
+        society.setSocietyId(1L);
+        society.setSocietyName("Greenwood Residency");
+        society.setAddress("12 Park Street, Pune");
+
+        Building building = new Building();
+        building.setBuildingId(1L);
+        building.setBuildingName("Tower A");
+        building.setSociety(society);
+
+        Flat flat = new Flat();
+        flat.setFlatId(3L);
+        flat.setFlatNumber("A-101");
+        flat.setBuilding(building);
+
+        Role residentRole = new Role();
+        residentRole.setName("ROLE_RESIDENT");
+        Role guardRole = new Role();
+        guardRole.setName("ROLE_GUARD");
+
+        User residentUser = new User();
+        residentUser.setId(10L);
+        residentUser.setFullName("Asha Verma");
+        residentUser.setEmail("asha@greenwood.com");
+        residentUser.setRoles(Set.of(residentRole));
+
+        User guard = new User();
+        guard.setId(20L);
+        guard.setFullName("Gate Guard");
+        guard.setEmail(GUARD_EMAIL);
+        guard.setRoles(Set.of(guardRole));
+
+        Resident resident = new Resident();
+        resident.setResidentId(5L);
+        resident.setUser(residentUser);
+        resident.setFlat(flat);
+        resident.setIsActive(true);
+
+        Visitor visitor = new Visitor();
+        visitor.setVisitorId(100L);
+        visitor.setFullName("Ravi Kumar");
+        visitor.setPhone("9876543210");
+        visitor.setPhotoUrl(PHOTO_URL);
+
+        visitorLog = new VisitorLog();
+        visitorLog.setLogId(1000L);
+        visitorLog.setVisitor(visitor);
+        visitorLog.setFlat(flat);
+        visitorLog.setPurpose("Delivery");
+        visitorLog.setVehicleNumber("MH12AB1234");
+        visitorLog.setInTime(LocalDateTime.of(2024, 1, 15, 10, 30));
+        visitorLog.setExpectedOutTime(LocalDateTime.of(2024, 1, 15, 11, 30));
+        visitorLog.setStatus(ApprovalStatus.APPROVED);
+        visitorLog.setGateEntry("Main Gate");
+        visitorLog.setCheckedInBy(guard);
+
+        complaint = new Complaint();
+        complaint.setComplaintId(7L);
+        complaint.setTicketNumber("TKT-20240115-0007");
+        complaint.setTitle("Water leakage");
+        complaint.setDescription("Leak under the kitchen sink");
+        complaint.setCategory("PLUMBING");
+        complaint.setCreatedAt(LocalDateTime.of(2024, 1, 15, 9, 0));
+        complaint.setResident(resident);
+        complaint.setUnreadByStaff(true);
+
+        bill = new MaintenanceBill();
+        bill.setBillId(42L);
+        bill.setBillMonth(LocalDate.of(2024, 1, 1));
+        bill.setDueDate(LocalDate.of(2024, 1, 10));
+        bill.setWaterCharges(new BigDecimal("350.00"));
+        bill.setParkingCharges(new BigDecimal("500.00"));
+        bill.setSinkingFund(new BigDecimal("1000.00"));
+        bill.setElectricityCharges(new BigDecimal("1200.00"));
+        bill.setTotalAmount(new BigDecimal("3050.00"));
+        bill.setFlat(flat);
+
+        UserRepository userRepository = Stubs.repository(UserRepository.class, Map.of(
+                "findByEmail", args -> Optional.of(guard)));
+        ResidentRepository residentRepository = Stubs.repository(ResidentRepository.class, Map.of(
+                "findByFlatFlatId", args -> List.of(resident),
+                "findByUserId", args -> Optional.empty()));
+
+        AuthService authService = Stubs.service(AuthService.class, userRepository, residentRepository);
+        ImageDerivativeService imageDerivativeService = Stubs.service(ImageDerivativeService.class,
+                new FileUploadProperties());
+
+        visitorService = Stubs.service(VisitorService.class, residentRepository, userRepository,
+                imageDerivativeService);
+        complaintService = Stubs.service(ComplaintService.class, residentRepository, userRepository, authService);
+        billingService = Stubs.service(BillingService.class, userRepository, authService, residentRepository);
+
+        // Benchmark threads are not request threads: share one authenticated context across them
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(GUARD_EMAIL, null, List.of()));
+    }
+
+    @Benchmark
+    public VisitorResponse mapToVisitorResponse() {
+        return visitorService.mapToVisitorResponse(visitorLog);
+    }
+
+    @Benchmark
+    public ComplaintResponse mapToComplaintResponse() {
+        return complaintService.mapToComplaintResponse(complaint);
+    }
+
+    @Benchmark
+    public MaintenanceBillResponse billingMapToResponse() {
+        return billingService.mapToResponse(bill);
+    }
+}
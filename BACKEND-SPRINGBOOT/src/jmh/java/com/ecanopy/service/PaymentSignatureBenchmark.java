@@ -0,0 +1,108 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.RazorpayProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Razorpay HMAC-SHA256 signature checks: checkout verification on every /verify call and
+ * webhook verification on every delivery. "legacyVerifyPayment" is the previous
+ * per-call Mac.getInstance / toHexString / String.equals path, kept as the baseline.
+ * Run with -prof gc to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentSignatureBenchmark {
+
+    private static final String KEY_SECRET = "rzp_test_secret_0123456789abcdef";
+    private static final String WEBHOOK_SECRET = "whsec_0123456789abcdef";
+
+    private RazorpaySignatureVerifier verifier;
+
+    private final String orderId = "order_NdPqvRzXgT8b1K";
+    private final String paymentId = "pay_NdPr0L3m9aQk2Z";
+    private String signature;
+    private byte[] webhookBody;
+    private String webhookSignature;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RazorpayProperties properties = new RazorpayProperties();
+        properties.getKey().setSecret(KEY_SECRET);
+        properties.getWebhook().setSecret(WEBHOOK_SECRET);
+        verifier = new RazorpaySignatureVerifier(properties);
+        signature = verifier.paymentSignature(orderId, paymentId);
+
+        // A payment.captured delivery is typically 1.5-2 KB
+        char[] padding = new char[1500];
+        Arrays.fill(padding, 'x');
+        webhookBody = ("{\"entity\":\"event\",\"event\":\"payment.captured\",\"payload\":{\"payment\":{\"entity\":"
+                + "{\"id\":\"" + paymentId + "\",\"order_id\":\"" + orderId + "\",\"amount\":325900,\"notes\":\""
+                + new String(padding) + "\"}}}}").getBytes(StandardCharsets.UTF_8);
+        webhookSignature = legacyHex(WEBHOOK_SECRET, webhookBody);
+    }
+
+    @Benchmark
+    public String generateSignature() {
+        return verifier.paymentSignature(orderId, paymentId);
+    }
+
+    @Benchmark
+    public boolean verifyPayment() {
+        return verifier.verifyPayment(orderId, paymentId, signature);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean verifyPaymentContended() {
+        return verifier.verifyPayment(orderId, paymentId, signature);
+    }
+
+    @Benchmark
+    public boolean verifyWebhook() {
+        return verifier.verifyWebhook(webhookBody, webhookSignature);
+    }
+
+    @Benchmark
+    public boolean legacyVerifyPayment() {
+        return legacyHex(KEY_SECRET, (orderId + "|" + paymentId).getBytes()).equals(signature);
+    }
+
+    private static String legacyHex(String secret, byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(), "HmacSHA256"));
+            byte[] hash = mac.doFinal(payload);
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hash) {
+                String hex = Integer.toHexString(0xff & b);
+                if (hex.length() == 1)
+                    hexString.append('0');
+                hexString.append(hex);
+            }
+            return hexString.toString();
+        } catch (Exception e) {
+            throw new RuntimeException("Error generating signature", e);
+        }
+    }
+}
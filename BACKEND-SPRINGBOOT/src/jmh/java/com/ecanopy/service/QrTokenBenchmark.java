@@ -0,0 +1,68 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.JwtProperties;
+import com.ecanopy.config.QrTokenProperties;
+import com.ecanopy.entity.enums.QrSubjectType;
+import com.ecanopy.repository.QrRevocationRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gate pass verification done by AccessService.validateQr at the gate, before the log
+ * write: signature, expiry and revocation checks, all in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QrTokenBenchmark {
+
+    private QrTokenService qrTokenService;
+    private String residentToken;
+    private String helpToken;
+
+    @Setup
+    public void setUp() {
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.setSecret("benchmark-secret-0123456789abcdef0123456789abcdef");
+        qrTokenService = new QrTokenService(Stubs.repository(QrRevocationRepository.class, Map.of()),
+                new QrTokenProperties(), jwtProperties);
+        residentToken = qrTokenService.issue(QrSubjectType.RESIDENT, 101L, 2L, "Asha Verma").getToken();
+        helpToken = qrTokenService.issue(QrSubjectType.HELP, 5L, 2L, "Sunita Devi").getToken();
+    }
+
+    @Benchmark
+    public QrTokenService.QrToken verifyResident() {
+        return qrTokenService.verify(residentToken);
+    }
+
+    @Benchmark
+    public QrTokenService.QrToken verifyHelp() {
+        return qrTokenService.verify(helpToken);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public QrTokenService.QrToken verifyContended() {
+        return qrTokenService.verify(residentToken);
+    }
+
+    @Benchmark
+    public String issueResident() {
+        return qrTokenService.issue(QrSubjectType.RESIDENT, 101L, 2L, "Asha Verma").getToken();
+    }
+}
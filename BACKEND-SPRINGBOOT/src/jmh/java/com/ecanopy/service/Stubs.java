@@ -0,0 +1,76 @@
+package com.ecanopy.service;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * In-memory stand-ins for Spring Data repositories, so benchmarks measure the mapping
+ * code itself rather than a database round trip.
+ */
+final class Stubs {
+
+    private Stubs() {
+    }
+
+    /**
+     * A service built through its public constructor: each parameter gets the collaborator of
+     * its type, an interface nobody supplied gets a stub that fails on first use, and a class
+     * gets null. Constructor changes need no edit here, and a collaborator the constructor no
+     * longer takes fails loudly.
+     */
+    static <T> T service(Class<T> type, Object... collaborators) {
+        Constructor<?>[] constructors = type.getConstructors();
+        if (constructors.length != 1) {
+            throw new IllegalArgumentException(type.getSimpleName() + " has " + constructors.length
+                    + " public constructors");
+        }
+        Class<?>[] parameters = constructors[0].getParameterTypes();
+        for (Object collaborator : collaborators) {
+            if (Arrays.stream(parameters).noneMatch(parameter -> parameter.isInstance(collaborator))) {
+                throw new IllegalArgumentException(type.getSimpleName() + " does not take a "
+                        + collaborator.getClass().getSimpleName());
+            }
+        }
+        Object[] args = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            Class<?> parameter = parameters[i];
+            args[i] = Arrays.stream(collaborators)
+                    .filter(parameter::isInstance)
+                    .findFirst()
+                    .orElseGet(() -> parameter.isInterface() ? repository(parameter, Map.of()) : null);
+        }
+        try {
+            return type.cast(constructors[0].newInstance(args));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not build " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Repository proxy answering the given methods by name; anything else fails loudly
+     * so a mapper that starts touching a new query shows up immediately.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T repository(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer != null) {
+                return answer.apply(args);
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return type.getSimpleName() + " stub";
+                }
+            }
+            throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName() + " is not stubbed");
+        });
+    }
+}
@@ -0,0 +1,173 @@
+package com.ecanopy.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load driver for the gate check-in endpoint (POST /api/visitors/check-in).
+ *
+ * JDK-only so it runs as a single source file against any running instance:
+ *
+ * <pre>
+ * java src/loadtest/java/com/ecanopy/loadtest/GateCheckInLoadTest.java \
+ *      --label platform --concurrency 200 --duration 60
+ * </pre>
+ *
+ * Run it once against the app started normally (platform threads) and once against the
+ * app started with the "virtual" profile on Java 21, same concurrency and data, then
+ * compare the summary lines. One guard login is shared; every worker loops check-ins back to back.
+ */
+public class GateCheckInLoadTest {
+
+    private static final Pattern ACCESS_TOKEN = Pattern.compile("\"accessToken\"\\s*:\\s*\"([^\"]+)\"");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String baseUrl = options.getOrDefault("base-url", "http://localhost:8080");
+        String email = options.getOrDefault("email", "guard@greenwood.com");
+        String password = options.getOrDefault("password", "Guard@123");
+        String label = options.getOrDefault("label", "run");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "100"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int distinctVisitors = Integer.parseInt(options.getOrDefault("visitors", "5000"));
+        String photoUrl = options.getOrDefault("photo-url", "/uploads/loadtest.jpg");
+        long[] flatIds = Arrays.stream(options.getOrDefault("flat-ids", "1,2,3,4").split(","))
+                .mapToLong(Long::parseLong).toArray();
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors())))
+                .build();
+        String token = login(client, baseUrl, email, password);
+
+        System.out.printf(Locale.ROOT, "[%s] warmup %ds, measuring %ds at concurrency %d%n",
+                label, warmupSeconds, durationSeconds, concurrency);
+
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(durationSeconds);
+        Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+        AtomicLong failures = new AtomicLong();
+        List<Samples> latencies = new ArrayList<>();
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        for (int w = 0; w < concurrency; w++) {
+            Samples samples = new Samples();
+            latencies.add(samples);
+            workers.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (true) {
+                    long started = System.nanoTime();
+                    if (started >= end) {
+                        break;
+                    }
+                    // Repeat visitors (same phone) exercise the find-or-update path like a real gate
+                    String phone = String.valueOf(9_000_000_000L + random.nextInt(distinctVisitors));
+                    String body = String.format(Locale.ROOT,
+                            "{\"name\":\"Load Visitor %s\",\"phone\":\"%s\",\"flatId\":%d,\"category\":\"GUEST\","
+                                    + "\"purpose\":\"Load test\",\"imageUrl\":\"%s\"}",
+                            phone, phone, flatIds[random.nextInt(flatIds.length)], photoUrl);
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/visitors/check-in"))
+                            .timeout(Duration.ofSeconds(30))
+                            .header("Content-Type", "application/json")
+                            .header("Authorization", "Bearer " + token)
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build();
+                    int status;
+                    try {
+                        status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (Exception e) {
+                        status = -1;
+                    }
+                    long finished = System.nanoTime();
+                    if (started < warmupEnd) {
+                        continue;
+                    }
+                    statuses.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+                    if (status / 100 != 2) {
+                        failures.incrementAndGet();
+                    } else {
+                        samples.add(finished - started);
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(warmupSeconds + durationSeconds + 60L, TimeUnit.SECONDS);
+
+        long[] all = latencies.stream()
+                .flatMapToLong(s -> Arrays.stream(s.values, 0, s.size))
+                .sorted()
+                .toArray();
+        double throughput = all.length / (double) durationSeconds;
+        System.out.printf(Locale.ROOT,
+                "[%s] ok=%d failed=%d throughput=%.1f req/s p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms statuses=%s%n",
+                label, all.length, failures.get(), throughput,
+                percentile(all, 50), percentile(all, 90), percentile(all, 99),
+                all.length == 0 ? 0.0 : all[all.length - 1] / 1e6, statuses);
+        System.exit(0);
+    }
+
+    /** Per-worker latency buffer (nanoseconds); only touched by its own worker until the run ends. */
+    private static final class Samples {
+        long[] values = new long[4096];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static String login(HttpClient client, String baseUrl, String email, String password) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"email\":\"" + email + "\",\"password\":\"" + password + "\"}"))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = ACCESS_TOKEN.matcher(response.body());
+        if (response.statusCode() != 200 || !matcher.find()) {
+            throw new IllegalStateException("Login failed (" + response.statusCode() + "): " + response.body());
+        }
+        return matcher.group(1);
+    }
+
+    private static double percentile(long[] sorted, int p) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option value pairs, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+}
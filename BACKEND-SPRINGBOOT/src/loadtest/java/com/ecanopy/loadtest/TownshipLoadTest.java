@@ -0,0 +1,357 @@
+package com.ecanopy.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop mixed-traffic driver for the synthetic township seeded by the "loadtest" profile.
+ *
+ * Start the app with {@code mvn -Ploadtest spring-boot:run} (H2 + LoadTestDataInitializer), then:
+ *
+ * <pre>
+ * java src/loadtest/java/com/ecanopy/loadtest/TownshipLoadTest.java \
+ *      --societies 2 --flats 160 --concurrency 50 --duration 60
+ * </pre>
+ *
+ * --societies and --flats (per society) must match the seeded loadtest.data.* scale. Each worker
+ * picks an operation by weight (--mix, e.g. "checkin=35,checkout=15,qr=20,...") for a random
+ * society and plays the guard, admin or a resident as appropriate. The summary reports, per
+ * endpoint, p50/p99 latency and the SQL statements per request from the X-Sql-Statements header.
+ */
+public class TownshipLoadTest {
+
+    private static final String EMAIL_DOMAIN = "loadtest.ecanopy.com";
+    private static final String DEFAULT_MIX =
+            "checkin=35,checkout=15,qr=20,active=10,admin-dashboard=8,society-bills=2,resident-dashboard=5,my-bills=5";
+
+    private static final Pattern ACCESS_TOKEN = Pattern.compile("\"accessToken\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern USER_ID = Pattern.compile("\"user\"\\s*:\\s*\\{\\s*\"id\"\\s*:\\s*(\\d+)");
+    private static final Pattern SOCIETY_ID = Pattern.compile("\"societyId\"\\s*:\\s*(\\d+)");
+    private static final Pattern FLAT_ID = Pattern.compile("\"flatId\"\\s*:\\s*(\\d+)");
+    private static final Pattern LOG_ID = Pattern.compile("\"logId\"\\s*:\\s*(\\d+)");
+
+    private static final String[] CATEGORIES = { "GUEST", "DELIVERY", "CAB", "SERVICE" };
+
+    /** Tokens and ids for one seeded society. */
+    private static final class Society {
+        final int number;
+        long societyId;
+        String adminToken;
+        String guardToken;
+        final List<String> residentTokens = new ArrayList<>();
+        final List<Long> residentUserIds = new ArrayList<>();
+        final List<Long> flatIds = new ArrayList<>();
+
+        Society(int number) {
+            this.number = number;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String baseUrl = options.getOrDefault("base-url", "http://localhost:8080");
+        String password = options.getOrDefault("password", "Load@123");
+        String label = options.getOrDefault("label", "run");
+        int societyCount = Integer.parseInt(options.getOrDefault("societies", "2"));
+        int flatsPerSociety = Integer.parseInt(options.getOrDefault("flats", "160"));
+        int residentLogins = Integer.parseInt(options.getOrDefault("resident-logins", "10"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "50"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        String photoUrl = options.getOrDefault("photo-url", "/uploads/loadtest.jpg");
+        Map<String, Integer> mix = parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors())))
+                .build();
+
+        List<Society> societies = new ArrayList<>();
+        for (int s = 1; s <= societyCount; s++) {
+            Society society = new Society(s);
+            String admin = login(client, baseUrl, "admin." + s + "@" + EMAIL_DOMAIN, password);
+            society.adminToken = group(ACCESS_TOKEN, admin);
+            society.societyId = Long.parseLong(group(SOCIETY_ID, admin));
+            society.guardToken = group(ACCESS_TOKEN, login(client, baseUrl, "guard." + s + "@" + EMAIL_DOMAIN, password));
+            for (int i = 0; i < Math.min(residentLogins, flatsPerSociety); i++) {
+                int n = 1 + (int) ((long) i * flatsPerSociety / Math.min(residentLogins, flatsPerSociety));
+                String resident = login(client, baseUrl, "resident." + s + "." + n + "@" + EMAIL_DOMAIN, password);
+                society.residentTokens.add(group(ACCESS_TOKEN, resident));
+                society.residentUserIds.add(Long.parseLong(group(USER_ID, resident)));
+                society.flatIds.add(Long.parseLong(group(FLAT_ID, resident)));
+            }
+            societies.add(society);
+        }
+
+        String[] operations = mix.keySet().toArray(new String[0]);
+        int[] cumulative = new int[operations.length];
+        int totalWeight = 0;
+        for (int i = 0; i < operations.length; i++) {
+            totalWeight += mix.get(operations[i]);
+            cumulative[i] = totalWeight;
+        }
+        int weightSum = totalWeight;
+
+        System.out.printf(Locale.ROOT, "[%s] %d societies, warmup %ds, measuring %ds at concurrency %d, mix %s%n",
+                label, societyCount, warmupSeconds, durationSeconds, concurrency, mix);
+
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Map<String, Stats>> perWorker = new ArrayList<>();
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        for (int w = 0; w < concurrency; w++) {
+            Map<String, Stats> stats = new HashMap<>();
+            perWorker.add(stats);
+            workers.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                ArrayDeque<Long> checkedIn = new ArrayDeque<>();
+                while (true) {
+                    long started = System.nanoTime();
+                    if (started >= end) {
+                        break;
+                    }
+                    int pick = random.nextInt(weightSum);
+                    String operation = operations[0];
+                    for (int i = 0; i < cumulative.length; i++) {
+                        if (pick < cumulative[i]) {
+                            operation = operations[i];
+                            break;
+                        }
+                    }
+                    Society society = societies.get(random.nextInt(societies.size()));
+                    if (operation.equals("checkout") && checkedIn.isEmpty()) {
+                        operation = "checkin";
+                    }
+                    HttpRequest request = buildRequest(operation, society, checkedIn, baseUrl, photoUrl, random);
+                    int status;
+                    int sql = -1;
+                    String body = null;
+                    try {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        status = response.statusCode();
+                        body = response.body();
+                        sql = response.headers().firstValue("X-Sql-Statements").map(Integer::parseInt).orElse(-1);
+                    } catch (Exception e) {
+                        status = -1;
+                    }
+                    long finished = System.nanoTime();
+                    if (operation.equals("checkin") && status / 100 == 2 && body != null) {
+                        Matcher logId = LOG_ID.matcher(body);
+                        if (logId.find()) {
+                            checkedIn.add(Long.parseLong(logId.group(1)));
+                        }
+                    }
+                    if (started < warmupEnd) {
+                        continue;
+                    }
+                    Stats s = stats.computeIfAbsent(operation, o -> new Stats());
+                    if (status / 100 != 2) {
+                        s.failures++;
+                        s.statuses.merge(status, 1, Integer::sum);
+                    } else {
+                        s.latencies.add(finished - started);
+                        if (sql >= 0) {
+                            s.sqlCounts.add(sql);
+                        }
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(warmupSeconds + durationSeconds + 120L, TimeUnit.SECONDS);
+
+        Map<String, Stats> merged = new LinkedHashMap<>();
+        for (String operation : operations) {
+            Stats total = new Stats();
+            for (Map<String, Stats> stats : perWorker) {
+                Stats s = stats.get(operation);
+                if (s != null) {
+                    total.merge(s);
+                }
+            }
+            merged.put(operation, total);
+        }
+
+        long totalOk = merged.values().stream().mapToLong(s -> s.latencies.size).sum();
+        long totalFailed = merged.values().stream().mapToLong(s -> s.failures).sum();
+        System.out.printf(Locale.ROOT, "[%s] ok=%d failed=%d throughput=%.1f req/s%n",
+                label, totalOk, totalFailed, totalOk / (double) durationSeconds);
+        System.out.printf(Locale.ROOT, "%-20s %8s %7s %9s %9s %9s %8s %8s %8s%n",
+                "endpoint", "ok", "failed", "p50(ms)", "p99(ms)", "max(ms)", "sql/avg", "sql/p99", "sql/max");
+        for (Map.Entry<String, Stats> entry : merged.entrySet()) {
+            Stats s = entry.getValue();
+            long[] latencies = s.latencies.sorted();
+            long[] sql = s.sqlCounts.sorted();
+            System.out.printf(Locale.ROOT, "%-20s %8d %7d %9.1f %9.1f %9.1f %8s %8s %8s%s%n",
+                    entry.getKey(), latencies.length, s.failures,
+                    percentile(latencies, 50) / 1e6, percentile(latencies, 99) / 1e6,
+                    latencies.length == 0 ? 0.0 : latencies[latencies.length - 1] / 1e6,
+                    sql.length == 0 ? "-" : String.format(Locale.ROOT, "%.1f", Arrays.stream(sql).average().orElse(0)),
+                    sql.length == 0 ? "-" : String.valueOf(percentile(sql, 99)),
+                    sql.length == 0 ? "-" : String.valueOf(sql[sql.length - 1]),
+                    s.statuses.isEmpty() ? "" : " statuses=" + s.statuses);
+        }
+        System.exit(0);
+    }
+
+    private static HttpRequest buildRequest(String operation, Society society, ArrayDeque<Long> checkedIn,
+            String baseUrl, String photoUrl, ThreadLocalRandom random) {
+        int resident = random.nextInt(society.residentTokens.size());
+        switch (operation) {
+            case "checkin": {
+                String phone = String.format(Locale.ROOT, "7%03d%06d", society.number, 1 + random.nextInt(2000));
+                String body = String.format(Locale.ROOT,
+                        "{\"name\":\"Visitor %s\",\"phone\":\"%s\",\"flatId\":%d,\"category\":\"%s\","
+                                + "\"purpose\":\"Load test\",\"imageUrl\":\"%s\"}",
+                        phone, phone, society.flatIds.get(resident), CATEGORIES[random.nextInt(CATEGORIES.length)],
+                        photoUrl);
+                return post(baseUrl + "/api/visitors/check-in", society.guardToken, body);
+            }
+            case "checkout":
+                return post(baseUrl + "/api/visitors/check-out/" + checkedIn.poll(), society.guardToken, "");
+            case "qr": {
+                String token = "RESIDENT:" + society.residentUserIds.get(resident) + ":Resident";
+                return post(baseUrl + "/api/access/validate-qr", society.guardToken, "{\"token\":\"" + token + "\"}");
+            }
+            case "active":
+                return get(baseUrl + "/api/visitors/active?societyId=" + society.societyId, society.guardToken);
+            case "admin-dashboard":
+                return get(baseUrl + "/api/admin/dashboard-stats", society.adminToken);
+            case "society-bills":
+                return get(baseUrl + "/api/billing", society.adminToken);
+            case "resident-dashboard":
+                return get(baseUrl + "/api/resident/dashboard-stats", society.residentTokens.get(resident));
+            case "my-bills":
+                return get(baseUrl + "/api/billing/my", society.residentTokens.get(resident));
+            default:
+                throw new IllegalArgumentException("Unknown operation in --mix: " + operation);
+        }
+    }
+
+    private static HttpRequest get(String url, String token) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(60))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private static HttpRequest post(String url, String token, String json) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + token)
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    /** Per-worker, per-operation results; merged once every worker has finished. */
+    private static final class Stats {
+        final Samples latencies = new Samples();
+        final Samples sqlCounts = new Samples();
+        final Map<Integer, Integer> statuses = new HashMap<>();
+        long failures;
+
+        void merge(Stats other) {
+            latencies.addAll(other.latencies);
+            sqlCounts.addAll(other.sqlCounts);
+            other.statuses.forEach((status, count) -> statuses.merge(status, count, Integer::sum));
+            failures += other.failures;
+        }
+    }
+
+    private static final class Samples {
+        long[] values = new long[1024];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+    private static String login(HttpClient client, String baseUrl, String email, String password) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"email\":\"" + email + "\",\"password\":\"" + password + "\"}"))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed for " + email + " (" + response.statusCode() + "): "
+                    + response.body());
+        }
+        return response.body();
+    }
+
+    private static String group(Pattern pattern, String body) {
+        Matcher matcher = pattern.matcher(body);
+        if (!matcher.find()) {
+            throw new IllegalStateException("No " + pattern + " in " + body);
+        }
+        return matcher.group(1);
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=");
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight > 0) {
+                weights.put(kv[0].trim(), weight);
+            }
+        }
+        return weights;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option value pairs, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+}
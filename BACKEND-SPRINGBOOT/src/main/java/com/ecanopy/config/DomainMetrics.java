@@ -0,0 +1,143 @@
+package com.ecanopy.config;
+
+import com.ecanopy.entity.Building;
+import com.ecanopy.entity.Flat;
+import com.ecanopy.entity.Society;
+import com.ecanopy.exception.BadRequestException;
+import com.ecanopy.exception.BusinessException;
+import com.ecanopy.exception.ForbiddenException;
+import com.ecanopy.exception.NotFoundException;
+import com.ecanopy.exception.ServiceUnavailableException;
+import com.ecanopy.exception.UnauthorizedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Timers and counters for the domain hot paths (gate check-in/out, QR and staff scans,
+ * amenity bookings, Razorpay calls, outgoing mail).
+ *
+ * Tags stay low-cardinality: outcomes are a fixed vocabulary and societies are folded
+ * into ecanopy.metrics.society-buckets buckets instead of raw ids.
+ */
+@Component
+@RequiredArgsConstructor
+public class DomainMetrics {
+
+    public static final String VISITOR_CHECK_IN = "ecanopy.visitor.checkin";
+    public static final String VISITOR_CHECK_OUT = "ecanopy.visitor.checkout";
+    public static final String QR_VALIDATION = "ecanopy.access.qr";
+    public static final String STAFF_SCAN = "ecanopy.staff.scan";
+    public static final String GUARD_SYNC = "ecanopy.guard.sync";
+    public static final String AMENITY_BOOKING = "ecanopy.amenity.booking";
+    public static final String PAYMENT_ORDER = "ecanopy.payment.order";
+    public static final String PAYMENT_VERIFY = "ecanopy.payment.verify";
+    public static final String EMAIL_SEND = "ecanopy.email.send";
+
+    public static final String SUCCESS = "success";
+    public static final String NONE = "none";
+
+    private static final Map<String, String> DESCRIPTIONS = Map.of(
+            VISITOR_CHECK_IN, "Visitor check-in at the gate (walk-in or pass code)",
+            VISITOR_CHECK_OUT, "Visitor check-out at the gate",
+            QR_VALIDATION, "QR / pass code validations by token type and outcome",
+            STAFF_SCAN, "Domestic staff pass code scans",
+            GUARD_SYNC, "Scan batches uploaded by offline guard devices",
+            AMENITY_BOOKING, "Amenity booking requests, including slot conflicts",
+            PAYMENT_ORDER, "Razorpay order creation round trip",
+            PAYMENT_VERIFY, "Razorpay payment signature verification",
+            EMAIL_SEND, "Outgoing notification mail");
+
+    private final MeterRegistry meterRegistry;
+    private final DomainMetricsProperties properties;
+
+    /**
+     * Starts timing one operation; every recording carries society and outcome tags
+     * (plus the given key/value pairs) so each timer keeps a single tag-key set.
+     */
+    public Recording record(String name, String... tags) {
+        return new Recording(name, tags);
+    }
+
+    /** Society tag value: id modulo the configured bucket count, "none" when unknown. */
+    public String societyBucket(Long societyId) {
+        if (societyId == null) {
+            return NONE;
+        }
+        if (properties.getSocietyBuckets() <= 0) {
+            return "all";
+        }
+        return String.valueOf(Math.floorMod(societyId, properties.getSocietyBuckets()));
+    }
+
+    /** Flat and Building are second-level cached, so walking up to the society id is cheap. */
+    public String societyBucket(Flat flat) {
+        Building building = flat != null ? flat.getBuilding() : null;
+        Society society = building != null ? building.getSociety() : null;
+        return societyBucket(society != null ? society.getSocietyId() : null);
+    }
+
+    /** Maps a failure onto the fixed outcome vocabulary used by every domain meter. */
+    public static String outcome(Throwable e) {
+        if (e instanceof NotFoundException) {
+            return "not_found";
+        }
+        if (e instanceof BadRequestException || e instanceof IllegalArgumentException) {
+            return "invalid";
+        }
+        if (e instanceof ServiceUnavailableException) {
+            return "unavailable";
+        }
+        if (e instanceof IllegalStateException || e instanceof BusinessException) {
+            return "rejected";
+        }
+        if (e instanceof ForbiddenException || e instanceof UnauthorizedException) {
+            return "denied";
+        }
+        return "error";
+    }
+
+    public final class Recording {
+
+        private final String name;
+        private final String[] tags;
+        private final Timer.Sample sample;
+        private String society = NONE;
+
+        private Recording(String name, String[] tags) {
+            this.name = name;
+            this.tags = tags;
+            this.sample = Timer.start(meterRegistry);
+        }
+
+        public void society(Long societyId) {
+            society = societyBucket(societyId);
+        }
+
+        public void society(Flat flat) {
+            society = societyBucket(flat);
+        }
+
+        public <T> T success(T result) {
+            stop(SUCCESS);
+            return result;
+        }
+
+        public <E extends Exception> E failure(E e) {
+            stop(outcome(e));
+            return e;
+        }
+
+        /** Ends the recording with an explicit outcome, e.g. a booking conflict. */
+        public void stop(String outcome) {
+            sample.stop(Timer.builder(name)
+                    .description(DESCRIPTIONS.get(name))
+                    .tags(tags)
+                    .tags("society", society, "outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.ecanopy.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ecanopy.metrics")
+public class DomainMetricsProperties {
+    private int societyBuckets = 16;
+    private List<String> scrapeAllowedNetworks = new ArrayList<>();
+}
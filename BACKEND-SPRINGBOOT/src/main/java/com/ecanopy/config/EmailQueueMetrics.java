@@ -0,0 +1,36 @@
+package com.ecanopy.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Queue depth of the @Async executor, which today only carries EmailService sends.
+ *
+ * Boot applies a TaskDecorator bean to applicationTaskExecutor in both platform and
+ * virtual-thread mode, so this counts tasks submitted but not yet picked up by a thread
+ * without replacing the executor itself.
+ */
+@Component
+public class EmailQueueMetrics implements TaskDecorator {
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public EmailQueueMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("ecanopy.email.queue.depth", queued, AtomicInteger::get)
+                .description("Notification mails waiting for an async worker")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        queued.incrementAndGet();
+        return () -> {
+            queued.decrementAndGet();
+            runnable.run();
+        };
+    }
+}
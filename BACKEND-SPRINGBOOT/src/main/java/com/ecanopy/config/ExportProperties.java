@@ -0,0 +1,15 @@
+package com.ecanopy.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ecanopy.export")
+public class ExportProperties {
+    // JDBC fetch size for export cursors; unset = streaming on MySQL (Integer.MIN_VALUE), 1000 elsewhere
+    private Integer fetchSize;
+    private int maxConcurrent = 2;
+    private int maxMonths = 36;
+}
@@ -10,9 +10,13 @@ import org.springframework.stereotype.Component;
 public class FileUploadProperties {
     private String basePath;
     private long maxFileSize;
-    private String allowedExtensions;
+    // Enforced by FileStorageService.store; anything else is rejected
+    private String allowedExtensions = "jpg,jpeg,png,pdf,doc,docx,mp4,mov,webm";
+    private String blobDirectory = "uploads/blobs";
     private Directories directories = new Directories();
-    
+    private Gc gc = new Gc();
+    private Variants variants = new Variants();
+
     @Data
     public static class Directories {
         private String visitors;
@@ -20,4 +24,23 @@ public class FileUploadProperties {
         private String complaints;
         private String notices;
     }
-}
\ No newline at end of file
+
+    @Data
+    public static class Gc {
+        // Schedule of FileStorageService.collectGarbage
+        private String cron = "0 30 3 * * *";
+        private long graceHours = 24;
+        private int batchSize = 200;
+    }
+
+    @Data
+    public static class Variants {
+        private String directory = "uploads/variants";
+        private int thumbSize = 200;
+        private int webSize = 1024;
+        private float jpegQuality = 0.8f;
+        private int workerThreads = 2;
+        private int queueCapacity = 200;
+        private long lazyTimeoutSeconds = 10;
+    }
+}
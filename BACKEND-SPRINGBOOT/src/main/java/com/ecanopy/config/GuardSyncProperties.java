@@ -0,0 +1,23 @@
+package com.ecanopy.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ecanopy.sync")
+public class GuardSyncProperties {
+    // Most events accepted in one upload
+    private int maxBatch = 500;
+    // Scans older than this are rejected
+    private Duration maxEventAge = Duration.ofDays(7);
+    // Device clocks may run this far ahead of the server
+    private Duration clockSkew = Duration.ofMinutes(5);
+    // A second scan of the same subject within this window is a duplicate
+    private Duration repeatScanWindow = Duration.ofSeconds(60);
+    // Delta cursors step back this far, so rows committed while a snapshot was read are not missed
+    private Duration cursorOverlap = Duration.ofMinutes(2);
+}
@@ -0,0 +1,299 @@
+package com.ecanopy.config;
+
+import com.ecanopy.entity.Role;
+import com.ecanopy.entity.enums.ApprovalStatus;
+import com.ecanopy.entity.enums.BillStatus;
+import com.ecanopy.entity.enums.ResidentType;
+import com.ecanopy.entity.enums.VisitorCategory;
+import com.ecanopy.repository.RoleRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * LoadTestDataInitializer
+ * Seeds a synthetic township for load testing ("loadtest" profile): N societies, each with
+ * buildings, flats, one resident per flat, an admin and a guard, a pool of repeat visitors,
+ * years of visitor logs and monthly maintenance bills.
+ *
+ * Rows go in through JDBC batches (JPA would take minutes at this scale); generated keys are
+ * read back by natural key so the same SQL runs on H2 and MySQL. Accounts follow a fixed
+ * pattern for the load driver: admin.{s}, guard.{s} and resident.{s}.{n} at
+ * {@value #EMAIL_DOMAIN}, all with the configured password.
+ */
+@Component
+@Profile("loadtest")
+@Order(2)
+@RequiredArgsConstructor
+@Slf4j
+public class LoadTestDataInitializer implements CommandLineRunner {
+
+        public static final String SOCIETY_PREFIX = "LoadTest Society ";
+        public static final String EMAIL_DOMAIN = "loadtest.ecanopy.com";
+
+        private static final String[] PURPOSES = { "Delivery", "Family visit", "Cab pickup", "House help",
+                        "Plumber", "Electrician", "Courier", "Friends" };
+
+        private final JdbcTemplate jdbcTemplate;
+        private final PasswordEncoder passwordEncoder;
+        private final RoleRepository roleRepository;
+        private final LoadTestProperties properties;
+
+        @Override
+        public void run(String... args) {
+                Integer existing = jdbcTemplate.queryForObject(
+                                "SELECT COUNT(*) FROM societies WHERE society_name LIKE ?", Integer.class,
+                                SOCIETY_PREFIX + "%");
+                if (existing != null && existing > 0) {
+                        log.info("Load test township already seeded ({} societies).", existing);
+                        return;
+                }
+
+                long started = System.currentTimeMillis();
+                Random random = new Random(properties.getSeed());
+                // One BCrypt hash shared by every synthetic account
+                String password = passwordEncoder.encode(properties.getPassword());
+                long adminRoleId = roleId("ROLE_ADMIN");
+                long guardRoleId = roleId("ROLE_SECURITY_GUARD");
+                long residentRoleId = roleId("ROLE_RESIDENT");
+
+                long logs = 0;
+                long bills = 0;
+                for (int s = 1; s <= properties.getSocieties(); s++) {
+                        long societyId = seedSociety(s);
+                        List<Long> flatIds = seedBuildingsAndFlats(societyId);
+                        long guardId = seedStaff(s, societyId, password, adminRoleId, guardRoleId);
+                        seedResidents(s, societyId, flatIds, password, residentRoleId);
+                        List<Long> visitorIds = seedVisitors(s);
+                        logs += seedVisitorLogs(flatIds, visitorIds, guardId, random);
+                        bills += seedBills(flatIds, random);
+                        log.info("Seeded {}{} ({} flats)", SOCIETY_PREFIX, s, flatIds.size());
+                }
+
+                log.info("Load test township seeded in {} ms: {} societies, {} flats, {} visitor logs, {} bills",
+                                System.currentTimeMillis() - started, properties.getSocieties(),
+                                (long) properties.getSocieties() * flatsPerSociety(), logs, bills);
+        }
+
+        private long seedSociety(int s) {
+                jdbcTemplate.update(
+                                "INSERT INTO societies (society_name, society_description, address, is_active, created_at) "
+                                                + "VALUES (?, ?, ?, ?, ?)",
+                                SOCIETY_PREFIX + s, "Synthetic society for load testing", "Sector " + s + ", Load Town",
+                                true, LocalDateTime.now());
+                return jdbcTemplate.queryForObject("SELECT society_id FROM societies WHERE society_name = ?",
+                                Long.class, SOCIETY_PREFIX + s);
+        }
+
+        private List<Long> seedBuildingsAndFlats(long societyId) {
+                List<Object[]> buildings = new ArrayList<>();
+                for (int b = 1; b <= properties.getBuildingsPerSociety(); b++) {
+                        buildings.add(new Object[] { "Tower " + b, properties.getFloorsPerBuilding(), societyId,
+                                        LocalDateTime.now() });
+                }
+                jdbcTemplate.batchUpdate(
+                                "INSERT INTO buildings (building_name, total_floors, society_id, created_at) VALUES (?, ?, ?, ?)",
+                                buildings);
+                Map<String, Long> buildingIds = jdbcTemplate.query(
+                                "SELECT building_id, building_name FROM buildings WHERE society_id = ?",
+                                (rs, i) -> Map.entry(rs.getString(2), rs.getLong(1)), societyId).stream()
+                                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+                List<Object[]> flats = new ArrayList<>();
+                for (int b = 1; b <= properties.getBuildingsPerSociety(); b++) {
+                        for (int floor = 1; floor <= properties.getFloorsPerBuilding(); floor++) {
+                                for (int unit = 1; unit <= properties.getFlatsPerFloor(); unit++) {
+                                        flats.add(new Object[] { "T" + b + "-" + (floor * 100 + unit), floor,
+                                                        2 + unit % 3, 5, true, buildingIds.get("Tower " + b) });
+                                }
+                        }
+                }
+                batch("INSERT INTO flats (flat_number, floor, bedrooms, max_resident, is_occupied, building_id) "
+                                + "VALUES (?, ?, ?, ?, ?, ?)", flats);
+                return jdbcTemplate.queryForList(
+                                "SELECT f.flat_id FROM flats f JOIN buildings b ON b.building_id = f.building_id "
+                                                + "WHERE b.society_id = ? ORDER BY f.flat_id",
+                                Long.class, societyId);
+        }
+
+        private long seedStaff(int s, long societyId, String password, long adminRoleId, long guardRoleId) {
+                String adminEmail = "admin." + s + "@" + EMAIL_DOMAIN;
+                String guardEmail = "guard." + s + "@" + EMAIL_DOMAIN;
+                List<Object[]> users = List.of(
+                                new Object[] { "Load Admin " + s, adminEmail, "97" + String.format("%08d", s), password,
+                                                null, societyId, true, LocalDateTime.now() },
+                                new Object[] { "Load Guard " + s, guardEmail, "96" + String.format("%08d", s), password,
+                                                null, societyId, true, LocalDateTime.now() });
+                batch(insertUserSql(), users);
+                long adminId = userId(adminEmail);
+                long guardId = userId(guardEmail);
+                jdbcTemplate.batchUpdate("INSERT INTO user_roles (user_id, role_id) VALUES (?, ?)",
+                                List.of(new Object[] { adminId, adminRoleId }, new Object[] { guardId, guardRoleId }));
+                return guardId;
+        }
+
+        private void seedResidents(int s, long societyId, List<Long> flatIds, String password, long residentRoleId) {
+                List<Object[]> users = new ArrayList<>();
+                for (int n = 1; n <= flatIds.size(); n++) {
+                        users.add(new Object[] { "Resident " + s + "-" + n, residentEmail(s, n), residentPhone(s, n),
+                                        password, flatIds.get(n - 1), societyId, true, LocalDateTime.now() });
+                }
+                batch(insertUserSql(), users);
+
+                Map<String, Long> userIds = jdbcTemplate.query("SELECT id, email FROM users WHERE email LIKE ?",
+                                (rs, i) -> Map.entry(rs.getString(2), rs.getLong(1)),
+                                "resident." + s + ".%@" + EMAIL_DOMAIN).stream()
+                                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+                List<Object[]> roles = new ArrayList<>();
+                List<Object[]> residents = new ArrayList<>();
+                for (int n = 1; n <= flatIds.size(); n++) {
+                        long userId = userIds.get(residentEmail(s, n));
+                        roles.add(new Object[] { userId, residentRoleId });
+                        residents.add(new Object[] { "Resident " + s + "-" + n, residentEmail(s, n), residentPhone(s, n),
+                                        (n % 4 == 0 ? ResidentType.TENANT : ResidentType.OWNER).name(), true,
+                                        LocalDate.now().minusYears(properties.getYears()), LocalDateTime.now(),
+                                        flatIds.get(n - 1), userId });
+                }
+                batch("INSERT INTO user_roles (user_id, role_id) VALUES (?, ?)", roles);
+                batch("INSERT INTO residents (full_name, email, contact_no, resident_type, is_active, move_in_date, "
+                                + "created_at, flat_id, user_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", residents);
+        }
+
+        private List<Long> seedVisitors(int s) {
+                List<Object[]> visitors = new ArrayList<>();
+                for (int v = 1; v <= properties.getVisitorsPerSociety(); v++) {
+                        visitors.add(new Object[] { "Visitor " + s + "-" + v, visitorPhone(s, v), LocalDateTime.now() });
+                }
+                batch("INSERT INTO visitors (full_name, phone, created_at) VALUES (?, ?, ?)", visitors);
+                return jdbcTemplate.queryForList("SELECT visitor_id FROM visitors WHERE phone LIKE ? ORDER BY visitor_id",
+                                Long.class, visitorPhone(s, 0).substring(0, 4) + "%");
+        }
+
+        private long seedVisitorLogs(List<Long> flatIds, List<Long> visitorIds, long guardId, Random random) {
+                VisitorCategory[] categories = VisitorCategory.values();
+                LocalDate today = LocalDate.now();
+                int days = properties.getYears() * 365;
+                List<Object[]> rows = new ArrayList<>(properties.getBatchSize());
+                long total = 0;
+                for (int d = days; d >= 1; d--) {
+                        LocalDate day = today.minusDays(d);
+                        for (Long flatId : flatIds) {
+                                int visits = poisson(properties.getVisitsPerFlatPerDay(), random);
+                                for (int i = 0; i < visits; i++) {
+                                        LocalDateTime in = day.atTime(7 + random.nextInt(15), random.nextInt(60));
+                                        LocalDateTime out = in.plusMinutes(15 + random.nextInt(180));
+                                        rows.add(new Object[] { categories[random.nextInt(categories.length)].name(),
+                                                        PURPOSES[random.nextInt(PURPOSES.length)], in, out,
+                                                        ApprovalStatus.APPROVED.name(),
+                                                        visitorIds.get(random.nextInt(visitorIds.size())), flatId, guardId,
+                                                        "Main Gate", in.plusHours(2) });
+                                        if (rows.size() == properties.getBatchSize()) {
+                                                total += flushVisitorLogs(rows);
+                                        }
+                                }
+                        }
+                }
+                return total + flushVisitorLogs(rows);
+        }
+
+        private int flushVisitorLogs(List<Object[]> rows) {
+                int size = rows.size();
+                if (size > 0) {
+                        jdbcTemplate.batchUpdate("INSERT INTO visitor_logs (category, purpose, in_time, out_time, status, "
+                                        + "visitor_id, flat_id, checked_in_by_user_id, gate_entry, expected_out_time) "
+                                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+                        rows.clear();
+                }
+                return size;
+        }
+
+        private long seedBills(List<Long> flatIds, Random random) {
+                LocalDate currentMonth = LocalDate.now().withDayOfMonth(1);
+                int months = properties.getYears() * 12;
+                List<Object[]> rows = new ArrayList<>();
+                for (int m = months - 1; m >= 0; m--) {
+                        LocalDate month = currentMonth.minusMonths(m);
+                        for (Long flatId : flatIds) {
+                                BigDecimal water = BigDecimal.valueOf(300 + random.nextInt(200));
+                                BigDecimal parking = BigDecimal.valueOf(500);
+                                BigDecimal sinking = BigDecimal.valueOf(1000);
+                                BigDecimal electricity = BigDecimal.valueOf(800 + random.nextInt(1200));
+                                BigDecimal total = water.add(parking).add(sinking).add(electricity);
+                                // Older bills are settled; the last two months are open (some overdue)
+                                boolean open = m < 2 && random.nextInt(3) > 0;
+                                BillStatus status = !open ? BillStatus.PAID : m == 1 ? BillStatus.OVERDUE : BillStatus.PENDING;
+                                LocalDate due = month.withDayOfMonth(10);
+                                rows.add(new Object[] { month, water, parking, sinking, electricity, BigDecimal.ZERO, total,
+                                                due, open ? null : due.minusDays(random.nextInt(9)), status.name(),
+                                                month.atStartOfDay(), flatId });
+                        }
+                }
+                batch("INSERT INTO maintenance_bills (bill_month, water_charges, parking_charges, sinking_fund, "
+                                + "electricity_charges, penalties, total_amount, due_date, paid_date, status, created_at, flat_id) "
+                                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+                return rows.size();
+        }
+
+        private void batch(String sql, List<Object[]> rows) {
+                for (int from = 0; from < rows.size(); from += properties.getBatchSize()) {
+                        jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(rows.size(), from + properties.getBatchSize())));
+                }
+        }
+
+        private static String insertUserSql() {
+                return "INSERT INTO users (full_name, email, phone_number, password, flat_id, society_id, enabled, created_at) "
+                                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        }
+
+        private long userId(String email) {
+                return jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = ?", Long.class, email);
+        }
+
+        private long roleId(String name) {
+                return roleRepository.findByName(name).map(Role::getId)
+                                .orElseThrow(() -> new IllegalStateException(name + " not seeded"));
+        }
+
+        private int flatsPerSociety() {
+                return properties.getBuildingsPerSociety() * properties.getFloorsPerBuilding() * properties.getFlatsPerFloor();
+        }
+
+        private static String residentEmail(int s, int n) {
+                return "resident." + s + "." + n + "@" + EMAIL_DOMAIN;
+        }
+
+        private static String residentPhone(int s, int n) {
+                return "8" + String.format("%03d%06d", s, n);
+        }
+
+        private static String visitorPhone(int s, int v) {
+                return "7" + String.format("%03d%06d", s, v);
+        }
+
+        /** Knuth's method; the rate is small (a few visits per flat per day). */
+        private static int poisson(double rate, Random random) {
+                double limit = Math.exp(-rate);
+                double product = random.nextDouble();
+                int count = 0;
+                while (product > limit) {
+                        count++;
+                        product *= random.nextDouble();
+                }
+                return count;
+        }
+}
@@ -0,0 +1,21 @@
+package com.ecanopy.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "loadtest.data")
+public class LoadTestProperties {
+    private int societies = 2;
+    private int buildingsPerSociety = 4;
+    private int floorsPerBuilding = 10;
+    private int flatsPerFloor = 4;
+    private int visitorsPerSociety = 2000;
+    private int years = 2;
+    private double visitsPerFlatPerDay = 0.5;
+    private String password = "Load@123";
+    private int batchSize = 1000;
+    private long seed = 42;
+}
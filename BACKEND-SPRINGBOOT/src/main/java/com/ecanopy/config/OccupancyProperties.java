@@ -0,0 +1,21 @@
+package com.ecanopy.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ecanopy.occupancy")
+public class OccupancyProperties {
+    // Keep-alive comment sent on idle occupancy streams (below typical proxy idle timeouts)
+    private Duration heartbeat = Duration.ofSeconds(25);
+    // Lifetime of one occupancy stream; EventSource reconnects on its own
+    private Duration streamTimeout = Duration.ofMinutes(30);
+    // Threads writing to occupancy streams; a slow client holds up only its own stream
+    private int pushThreads = 2;
+    // Open occupancy streams per user; another connection closes the user's oldest stream
+    private int maxStreamsPerUser = 5;
+}
@@ -0,0 +1,35 @@
+package com.ecanopy.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Open EntityManager in view, as Boot registers it by default (spring.jpa.open-in-view), minus
+ * the endpoints that call external services between transactions or stream long responses.
+ *
+ * With the view-scoped EntityManager Hibernate keeps the JDBC connection from the first
+ * transaction until the response is written, which would hold a pool connection through the
+ * payment gateway round trip, next to an export's own cursor connection, or for the life of an
+ * event stream. Excluded
+ * endpoints must only return DTOs.
+ */
+@Configuration
+public class OpenInViewConfig implements WebMvcConfigurer {
+
+    private static final String[] EXCLUDED_PATHS = { "/api/payments/create-order", "/api/billing/export",
+            "/api/occupancy/stream", "/api/visitors/overstaying/stream" };
+
+    @Bean
+    OpenEntityManagerInViewInterceptor openEntityManagerInViewInterceptor() {
+        return new OpenEntityManagerInViewInterceptor();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addWebRequestInterceptor(openEntityManagerInViewInterceptor())
+                .excludePathPatterns(EXCLUDED_PATHS);
+    }
+}
@@ -0,0 +1,25 @@
+package com.ecanopy.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ecanopy.overstay")
+public class OverstayProperties {
+    // Resolution of the overstay timing wheel; an alert fires at most one tick late
+    private Duration tick = Duration.ofSeconds(1);
+    // Buckets in the wheel; deadlines further out than one turn wait in their bucket for later turns
+    private int wheelSize = 512;
+    // Keep-alive comment sent on idle overstay streams
+    private Duration heartbeat = Duration.ofSeconds(25);
+    // Lifetime of one overstay stream; EventSource reconnects on its own
+    private Duration streamTimeout = Duration.ofMinutes(30);
+    // Threads writing to overstay streams; the wheel thread only queues events for them
+    private int pushThreads = 2;
+    // Open overstay streams per user; another connection closes the user's oldest stream
+    private int maxStreamsPerUser = 5;
+}
@@ -0,0 +1,17 @@
+package com.ecanopy.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ecanopy.pass-codes")
+public class PassCodeProperties {
+    // A claimed block of staff pass codes stays with its instance this long without renewal
+    private Duration lease = Duration.ofHours(1);
+    // How often the instance renews the lease of the block it is handing out
+    private Duration renewInterval = Duration.ofMinutes(10);
+}
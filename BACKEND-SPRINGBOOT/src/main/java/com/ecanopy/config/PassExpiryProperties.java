@@ -0,0 +1,23 @@
+package com.ecanopy.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ecanopy.passes")
+public class PassExpiryProperties {
+    // How often pre-approvals and frequent visitor passes past their validity are flagged expired
+    private Duration sweepInterval = Duration.ofMinutes(15);
+    // Delay of the first sweep after startup
+    private Duration sweepInitialDelay = Duration.ofSeconds(30);
+    // Rows flagged per UPDATE, so a large backlog never holds many row locks at once
+    private int sweepBatch = 500;
+    // How often the active pass index picks up changes made on other instances
+    private Duration refreshInterval = Duration.ofSeconds(30);
+    // Refreshes step back this far, so rows committed while the previous one ran are not missed
+    private Duration refreshOverlap = Duration.ofMinutes(2);
+}
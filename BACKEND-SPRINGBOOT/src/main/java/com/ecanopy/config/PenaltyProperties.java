@@ -0,0 +1,27 @@
+package com.ecanopy.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ecanopy.penalty")
+public class PenaltyProperties {
+    private boolean enabled = true;
+    // Nightly run; penalties are computed as of the run date
+    private String cron = "0 30 1 * * *";
+    // Societies per transaction and checkpoint
+    private int chunkSize = 50;
+    // Defaults for societies without a penalty_rules row
+    private int graceDays = 0;
+    private BigDecimal lateFee = BigDecimal.valueOf(100);
+    private BigDecimal monthlyInterestPercent = new BigDecimal("1.5");
+    private int maxMonths = 12;
+    // An unfinished run for today is resumed after startup and retried at this interval
+    private Duration resumeDelay = Duration.ofMinutes(1);
+    private Duration resumeInterval = Duration.ofMinutes(15);
+}
@@ -0,0 +1,19 @@
+package com.ecanopy.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ecanopy.qr")
+public class QrTokenProperties {
+    // HMAC key for gate pass tokens; unset = derived from jwt.secret
+    private String secret;
+    private Duration residentTtl = Duration.ofDays(30);
+    private Duration helpTtl = Duration.ofDays(180);
+    // How often the in-memory revocation set is reloaded (revocations made on other instances)
+    private Duration revocationRefresh = Duration.ofMinutes(1);
+}
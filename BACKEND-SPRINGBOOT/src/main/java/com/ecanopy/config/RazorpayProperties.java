@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Data
 @Component
 @ConfigurationProperties(prefix = "razorpay")
@@ -11,6 +13,9 @@ public class RazorpayProperties {
     private Key key = new Key();
     private String currency;
     private Company company = new Company();
+    private Stub stub = new Stub();
+    private Webhook webhook = new Webhook();
+    private Duration orderDedupTtl = Duration.ofSeconds(10);
     
     @Data
     public static class Key {
@@ -22,4 +27,20 @@ public class RazorpayProperties {
     public static class Company {
         private String name;
     }
+
+    @Data
+    public static class Stub {
+        private Duration latency = Duration.ofMillis(200);
+        private double failureRate = 0.0;
+    }
+
+    @Data
+    public static class Webhook {
+        private String secret;
+        private int batchSize = 200;
+        private int maxAttempts = 5;
+        private Duration reconcileInterval = Duration.ofSeconds(5);
+        private Duration sweepInterval = Duration.ofMinutes(10);
+        private Duration staleAfter = Duration.ofMinutes(30);
+    }
 }
\ No newline at end of file
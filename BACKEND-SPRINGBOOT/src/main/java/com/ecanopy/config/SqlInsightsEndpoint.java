@@ -0,0 +1,30 @@
+package com.ecanopy.config;
+
+import com.ecanopy.dto.response.SqlFindingResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /actuator/sqlinsights: most recent slow statements and repeated-statement (N+1) findings.
+ */
+@Component
+@ConditionalOnBean(SqlInstrumentation.class)
+@Endpoint(id = "sqlinsights")
+@RequiredArgsConstructor
+public class SqlInsightsEndpoint {
+
+    private final SqlInstrumentation sqlInstrumentation;
+
+    @ReadOperation
+    public Map<String, List<SqlFindingResponse>> insights() {
+        return Map.of(
+                "slowQueries", sqlInstrumentation.getSlowQueries(),
+                "repeatedStatements", sqlInstrumentation.getRepeatedStatements());
+    }
+}
@@ -0,0 +1,203 @@
+package com.ecanopy.config;
+
+import com.ecanopy.dto.response.SqlFindingResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Per-endpoint SQL instrumentation, replacing SQL/BasicBinder logging:
+ *
+ * - ecanopy.sql.statements / ecanopy.sql.jdbc.time per request, tagged by method and URI pattern
+ * - repeated statement shapes within one request (N+1) above the configured threshold
+ * - statements slower than the threshold, logged with literals redacted (bound values are never read)
+ *
+ * Recent findings are served by the "sqlinsights" actuator endpoint.
+ */
+@Component
+@ConditionalOnProperty(name = "ecanopy.sql-instrumentation.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class SqlInstrumentation implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // Hibernate emits a bounded set of statements; stop caching if something generates unbounded SQL
+    private static final int MAX_CACHED_SHAPES = 5000;
+
+    private static final ThreadLocal<String> LAST_SQL = new ThreadLocal<>();
+    private static volatile SqlInstrumentation instance;
+
+    private final SqlInstrumentationProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, String> shapeCache = new ConcurrentHashMap<>();
+    private final Deque<SqlFindingResponse> slowQueries = new ConcurrentLinkedDeque<>();
+    private final Deque<SqlFindingResponse> repeatedStatements = new ConcurrentLinkedDeque<>();
+
+    public SqlInstrumentation(SqlInstrumentationProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        instance = this;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+        hibernateProperties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SqlTimingSessionListener.class.getName());
+    }
+
+    @Override
+    public String inspect(String sql) {
+        LAST_SQL.set(sql);
+        SqlRequestStats stats = SqlRequestStats.current();
+        if (stats != null) {
+            stats.statements++;
+            stats.shapes.merge(shapeOf(sql), 1, Integer::sum);
+        }
+        return sql;
+    }
+
+    /** Called by SqlTimingSessionListener after every statement or batch execution. */
+    static void recordExecution(long nanos) {
+        SqlInstrumentation current = instance;
+        if (current != null) {
+            current.onExecution(nanos);
+        }
+    }
+
+    private void onExecution(long nanos) {
+        SqlRequestStats stats = SqlRequestStats.current();
+        if (stats != null) {
+            stats.jdbcNanos += nanos;
+        }
+        if (nanos < properties.getSlowQueryThreshold().toNanos()) {
+            return;
+        }
+        String sql = LAST_SQL.get();
+        String shape = sql != null ? shapeOf(sql) : "<unknown>";
+        String endpoint = stats != null ? stats.endpoint : Thread.currentThread().getName();
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        if (stats != null) {
+            stats.slowQueries++;
+        } else {
+            slowCounter(Tags.of("method", "NONE", "uri", "NONE")).increment();
+        }
+        log.warn("Slow SQL ({} ms) on {}: {}", millis, endpoint, shape);
+        remember(slowQueries, SqlFindingResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .endpoint(endpoint)
+                .millis(millis)
+                .sql(shape)
+                .build());
+    }
+
+    /** Publishes the request's numbers; returns the highest repeat count of a single statement shape. */
+    int finishRequest(HttpServletRequest request, SqlRequestStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Tags tags = Tags.of("method", request.getMethod(), "uri", pattern != null ? pattern.toString() : "UNKNOWN");
+
+        DistributionSummary.builder("ecanopy.sql.statements")
+                .description("SQL statements issued per request")
+                .baseUnit("statements")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(stats.statements);
+        Timer.builder("ecanopy.sql.jdbc.time")
+                .description("Total JDBC execution time per request")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(stats.jdbcNanos, TimeUnit.NANOSECONDS);
+        if (stats.slowQueries > 0) {
+            slowCounter(tags).increment(stats.slowQueries);
+        }
+
+        int maxRepeats = 0;
+        for (Map.Entry<String, Integer> shape : stats.shapes.entrySet()) {
+            int repeats = shape.getValue();
+            maxRepeats = Math.max(maxRepeats, repeats);
+            if (repeats > properties.getRepeatedStatementThreshold()) {
+                Counter.builder("ecanopy.sql.repeated")
+                        .description("Requests repeating one statement shape above the threshold (N+1)")
+                        .tags(tags)
+                        .register(meterRegistry)
+                        .increment();
+                log.warn("Possible N+1 on {}: {} x {}", stats.endpoint, repeats, shape.getKey());
+                remember(repeatedStatements, SqlFindingResponse.builder()
+                        .timestamp(LocalDateTime.now())
+                        .endpoint(stats.endpoint)
+                        .count(repeats)
+                        .sql(shape.getKey())
+                        .build());
+            }
+        }
+        return maxRepeats;
+    }
+
+    List<SqlFindingResponse> getSlowQueries() {
+        return new ArrayList<>(slowQueries);
+    }
+
+    List<SqlFindingResponse> getRepeatedStatements() {
+        return new ArrayList<>(repeatedStatements);
+    }
+
+    private Counter slowCounter(Tags tags) {
+        return Counter.builder("ecanopy.sql.slow")
+                .description("Statements slower than the slow-query threshold")
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    private void remember(Deque<SqlFindingResponse> findings, SqlFindingResponse finding) {
+        findings.addFirst(finding);
+        while (findings.size() > properties.getRecentFindings()) {
+            findings.pollLast();
+        }
+    }
+
+    private String shapeOf(String sql) {
+        String shape = shapeCache.get(sql);
+        if (shape == null) {
+            shape = redact(sql);
+            if (shapeCache.size() < MAX_CACHED_SHAPES) {
+                shapeCache.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * Statement shape: comments dropped, string/number literals and IN lists collapsed to "?",
+     * so repeats compare equal and nothing user-supplied ends up in logs or metrics.
+     */
+    static String redact(String sql) {
+        String shape = COMMENT.matcher(sql).replaceAll(" ");
+        shape = STRING_LITERAL.matcher(shape).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("in (?)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,69 @@
+package com.ecanopy.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brackets each request with a SqlRequestStats context. Runs ahead of Spring Security so
+ * the JWT user lookup is counted too. With response headers enabled (dev, loadtest) the
+ * body is buffered so X-Sql-* headers can be added once the counts are known; streamed
+ * exports and event streams are never buffered and go without the headers.
+ */
+@Component
+@ConditionalOnProperty(name = "ecanopy.sql-instrumentation.enabled", havingValue = "true", matchIfMissing = true)
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class SqlInstrumentationFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    public static final String TIME_HEADER = "X-Sql-Time-Ms";
+    public static final String REPEATED_HEADER = "X-Sql-Max-Repeats";
+
+    // Written incrementally (exports, event streams) and must not be buffered
+    private static final List<String> STREAMED_PATHS = List.of("/api/billing/export", "/api/occupancy/stream",
+            "/api/visitors/overstaying/stream");
+
+    private final SqlInstrumentation sqlInstrumentation;
+    private final SqlInstrumentationProperties properties;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Media is streamed (sendfile) and must not be buffered
+        return request.getRequestURI().startsWith(request.getContextPath() + "/uploads/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = properties.isResponseHeaders()
+                && !STREAMED_PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()))
+                ? new ContentCachingResponseWrapper(response)
+                : null;
+        SqlRequestStats stats = SqlRequestStats.begin(request.getMethod() + " " + request.getRequestURI());
+        try {
+            filterChain.doFilter(request, wrapper != null ? wrapper : response);
+        } finally {
+            SqlRequestStats.end();
+            int maxRepeats = sqlInstrumentation.finishRequest(request, stats);
+            if (wrapper != null) {
+                wrapper.setHeader(STATEMENTS_HEADER, String.valueOf(stats.statements));
+                wrapper.setHeader(TIME_HEADER, String.valueOf(TimeUnit.NANOSECONDS.toMillis(stats.jdbcNanos)));
+                wrapper.setHeader(REPEATED_HEADER, String.valueOf(maxRepeats));
+                wrapper.copyBodyToResponse();
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.ecanopy.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ecanopy.sql-instrumentation")
+public class SqlInstrumentationProperties {
+    private boolean enabled = true;
+    private int repeatedStatementThreshold = 10;
+    private Duration slowQueryThreshold = Duration.ofMillis(200);
+    private boolean responseHeaders = false;
+    private int recentFindings = 50;
+}
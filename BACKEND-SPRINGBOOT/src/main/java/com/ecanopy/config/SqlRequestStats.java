@@ -0,0 +1,37 @@
+package com.ecanopy.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SQL activity of the request being handled on the current thread. Opened and closed by
+ * SqlInstrumentationFilter, filled in by SqlInstrumentation and SqlTimingSessionListener.
+ */
+final class SqlRequestStats {
+
+    private static final ThreadLocal<SqlRequestStats> CURRENT = new ThreadLocal<>();
+
+    final String endpoint;
+    final Map<String, Integer> shapes = new HashMap<>();
+    int statements;
+    long jdbcNanos;
+    int slowQueries;
+
+    private SqlRequestStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    static SqlRequestStats begin(String endpoint) {
+        SqlRequestStats stats = new SqlRequestStats(endpoint);
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static SqlRequestStats current() {
+        return CURRENT.get();
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,33 @@
+package com.ecanopy.config;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Times JDBC statement and batch execution for SqlInstrumentation. Hibernate creates one
+ * per session from the hibernate.session.events.auto setting, hence the static hand-off.
+ */
+public class SqlTimingSessionListener implements SessionEventListener {
+
+    private long executeStart;
+    private long batchStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executeStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        SqlInstrumentation.recordExecution(System.nanoTime() - executeStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batchStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        SqlInstrumentation.recordExecution(System.nanoTime() - batchStart);
+    }
+}
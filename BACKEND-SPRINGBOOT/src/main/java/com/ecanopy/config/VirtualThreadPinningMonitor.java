@@ -0,0 +1,77 @@
+package com.ecanopy.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Pinned-carrier diagnostics for the "virtual" profile.
+ *
+ * Streams the JFR jdk.VirtualThreadPinned event in-process and logs the blocking frames, so a
+ * synchronized block around JDBC/SMTP/HTTP I/O shows up in the application log instead of as
+ * unexplained throughput loss. On JVMs without virtual threads the event simply never fires.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ecanopy.virtual-threads.pinning-monitor.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+
+    private final Duration threshold;
+    private final AtomicLong pinnedCount = new AtomicLong();
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(
+            @Value("${ecanopy.virtual-threads.pinning-monitor.threshold:20ms}") Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    @PostConstruct
+    void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("Virtual thread pinning monitor started (threshold {})", threshold);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    public long getPinnedCount() {
+        return pinnedCount.get();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedCount.incrementAndGet();
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        String frames = "<no stack trace>";
+        if (stackTrace != null) {
+            List<RecordedFrame> top = stackTrace.getFrames().stream().limit(LOGGED_FRAMES).collect(Collectors.toList());
+            frames = top.stream()
+                    .map(f -> f.getMethod().getType().getName() + "." + f.getMethod().getName() + ":" + f.getLineNumber())
+                    .collect(Collectors.joining("\n\tat "));
+        }
+        log.warn("Virtual thread pinned for {} ms on {}\n\tat {}",
+                event.getDuration().toMillis(), event.getThread() != null ? event.getThread().getJavaName() : "?",
+                frames);
+    }
+}
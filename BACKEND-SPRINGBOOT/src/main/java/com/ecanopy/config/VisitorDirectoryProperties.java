@@ -0,0 +1,13 @@
+package com.ecanopy.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ecanopy.visitors")
+public class VisitorDirectoryProperties {
+    // Repeat visitors (phone -> visitor id) kept in memory per instance, least recently seen dropped first
+    private int phoneCacheSize = 10_000;
+}
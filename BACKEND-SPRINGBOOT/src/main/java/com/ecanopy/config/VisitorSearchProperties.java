@@ -0,0 +1,21 @@
+package com.ecanopy.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ecanopy.visitor-search")
+public class VisitorSearchProperties {
+    // How often visitor logs not yet indexed (e.g. written by another instance) are picked up
+    private Duration catchUpInterval = Duration.ofMinutes(1);
+    // Log ids below the high-water mark scanned again, for logs that committed after higher ids
+    private long catchUpOverlap = 1000;
+    // Results per page when the request does not say
+    private int defaultPageSize = 20;
+    // Largest page a request may ask for
+    private int maxPageSize = 100;
+}
@@ -1,11 +1,14 @@
 package com.ecanopy.controller;
 
+import com.ecanopy.dto.response.QrTokenResponse;
+import com.ecanopy.entity.User;
+import com.ecanopy.entity.enums.QrSubjectType;
 import com.ecanopy.service.AccessService;
+import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
@@ -20,9 +23,32 @@ public class AccessController {
     @PostMapping("/validate-qr")
     @PreAuthorize("hasRole('SECURITY_GUARD') or hasRole('ADMIN')")
     public ResponseEntity<Map<String, Object>> validateQr(@RequestBody Map<String, String> request,
-            @AuthenticationPrincipal UserDetails userDetails) {
+            @AuthenticationPrincipal User guard) {
         String token = request.get("token");
-        String scannedBy = userDetails.getUsername();
-        return ResponseEntity.ok(accessService.validateQr(token, scannedBy));
+        return ResponseEntity.ok(accessService.validateQr(token, guard.getUsername(), guard.getSocietyId()));
+    }
+
+    @GetMapping("/qr-token")
+    @PreAuthorize("hasRole('RESIDENT')")
+    @Operation(summary = "My Gate Pass", description = "Issue a signed gate pass QR token for the current resident")
+    public ResponseEntity<QrTokenResponse> getMyPass(@AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(accessService.issueResidentPass(user));
+    }
+
+    @PostMapping("/qr-token/staff/{staffId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'RWA_SECRETARY')")
+    @Operation(summary = "Staff Gate Pass", description = "Issue a signed gate pass QR token for a staff member")
+    public ResponseEntity<QrTokenResponse> issueStaffPass(@PathVariable Long staffId,
+            @AuthenticationPrincipal User manager) {
+        return ResponseEntity.ok(accessService.issueStaffPass(staffId, manager));
+    }
+
+    @PostMapping("/qr-token/revoke")
+    @PreAuthorize("hasAnyRole('ADMIN', 'RWA_SECRETARY')")
+    @Operation(summary = "Revoke Gate Passes", description = "Invalidate every gate pass issued so far to a resident or staff member")
+    public ResponseEntity<Void> revokePass(@RequestParam QrSubjectType subjectType, @RequestParam Long subjectId,
+            @AuthenticationPrincipal User manager) {
+        accessService.revokePass(subjectType, subjectId, manager);
+        return ResponseEntity.ok().build();
     }
 }
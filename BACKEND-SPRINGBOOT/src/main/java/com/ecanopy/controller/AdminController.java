@@ -3,6 +3,7 @@ package com.ecanopy.controller;
 import com.ecanopy.dto.DashboardStatsDTO;
 import com.ecanopy.dto.response.UserResponse;
 import com.ecanopy.service.AdminService;
+import com.ecanopy.service.CacheStatsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -21,6 +22,7 @@ import java.util.Map;
 public class AdminController {
 
     private final AdminService adminService;
+    private final CacheStatsService cacheStatsService;
 
     @GetMapping("/users")
     @Operation(summary = "Get all users", description = "Retrieve a list of all registered users")
@@ -61,4 +63,19 @@ public class AdminController {
         String role = payload.get("role");
         return ResponseEntity.ok(adminService.removeUserRole(userId, role));
     }
+
+    @GetMapping("/cache-stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Cache Statistics", description = "Hibernate second-level and query cache hit/miss counts per region")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(cacheStatsService.getCacheStats());
+    }
+
+    @PostMapping("/cache/evict")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Evict Caches", description = "Clear cached reference data after out-of-band database edits")
+    public ResponseEntity<Void> evictCaches() {
+        cacheStatsService.evictAll();
+        return ResponseEntity.noContent().build();
+    }
 }
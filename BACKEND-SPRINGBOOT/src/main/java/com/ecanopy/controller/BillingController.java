@@ -1,7 +1,12 @@
 package com.ecanopy.controller;
 
+import com.ecanopy.dto.request.PenaltyRuleRequest;
 import com.ecanopy.dto.response.MaintenanceBillResponse;
+import com.ecanopy.dto.response.PenaltyRunResponse;
+import com.ecanopy.service.BillingExportService;
 import com.ecanopy.service.BillingService;
+import com.ecanopy.service.PenaltyService;
+import com.ecanopy.service.SocietyScope;
 import com.ecanopy.service.AuthService;
 import com.ecanopy.repository.UserRepository;
 import com.ecanopy.repository.ResidentRepository;
@@ -11,12 +16,19 @@ import com.ecanopy.exception.NotFoundException;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Map;
 
@@ -27,6 +39,8 @@ import java.util.Map;
 public class BillingController {
 
     private final BillingService billingService;
+    private final BillingExportService billingExportService;
+    private final PenaltyService penaltyService;
     private final AuthService authService;
     private final UserRepository userRepository;
     private final ResidentRepository residentRepository;
@@ -62,6 +76,58 @@ public class BillingController {
         return ResponseEntity.ok(billingService.getAllBills());
     }
 
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'ADMIN', 'RWA_PRESIDENT', 'RWA_SECRETARY')")
+    @Operation(summary = "Export Bills / Payments", description = "Stream a society's bills or payments for an inclusive bill-month range (yyyy-MM) as CSV or XLSX; super admins pass societyId")
+    public void exportBilling(@RequestParam(defaultValue = "BILLS") BillingExportService.Dataset dataset,
+            @RequestParam(defaultValue = "CSV") BillingExportService.Format format,
+            @RequestParam YearMonth from,
+            @RequestParam YearMonth to,
+            @RequestParam(required = false) Long societyId,
+            @AuthenticationPrincipal User user,
+            HttpServletResponse response) throws IOException {
+        billingExportService.validateRange(from, to);
+        Long exportSocietyId = SocietyScope.resolve(user, societyId);
+
+        billingExportService.export(dataset, format, exportSocietyId, from, to, filename -> {
+            response.setContentType(format.getContentType());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename(filename).build().toString());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            return response.getOutputStream();
+        });
+    }
+
+    @PostMapping("/penalties/run")
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    @Operation(summary = "Run Late Fees", description = "Compute penalties of all overdue bills as of today, resuming today's run if it was interrupted")
+    public ResponseEntity<PenaltyRunResponse> runPenalties() {
+        return ResponseEntity.ok(penaltyService.run());
+    }
+
+    @GetMapping("/penalties/runs/latest")
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    @Operation(summary = "Late Fee Run Progress", description = "Status and progress of the most recent penalty run")
+    public ResponseEntity<PenaltyRunResponse> getLatestPenaltyRun() {
+        return ResponseEntity.ok(penaltyService.getLatestRun());
+    }
+
+    @GetMapping("/penalties/rule")
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'ADMIN', 'RWA_PRESIDENT', 'RWA_SECRETARY')")
+    @Operation(summary = "Get Late Fee Rule", description = "The society's late-fee rule, or the defaults when it has none; super admins pass societyId")
+    public ResponseEntity<PenaltyRuleRequest> getPenaltyRule(@RequestParam(required = false) Long societyId,
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(penaltyService.getRule(SocietyScope.resolve(user, societyId)));
+    }
+
+    @PutMapping("/penalties/rule")
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'RWA_SECRETARY')")
+    @Operation(summary = "Set Late Fee Rule", description = "Set the society's late-fee rule; it applies from the next penalty run")
+    public ResponseEntity<PenaltyRuleRequest> updatePenaltyRule(@RequestParam(required = false) Long societyId,
+            @Valid @RequestBody PenaltyRuleRequest request, @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(penaltyService.saveRule(SocietyScope.resolve(user, societyId), request));
+    }
+
     @GetMapping("/my")
     @PreAuthorize("hasRole('RESIDENT')")
     @Operation(summary = "My Bills", description = "Get bills for the current resident's flat")
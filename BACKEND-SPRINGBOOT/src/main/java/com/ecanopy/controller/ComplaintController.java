@@ -8,9 +8,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 
@@ -73,4 +75,20 @@ public class ComplaintController {
             @Valid @RequestBody com.ecanopy.dto.request.CommentRequest request) {
         return ResponseEntity.status(HttpStatus.CREATED).body(complaintService.addComment(id, request));
     }
+
+    @GetMapping("/{id}/attachments")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('RWA_PRESIDENT') or hasRole('RWA_SECRETARY') or hasRole('RESIDENT') or hasRole('STAFF')")
+    @Operation(summary = "Get Attachments", description = "List files attached to a complaint")
+    public ResponseEntity<List<com.ecanopy.dto.response.ComplaintAttachmentResponse>> getAttachments(
+            @PathVariable Long id) {
+        return ResponseEntity.ok(complaintService.getAttachments(id));
+    }
+
+    @PostMapping(value = "/{id}/attachments", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN') or hasRole('RWA_PRESIDENT') or hasRole('RWA_SECRETARY') or hasRole('RESIDENT') or hasRole('STAFF')")
+    @Operation(summary = "Add Attachment", description = "Attach a photo or document to a complaint")
+    public ResponseEntity<com.ecanopy.dto.response.ComplaintAttachmentResponse> addAttachment(@PathVariable Long id,
+            @RequestParam("file") MultipartFile file) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(complaintService.addAttachment(id, file));
+    }
 }
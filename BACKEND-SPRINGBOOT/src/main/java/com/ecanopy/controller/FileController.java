@@ -1,58 +1,30 @@
 package com.ecanopy.controller;
 
+import com.ecanopy.service.FileStorageService;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/files")
+@RequiredArgsConstructor
 public class FileController {
 
-    private final Path fileStorageLocation;
-
-    public FileController() {
-        this.fileStorageLocation = Paths.get("uploads").toAbsolutePath().normalize();
-        try {
-            Files.createDirectories(this.fileStorageLocation);
-        } catch (Exception ex) {
-            throw new RuntimeException("Could not create the directory where the uploaded files will be stored.", ex);
-        }
-    }
+    private final FileStorageService fileStorageService;
 
     @PostMapping("/upload")
     public ResponseEntity<Map<String, String>> uploadFile(@RequestParam("file") MultipartFile file) {
-        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
-
-        try {
-            if (fileName.contains("..")) {
-                throw new RuntimeException("Sorry! Filename contains invalid path sequence " + fileName);
-            }
-
-            // Generate unique filename to prevent overwrites
-            String uniqueFileName = UUID.randomUUID().toString() + "_" + fileName;
-            Path targetLocation = this.fileStorageLocation.resolve(uniqueFileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-
-            // Return relative URL
-            // Assuming MvcConfig maps /uploads/** to the file system
-            String fileUrl = "/uploads/" + uniqueFileName;
+        // Identical content resolves to the same blob URL; the blob is kept alive
+        // once an entity (e.g. a visitor photo) references it
+        String fileUrl = fileStorageService.store(file);
 
-            Map<String, String> response = new HashMap<>();
-            response.put("url", fileUrl);
+        Map<String, String> response = new HashMap<>();
+        response.put("url", fileUrl);
 
-            return ResponseEntity.ok(response);
-        } catch (IOException ex) {
-            throw new RuntimeException("Could not store file " + fileName + ". Please try again!", ex);
-        }
+        return ResponseEntity.ok(response);
     }
 }
@@ -0,0 +1,53 @@
+package com.ecanopy.controller;
+
+import com.ecanopy.dto.request.GuardScanBatchRequest;
+import com.ecanopy.dto.response.GuardScanBatchResponse;
+import com.ecanopy.dto.response.GuardSyncSnapshotResponse;
+import com.ecanopy.entity.User;
+import com.ecanopy.exception.ForbiddenException;
+import com.ecanopy.service.GuardSyncService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/sync")
+@RequiredArgsConstructor
+@Tag(name = "Guard Sync", description = "Pass data download and scan upload for offline guard devices")
+public class GuardSyncController {
+
+    private final GuardSyncService guardSyncService;
+
+    @GetMapping("/snapshot")
+    @PreAuthorize("hasAnyRole('SECURITY_GUARD', 'ADMIN')")
+    @Operation(summary = "Pass Snapshot", description = "Valid passes, staff pass codes and QR revocations of the guard's society; with 'since' (the previous cursor) only the changes")
+    public ResponseEntity<GuardSyncSnapshotResponse> getSnapshot(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @AuthenticationPrincipal User user) {
+        if (user.getSocietyId() == null) {
+            throw new ForbiddenException("User is not associated with any society");
+        }
+        return ResponseEntity.ok(guardSyncService.snapshot(user.getSocietyId(), since));
+    }
+
+    @PostMapping("/scans")
+    @PreAuthorize("hasAnyRole('SECURITY_GUARD', 'ADMIN')")
+    @Operation(summary = "Upload Scans", description = "Apply scans queued by a guard device while offline; re-sent events return their original result")
+    public ResponseEntity<GuardScanBatchResponse> uploadScans(@Valid @RequestBody GuardScanBatchRequest request,
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(guardSyncService.ingest(request, user));
+    }
+}
@@ -3,24 +3,18 @@ package com.ecanopy.controller;
 import com.ecanopy.entity.Item;
 import com.ecanopy.entity.User;
 import com.ecanopy.repository.UserRepository;
+import com.ecanopy.service.FileStorageService;
 import com.ecanopy.service.ItemService;
 import com.ecanopy.exception.NotFoundException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
 import java.math.BigDecimal;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/items")
@@ -30,7 +24,7 @@ public class ItemController {
 
     private final ItemService itemService;
     private final UserRepository userRepository;
-    private final Path fileStorageLocation = Paths.get("uploads").toAbsolutePath().normalize();
+    private final FileStorageService fileStorageService;
 
     @PostMapping("/upload")
     @Operation(summary = "Post New Item", description = "Upload a new item with image and video")
@@ -43,23 +37,12 @@ public class ItemController {
             @RequestParam Long sellerId,
             @RequestParam(required = false) String category,
             @RequestParam MultipartFile image,
-            @RequestParam(required = false) MultipartFile video) throws IOException {
-
-        Files.createDirectories(this.fileStorageLocation.resolve("images"));
-        Files.createDirectories(this.fileStorageLocation.resolve("videos"));
-
-        String imageFileName = UUID.randomUUID().toString() + "_" + StringUtils.cleanPath(image.getOriginalFilename());
-        Path imageTarget = this.fileStorageLocation.resolve("images").resolve(imageFileName);
-        Files.copy(image.getInputStream(), imageTarget, StandardCopyOption.REPLACE_EXISTING);
-        String imageUrl = "/uploads/images/" + imageFileName;
+            @RequestParam(required = false) MultipartFile video) {
 
+        String imageUrl = fileStorageService.store(image);
         String videoUrl = null;
         if (video != null && !video.isEmpty()) {
-            String videoFileName = UUID.randomUUID().toString() + "_"
-                    + StringUtils.cleanPath(video.getOriginalFilename());
-            Path videoTarget = this.fileStorageLocation.resolve("videos").resolve(videoFileName);
-            Files.copy(video.getInputStream(), videoTarget, StandardCopyOption.REPLACE_EXISTING);
-            videoUrl = "/uploads/videos/" + videoFileName;
+            videoUrl = fileStorageService.store(video);
         }
 
         User seller = userRepository.findById(sellerId)
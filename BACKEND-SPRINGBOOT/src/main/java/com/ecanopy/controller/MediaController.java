@@ -0,0 +1,272 @@
+package com.ecanopy.controller;
+
+import com.ecanopy.config.FileUploadProperties;
+import com.ecanopy.service.FileStorageService;
+import com.ecanopy.service.ImageDerivativeService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves everything under /uploads/** (replaces the old static resource handler).
+ *
+ * - Strong ETags: the SHA-256 for content-addressed blobs/variants, size+mtime for legacy files
+ * - Cache-Control: immutable for one year on blobs/variants, revalidate-always for legacy files
+ * - Single byte ranges (206/416, If-Range) so item videos can seek
+ * - Precompressed .gz siblings written at upload time for compressible types
+ * - Tomcat sendfile for large bodies, FileChannel.transferTo otherwise
+ */
+@RestController
+@RequiredArgsConstructor
+@Tag(name = "Media", description = "Uploaded media and image variants")
+public class MediaController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Below this, a plain copy is cheaper than handing the file to the poller (Tomcat's own default)
+    private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
+    // At most 18 digits, so every position parses as a long; longer ones count as malformed
+    private static final Pattern RANGE = Pattern.compile("^bytes=(\\d{0,18})-(\\d{0,18})$");
+    private static final Pattern VARIANT = Pattern.compile("^variants/([a-z]+)/([0-9a-f]{64})\\.jpg$");
+    private static final Pattern BLOB = Pattern.compile("^blobs/[0-9a-f]{2}/([0-9a-f]{64})(\\.[a-z0-9]+)?$");
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+
+    private final FileUploadProperties fileUploadProperties;
+    private final ImageDerivativeService imageDerivativeService;
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    @GetMapping("/uploads/**")
+    @Operation(summary = "Get Media", description = "Uploaded file, or /uploads/variants/{thumb|web}/<sha>.jpg image variant")
+    public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String relative = urlPathHelper.getPathWithinApplication(request).substring("/uploads/".length());
+        Path root = Paths.get(fileUploadProperties.getBasePath()).toAbsolutePath().normalize();
+
+        Path file;
+        String etag;
+        boolean contentAddressed;
+        Matcher variant = VARIANT.matcher(relative);
+        Matcher blob = BLOB.matcher(relative);
+        if (variant.matches()) {
+            Optional<ImageDerivativeService.Size> size = ImageDerivativeService.Size.fromPath(variant.group(1));
+            String sha256 = variant.group(2);
+            Optional<Path> resolved = size.flatMap(s -> imageDerivativeService.resolve(s, sha256));
+            if (resolved.isEmpty()) {
+                // Could not be generated (busy, not decodable): fall back to the original, uncached
+                Optional<String> original = size.flatMap(s -> imageDerivativeService.originalUrl(sha256));
+                if (original.isPresent()) {
+                    response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+                    response.sendRedirect(request.getContextPath() + original.get());
+                } else {
+                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                }
+                return;
+            }
+            file = resolved.get();
+            etag = "\"" + variant.group(1) + "-" + sha256 + "\"";
+            contentAddressed = true;
+        } else {
+            if (blob.matches()) {
+                root = Paths.get(fileUploadProperties.getBlobDirectory()).toAbsolutePath().normalize();
+                relative = relative.substring("blobs/".length());
+            }
+            file = root.resolve(relative).normalize();
+            if (!file.startsWith(root) || relative.endsWith(".tmp")) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            contentAddressed = blob.matches();
+            etag = contentAddressed ? "\"" + blob.group(1) + "\"" : null;
+        }
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!attributes.isRegularFile()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (etag == null) {
+            etag = "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified) + "\"";
+        }
+
+        MediaType mediaType = MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+
+        // Precompressed sibling: only for whole-file responses, ranges always address the identity bytes
+        Path body = file;
+        String encoding = null;
+        Path gzip = file.resolveSibling(file.getFileName() + FileStorageService.GZIP_SUFFIX);
+        if (Files.isRegularFile(gzip)) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (rangeHeader == null && acceptsGzip(request)) {
+                body = gzip;
+                encoding = "gzip";
+                etag = etag.substring(0, etag.length() - 1) + "-gz\"";
+            }
+        }
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, (contentAddressed ? IMMUTABLE : REVALIDATE).getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long length = encoding != null ? Files.size(body) : attributes.size();
+        long start = 0;
+        long end = length - 1;
+        if (rangeHeader != null && ifRangeMatches(request, etag, lastModified)) {
+            Matcher range = RANGE.matcher(rangeHeader.trim());
+            // Multi-range or malformed headers are ignored and answered with the full body (RFC 9110 14.2)
+            if (range.matches() && !(range.group(1).isEmpty() && range.group(2).isEmpty())) {
+                if (range.group(1).isEmpty()) {
+                    long suffix = Long.parseLong(range.group(2));
+                    start = Math.max(0, length - suffix);
+                } else {
+                    start = Long.parseLong(range.group(1));
+                    if (!range.group(2).isEmpty()) {
+                        end = Math.min(end, Long.parseLong(range.group(2)));
+                    }
+                }
+                if (start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(mediaType.toString());
+        if (encoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (count >= SENDFILE_THRESHOLD && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat streams the region straight from the page cache after this method returns
+            request.setAttribute(SENDFILE_FILENAME, body.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(body, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, target);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+            out.flush();
+        }
+    }
+
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // Weak comparison is allowed for If-None-Match
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || stripWeak(tag).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = headerDate(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag); // strong comparison only
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        long date = headerDate(request, HttpHeaders.IF_RANGE);
+        return date != -1 && lastModified / 1000 == date / 1000;
+    }
+
+    private static long headerDate(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (tokens[0].trim().equalsIgnoreCase("gzip")) {
+                return tokens.length < 2 || !tokens[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,43 @@
+package com.ecanopy.controller;
+
+import com.ecanopy.dto.response.OccupancyResponse;
+import com.ecanopy.entity.User;
+import com.ecanopy.service.OccupancyService;
+import com.ecanopy.service.SocietyScope;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/occupancy")
+@RequiredArgsConstructor
+@Tag(name = "Occupancy", description = "Live count of visitors, staff and residents inside")
+public class OccupancyController {
+
+    private final OccupancyService occupancyService;
+
+    @GetMapping
+    @PreAuthorize("hasAnyRole('SECURITY_GUARD', 'ADMIN', 'RWA_PRESIDENT', 'RWA_SECRETARY', 'SUPER_ADMIN')")
+    @Operation(summary = "Current Occupancy", description = "Visitors, staff and residents currently inside the society")
+    public ResponseEntity<OccupancyResponse> getOccupancy(@RequestParam(required = false) Long societyId,
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(occupancyService.snapshot(SocietyScope.resolve(user, societyId)));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('SECURITY_GUARD', 'ADMIN', 'RWA_PRESIDENT', 'RWA_SECRETARY', 'SUPER_ADMIN')")
+    @Operation(summary = "Occupancy Stream", description = "Server-sent 'occupancy' events: the current counts, then every change")
+    public SseEmitter streamOccupancy(@RequestParam(required = false) Long societyId,
+            @AuthenticationPrincipal User user) {
+        return occupancyService.subscribe(SocietyScope.resolve(user, societyId), user.getId());
+    }
+}
@@ -5,7 +5,7 @@ import com.ecanopy.dto.request.PaymentVerificationRequest;
 import com.ecanopy.dto.response.PaymentOrderResponse;
 import com.ecanopy.entity.Payment;
 import com.ecanopy.service.PaymentService;
-import com.razorpay.RazorpayException;
+import com.ecanopy.service.PaymentWebhookService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -24,13 +24,14 @@ import org.springframework.web.bind.annotation.*;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final PaymentWebhookService paymentWebhookService;
 
     @PostMapping("/create-order")
     @PreAuthorize("hasRole('RESIDENT')")
-    @Operation(summary = "Create Payment Order", description = "Create Razorpay order for bill payment")
-    public ResponseEntity<PaymentOrderResponse> createOrder(@RequestBody PaymentOrderRequest request)
-            throws RazorpayException {
-        return ResponseEntity.ok(paymentService.createPaymentOrder(request));
+    @Operation(summary = "Create Payment Order", description = "Create Razorpay order for bill payment; repeats with the same Idempotency-Key, or while the bill has a live order, return the existing order")
+    public ResponseEntity<PaymentOrderResponse> createOrder(@RequestBody PaymentOrderRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return ResponseEntity.ok(paymentService.createPaymentOrder(request, idempotencyKey));
     }
 
     @PostMapping("/verify")
@@ -39,4 +40,13 @@ public class PaymentController {
     public ResponseEntity<Payment> verifyPayment(@RequestBody PaymentVerificationRequest request) {
         return ResponseEntity.ok(paymentService.verifyAndUpdatePayment(request));
     }
+
+    @PostMapping("/webhook")
+    @Operation(summary = "Razorpay Webhook", description = "Signed Razorpay event (payment.captured, order.paid, payment.failed); queued and reconciled in batches")
+    public ResponseEntity<Void> webhook(@RequestBody byte[] body,
+            @RequestHeader(value = "X-Razorpay-Signature", required = false) String signature,
+            @RequestHeader(value = "X-Razorpay-Event-Id", required = false) String eventId) {
+        paymentWebhookService.enqueue(body, signature, eventId);
+        return ResponseEntity.ok().build();
+    }
 }
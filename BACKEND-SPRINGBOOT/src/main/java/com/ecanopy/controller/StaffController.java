@@ -1,14 +1,20 @@
 package com.ecanopy.controller;
 
+import com.ecanopy.dto.response.HelpAttendanceReportResponse;
 import com.ecanopy.entity.DomesticHelp;
+import com.ecanopy.entity.User;
 import com.ecanopy.service.DomesticHelpService;
+import com.ecanopy.service.HelpAttendanceService;
+import com.ecanopy.service.SocietyScope;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.YearMonth;
 import java.util.List;
 
 @RestController
@@ -18,6 +24,7 @@ import java.util.List;
 public class StaffController {
 
     private final DomesticHelpService domesticHelpService;
+    private final HelpAttendanceService helpAttendanceService;
     private final com.ecanopy.service.AuthService authService;
 
     @GetMapping
@@ -51,6 +58,28 @@ public class StaffController {
         return ResponseEntity.ok(domesticHelpService.getStaffByFlat(flatId));
     }
 
+    @GetMapping("/attendance")
+    @PreAuthorize("hasAnyRole('ADMIN', 'RWA_PRESIDENT', 'RWA_SECRETARY', 'SUPER_ADMIN')")
+    @Operation(summary = "Society Staff Attendance", description = "Days present, visits and minutes of each staff member in a month (yyyy-MM, default current); super admins pass societyId")
+    public ResponseEntity<HelpAttendanceReportResponse> getSocietyAttendance(
+            @RequestParam(required = false) YearMonth month,
+            @RequestParam(required = false) Long societyId,
+            @AuthenticationPrincipal User user) {
+        Long reportSocietyId = SocietyScope.resolve(user, societyId);
+        return ResponseEntity.ok(helpAttendanceService.societyReport(reportSocietyId,
+                month != null ? month : YearMonth.now()));
+    }
+
+    @GetMapping("/attendance/flat/{flatId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'RWA_PRESIDENT', 'RWA_SECRETARY', 'SUPER_ADMIN', 'RESIDENT')")
+    @Operation(summary = "Flat Staff Attendance", description = "Day-by-day attendance in a month (yyyy-MM, default current) of the staff working for a flat")
+    public ResponseEntity<HelpAttendanceReportResponse> getFlatAttendance(@PathVariable Long flatId,
+            @RequestParam(required = false) YearMonth month,
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(helpAttendanceService.flatReport(flatId, month != null ? month : YearMonth.now(),
+                user));
+    }
+
     @PostMapping("/{staffId}/link-flat/{flatId}")
     @PreAuthorize("hasAnyRole('ADMIN', 'RWA_SECRETARY', 'RESIDENT')")
     @Operation(summary = "Assign Staff to Flat", description = "Link a domestic help to a specific flat")
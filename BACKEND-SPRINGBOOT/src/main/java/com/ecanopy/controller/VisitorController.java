@@ -2,8 +2,11 @@ package com.ecanopy.controller;
 
 import com.ecanopy.dto.request.VisitorRequest;
 import com.ecanopy.dto.response.VisitorResponse;
+import com.ecanopy.dto.response.VisitorSearchResponse;
 import com.ecanopy.entity.PreApproval;
+import com.ecanopy.entity.User;
 import com.ecanopy.entity.enums.VisitorCategory;
+import com.ecanopy.service.OverstayMonitor;
 import com.ecanopy.service.VisitorService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -11,9 +14,12 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -25,6 +31,7 @@ import java.util.List;
 public class VisitorController {
 
     private final VisitorService visitorService;
+    private final OverstayMonitor overstayMonitor;
 
     @PostMapping("/check-in")
     @PreAuthorize("hasRole('SECURITY_GUARD') or hasRole('ADMIN') or hasRole('RWA_SECRETARY') or hasRole('RWA_PRESIDENT')")
@@ -65,18 +72,17 @@ public class VisitorController {
     }
 
     @GetMapping("/search")
-    @PreAuthorize("hasRole('SECURITY_GUARD') or hasRole('ADMIN') or hasRole('RWA_SECRETARY') or hasRole('RWA_PRESIDENT')")
-    @Operation(summary = "Search Visitors", description = "Search visitors by name or phone")
-    public ResponseEntity<List<VisitorResponse>> searchVisitors(
-            @RequestParam Long societyId,
+    @PreAuthorize("hasAnyRole('SECURITY_GUARD', 'ADMIN', 'RWA_SECRETARY', 'RWA_PRESIDENT', 'SUPER_ADMIN')")
+    @Operation(summary = "Search Visitors", description = "Search visitors by name or phone (substring, or word "
+            + "prefix for 1-2 characters); one result per visitor with their latest visit, paged, most recent first")
+    public ResponseEntity<VisitorSearchResponse> searchVisitors(
+            @AuthenticationPrincipal User user,
+            @RequestParam(required = false) Long societyId,
             @RequestParam(required = false) String name,
-            @RequestParam(required = false) String phone) {
-        if (name != null && !name.isEmpty()) {
-            return ResponseEntity.ok(visitorService.searchVisitorsByName(societyId, name));
-        } else if (phone != null && !phone.isEmpty()) {
-            return ResponseEntity.ok(visitorService.searchVisitorsByPhone(societyId, phone));
-        }
-        return ResponseEntity.ok(visitorService.getAllVisitorLogsBySociety(societyId));
+            @RequestParam(required = false) String phone,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(visitorService.searchVisitors(user, societyId, name, phone, page, size));
     }
 
     @GetMapping("/filter")
@@ -103,6 +109,14 @@ public class VisitorController {
         return ResponseEntity.ok(visitorService.getOverstayingVisitors(societyId));
     }
 
+    @GetMapping(value = "/overstaying/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('SECURITY_GUARD', 'ADMIN', 'RWA_SECRETARY', 'RWA_PRESIDENT', 'SUPER_ADMIN', 'RESIDENT')")
+    @Operation(summary = "Overstay Alerts", description = "Server-sent 'overstay' events as visitors pass their expected checkout time, and 'overstay-cleared' when they leave; residents get their own flat's")
+    public SseEmitter streamOverstaying(@RequestParam(required = false) Long societyId,
+            @AuthenticationPrincipal User user) {
+        return overstayMonitor.subscribe(user, societyId);
+    }
+
     @PostMapping("/pre-approve")
     @PreAuthorize("hasRole('RESIDENT')")
     @Operation(summary = "Pre-approve Visitor", description = "Resident creates a pre-approval")
@@ -0,0 +1,25 @@
+package com.ecanopy.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GuardScanBatchRequest {
+    @NotBlank
+    @Size(max = 64)
+    private String deviceId;
+
+    @NotEmpty
+    private List<@Valid GuardScanEventRequest> events;
+}
@@ -0,0 +1,44 @@
+package com.ecanopy.dto.request;
+
+import com.ecanopy.entity.enums.AccessType;
+import com.ecanopy.entity.enums.GuardScanType;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One scan recorded by a guard device while offline
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GuardScanEventRequest {
+    // Unique per scan (e.g. a UUID); re-sending it returns the original result
+    @NotBlank
+    @Size(max = 64)
+    private String eventId;
+
+    @NotNull
+    private GuardScanType type;
+
+    // QR token, pass code, pre-approval code, frequent visitor id, or visitor log / check-in event id
+    @NotBlank
+    @Size(max = 512)
+    private String value;
+
+    // ENTRY/EXIT when the guard chose it (QR and staff pass codes); otherwise presence is toggled
+    private AccessType direction;
+
+    @NotNull
+    private LocalDateTime occurredAt;
+
+    @Size(max = 50)
+    private String gate;
+}
@@ -0,0 +1,45 @@
+package com.ecanopy.dto.request;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Late-fee rule of a society (also returned by GET /api/billing/penalties/rule)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PenaltyRuleRequest {
+    @NotNull
+    @Min(0)
+    @Max(90)
+    private Integer graceDays;
+
+    @NotNull
+    @DecimalMin("0.00")
+    @DecimalMax("100000.00")
+    private BigDecimal lateFee;
+
+    @NotNull
+    @DecimalMin("0.00")
+    @DecimalMax("10.00")
+    private BigDecimal monthlyInterestPercent;
+
+    @NotNull
+    @Min(0)
+    @Max(120)
+    private Integer maxMonths;
+
+    @NotNull
+    private Boolean isActive;
+}
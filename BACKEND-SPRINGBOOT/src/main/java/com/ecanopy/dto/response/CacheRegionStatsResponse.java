@@ -0,0 +1,15 @@
+package com.ecanopy.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class CacheRegionStatsResponse {
+    private String region;
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private Long elementCountInMemory; // null when the provider does not report it
+    private double hitRatio;
+}
@@ -0,0 +1,16 @@
+package com.ecanopy.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class ComplaintAttachmentResponse {
+    private Long id;
+    private String fileName;
+    private String url;
+    private String contentType;
+    private Long fileSize;
+    private LocalDateTime uploadedAt;
+}
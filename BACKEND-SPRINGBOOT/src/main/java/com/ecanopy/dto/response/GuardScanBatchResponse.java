@@ -0,0 +1,28 @@
+package com.ecanopy.dto.response;
+
+import com.ecanopy.entity.enums.AccessType;
+import com.ecanopy.entity.enums.GuardScanStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class GuardScanBatchResponse {
+    private int applied;
+    private int duplicates;
+    private int rejected;
+    // In upload order
+    private List<Result> results;
+
+    @Data
+    @Builder
+    public static class Result {
+        private String eventId;
+        private GuardScanStatus status;
+        private AccessType accessType;
+        private String reason;
+        private Long logId;
+    }
+}
@@ -0,0 +1,78 @@
+package com.ecanopy.dto.response;
+
+import com.ecanopy.entity.enums.HelpType;
+import com.ecanopy.entity.enums.QrSubjectType;
+import com.ecanopy.entity.enums.VisitorCategory;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Pass data a guard device needs to admit people while offline. A full snapshot holds the
+ * currently usable passes; a delta (since = previous cursor) holds every row changed since,
+ * to be applied as upserts by id.
+ */
+@Data
+@Builder
+public class GuardSyncSnapshotResponse {
+    private Long societyId;
+    private boolean full;
+    // Pass as 'since' on the next call
+    private LocalDateTime cursor;
+    private List<PreApprovalPass> preApprovals;
+    private List<StaffPass> staff;
+    private List<FrequentVisitorPass> frequentVisitors;
+    // QR tokens of the subject issued at or before revokedAt are refused
+    private List<Revocation> revocations;
+    private List<Long> removedStaffIds;
+
+    @Data
+    @Builder
+    public static class PreApprovalPass {
+        private Long id;
+        private String code;
+        private String visitorName;
+        private String visitorPhone;
+        private VisitorCategory category;
+        private Long flatId;
+        private String flatNumber;
+        private LocalDateTime validFrom;
+        private LocalDateTime validUntil;
+        private boolean used;
+    }
+
+    @Data
+    @Builder
+    public static class StaffPass {
+        private Long helpId;
+        private String name;
+        private HelpType helpType;
+        private String passCode;
+        private boolean active;
+    }
+
+    @Data
+    @Builder
+    public static class FrequentVisitorPass {
+        private Long id;
+        private String visitorName;
+        private String visitorPhone;
+        private VisitorCategory category;
+        private Long flatId;
+        private String flatNumber;
+        private LocalDate validFrom;
+        private LocalDate validUntil;
+        private boolean active;
+    }
+
+    @Data
+    @Builder
+    public static class Revocation {
+        private QrSubjectType subjectType;
+        private Long subjectId;
+        private LocalDateTime revokedAt;
+    }
+}
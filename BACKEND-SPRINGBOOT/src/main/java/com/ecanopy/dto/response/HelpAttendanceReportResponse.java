@@ -0,0 +1,41 @@
+package com.ecanopy.dto.response;
+
+import com.ecanopy.entity.enums.HelpType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HelpAttendanceReportResponse {
+    private Long societyId;
+    private Long flatId; // flat reports only
+    private YearMonth month;
+    private List<Staff> staff;
+
+    @Data
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Staff {
+        private Long helpId;
+        private String name;
+        private HelpType helpType;
+        private int daysPresent;
+        private int visits;
+        private int minutesPresent;
+        private List<Day> days; // flat reports only
+    }
+
+    @Data
+    @Builder
+    public static class Day {
+        private LocalDate date;
+        private int visits;
+        private int minutesPresent;
+    }
+}
@@ -0,0 +1,19 @@
+package com.ecanopy.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@Builder
+public class OccupancyResponse {
+    private Long societyId;
+    private int visitors;
+    private int staff;
+    private int residents;
+    private int total;
+    private Map<String, Integer> visitorsByGate;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,24 @@
+package com.ecanopy.dto.response;
+
+import com.ecanopy.entity.enums.PenaltyRunStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class PenaltyRunResponse {
+    private Long penaltyRunId;
+    private LocalDate runDate;
+    private PenaltyRunStatus status;
+    private Integer societiesTotal;
+    private Integer societiesDone;
+    private Long billsUpdated;
+    private Long lastSocietyId;
+    private String lastError;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime finishedAt;
+}
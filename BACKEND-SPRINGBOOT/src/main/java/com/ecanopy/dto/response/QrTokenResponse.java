@@ -0,0 +1,16 @@
+package com.ecanopy.dto.response;
+
+import com.ecanopy.entity.enums.QrSubjectType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class QrTokenResponse {
+    private String token;
+    private QrSubjectType subjectType;
+    private Long subjectId;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,18 @@
+package com.ecanopy.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SqlFindingResponse {
+    private LocalDateTime timestamp;
+    private String endpoint;
+    private Long millis;
+    private Integer count;
+    private String sql;
+}
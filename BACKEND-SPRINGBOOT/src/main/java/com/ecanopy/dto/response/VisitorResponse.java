@@ -16,6 +16,7 @@ public class VisitorResponse {
     private VisitorCategory category;
     private String purpose;
     private String imageUrl;
+    private String thumbnailUrl;
     private String vehicleNumber;
     private LocalDateTime inTime;
     private LocalDateTime outTime;
@@ -0,0 +1,16 @@
+package com.ecanopy.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class VisitorSearchResponse {
+    private Long societyId;
+    private int page;
+    private int size;
+    private boolean hasMore;
+    private List<VisitorResponse> results; // latest visit of each matching visitor, most recent first
+}
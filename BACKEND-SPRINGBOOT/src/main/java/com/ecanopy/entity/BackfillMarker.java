@@ -0,0 +1,28 @@
+package com.ecanopy.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A one-off startup backfill that has completed. The row is inserted in the backfill's own
+ * transaction, so it exists exactly when the backfilled data does, and a second instance
+ * inserting the same name waits for the first and then skips the work.
+ */
+@Entity
+@Table(name = "backfill_markers")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BackfillMarker {
+    // What was backfilled, e.g. the table name
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    @Column(nullable = false)
+    private LocalDateTime completedAt;
+}
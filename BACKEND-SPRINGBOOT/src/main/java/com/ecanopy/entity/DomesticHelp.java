@@ -6,6 +6,7 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
@@ -17,7 +18,9 @@ import java.util.Set;
  * Represents daily help staff like maids, drivers, cooks
  */
 @Entity
-@Table(name = "domestic_helps")
+@Table(name = "domestic_helps", indexes = {
+        @Index(name = "idx_domestic_help_updated_at", columnList = "updated_at")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
@@ -57,6 +60,10 @@ public class DomesticHelp {
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    // Bumped on every change; guard devices sync pass data by it
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "society_id", nullable = false)
     @com.fasterxml.jackson.annotation.JsonIgnore
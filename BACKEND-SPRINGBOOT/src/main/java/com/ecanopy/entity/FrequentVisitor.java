@@ -4,6 +4,7 @@ import com.ecanopy.entity.enums.VisitorCategory;
 import jakarta.persistence.*;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDate;
@@ -18,6 +19,9 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "frequent_visitors", uniqueConstraints = {
         @UniqueConstraint(columnNames = { "visitor_id", "flat_id" })
+}, indexes = {
+        @Index(name = "idx_frequent_visitor_updated_at", columnList = "updated_at"),
+        @Index(name = "idx_frequent_visitor_expiry", columnList = "expired, valid_until")
 })
 @EntityListeners(AuditingEntityListener.class)
 @Getter
@@ -56,10 +60,19 @@ public class FrequentVisitor {
     @Builder.Default
     private Boolean isActive = true;
 
+    // Set by PassExpirySweeper after validUntil; isActive stays the resident's own switch
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean expired = false;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    // Bumped on every change; guard devices sync pass data by it
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "created_by_resident_id", nullable = false)
     private Resident createdBy;
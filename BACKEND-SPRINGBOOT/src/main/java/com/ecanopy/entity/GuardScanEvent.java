@@ -0,0 +1,71 @@
+package com.ecanopy.entity;
+
+import com.ecanopy.entity.enums.AccessType;
+import com.ecanopy.entity.enums.GuardScanStatus;
+import com.ecanopy.entity.enums.GuardScanType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A scan uploaded by a guard device, kept so a re-sent batch gets the same results and
+ * nothing is logged twice. Written by GuardSyncService in JDBC batches.
+ */
+@Entity
+@Table(name = "guard_scan_events", uniqueConstraints = {
+        @UniqueConstraint(columnNames = { "society_id", "event_id" })
+}, indexes = {
+        @Index(name = "idx_guard_scan_subject", columnList = "subject_key, occurred_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GuardScanEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long guardScanEventId;
+
+    // Generated on the device; the idempotency key
+    @Column(nullable = false, length = 64)
+    private String eventId;
+
+    @Column(nullable = false, length = 64)
+    private String deviceId;
+
+    @Column(nullable = false)
+    private Long societyId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private GuardScanType scanType;
+
+    // e.g. "RESIDENT:11", "STAFF_PASS_CODE:5", "PRE_APPROVAL:7"; null when unresolved
+    @Column(length = 40)
+    private String subjectKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private AccessType accessType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private GuardScanStatus status;
+
+    @Column(length = 200)
+    private String reason;
+
+    // Row written to access_logs, daily_help_logs or visitor_logs
+    private Long logId;
+
+    @Column(nullable = false)
+    private LocalDateTime occurredAt;
+
+    @Column(nullable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(length = 100)
+    private String scannedBy;
+}
@@ -0,0 +1,44 @@
+package com.ecanopy.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * One staff member's attendance on one day, added to as each visit closes, so monthly
+ * reports read one row per staff and day instead of the whole daily_help_logs history.
+ * A visit over midnight counts towards both days. Written by HelpAttendanceService.
+ */
+@Entity
+@Table(name = "help_attendance_daily", uniqueConstraints = {
+        @UniqueConstraint(columnNames = { "help_id", "attendance_date" })
+}, indexes = {
+        @Index(name = "idx_help_attendance_society_date", columnList = "society_id, attendance_date")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HelpAttendanceDay {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long helpAttendanceDayId;
+
+    @Column(nullable = false)
+    private Long helpId;
+
+    @Column(nullable = false)
+    private Long societyId;
+
+    @Column(nullable = false)
+    private LocalDate attendanceDate;
+
+    // Visits that started on this day
+    @Column(nullable = false)
+    private Integer visits;
+
+    @Column(nullable = false)
+    private Integer minutesPresent;
+}
@@ -58,6 +58,10 @@ public class Item {
     @Column(length = 500)
     private String videoUrl;
 
+    // Size-qualified listing image, filled in by ItemService (not persisted)
+    @Transient
+    private String thumbnailUrl;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,33 @@
+package com.ecanopy.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A block of 1000 staff pass codes (block n holds n000 to n999) leased by one instance,
+ * which hands its free codes out from memory. Rows are created the first time a block is
+ * claimed; an expired lease lets another instance take over the rest of the block.
+ */
+@Entity
+@Table(name = "pass_code_blocks")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PassCodeBlock {
+    @Id
+    private Integer blockNo;
+
+    @Column(nullable = false, length = 64)
+    private String owner;
+
+    @Column(nullable = false)
+    private LocalDateTime leasedUntil;
+
+    // Every code of the block was in use when it was last handed out
+    @Column(nullable = false)
+    private Boolean exhausted;
+}
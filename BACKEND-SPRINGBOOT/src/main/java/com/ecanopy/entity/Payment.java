@@ -11,7 +11,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+        @Index(name = "idx_payment_status_created", columnList = "status, created_at")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
@@ -48,6 +50,15 @@ public class Payment {
     @Column(length = 100)
     private String transactionId; // Legacy field, can be used for other gateways
 
+    // Idempotency-Key of the create-order request that produced this row
+    @Column(unique = true, length = 64)
+    private String idempotencyKey;
+
+    // Bill id while the order is live (RESERVED / CREATED), null otherwise; unique, so a bill
+    // has at most one live order
+    @Column(unique = true)
+    private Long activeBillId;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
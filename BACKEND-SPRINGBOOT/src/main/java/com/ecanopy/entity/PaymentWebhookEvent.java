@@ -0,0 +1,66 @@
+package com.ecanopy.entity;
+
+import com.ecanopy.entity.enums.WebhookEventStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * Durable queue of payment gateway events: the webhook endpoint only verifies and inserts,
+ * PaymentReconciler applies PENDING rows to payments and bills in batches.
+ */
+@Entity
+@Table(name = "payment_webhook_events", indexes = {
+        @Index(name = "idx_webhook_event_status", columnList = "status, webhook_event_id")
+})
+@EntityListeners(AuditingEntityListener.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentWebhookEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long webhookEventId;
+
+    // X-Razorpay-Event-Id (or a digest of the body), unique so redeliveries are dropped on insert
+    @Column(nullable = false, unique = true, length = 100)
+    private String externalEventId;
+
+    @Column(nullable = false, length = 50)
+    private String eventType;
+
+    @Column(length = 100)
+    private String razorpayOrderId;
+
+    @Column(length = 100)
+    private String razorpayPaymentId;
+
+    private Long amount; // paise
+
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private WebhookEventStatus status = WebhookEventStatus.PENDING;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(length = 500)
+    private String lastError;
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime receivedAt;
+
+    private LocalDateTime processedAt;
+}
@@ -0,0 +1,52 @@
+package com.ecanopy.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Late-fee rule of one society; societies without a row use the ecanopy.penalty defaults.
+ */
+@Entity
+@Table(name = "penalty_rules")
+@EntityListeners(AuditingEntityListener.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PenaltyRule {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long penaltyRuleId;
+
+    @Column(nullable = false, unique = true)
+    private Long societyId;
+
+    // Days after the due date before a bill is overdue
+    @Column(nullable = false)
+    private Integer graceDays;
+
+    // One-time fee once a bill is overdue
+    @Column(precision = 10, scale = 2, nullable = false)
+    private BigDecimal lateFee;
+
+    // Percent of the bill amount charged per started month overdue
+    @Column(precision = 5, scale = 2, nullable = false)
+    private BigDecimal monthlyInterestPercent;
+
+    // Interest stops accruing after this many months
+    @Column(nullable = false)
+    private Integer maxMonths;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean isActive = true;
+
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,64 @@
+package com.ecanopy.entity;
+
+import com.ecanopy.entity.enums.PenaltyRunStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Checkpoint of the late-fee run for one date: societies are processed in id order and
+ * lastSocietyId is committed with each chunk, so an interrupted run resumes after it.
+ */
+@Entity
+@Table(name = "penalty_runs")
+@EntityListeners(AuditingEntityListener.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PenaltyRun {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long penaltyRunId;
+
+    // Penalties are computed as of this date; one run per date
+    @Column(nullable = false, unique = true)
+    private LocalDate runDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private PenaltyRunStatus status = PenaltyRunStatus.RUNNING;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long lastSocietyId = 0L;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer societiesTotal = 0;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer societiesDone = 0;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long billsUpdated = 0L;
+
+    @Column(length = 500)
+    private String lastError;
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime startedAt;
+
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime finishedAt;
+}
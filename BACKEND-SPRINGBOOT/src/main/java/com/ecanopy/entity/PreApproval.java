@@ -4,12 +4,16 @@ import com.ecanopy.entity.enums.VisitorCategory;
 import jakarta.persistence.*;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "pre_approvals")
+@Table(name = "pre_approvals", indexes = {
+        @Index(name = "idx_pre_approval_updated_at", columnList = "updated_at"),
+        @Index(name = "idx_pre_approval_expiry", columnList = "expired, valid_until")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
@@ -44,9 +48,17 @@ public class PreApproval {
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    // Bumped on every change; guard devices sync pass data by it
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+
     @Builder.Default
     private boolean isUsed = false;
 
+    // Set by PassExpirySweeper once validUntil has passed; used passes are flagged too
+    @Builder.Default
+    private boolean expired = false;
+
     @com.fasterxml.jackson.annotation.JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "resident_id", nullable = false)
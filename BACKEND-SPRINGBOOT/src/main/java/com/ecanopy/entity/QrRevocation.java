@@ -0,0 +1,45 @@
+package com.ecanopy.entity;
+
+import com.ecanopy.entity.enums.QrSubjectType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Revoked gate passes: QR tokens of the subject issued at or before revokedAt (to the
+ * millisecond) are refused.
+ * Rows only matter until the longest token lifetime has passed, so the set kept in memory
+ * by QrTokenService stays small.
+ */
+@Entity
+@Table(name = "qr_revocations", uniqueConstraints = {
+        @UniqueConstraint(columnNames = { "subject_type", "subject_id" })
+}, indexes = {
+        @Index(name = "idx_qr_revocation_revoked_at", columnList = "revoked_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QrRevocation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long qrRevocationId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private QrSubjectType subjectType;
+
+    @Column(nullable = false)
+    private Long subjectId;
+
+    private Long societyId;
+
+    @Column(nullable = false)
+    private LocalDateTime revokedAt;
+
+    @Column(length = 100)
+    private String revokedBy;
+}
@@ -0,0 +1,61 @@
+package com.ecanopy.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * StoredFile Entity
+ * Content-addressed upload blob, keyed by the SHA-256 of its bytes.
+ * refCount tracks how many rows (visitor photos, item media, complaint
+ * attachments) currently point at the blob's URL.
+ */
+@Entity
+@Table(name = "stored_files", uniqueConstraints = {
+        @UniqueConstraint(columnNames = "sha256")
+}, indexes = {
+        @Index(name = "idx_stored_files_ref_count", columnList = "ref_count, updated_at")
+})
+@EntityListeners(AuditingEntityListener.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StoredFile {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long storedFileId;
+
+    @NotBlank
+    @Column(nullable = false, unique = true, length = 64)
+    private String sha256;
+
+    // Path relative to the blob directory, e.g. "ab/ab12...ef.jpg"
+    @NotBlank
+    @Column(nullable = false, length = 100)
+    private String relativePath;
+
+    @Column(length = 100)
+    private String contentType;
+
+    @Column(nullable = false)
+    private Long fileSize;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer refCount = 0;
+
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Last time the blob was stored or its refCount changed; drives GC grace period
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
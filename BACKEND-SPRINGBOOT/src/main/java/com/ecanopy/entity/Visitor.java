@@ -11,7 +11,9 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "visitors")
+@Table(name = "visitors", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_visitors_phone", columnNames = "phone")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Getter
 @Setter
@@ -10,7 +10,10 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "visitor_logs")
+@Table(name = "visitor_logs", indexes = {
+        @Index(name = "idx_visitor_log_visitor_in_time", columnList = "visitor_id, in_time"),
+        @Index(name = "idx_visitor_log_open_deadline", columnList = "out_time, expected_out_time")
+})
 @Getter
 @Setter
 @NoArgsConstructor
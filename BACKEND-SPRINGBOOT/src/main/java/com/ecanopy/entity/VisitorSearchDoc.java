@@ -0,0 +1,49 @@
+package com.ecanopy.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A visitor as seen by one society's search: the normalised name and phone the trigrams in
+ * visitor_search_grams were built from, and the visitor's latest log there, which search
+ * results are ordered by and shown as. Written by VisitorSearchIndex.
+ */
+@Entity
+@Table(name = "visitor_search_docs", uniqueConstraints = {
+        @UniqueConstraint(columnNames = { "society_id", "visitor_id" })
+}, indexes = {
+        @Index(name = "idx_visitor_search_doc_recent", columnList = "society_id, last_seen_at"),
+        @Index(name = "idx_visitor_search_doc_visitor", columnList = "visitor_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VisitorSearchDoc {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long visitorSearchDocId;
+
+    @Column(nullable = false)
+    private Long societyId;
+
+    @Column(nullable = false)
+    private Long visitorId;
+
+    // Lower case letters and digits, words separated by single spaces
+    @Column(nullable = false)
+    private String nameKey;
+
+    // Digits only
+    @Column(nullable = false, length = 20)
+    private String phoneKey;
+
+    @Column(nullable = false)
+    private Long lastLogId;
+
+    @Column(nullable = false)
+    private LocalDateTime lastSeenAt;
+}
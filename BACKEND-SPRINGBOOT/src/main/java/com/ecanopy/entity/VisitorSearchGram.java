@@ -0,0 +1,37 @@
+package com.ecanopy.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * One trigram of a visitor's name (kind N) or phone (kind P) in one society's search index.
+ * Besides the trigrams of the whole value, each word contributes "  x" and " xy", so one and
+ * two character searches find word prefixes. Written by VisitorSearchIndex.
+ */
+@Entity
+@Table(name = "visitor_search_grams", indexes = {
+        @Index(name = "idx_visitor_search_gram_lookup", columnList = "society_id, kind, gram, visitor_id"),
+        @Index(name = "idx_visitor_search_gram_visitor", columnList = "visitor_id, society_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VisitorSearchGram {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long visitorSearchGramId;
+
+    @Column(nullable = false)
+    private Long societyId;
+
+    @Column(nullable = false)
+    private Long visitorId;
+
+    @Column(nullable = false, length = 1)
+    private String kind;
+
+    @Column(nullable = false, length = 3)
+    private String gram;
+}
@@ -1,5 +1,7 @@
 package com.ecanopy.entity.enums;
 
+import java.util.List;
+
 /**
  * Bill Status Enum
  * Tracks payment status of maintenance bills
@@ -8,5 +10,8 @@ public enum BillStatus {
     PENDING,
     PAID,
     PARTIAL,
-    OVERDUE
+    OVERDUE;
+
+    /** Statuses a resident can still pay, counted as outstanding dues */
+    public static final List<BillStatus> OUTSTANDING = List.of(PENDING, OVERDUE);
 }
@@ -0,0 +1,11 @@
+package com.ecanopy.entity.enums;
+
+/**
+ * Guard Scan Status Enum
+ * Outcome of an uploaded guard scan event
+ */
+public enum GuardScanStatus {
+    APPLIED, // Written to the gate logs
+    DUPLICATE, // Nothing to do: repeat scan, or the subject was already in that state
+    REJECTED // Invalid at the time of the scan
+}
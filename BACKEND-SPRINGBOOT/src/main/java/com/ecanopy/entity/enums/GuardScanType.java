@@ -0,0 +1,13 @@
+package com.ecanopy.entity.enums;
+
+/**
+ * Guard Scan Type Enum
+ * What a guard device scanned while offline, and what the event's value holds
+ */
+public enum GuardScanType {
+    QR, // Signed gate pass token
+    STAFF_PASS_CODE, // Staff 6-digit pass code
+    PRE_APPROVAL, // Visitor pre-approval code
+    FREQUENT_VISITOR, // Frequent visitor id
+    VISITOR_EXIT // Visitor log id, or the event id of an offline check-in
+}
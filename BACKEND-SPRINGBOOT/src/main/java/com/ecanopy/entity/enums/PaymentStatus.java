@@ -5,6 +5,7 @@ package com.ecanopy.entity.enums;
  * Tracks the status of a payment transaction
  */
 public enum PaymentStatus {
+    RESERVED, // Payment row reserved, gateway order being created
     CREATED, // Order created, payment not yet initiated
     PENDING, // Payment initiated, awaiting confirmation
     SUCCESS, // Payment successful and verified
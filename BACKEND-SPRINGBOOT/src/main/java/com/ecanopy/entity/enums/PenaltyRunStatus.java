@@ -0,0 +1,11 @@
+package com.ecanopy.entity.enums;
+
+/**
+ * Penalty Run Status Enum
+ * Tracks progress of a nightly late-fee run
+ */
+public enum PenaltyRunStatus {
+    RUNNING, // In progress, or interrupted and waiting to be resumed
+    COMPLETED, // Every active society processed for the run date
+    FAILED // Stopped on an error; the next attempt resumes from the checkpoint
+}
@@ -0,0 +1,10 @@
+package com.ecanopy.entity.enums;
+
+/**
+ * QR Subject Type Enum
+ * Who a gate pass QR token was issued to; the ordinal is part of the signed token
+ */
+public enum QrSubjectType {
+    RESIDENT, // A resident's user id
+    HELP // A domestic help / staff id
+}
@@ -0,0 +1,12 @@
+package com.ecanopy.entity.enums;
+
+/**
+ * Webhook Event Status Enum
+ * Tracks reconciliation of queued payment gateway events
+ */
+public enum WebhookEventStatus {
+    PENDING, // Queued, waiting for the reconciler
+    PROCESSED, // Applied to payments and bills
+    IGNORED, // Nothing applied: duplicate, unknown order or event type, or a capture flagged on the payment
+    FAILED // Gave up after the configured number of attempts
+}
@@ -9,4 +9,6 @@ import java.util.List;
 @Repository
 public interface ComplaintAttachmentRepository extends JpaRepository<ComplaintAttachment, Long> {
     List<ComplaintAttachment> findByComplaintComplaintId(Long complaintId);
+
+    long countByFilePath(String filePath);
 }
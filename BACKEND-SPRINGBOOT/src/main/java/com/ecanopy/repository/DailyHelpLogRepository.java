@@ -2,13 +2,24 @@ package com.ecanopy.repository;
 
 import com.ecanopy.entity.DailyHelpLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface DailyHelpLogRepository extends JpaRepository<DailyHelpLog, Long> {
     List<DailyHelpLog> findByDomesticHelp_HelpId(Long helpId);
 
-    java.util.Optional<DailyHelpLog> findTopByDomesticHelp_HelpIdAndExitTimeIsNullOrderByEntryTimeDesc(Long helpId);
+    // Exit scan: PresenceRegistry knows the open log, so it is closed without loading it
+    @Modifying
+    @Query("UPDATE DailyHelpLog l SET l.exitTime = :exitTime WHERE l.logId = :logId AND l.exitTime IS NULL")
+    int closeLog(@Param("logId") Long logId, @Param("exitTime") LocalDateTime exitTime);
+
+    @Query("SELECT l.entryTime FROM DailyHelpLog l WHERE l.logId = :logId")
+    Optional<LocalDateTime> findEntryTime(@Param("logId") Long logId);
 }
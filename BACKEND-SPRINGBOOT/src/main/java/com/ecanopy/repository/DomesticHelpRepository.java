@@ -13,6 +13,4 @@ public interface DomesticHelpRepository extends JpaRepository<DomesticHelp, Long
     List<DomesticHelp> findBySocietySocietyId(Long societyId);
 
     java.util.Optional<DomesticHelp> findByPassCode(String passCode);
-
-    boolean existsByPassCode(String passCode);
 }
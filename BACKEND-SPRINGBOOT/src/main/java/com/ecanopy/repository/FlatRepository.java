@@ -1,7 +1,10 @@
 package com.ecanopy.repository;
 
 import com.ecanopy.entity.Flat;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -9,10 +12,22 @@ import java.util.Optional;
 
 @Repository
 public interface FlatRepository extends JpaRepository<Flat, Long> {
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "reference-queries")
+    })
     List<Flat> findByBuildingBuildingId(Long buildingId);
 
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "reference-queries")
+    })
     Optional<Flat> findByBuildingBuildingIdAndFlatNumber(Long buildingId, String flatNumber);
 
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "reference-queries")
+    })
     List<Flat> findByBuildingSocietySocietyId(Long societyId);
 
     long countByBuildingSocietySocietyId(Long societyId);
@@ -6,15 +6,10 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface FrequentVisitorRepository extends JpaRepository<FrequentVisitor, Long> {
 
-    // Check if visitor is a frequent visitor for a specific flat
-    Optional<FrequentVisitor> findByVisitor_VisitorIdAndFlat_FlatIdAndIsActiveTrueAndValidFromBeforeAndValidUntilAfter(
-            Long visitorId, Long flatId, LocalDate now1, LocalDate now2);
-
     // Get all active frequent visitors for a flat
     List<FrequentVisitor> findByFlat_FlatIdAndIsActiveTrueAndValidUntilAfter(Long flatId, LocalDate now);
 
@@ -13,4 +13,8 @@ public interface ItemRepository extends JpaRepository<Item, Long> {
     List<Item> findByCategory(String category);
 
     List<Item> findByStatus(com.ecanopy.entity.enums.ItemStatus status);
+
+    long countByImageUrl(String imageUrl);
+
+    long countByVideoUrl(String videoUrl);
 }
@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -17,9 +18,9 @@ public interface MaintenanceBillRepository extends JpaRepository<MaintenanceBill
 
     List<MaintenanceBill> findByFlatBuildingSocietySocietyId(Long societyId);
 
-    @Query("SELECT SUM(b.totalAmount) FROM MaintenanceBill b WHERE b.status = :status")
-    BigDecimal sumTotalAmountByStatus(@Param("status") BillStatus status);
+    @Query("SELECT SUM(b.totalAmount) FROM MaintenanceBill b WHERE b.status IN :statuses")
+    BigDecimal sumTotalAmountByStatusIn(@Param("statuses") Collection<BillStatus> statuses);
 
-    @Query("SELECT SUM(b.totalAmount) FROM MaintenanceBill b WHERE b.flat.building.society.societyId = :societyId AND b.status = :status")
-    BigDecimal sumTotalAmountBySocietyAndStatus(@Param("societyId") Long societyId, @Param("status") BillStatus status);
+    @Query("SELECT SUM(b.totalAmount) FROM MaintenanceBill b WHERE b.flat.building.society.societyId = :societyId AND b.status IN :statuses")
+    BigDecimal sumTotalAmountBySocietyAndStatusIn(@Param("societyId") Long societyId, @Param("statuses") Collection<BillStatus> statuses);
 }
@@ -1,9 +1,15 @@
 package com.ecanopy.repository;
 
 import com.ecanopy.entity.Payment;
+import com.ecanopy.entity.enums.PaymentStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +18,16 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     List<Payment> findByMaintenanceBillBillId(Long billId);
 
     Optional<Payment> findByRazorpayOrderId(String razorpayOrderId);
+
+    Optional<Payment> findByIdempotencyKey(String idempotencyKey);
+
+    Optional<Payment> findByActiveBillId(Long activeBillId);
+
+    List<Payment> findByStatusAndCreatedAtBeforeAndPaymentIdGreaterThanOrderByPaymentIdAsc(
+            PaymentStatus status, LocalDateTime createdBefore, Long paymentId, Pageable pageable);
+
+    @Query("SELECT p.razorpayPaymentId FROM Payment p WHERE p.razorpayPaymentId IN :paymentIds")
+    List<String> findRecordedRazorpayPaymentIds(@Param("paymentIds") Collection<String> paymentIds);
+
+    List<Payment> findByRazorpayOrderIdIn(Collection<String> orderIds);
 }
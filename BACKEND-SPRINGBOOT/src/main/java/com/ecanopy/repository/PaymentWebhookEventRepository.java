@@ -0,0 +1,16 @@
+package com.ecanopy.repository;
+
+import com.ecanopy.entity.PaymentWebhookEvent;
+import com.ecanopy.entity.enums.WebhookEventStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PaymentWebhookEventRepository extends JpaRepository<PaymentWebhookEvent, Long> {
+    boolean existsByExternalEventId(String externalEventId);
+
+    List<PaymentWebhookEvent> findByStatusOrderByWebhookEventIdAsc(WebhookEventStatus status, Pageable pageable);
+}
@@ -0,0 +1,16 @@
+package com.ecanopy.repository;
+
+import com.ecanopy.entity.PenaltyRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PenaltyRuleRepository extends JpaRepository<PenaltyRule, Long> {
+    Optional<PenaltyRule> findBySocietyId(Long societyId);
+
+    List<PenaltyRule> findBySocietyIdIn(Collection<Long> societyIds);
+}
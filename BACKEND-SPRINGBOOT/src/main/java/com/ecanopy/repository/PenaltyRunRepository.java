@@ -0,0 +1,15 @@
+package com.ecanopy.repository;
+
+import com.ecanopy.entity.PenaltyRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface PenaltyRunRepository extends JpaRepository<PenaltyRun, Long> {
+    Optional<PenaltyRun> findByRunDate(LocalDate runDate);
+
+    Optional<PenaltyRun> findFirstByOrderByRunDateDesc();
+}
@@ -12,10 +12,6 @@ import java.util.Optional;
 public interface PreApprovalRepository extends JpaRepository<PreApproval, Long> {
     Optional<PreApproval> findByCodeAndIsUsedFalse(String code);
 
-    // Fixed: Now validates both phone AND flat for security
-    Optional<PreApproval> findByVisitorPhoneAndFlat_FlatIdAndIsUsedFalseAndValidFromBeforeAndValidUntilAfter(
-            String phone, Long flatId, LocalDateTime now1, LocalDateTime now2);
-
     // Get all active pre-approvals for a flat
     List<PreApproval> findByFlat_FlatIdAndIsUsedFalseAndValidUntilAfter(Long flatId, LocalDateTime now);
 
@@ -0,0 +1,18 @@
+package com.ecanopy.repository;
+
+import com.ecanopy.entity.QrRevocation;
+import com.ecanopy.entity.enums.QrSubjectType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface QrRevocationRepository extends JpaRepository<QrRevocation, Long> {
+    Optional<QrRevocation> findBySubjectTypeAndSubjectId(QrSubjectType subjectType, Long subjectId);
+
+    // Revocations that can still match an unexpired token
+    List<QrRevocation> findByRevokedAtAfter(LocalDateTime since);
+}
@@ -3,6 +3,8 @@ package com.ecanopy.repository;
 import com.ecanopy.entity.Resident;
 import com.ecanopy.entity.enums.ResidentType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -16,6 +18,12 @@ public interface ResidentRepository extends JpaRepository<Resident, Long> {
 
     Optional<Resident> findByUserId(Long userId);
 
+    @Query("SELECT r.flat.building.society.societyId FROM Resident r WHERE r.user.id = :userId")
+    Optional<Long> findSocietyIdByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT r.flat.flatId FROM Resident r WHERE r.user.id = :userId")
+    Optional<Long> findFlatIdByUserId(@Param("userId") Long userId);
+
     List<Resident> findByIsActiveTrue();
 
     List<Resident> findByFlat_Building_Society_SocietyId(Long societyId);
@@ -0,0 +1,49 @@
+package com.ecanopy.repository;
+
+import com.ecanopy.entity.StoredFile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
+    Optional<StoredFile> findBySha256(String sha256);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile s SET s.refCount = s.refCount + 1, s.updatedAt = :now WHERE s.sha256 = :sha256")
+    int incrementRefCount(@Param("sha256") String sha256, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile s SET s.refCount = s.refCount - 1, s.updatedAt = :now WHERE s.sha256 = :sha256 AND s.refCount > 0")
+    int decrementRefCount(@Param("sha256") String sha256, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile s SET s.updatedAt = :now WHERE s.storedFileId = :id")
+    int touch(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredFile s SET s.refCount = :refCount, s.updatedAt = :now WHERE s.storedFileId = :id")
+    int resetRefCount(@Param("id") Long id, @Param("refCount") Integer refCount, @Param("now") LocalDateTime now);
+
+    // Conditional so a blob retained/re-uploaded after it was selected by the GC survives
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StoredFile s WHERE s.storedFileId = :id AND s.refCount <= 0 AND s.updatedAt < :cutoff")
+    int deleteIfUnreferenced(@Param("id") Long id, @Param("cutoff") LocalDateTime cutoff);
+
+    // GC candidates: unreferenced blobs that have been idle for the grace period (keyset paged)
+    List<StoredFile> findByRefCountLessThanEqualAndUpdatedAtBeforeAndStoredFileIdGreaterThanOrderByStoredFileIdAsc(
+            Integer refCount, LocalDateTime cutoff, Long afterId, Pageable pageable);
+}
@@ -23,24 +23,18 @@ public interface VisitorLogRepository extends JpaRepository<VisitorLog, Long> {
         List<VisitorLog> findByFlat_Building_Society_SocietyIdOrderByInTimeDesc(Long societyId);
 
         // Search and filter
-        List<VisitorLog> findByFlat_Building_Society_SocietyIdAndVisitor_FullNameContainingIgnoreCaseOrderByInTimeDesc(
-                        Long societyId, String name);
-
-        List<VisitorLog> findByFlat_Building_Society_SocietyIdAndVisitor_PhoneContainingOrderByInTimeDesc(
-                        Long societyId, String phone);
-
         List<VisitorLog> findByFlat_Building_Society_SocietyIdAndCategoryOrderByInTimeDesc(
                         Long societyId, VisitorCategory category);
 
         List<VisitorLog> findByFlat_Building_Society_SocietyIdAndInTimeBetweenOrderByInTimeDesc(
                         Long societyId, LocalDateTime startDate, LocalDateTime endDate);
 
+        long countByInTimeBetween(LocalDateTime start, LocalDateTime end);
+
         // Overstaying visitors
-        List<VisitorLog> findByOutTimeIsNullAndExpectedOutTimeBeforeAndFlat_Building_Society_SocietyId(
+        List<VisitorLog> findByOutTimeIsNullAndExpectedOutTimeBeforeAndFlat_Building_Society_SocietyIdOrderByExpectedOutTimeAsc(
                         LocalDateTime now, Long societyId);
 
-        long countByInTimeBetween(LocalDateTime start, LocalDateTime end);
-
         long countByFlat_Building_Society_SocietyIdAndInTimeBetween(Long societyId, LocalDateTime start,
                         LocalDateTime end);
 }
@@ -4,9 +4,7 @@ import com.ecanopy.entity.Visitor;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
-
 @Repository
 public interface VisitorRepository extends JpaRepository<Visitor, Long> {
-    Optional<Visitor> findByPhone(String phone);
+    long countByPhotoUrl(String photoUrl);
 }
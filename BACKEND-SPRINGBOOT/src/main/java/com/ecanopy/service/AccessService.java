@@ -1,12 +1,18 @@
 package com.ecanopy.service;
 
+import com.ecanopy.config.DomainMetrics;
+import com.ecanopy.dto.response.QrTokenResponse;
 import com.ecanopy.entity.AccessLog;
 import com.ecanopy.entity.DomesticHelp;
 import com.ecanopy.entity.User;
 import com.ecanopy.entity.enums.AccessType;
+import com.ecanopy.entity.enums.QrSubjectType;
+import com.ecanopy.exception.BadRequestException;
+import com.ecanopy.exception.ForbiddenException;
 import com.ecanopy.exception.NotFoundException;
 import com.ecanopy.repository.AccessRepository;
 import com.ecanopy.repository.DomesticHelpRepository;
+import com.ecanopy.repository.ResidentRepository;
 import com.ecanopy.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -15,7 +21,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -24,74 +29,128 @@ public class AccessService {
     private final AccessRepository accessRepository;
     private final UserRepository userRepository;
     private final DomesticHelpRepository domesticHelpRepository;
+    private final ResidentRepository residentRepository;
     private final VisitorService visitorService;
-
+    private final QrTokenService qrTokenService;
+    private final PresenceRegistry presenceRegistry;
+    private final DomainMetrics metrics;
+
+    /**
+     * Gate scan: a 6-digit pre-approval code, or a signed gate pass (see QrTokenService).
+     * Passes are verified in memory; the subject is only referenced by id for the log row.
+     *
+     * @param gateSocietyId society of the scanning guard; passes of other societies are refused
+     */
     @Transactional
-    public Map<String, Object> validateQr(String token, String scannedBy) {
+    public Map<String, Object> validateQr(String token, String scannedBy, Long gateSocietyId) {
+        if (token == null || token.isBlank()) {
+            throw metrics.record(DomainMetrics.QR_VALIDATION, "type", "malformed")
+                    .failure(new BadRequestException("QR token is required"));
+        }
         // Check for Pre-Approval Code (6 digits)
         if (token.matches("\\d{6}")) {
-            return visitorService.checkInByPreApprovalCode(token, scannedBy);
+            DomainMetrics.Recording metric = metrics.record(DomainMetrics.QR_VALIDATION, "type", "pass_code");
+            try {
+                return metric.success(visitorService.checkInByPreApprovalCode(token, scannedBy));
+            } catch (RuntimeException e) {
+                throw metric.failure(e);
+            }
         }
 
-        // Token Format: TYPE:ID:NAME (Simple for now)
-        // e.g., RESIDENT:101:JohnDoe or HELP:5:MaidName
-
-        String[] parts = token.split(":");
-        if (parts.length < 3) {
-            throw new IllegalArgumentException("Invalid QR Code");
+        QrTokenService.QrToken qr;
+        try {
+            qr = qrTokenService.verify(token);
+        } catch (RuntimeException e) {
+            throw metrics.record(DomainMetrics.QR_VALIDATION, "type", "malformed").failure(e);
         }
+        DomainMetrics.Recording metric = metrics.record(DomainMetrics.QR_VALIDATION, "type",
+                qr.type().name().toLowerCase());
+        metric.society(qr.societyId());
+        try {
+            if (gateSocietyId != null && gateSocietyId != qr.societyId()) {
+                throw new ForbiddenException("QR code belongs to another society");
+            }
+            return metric.success(recordAccess(qr, scannedBy));
+        } catch (RuntimeException e) {
+            throw metric.failure(e);
+        }
+    }
 
-        String type = parts[0];
-        Long id = Long.parseLong(parts[1]);
-        String name = parts[2];
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("name", name);
-        response.put("type", type);
-        response.put("status", "GRANTED");
-
-        if ("RESIDENT".equals(type)) {
-            User user = userRepository.findById(id)
-                    .orElseThrow(() -> new NotFoundException("Resident not found"));
-
-            response.put("name", user.getFullName()); // Ensure name comes from DB
+    private Map<String, Object> recordAccess(QrTokenService.QrToken qr, String scannedBy) {
+        boolean resident = qr.type() == QrSubjectType.RESIDENT;
+        PresenceRegistry.Kind kind = resident ? PresenceRegistry.Kind.RESIDENT : PresenceRegistry.Kind.HELP;
 
-            // Logic to toggle Entry/Exit
-            Optional<AccessLog> lastLog = accessRepository.findTopByUserOrderByTimestampDesc(user);
-            AccessType nextAction = (lastLog.isPresent() && lastLog.get().getAccessType() == AccessType.ENTRY)
-                    ? AccessType.EXIT
-                    : AccessType.ENTRY;
+        // Entry/exit toggles on the subject's presence, not on a read of the last log row
+        return presenceRegistry.scan(qr.societyId(), kind, qr.subjectId(), entryLogId -> {
+            AccessType nextAction = entryLogId != null ? AccessType.EXIT : AccessType.ENTRY;
 
             AccessLog log = new AccessLog();
-            log.setUser(user);
+            if (resident) {
+                log.setUser(userRepository.getReferenceById(qr.subjectId()));
+            } else {
+                log.setDomesticHelp(domesticHelpRepository.getReferenceById(qr.subjectId()));
+            }
             log.setAccessType(nextAction);
             log.setTimestamp(LocalDateTime.now());
             log.setScannedBy(scannedBy);
             accessRepository.save(log);
 
+            Map<String, Object> response = new HashMap<>();
+            response.put("name", qr.name());
+            response.put("type", qr.type().name());
+            response.put("status", "GRANTED");
             response.put("accessType", nextAction);
+            return new PresenceRegistry.Transition<>(response,
+                    nextAction == AccessType.ENTRY ? log.getId() : null);
+        });
+    }
 
-        } else if ("HELP".equals(type)) {
-            DomesticHelp help = domesticHelpRepository.findById(id)
-                    .orElseThrow(() -> new NotFoundException("Staff not found"));
-
-            Optional<AccessLog> lastLog = accessRepository.findTopByDomesticHelpOrderByTimestampDesc(help);
-            AccessType nextAction = (lastLog.isPresent() && lastLog.get().getAccessType() == AccessType.ENTRY)
-                    ? AccessType.EXIT
-                    : AccessType.ENTRY;
+    /**
+     * Gate pass of the current resident.
+     */
+    public QrTokenResponse issueResidentPass(User user) {
+        Long societyId = user.getSocietyId() != null
+                ? user.getSocietyId()
+                : residentRepository.findSocietyIdByUserId(user.getId())
+                        .orElseThrow(() -> new NotFoundException("User is not associated with any society"));
+        return qrTokenService.issue(QrSubjectType.RESIDENT, user.getId(), societyId, user.getFullName());
+    }
 
-            AccessLog log = new AccessLog();
-            log.setDomesticHelp(help);
-            log.setAccessType(nextAction);
-            log.setTimestamp(LocalDateTime.now());
-            log.setScannedBy(scannedBy);
-            accessRepository.save(log);
+    /**
+     * Gate pass of a staff member of the manager's society.
+     */
+    @Transactional(readOnly = true)
+    public QrTokenResponse issueStaffPass(Long staffId, User manager) {
+        DomesticHelp help = domesticHelpRepository.findById(staffId)
+                .orElseThrow(() -> new NotFoundException("Staff not found"));
+        Long societyId = help.getSociety() != null ? help.getSociety().getSocietyId() : null;
+        requireSameSociety(manager, societyId);
+        return qrTokenService.issue(QrSubjectType.HELP, help.getHelpId(), societyId, help.getName());
+    }
 
-            response.put("accessType", nextAction);
+    /**
+     * Invalidate every pass issued so far to a resident or staff member of the manager's society.
+     */
+    public void revokePass(QrSubjectType type, Long subjectId, User manager) {
+        Long societyId;
+        if (type == QrSubjectType.RESIDENT) {
+            societyId = userRepository.findById(subjectId)
+                    .map(user -> user.getSocietyId() != null
+                            ? user.getSocietyId()
+                            : residentRepository.findSocietyIdByUserId(subjectId).orElse(null))
+                    .orElseThrow(() -> new NotFoundException("Resident not found"));
         } else {
-            throw new IllegalArgumentException("Unknown User Type");
+            societyId = domesticHelpRepository.findById(subjectId)
+                    .map(help -> help.getSociety() != null ? help.getSociety().getSocietyId() : null)
+                    .orElseThrow(() -> new NotFoundException("Staff not found"));
         }
+        requireSameSociety(manager, societyId);
+        qrTokenService.revoke(type, subjectId, societyId, manager.getEmail());
+    }
 
-        return response;
+    private static void requireSameSociety(User manager, Long societyId) {
+        if (manager.getSocietyId() != null && !manager.getSocietyId().equals(societyId)) {
+            throw new ForbiddenException("Not a member of your society");
+        }
     }
 }
@@ -0,0 +1,259 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.PassExpiryProperties;
+import com.ecanopy.entity.PreApproval;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Active passes, per flat
+ * Unused, unexpired pre-approvals (by visitor phone) and active frequent visitor passes (by
+ * visitor id) of each flat, so a walk-in check-in decides auto-approval with a lookup in a
+ * handful of passes instead of two validity range queries. Loaded at startup; changes made
+ * here are applied as their transaction commits, and changes from other instances (or the
+ * expiry sweep) are picked up from the updated_at columns every ecanopy.passes.refresh-interval.
+ *
+ * The index may briefly hold a pass already used elsewhere, so callers re-read the row they
+ * act on. Passes whose validity ends are dropped when a lookup meets them.
+ */
+@Component
+@Slf4j
+public class ActivePassIndex implements SmartInitializingSingleton {
+
+    private static final String PRE_APPROVALS = "SELECT id, flat_id, visitor_phone, valid_from, valid_until, "
+            + "is_used, expired FROM pre_approvals ";
+    private static final String FREQUENT_VISITORS = "SELECT id, flat_id, visitor_id, valid_from, valid_until, "
+            + "is_active, expired FROM frequent_visitors ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PassExpiryProperties passExpiryProperties;
+    private final Map<Long, FlatPasses> flats = new HashMap<>();
+    // ReentrantLock rather than a monitor, so virtual request threads are not pinned
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile LocalDateTime refreshedAt;
+
+    public ActivePassIndex(JdbcTemplate jdbcTemplate, PassExpiryProperties passExpiryProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passExpiryProperties = passExpiryProperties;
+    }
+
+    private record PreApprovalPass(long id, String phone, LocalDateTime validFrom, LocalDateTime validUntil) {
+    }
+
+    private record FrequentVisitorPass(long id, long visitorId, LocalDate validFrom, LocalDate validUntil) {
+    }
+
+    private record PreApprovalRow(long flatId, PreApprovalPass pass, boolean live) {
+    }
+
+    private record FrequentVisitorRow(long flatId, FrequentVisitorPass pass, boolean live) {
+    }
+
+    private static final class FlatPasses {
+        final Map<Long, PreApprovalPass> preApprovals = new HashMap<>();
+        final Map<Long, FrequentVisitorPass> frequentVisitors = new HashMap<>();
+
+        boolean isEmpty() {
+            return preApprovals.isEmpty() && frequentVisitors.isEmpty();
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long started = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        List<PreApprovalRow> preApprovals = readPreApprovals(
+                "WHERE is_used = FALSE AND expired = FALSE AND valid_until > ?", Timestamp.valueOf(now));
+        List<FrequentVisitorRow> frequentVisitors = readFrequentVisitors(
+                "WHERE is_active = TRUE AND expired = FALSE AND valid_until >= ?", Date.valueOf(now.toLocalDate()));
+        apply(preApprovals, frequentVisitors, now);
+        refreshedAt = now;
+        log.info("Active pass index loaded: {} pre-approvals and {} frequent visitor passes in {} ms",
+                preApprovals.size(), frequentVisitors.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /** An unused pre-approval of the flat for this phone, valid at the given time. */
+    public Optional<Long> preApproval(Long flatId, String phone, LocalDateTime at) {
+        if (flatId == null || phone == null) {
+            return Optional.empty();
+        }
+        String key = VisitorDirectory.normalizePhone(phone);
+        lock.lock();
+        try {
+            FlatPasses passes = flats.get(flatId);
+            if (passes == null) {
+                return Optional.empty();
+            }
+            PreApprovalPass found = null;
+            Iterator<PreApprovalPass> it = passes.preApprovals.values().iterator();
+            while (it.hasNext()) {
+                PreApprovalPass pass = it.next();
+                if (pass.validUntil().isBefore(at)) {
+                    it.remove();
+                } else if (pass.phone().equals(key) && !at.isBefore(pass.validFrom())
+                        && (found == null || pass.validUntil().isBefore(found.validUntil()))) {
+                    found = pass; // the one running out first
+                }
+            }
+            dropIfEmpty(flatId, passes);
+            return found != null ? Optional.of(found.id()) : Optional.empty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Whether the visitor holds an active frequent visitor pass of the flat on the given day. */
+    public boolean frequentVisitor(Long flatId, Long visitorId, LocalDate day) {
+        if (flatId == null || visitorId == null) {
+            return false;
+        }
+        lock.lock();
+        try {
+            FlatPasses passes = flats.get(flatId);
+            if (passes == null) {
+                return false;
+            }
+            boolean found = false;
+            Iterator<FrequentVisitorPass> it = passes.frequentVisitors.values().iterator();
+            while (it.hasNext()) {
+                FrequentVisitorPass pass = it.next();
+                if (pass.validUntil().isBefore(day)) {
+                    it.remove();
+                } else if (pass.visitorId() == visitorId && !day.isBefore(pass.validFrom())) {
+                    found = true;
+                }
+            }
+            dropIfEmpty(flatId, passes);
+            return found;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** A pre-approval was created; indexed once the surrounding transaction commits. */
+    public void preApprovalAdded(PreApproval preApproval) {
+        if (preApproval.getId() == null || preApproval.getFlat() == null || preApproval.isUsed()) {
+            return;
+        }
+        long flatId = preApproval.getFlat().getFlatId();
+        PreApprovalPass pass = new PreApprovalPass(preApproval.getId(),
+                VisitorDirectory.normalizePhone(preApproval.getVisitorPhone()),
+                preApproval.getValidFrom(), preApproval.getValidUntil());
+        Transactions.afterCommit(() -> {
+            lock.lock();
+            try {
+                flats.computeIfAbsent(flatId, id -> new FlatPasses()).preApprovals.put(pass.id(), pass);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /** A pre-approval was used; dropped once the surrounding transaction commits. */
+    public void preApprovalUsed(Long flatId, Long preApprovalId) {
+        if (flatId == null || preApprovalId == null) {
+            return;
+        }
+        Transactions.afterCommit(() -> {
+            lock.lock();
+            try {
+                FlatPasses passes = flats.get(flatId);
+                if (passes != null) {
+                    passes.preApprovals.remove(preApprovalId);
+                    dropIfEmpty(flatId, passes);
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /** Pick up passes created, used, deactivated or expired since the previous refresh. */
+    @Scheduled(fixedDelayString = "${ecanopy.passes.refresh-interval:30s}")
+    public void refresh() {
+        LocalDateTime since = refreshedAt;
+        if (since == null) {
+            return; // not loaded yet
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp from = Timestamp.valueOf(since.minus(passExpiryProperties.getRefreshOverlap()));
+        // Rows are read before taking the lock, so lookups never wait on the database
+        List<PreApprovalRow> preApprovals = readPreApprovals("WHERE updated_at > ?", from);
+        List<FrequentVisitorRow> frequentVisitors = readFrequentVisitors("WHERE updated_at > ?", from);
+        apply(preApprovals, frequentVisitors, now);
+        refreshedAt = now;
+        if (!preApprovals.isEmpty() || !frequentVisitors.isEmpty()) {
+            log.debug("Active pass index refreshed: {} pre-approvals and {} frequent visitor passes changed",
+                    preApprovals.size(), frequentVisitors.size());
+        }
+    }
+
+    private List<PreApprovalRow> readPreApprovals(String where, Object arg) {
+        return jdbcTemplate.query(PRE_APPROVALS + where, (rs, i) -> new PreApprovalRow(rs.getLong("flat_id"),
+                new PreApprovalPass(rs.getLong("id"), VisitorDirectory.normalizePhone(rs.getString("visitor_phone")),
+                        rs.getTimestamp("valid_from").toLocalDateTime(),
+                        rs.getTimestamp("valid_until").toLocalDateTime()),
+                !rs.getBoolean("is_used") && !rs.getBoolean("expired")), arg);
+    }
+
+    private List<FrequentVisitorRow> readFrequentVisitors(String where, Object arg) {
+        return jdbcTemplate.query(FREQUENT_VISITORS + where, (rs, i) -> new FrequentVisitorRow(rs.getLong("flat_id"),
+                new FrequentVisitorPass(rs.getLong("id"), rs.getLong("visitor_id"),
+                        rs.getDate("valid_from").toLocalDate(), rs.getDate("valid_until").toLocalDate()),
+                rs.getBoolean("is_active") && !rs.getBoolean("expired")), arg);
+    }
+
+    /** Index the live rows still valid now and drop the others. */
+    private void apply(List<PreApprovalRow> preApprovals, List<FrequentVisitorRow> frequentVisitors,
+            LocalDateTime now) {
+        lock.lock();
+        try {
+            for (PreApprovalRow row : preApprovals) {
+                if (row.live() && row.pass().validUntil().isAfter(now)) {
+                    flats.computeIfAbsent(row.flatId(), id -> new FlatPasses())
+                            .preApprovals.put(row.pass().id(), row.pass());
+                } else {
+                    FlatPasses passes = flats.get(row.flatId());
+                    if (passes != null) {
+                        passes.preApprovals.remove(row.pass().id());
+                        dropIfEmpty(row.flatId(), passes);
+                    }
+                }
+            }
+            for (FrequentVisitorRow row : frequentVisitors) {
+                if (row.live() && !row.pass().validUntil().isBefore(now.toLocalDate())) {
+                    flats.computeIfAbsent(row.flatId(), id -> new FlatPasses())
+                            .frequentVisitors.put(row.pass().id(), row.pass());
+                } else {
+                    FlatPasses passes = flats.get(row.flatId());
+                    if (passes != null) {
+                        passes.frequentVisitors.remove(row.pass().id());
+                        dropIfEmpty(row.flatId(), passes);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dropIfEmpty(long flatId, FlatPasses passes) {
+        if (passes.isEmpty()) {
+            flats.remove(flatId);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.ecanopy.entity.Role;
 import com.ecanopy.entity.User;
 import com.ecanopy.entity.enums.ComplaintStatus;
 import com.ecanopy.entity.enums.ApprovalStatus;
+import com.ecanopy.entity.enums.QrSubjectType;
 import com.ecanopy.exception.NotFoundException;
 import com.ecanopy.repository.*;
 import lombok.RequiredArgsConstructor;
@@ -35,6 +36,7 @@ public class AdminService {
         private final org.springframework.security.crypto.password.PasswordEncoder passwordEncoder;
         private final AuthService authService;
         private final ResidentJoinRequestRepository residentJoinRequestRepository;
+        private final QrTokenService qrTokenService;
 
         @Transactional
         public UserResponse createSecretary(com.ecanopy.dto.request.CreateSecretaryRequest request) {
@@ -223,9 +225,18 @@ public class AdminService {
                 Set<Role> updatedRoles = user.getRoles().stream()
                                 .filter(r -> !r.getName().equals(finalRoleName))
                                 .collect(Collectors.toSet());
+                boolean removed = updatedRoles.size() < user.getRoles().size();
                 user.setRoles(new HashSet<>(updatedRoles));
 
                 User savedUser = userRepository.save(user);
+                if (removed && finalRoleName.equals("ROLE_RESIDENT")) {
+                        // No longer a resident: gate passes already issued must stop opening the gate
+                        Long societyId = user.getSocietyId() != null
+                                        ? user.getSocietyId()
+                                        : residentRepository.findSocietyIdByUserId(userId).orElse(null);
+                        qrTokenService.revoke(QrSubjectType.RESIDENT, userId, societyId,
+                                        authService.getCurrentUser().getEmail());
+                }
                 return mapToUserResponse(savedUser);
         }
 
@@ -1,5 +1,6 @@
 package com.ecanopy.service;
 
+import com.ecanopy.config.DomainMetrics;
 import com.ecanopy.entity.Amenity;
 import com.ecanopy.entity.AmenityBooking;
 import com.ecanopy.entity.User;
@@ -23,6 +24,7 @@ public class AmenityService {
     private final AmenityBookingRepository amenityBookingRepository;
     private final UserRepository userRepository;
     private final EmailService emailService;
+    private final DomainMetrics metrics;
 
     public List<Amenity> getAllAmenities(Long societyId) {
         List<Amenity> amenities = amenityRepository.findBySocietySocietyId(societyId);
@@ -108,6 +110,7 @@ public class AmenityService {
         return amenityBookingRepository.findByAmenity_Society_SocietyIdOrderByBookingDateDesc(societyId);
     }
 
+    @Transactional
     public Amenity addAmenity(Amenity amenity, Long societyId) {
         com.ecanopy.entity.Society society = societyRepository.findById(societyId)
                 .orElseThrow(() -> new NotFoundException("Society not found"));
@@ -115,12 +118,26 @@ public class AmenityService {
         return amenityRepository.save(amenity);
     }
 
+    @Transactional
     public Amenity addAmenity(Amenity amenity) {
         return amenityRepository.save(amenity);
     }
 
     @Transactional
     public AmenityBooking bookAmenity(Long amenityId, Long userId, LocalDateTime startTime, LocalDateTime endTime) {
+        DomainMetrics.Recording metric = metrics.record(DomainMetrics.AMENITY_BOOKING);
+        try {
+            return metric.success(bookAmenity(amenityId, userId, startTime, endTime, metric));
+        } catch (SlotConflictException e) {
+            metric.stop("conflict");
+            throw e;
+        } catch (RuntimeException e) {
+            throw metric.failure(e);
+        }
+    }
+
+    private AmenityBooking bookAmenity(Long amenityId, Long userId, LocalDateTime startTime, LocalDateTime endTime,
+            DomainMetrics.Recording metric) {
         // 1. Basic time validation
         if (startTime.isBefore(LocalDateTime.now())) {
             throw new RuntimeException("Cannot book amenity for a past date or time");
@@ -136,6 +153,9 @@ public class AmenityService {
         // 2. Fetch and validate amenity
         Amenity amenity = amenityRepository.findById(amenityId)
                 .orElseThrow(() -> new NotFoundException("Amenity not found"));
+        if (amenity.getSociety() != null) {
+            metric.society(amenity.getSociety().getSocietyId());
+        }
 
         if (amenity.getIsActive() != null && !amenity.getIsActive()) {
             throw new RuntimeException("This amenity is currently unavailable for booking");
@@ -157,7 +177,7 @@ public class AmenityService {
                 endTime.toLocalTime());
 
         if (!overlapping.isEmpty()) {
-            throw new RuntimeException("This time slot is already booked or pending approval.");
+            throw new SlotConflictException("This time slot is already booked or pending approval.");
         }
 
         // 5. Create booking
@@ -192,6 +212,7 @@ public class AmenityService {
         return amenityRepository.save(amenity);
     }
 
+    @Transactional
     public void deleteAmenity(Long amenityId) {
         if (!amenityRepository.existsById(amenityId)) {
             throw new NotFoundException("Amenity not found");
@@ -277,4 +298,11 @@ public class AmenityService {
                 .approvedBy(booking.getApprovedByUser() != null ? booking.getApprovedByUser().getFullName() : null)
                 .build();
     }
+
+    /** Same message and handling as before; a distinct type so conflicts get their own metric outcome. */
+    private static class SlotConflictException extends RuntimeException {
+        SlotConflictException(String message) {
+            super(message);
+        }
+    }
 }
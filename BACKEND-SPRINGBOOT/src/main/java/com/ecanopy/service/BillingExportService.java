@@ -0,0 +1,183 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.ExportProperties;
+import com.ecanopy.exception.BadRequestException;
+import com.ecanopy.exception.ServiceUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Society dues and payment exports
+ * Rows are read through a forward-only, read-only JDBC cursor and written to the response
+ * one at a time, so heap use is constant whatever the society size. On MySQL the fetch
+ * size is Integer.MIN_VALUE, which makes Connector/J stream rows instead of buffering the
+ * whole result set. Exports hold a pool connection for their duration, so only
+ * ecanopy.export.max-concurrent run at once.
+ */
+@Service
+@Slf4j
+public class BillingExportService {
+
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private static final String BILLS_SQL = "SELECT b.bill_id, b.bill_month, bl.building_name, f.flat_number, "
+            + "b.water_charges, b.parking_charges, b.electricity_charges, b.sinking_fund, b.penalties, b.total_amount, "
+            + "b.due_date, b.status, b.paid_date "
+            + "FROM maintenance_bills b "
+            + "JOIN flats f ON f.flat_id = b.flat_id "
+            + "JOIN buildings bl ON bl.building_id = f.building_id "
+            + "WHERE bl.society_id = ? AND b.bill_month >= ? AND b.bill_month < ? "
+            + "ORDER BY b.bill_month, bl.building_name, f.flat_number";
+    private static final String PAYMENTS_SQL = "SELECT p.payment_id, b.bill_month, bl.building_name, f.flat_number, "
+            + "p.amount, p.status, p.payment_method, p.razorpay_order_id, p.razorpay_payment_id, p.transaction_id, "
+            + "p.created_at, p.paid_at, u.email, p.remarks "
+            + "FROM payments p "
+            + "JOIN maintenance_bills b ON b.bill_id = p.bill_id "
+            + "JOIN flats f ON f.flat_id = b.flat_id "
+            + "JOIN buildings bl ON bl.building_id = f.building_id "
+            + "LEFT JOIN users u ON u.id = p.paid_by_user_id "
+            + "WHERE bl.society_id = ? AND b.bill_month >= ? AND b.bill_month < ? "
+            + "ORDER BY b.bill_month, p.payment_id";
+
+    public enum Dataset {
+        BILLS(BILLS_SQL, "Bill ID", "Bill Month", "Building", "Flat", "Water", "Parking", "Electricity",
+                "Sinking Fund", "Penalties", "Total", "Due Date", "Status", "Paid Date"),
+        PAYMENTS(PAYMENTS_SQL, "Payment ID", "Bill Month", "Building", "Flat", "Amount", "Status", "Method",
+                "Razorpay Order", "Razorpay Payment", "Transaction ID", "Created At", "Paid At", "Paid By", "Remarks");
+
+        private final String sql;
+        private final String[] headers;
+
+        Dataset(String sql, String... headers) {
+            this.sql = sql;
+            this.headers = headers;
+        }
+    }
+
+    public enum Format {
+        CSV("text/csv;charset=UTF-8", "csv"),
+        XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    /** Where an export is written; opened only once the export has been admitted. */
+    @FunctionalInterface
+    public interface ExportTarget {
+        OutputStream open(String filename) throws IOException;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ExportProperties exportProperties;
+    private final Semaphore permits;
+    private volatile Integer fetchSize;
+
+    public BillingExportService(DataSource dataSource, ExportProperties exportProperties) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.exportProperties = exportProperties;
+        this.permits = new Semaphore(exportProperties.getMaxConcurrent());
+    }
+
+    public void validateRange(YearMonth from, YearMonth to) {
+        if (from.isAfter(to)) {
+            throw new BadRequestException("'from' must not be after 'to'");
+        }
+        if (ChronoUnit.MONTHS.between(from, to) >= exportProperties.getMaxMonths()) {
+            throw new BadRequestException("Export range is limited to " + exportProperties.getMaxMonths() + " months");
+        }
+    }
+
+    /**
+     * Stream one dataset for a society and inclusive bill-month range to the target.
+     *
+     * @return number of data rows written
+     */
+    public long export(Dataset dataset, Format format, Long societyId, YearMonth from, YearMonth to,
+            ExportTarget target) throws IOException {
+        if (!permits.tryAcquire()) {
+            throw new ServiceUnavailableException("Too many exports running, please retry shortly");
+        }
+        long started = System.nanoTime();
+        try {
+            OutputStream out = target.open(dataset.name().toLowerCase() + "-" + societyId + "-" + from + "_" + to
+                    + "." + format.extension);
+            return write(dataset, format, societyId, from, to, out, started);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private long write(Dataset dataset, Format format, Long societyId, YearMonth from, YearMonth to,
+            OutputStream out, long started) throws IOException {
+        try (ReportWriter writer = format == Format.XLSX
+                ? ReportWriter.xlsx(out, dataset.name().charAt(0) + dataset.name().substring(1).toLowerCase())
+                : ReportWriter.csv(out)) {
+            writer.row((Object[]) dataset.headers);
+            long[] rows = { 0 };
+            try {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(dataset.sql,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    statement.setFetchSize(fetchSize(connection));
+                    statement.setLong(1, societyId);
+                    statement.setDate(2, Date.valueOf(from.atDay(1)));
+                    statement.setDate(3, Date.valueOf(to.plusMonths(1).atDay(1)));
+                    return statement;
+                }, (ResultSet rs) -> {
+                    Object[] values = new Object[dataset.headers.length];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = rs.getObject(i + 1);
+                    }
+                    try {
+                        writer.row(values);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    rows[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause(); // client went away; the cursor is already closed
+            }
+            log.info("Exported {} {} rows ({}) for society {} {}..{} in {} ms", rows[0], dataset, format, societyId,
+                    from, to, (System.nanoTime() - started) / 1_000_000);
+            return rows[0];
+        }
+    }
+
+    private int fetchSize(Connection connection) throws SQLException {
+        Integer size = fetchSize;
+        if (size == null) {
+            size = exportProperties.getFetchSize();
+            if (size == null) {
+                String product = connection.getMetaData().getDatabaseProductName();
+                size = "MySQL".equalsIgnoreCase(product) ? Integer.MIN_VALUE : DEFAULT_FETCH_SIZE;
+            }
+            fetchSize = size;
+        }
+        return size;
+    }
+}
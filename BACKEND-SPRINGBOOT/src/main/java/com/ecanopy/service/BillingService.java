@@ -27,12 +27,12 @@ public class BillingService {
     private final com.ecanopy.repository.ResidentRepository residentRepository;
 
     public BigDecimal getTotalPendingDues() {
-        BigDecimal total = maintenanceBillRepository.sumTotalAmountByStatus(BillStatus.PENDING);
+        BigDecimal total = maintenanceBillRepository.sumTotalAmountByStatusIn(BillStatus.OUTSTANDING);
         return total != null ? total : BigDecimal.ZERO;
     }
 
     public BigDecimal getTotalPendingDuesBySociety(Long societyId) {
-        BigDecimal total = maintenanceBillRepository.sumTotalAmountBySocietyAndStatus(societyId, BillStatus.PENDING);
+        BigDecimal total = maintenanceBillRepository.sumTotalAmountBySocietyAndStatusIn(societyId, BillStatus.OUTSTANDING);
         return total != null ? total : BigDecimal.ZERO;
     }
 
@@ -67,7 +67,7 @@ public class BillingService {
                 .toList();
     }
 
-    private MaintenanceBillResponse mapToResponse(MaintenanceBill bill) {
+    MaintenanceBillResponse mapToResponse(MaintenanceBill bill) {
         String residentName = "Unoccupied";
 
         // Fetch residents for the flat
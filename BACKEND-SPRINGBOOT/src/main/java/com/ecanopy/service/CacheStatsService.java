@@ -0,0 +1,74 @@
+package com.ecanopy.service;
+
+import com.ecanopy.dto.response.CacheRegionStatsResponse;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Hibernate second-level / query cache statistics and manual eviction.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CacheStatsService {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public Map<String, Object> getCacheStats() {
+        Statistics statistics = sessionFactory().getStatistics();
+
+        List<CacheRegionStatsResponse> regions = Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(name -> toResponse(name, statistics.getCacheRegionStatistics(name)))
+                .collect(Collectors.toList());
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        response.put("secondLevelCacheHitCount", statistics.getSecondLevelCacheHitCount());
+        response.put("secondLevelCacheMissCount", statistics.getSecondLevelCacheMissCount());
+        response.put("secondLevelCachePutCount", statistics.getSecondLevelCachePutCount());
+        response.put("queryCacheHitCount", statistics.getQueryCacheHitCount());
+        response.put("queryCacheMissCount", statistics.getQueryCacheMissCount());
+        response.put("queryCachePutCount", statistics.getQueryCachePutCount());
+        response.put("entityLoadCount", statistics.getEntityLoadCount());
+        response.put("queryExecutionCount", statistics.getQueryExecutionCount());
+        response.put("regions", regions);
+        return response;
+    }
+
+    /** Drop all cached entities and queries, e.g. after editing reference tables directly in SQL. */
+    public void evictAll() {
+        sessionFactory().getCache().evictAllRegions();
+        log.info("Second-level and query caches evicted");
+    }
+
+    private SessionFactory sessionFactory() {
+        return entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    private CacheRegionStatsResponse toResponse(String name, CacheRegionStatistics region) {
+        if (region == null) {
+            return CacheRegionStatsResponse.builder().region(name).build();
+        }
+        long lookups = region.getHitCount() + region.getMissCount();
+        return CacheRegionStatsResponse.builder()
+                .region(name)
+                .hitCount(region.getHitCount())
+                .missCount(region.getMissCount())
+                .putCount(region.getPutCount())
+                .elementCountInMemory(region.getElementCountInMemory() >= 0 ? region.getElementCountInMemory() : null)
+                .hitRatio(lookups == 0 ? 0.0 : (double) region.getHitCount() / lookups)
+                .build();
+    }
+}
@@ -8,10 +8,14 @@ import com.ecanopy.entity.Resident;
 import com.ecanopy.entity.User;
 import com.ecanopy.entity.enums.ComplaintStatus;
 import com.ecanopy.entity.enums.Priority;
+import com.ecanopy.exception.ForbiddenException;
 import com.ecanopy.exception.NotFoundException;
 import com.ecanopy.dto.request.CommentRequest;
 import com.ecanopy.dto.response.CommentResponse;
 import com.ecanopy.entity.ComplaintComment;
+import com.ecanopy.dto.response.ComplaintAttachmentResponse;
+import com.ecanopy.entity.ComplaintAttachment;
+import com.ecanopy.repository.ComplaintAttachmentRepository;
 import com.ecanopy.repository.ComplaintCommentRepository;
 import com.ecanopy.repository.ComplaintRepository;
 import com.ecanopy.repository.ResidentRepository;
@@ -19,6 +23,8 @@ import com.ecanopy.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -31,10 +37,15 @@ public class ComplaintService {
 
         private final ComplaintRepository complaintRepository;
         private final ComplaintCommentRepository complaintCommentRepository;
+        private final ComplaintAttachmentRepository complaintAttachmentRepository;
+        private final FileStorageService fileStorageService;
         private final ResidentRepository residentRepository;
         private final UserRepository userRepository;
         private final AuthService authService; // To get current user
 
+        private static final List<String> STAFF_ROLES = List.of("ROLE_ADMIN", "ROLE_RWA_PRESIDENT",
+                        "ROLE_RWA_SECRETARY", "ROLE_STAFF");
+
         @Transactional
         public ComplaintResponse createComplaint(ComplaintRequest request) {
                 User currentUser = userRepository.findByEmail(authService.getCurrentUser().getEmail())
@@ -92,7 +103,7 @@ public class ComplaintService {
                 return mapToComplaintResponse(complaintRepository.save(complaint));
         }
 
-        private ComplaintResponse mapToComplaintResponse(Complaint complaint) {
+        ComplaintResponse mapToComplaintResponse(Complaint complaint) {
                 UserResponse currentUser = authService.getCurrentUser();
                 boolean hasUnread = false;
 
@@ -169,6 +180,76 @@ public class ComplaintService {
                                 .collect(Collectors.toList());
         }
 
+        @Transactional
+        public ComplaintAttachmentResponse addAttachment(Long complaintId, MultipartFile file) {
+                Complaint complaint = complaintRepository.findById(complaintId)
+                                .orElseThrow(() -> new NotFoundException("Complaint not found"));
+                checkAccess(complaint);
+
+                // Content-addressed: re-attaching the same photo reuses the stored blob
+                String url = fileStorageService.store(file);
+
+                ComplaintAttachment attachment = ComplaintAttachment.builder()
+                                .complaint(complaint)
+                                .fileName(StringUtils.cleanPath(file.getOriginalFilename() != null
+                                                ? file.getOriginalFilename()
+                                                : "attachment"))
+                                .filePath(url)
+                                .contentType(file.getContentType())
+                                .fileSize(file.getSize())
+                                .build();
+                ComplaintAttachment saved = complaintAttachmentRepository.save(attachment);
+                fileStorageService.retain(url);
+                return mapToAttachmentResponse(saved);
+        }
+
+        public List<ComplaintAttachmentResponse> getAttachments(Long complaintId) {
+                Complaint complaint = complaintRepository.findById(complaintId)
+                                .orElseThrow(() -> new NotFoundException("Complaint not found"));
+                checkAccess(complaint);
+
+                return complaintAttachmentRepository.findByComplaintComplaintId(complaintId).stream()
+                                .map(this::mapToAttachmentResponse)
+                                .collect(Collectors.toList());
+        }
+
+        /**
+         * Same scope as the complaint lists: residents reach only the complaints they filed
+         * (getMyComplaints), society staff those of their own society (getComplaintsBySociety),
+         * and admins without a society every complaint (getAllComplaints).
+         */
+        private void checkAccess(Complaint complaint) {
+                User currentUser = userRepository.findByEmail(authService.getCurrentUser().getEmail())
+                                .orElseThrow(() -> new NotFoundException("User not found"));
+                Resident owner = complaint.getResident();
+                if (owner.getUser().getId().equals(currentUser.getId())) {
+                        return;
+                }
+                List<String> roles = currentUser.getRoles().stream().map(r -> r.getName()).toList();
+                if (roles.contains("ROLE_SUPER_ADMIN")) {
+                        return;
+                }
+                if (roles.stream().noneMatch(STAFF_ROLES::contains)) {
+                        throw new ForbiddenException("Not your complaint");
+                }
+                Long societyId = owner.getFlat().getBuilding().getSociety().getSocietyId();
+                if (currentUser.getSocietyId() != null ? !currentUser.getSocietyId().equals(societyId)
+                                : !roles.contains("ROLE_ADMIN")) {
+                        throw new ForbiddenException("Complaint belongs to another society");
+                }
+        }
+
+        private ComplaintAttachmentResponse mapToAttachmentResponse(ComplaintAttachment attachment) {
+                return ComplaintAttachmentResponse.builder()
+                                .id(attachment.getComplaintAttachmentId())
+                                .fileName(attachment.getFileName())
+                                .url(attachment.getFilePath())
+                                .contentType(attachment.getContentType())
+                                .fileSize(attachment.getFileSize())
+                                .uploadedAt(attachment.getUploadedAt())
+                                .build();
+        }
+
         private CommentResponse mapToCommentResponse(ComplaintComment comment) {
                 String role = comment.getUser().getRoles().stream()
                                 .findFirst()
@@ -1,8 +1,11 @@
 package com.ecanopy.service;
 
+import com.ecanopy.config.DomainMetrics;
 import com.ecanopy.entity.*;
+import com.ecanopy.entity.enums.QrSubjectType;
 import com.ecanopy.repository.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -10,8 +13,6 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Optional;
-import java.util.Random;
 
 @Service
 @RequiredArgsConstructor
@@ -22,6 +23,11 @@ public class DomesticHelpService {
     private final DailyHelpLogRepository dailyHelpLogRepository;
     private final UserRepository userRepository;
     private final FlatRepository flatRepository;
+    private final QrTokenService qrTokenService;
+    private final PresenceRegistry presenceRegistry;
+    private final HelpAttendanceService helpAttendanceService;
+    private final PassCodeAllocator passCodeAllocator;
+    private final DomainMetrics metrics;
 
     public List<DomesticHelp> getAllStaff(Long societyId) {
         return domesticHelpRepository.findBySocietySocietyId(societyId);
@@ -29,34 +35,47 @@ public class DomesticHelpService {
 
     @Transactional
     public Map<String, Object> recordStaffAccess(String passCode, String scannedBy) {
+        DomainMetrics.Recording metric = metrics.record(DomainMetrics.STAFF_SCAN);
+        try {
+            return metric.success(recordStaffAccess(passCode, scannedBy, metric));
+        } catch (RuntimeException e) {
+            throw metric.failure(e);
+        }
+    }
+
+    private Map<String, Object> recordStaffAccess(String passCode, String scannedBy, DomainMetrics.Recording metric) {
         DomesticHelp staff = domesticHelpRepository.findByPassCode(passCode)
                 .orElseThrow(() -> new com.ecanopy.exception.NotFoundException("Invalid Pass Code"));
+        if (staff.getSociety() != null) {
+            metric.society(staff.getSociety().getSocietyId());
+        }
 
         if (!staff.getIsActive()) {
             throw new IllegalStateException("Staff member is inactive");
         }
 
-        User guard = userRepository.findByEmail(scannedBy).orElse(null);
-        Optional<DailyHelpLog> activeLog = dailyHelpLogRepository
-                .findTopByDomesticHelp_HelpIdAndExitTimeIsNullOrderByEntryTimeDesc(staff.getHelpId());
-
-        String type;
-        if (activeLog.isPresent()) {
-            // Record Exit
-            DailyHelpLog log = activeLog.get();
-            log.setExitTime(LocalDateTime.now());
-            dailyHelpLogRepository.save(log);
-            type = "EXIT";
-        } else {
-            // Record Entry
-            DailyHelpLog log = DailyHelpLog.builder()
-                    .domesticHelp(staff)
-                    .guard(guard)
-                    .entryTime(LocalDateTime.now())
-                    .build();
-            dailyHelpLogRepository.save(log);
-            type = "ENTRY";
-        }
+        Long societyId = staff.getSociety() != null ? staff.getSociety().getSocietyId() : null;
+        String type = presenceRegistry.scan(societyId, PresenceRegistry.Kind.STAFF_PASS_CODE, staff.getHelpId(),
+                openLogId -> {
+                    if (openLogId != null) {
+                        // Record Exit on the open log, no need to load it
+                        LocalDateTime exitTime = LocalDateTime.now();
+                        if (dailyHelpLogRepository.closeLog(openLogId, exitTime) > 0 && societyId != null) {
+                            dailyHelpLogRepository.findEntryTime(openLogId).ifPresent(entryTime ->
+                                    helpAttendanceService.record(List.of(new HelpAttendanceService.Visit(
+                                            staff.getHelpId(), societyId, entryTime, exitTime))));
+                        }
+                        return new PresenceRegistry.Transition<>("EXIT", null);
+                    }
+                    // Record Entry
+                    DailyHelpLog log = DailyHelpLog.builder()
+                            .domesticHelp(staff)
+                            .guard(userRepository.findByEmail(scannedBy).orElse(null))
+                            .entryTime(LocalDateTime.now())
+                            .build();
+                    dailyHelpLogRepository.save(log);
+                    return new PresenceRegistry.Transition<>("ENTRY", log.getLogId());
+                });
 
         Map<String, Object> response = new HashMap<>();
         response.put("name", staff.getName());
@@ -72,21 +91,33 @@ public class DomesticHelpService {
                 .orElseThrow(() -> new com.ecanopy.exception.NotFoundException("Society not found"));
 
         staff.setSociety(society);
-        if (staff.getPassCode() == null || staff.getPassCode().isEmpty()) {
-            staff.setPassCode(generateUniquePassCode());
+        if (staff.getPassCode() != null && !staff.getPassCode().isEmpty()) {
+            passCodeAllocator.markUsed(staff.getPassCode());
+            return domesticHelpRepository.save(staff);
+        }
+        staff.setPassCode(passCodeAllocator.next());
+        try {
+            return domesticHelpRepository.save(staff);
+        } catch (DataIntegrityViolationException e) {
+            // The code was assigned by hand on another instance since its block was claimed
+            staff.setPassCode(passCodeAllocator.next());
+            return domesticHelpRepository.save(staff);
         }
-        return domesticHelpRepository.save(staff);
     }
 
     public List<DomesticHelp> getStaffByFlat(Long flatId) {
         return domesticHelpRepository.findByFlats_FlatId(flatId);
     }
 
+    @Transactional
     public void deleteStaff(Long staffId) {
-        if (!domesticHelpRepository.existsById(staffId)) {
-            throw new com.ecanopy.exception.NotFoundException("Staff not found");
-        }
-        domesticHelpRepository.deleteById(staffId);
+        DomesticHelp staff = domesticHelpRepository.findById(staffId)
+                .orElseThrow(() -> new com.ecanopy.exception.NotFoundException("Staff not found"));
+        domesticHelpRepository.delete(staff);
+        helpAttendanceService.deleteHelp(staffId);
+        // Gate passes of removed staff must stop working before they expire; guard devices
+        // also learn of the removal from this revocation
+        qrTokenService.revoke(QrSubjectType.HELP, staffId, staff.getSociety().getSocietyId(), null);
     }
 
     @Transactional
@@ -110,13 +141,4 @@ public class DomesticHelpService {
         staff.getFlats().remove(flat);
         domesticHelpRepository.save(staff);
     }
-
-    private String generateUniquePassCode() {
-        Random random = new Random();
-        String code;
-        do {
-            code = String.format("%06d", random.nextInt(1000000));
-        } while (domesticHelpRepository.existsByPassCode(code));
-        return code;
-    }
 }
@@ -1,5 +1,6 @@
 package com.ecanopy.service;
 
+import com.ecanopy.config.DomainMetrics;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
@@ -16,6 +17,7 @@ import org.springframework.stereotype.Service;
 public class EmailService {
 
     private final JavaMailSender mailSender;
+    private final DomainMetrics metrics;
 
     @Value("${spring.mail.username}")
     private String fromEmail;
@@ -25,6 +27,7 @@ public class EmailService {
         log.info("Sending visitor alert email to: {}", toEmail);
         log.debug("Visitor: {}, Purpose: {}, Resident: {}", visitorName, purpose, residentName);
 
+        DomainMetrics.Recording metric = metrics.record(DomainMetrics.EMAIL_SEND, "template", "visitor_alert");
         try {
             MimeMessage message = mailSender.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
@@ -33,33 +36,19 @@ public class EmailService {
             helper.setTo(toEmail);
             helper.setSubject("🔔 ECanopy: Visitor Arrival Alert - " + visitorName);
 
-            String htmlContent = String.format(
-                    "<html><body style='font-family: Arial, sans-serif; line-height: 1.6; color: #333;'>" +
-                            "<div style='max-width: 600px; margin: 0 auto; padding: 20px; border: 1px solid #eee; border-radius: 10px;'>"
-                            +
-                            "<h2 style='color: #4f46e5;'>Hello %s,</h2>" +
-                            "<p>This is an automated alert from <strong>ECanopy Security</strong>.</p>" +
-                            "<div style='background: #f9fafb; padding: 15px; border-radius: 8px; margin: 20px 0;'>" +
-                            "<p style='margin: 5px 0;'><strong>Visitor:</strong> %s</p>" +
-                            "<p style='margin: 5px 0;'><strong>Purpose:</strong> %s</p>" +
-                            "<p style='margin: 5px 0;'><strong>Location:</strong> Society Main Gate</p>" +
-                            "</div>" +
-                            "<p>If you were not expecting this visitor, please contact the security gate immediately.</p>"
-                            +
-                            "<hr style='border: none; border-top: 1px solid #eee; margin: 20px 0;'>" +
-                            "<p style='font-size: 12px; color: #999;'>Sent with ❤️ from ECanopy Society Management System.</p>"
-                            +
-                            "</div></body></html>",
-                    residentName, visitorName, purpose);
+            String htmlContent = renderVisitorAlert(residentName, visitorName, purpose);
 
             helper.setText(htmlContent, true);
 
             log.debug("Sending visitor alert email via JavaMailSender");
             mailSender.send(message);
+            metric.stop(DomainMetrics.SUCCESS);
             log.info("Visitor alert email sent successfully to: {}", toEmail);
         } catch (MessagingException e) {
+            metric.failure(e);
             log.error("Failed to send visitor alert email to {}: {}", toEmail, e.getMessage());
         } catch (Exception e) {
+            metric.failure(e);
             log.error("Unexpected error in email service for {}: {}", toEmail, e.getMessage());
         }
     }
@@ -69,6 +58,7 @@ public class EmailService {
         log.info("Sending join request status email to: {} with status: {}", toEmail, status);
         log.debug("Society: {}, Flat: {}", societyName, flatNumber);
 
+        DomainMetrics.Recording metric = metrics.record(DomainMetrics.EMAIL_SEND, "template", "join_request");
         try {
             MimeMessage message = mailSender.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
@@ -81,33 +71,14 @@ public class EmailService {
                 : "❌ Application Update - " + societyName;
             helper.setSubject("ECanopy: " + subject);
 
-            String statusColor = status.equalsIgnoreCase("APPROVED") ? "#10b981" : "#ef4444";
-            String statusIcon = status.equalsIgnoreCase("APPROVED") ? "✅" : "❌";
-
-            String htmlContent = String.format(
-                "<html><body style='font-family: Arial, sans-serif; line-height: 1.6; color: #333;'>" +
-                "<div style='max-width: 600px; margin: 0 auto; padding: 20px; border: 1px solid #eee; border-radius: 10px;'>" +
-                "<h2 style='color: #4f46e5;'>Hello %s,</h2>" +
-                "<p>Your residency application for <strong>%s</strong> has been reviewed.</p>" +
-                "<div style='background: #f9fafb; padding: 20px; border-radius: 8px; margin: 20px 0; border-left: 4px solid %s;'>" +
-                "<p style='margin: 5px 0;'><strong>Status:</strong> <span style='color: %s; font-weight: bold;'>%s %s</span></p>" +
-                "<p style='margin: 5px 0;'><strong>Society:</strong> %s</p>" +
-                "<p style='margin: 5px 0;'><strong>Flat:</strong> %s</p>" +
-                "</div>" +
-                "<p>%s</p>" +
-                "<hr style='border: none; border-top: 1px solid #eee; margin: 20px 0;'>" +
-                "<p style='font-size: 12px; color: #999;'>Sent with ❤️ from ECanopy Society Management System.</p>" +
-                "</div></body></html>",
-                residentName, societyName, statusColor, statusColor, statusIcon, status, societyName, flatNumber,
-                status.equalsIgnoreCase("APPROVED") 
-                    ? "Welcome to the community! You can now access all society features including amenity bookings, maintenance bills, and community notices."
-                    : "If you have any questions about this decision, please contact the society office for more information."
-            );
+            String htmlContent = renderJoinRequestStatus(residentName, status, societyName, flatNumber);
 
             helper.setText(htmlContent, true);
             mailSender.send(message);
+            metric.stop(DomainMetrics.SUCCESS);
             log.info("Join request status email sent successfully to: {}", toEmail);
         } catch (Exception e) {
+            metric.failure(e);
             log.error("Failed to send join request status email to {}: {}", toEmail, e.getMessage());
         }
     }
@@ -118,6 +89,7 @@ public class EmailService {
         log.info("Sending booking status email to: {} for amenity: {}", toEmail, amenityName);
         log.debug("Booking status: {}, Date: {}, Time: {}", status, date, time);
 
+        DomainMetrics.Recording metric = metrics.record(DomainMetrics.EMAIL_SEND, "template", "booking_status");
         try {
             MimeMessage message = mailSender.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
@@ -128,36 +100,88 @@ public class EmailService {
                     : "❌ Booking Update: " + amenityName;
             helper.setSubject("ECanopy: " + subject);
 
-            String statusColor = status.equalsIgnoreCase("APPROVED") ? "#10b981" : "#ef4444";
-
-            String htmlContent = String.format(
-                    "<html><body style='font-family: Arial, sans-serif; line-height: 1.6; color: #333;'>" +
-                            "<div style='max-width: 600px; margin: 0 auto; padding: 20px; border: 1px solid #eee; border-radius: 10px;'>"
-                            +
-                            "<h2 style='color: #4f46e5;'>Hello %s,</h2>" +
-                            "<p>Your booking request for <strong>%s</strong> has been updated.</p>" +
-                            "<div style='background: #f9fafb; padding: 20px; border-radius: 8px; margin: 20px 0; border-left: 4px solid %s;'>"
-                            +
-                            "<p style='margin: 5px 0;'><strong>Status:</strong> <span style='color: %s; font-weight: bold;'>%s</span></p>"
-                            +
-                            "<p style='margin: 5px 0;'><strong>Date:</strong> %s</p>" +
-                            "<p style='margin: 5px 0;'><strong>Time:</strong> %s</p>" +
-                            "</div>" +
-                            "<p>%s</p>" +
-                            "<hr style='border: none; border-top: 1px solid #eee; margin: 20px 0;'>" +
-                            "<p style='font-size: 12px; color: #999;'>Sent with ❤️ from ECanopy Society Management System.</p>"
-                            +
-                            "</div></body></html>",
-                    residentName, amenityName, statusColor, statusColor, status, date, time,
-                    status.equalsIgnoreCase("APPROVED")
-                            ? "Please ensure you follow the amenity rules during your visit."
-                            : "If you have any questions, please contact the society office.");
+            String htmlContent = renderBookingStatus(residentName, amenityName, status, date, time);
 
             helper.setText(htmlContent, true);
             mailSender.send(message);
+            metric.stop(DomainMetrics.SUCCESS);
             log.info("Booking status email sent successfully to: {}", toEmail);
         } catch (Exception e) {
+            metric.failure(e);
             log.error("Failed to send booking status email to {}: {}", toEmail, e.getMessage());
         }
     }
+
+    String renderVisitorAlert(String residentName, String visitorName, String purpose) {
+        return String.format(
+                "<html><body style='font-family: Arial, sans-serif; line-height: 1.6; color: #333;'>" +
+                        "<div style='max-width: 600px; margin: 0 auto; padding: 20px; border: 1px solid #eee; border-radius: 10px;'>"
+                        +
+                        "<h2 style='color: #4f46e5;'>Hello %s,</h2>" +
+                        "<p>This is an automated alert from <strong>ECanopy Security</strong>.</p>" +
+                        "<div style='background: #f9fafb; padding: 15px; border-radius: 8px; margin: 20px 0;'>" +
+                        "<p style='margin: 5px 0;'><strong>Visitor:</strong> %s</p>" +
+                        "<p style='margin: 5px 0;'><strong>Purpose:</strong> %s</p>" +
+                        "<p style='margin: 5px 0;'><strong>Location:</strong> Society Main Gate</p>" +
+                        "</div>" +
+                        "<p>If you were not expecting this visitor, please contact the security gate immediately.</p>"
+                        +
+                        "<hr style='border: none; border-top: 1px solid #eee; margin: 20px 0;'>" +
+                        "<p style='font-size: 12px; color: #999;'>Sent with ❤️ from ECanopy Society Management System.</p>"
+                        +
+                        "</div></body></html>",
+                residentName, visitorName, purpose);
+    }
+
+    String renderJoinRequestStatus(String residentName, String status, String societyName, String flatNumber) {
+        String statusColor = status.equalsIgnoreCase("APPROVED") ? "#10b981" : "#ef4444";
+        String statusIcon = status.equalsIgnoreCase("APPROVED") ? "✅" : "❌";
+
+        return String.format(
+            "<html><body style='font-family: Arial, sans-serif; line-height: 1.6; color: #333;'>" +
+            "<div style='max-width: 600px; margin: 0 auto; padding: 20px; border: 1px solid #eee; border-radius: 10px;'>" +
+            "<h2 style='color: #4f46e5;'>Hello %s,</h2>" +
+            "<p>Your residency application for <strong>%s</strong> has been reviewed.</p>" +
+            "<div style='background: #f9fafb; padding: 20px; border-radius: 8px; margin: 20px 0; border-left: 4px solid %s;'>" +
+            "<p style='margin: 5px 0;'><strong>Status:</strong> <span style='color: %s; font-weight: bold;'>%s %s</span></p>" +
+            "<p style='margin: 5px 0;'><strong>Society:</strong> %s</p>" +
+            "<p style='margin: 5px 0;'><strong>Flat:</strong> %s</p>" +
+            "</div>" +
+            "<p>%s</p>" +
+            "<hr style='border: none; border-top: 1px solid #eee; margin: 20px 0;'>" +
+            "<p style='font-size: 12px; color: #999;'>Sent with ❤️ from ECanopy Society Management System.</p>" +
+            "</div></body></html>",
+            residentName, societyName, statusColor, statusColor, statusIcon, status, societyName, flatNumber,
+            status.equalsIgnoreCase("APPROVED") 
+                ? "Welcome to the community! You can now access all society features including amenity bookings, maintenance bills, and community notices."
+                : "If you have any questions about this decision, please contact the society office for more information."
+        );
+    }
+
+    String renderBookingStatus(String residentName, String amenityName, String status, String date, String time) {
+        String statusColor = status.equalsIgnoreCase("APPROVED") ? "#10b981" : "#ef4444";
+
+        return String.format(
+                "<html><body style='font-family: Arial, sans-serif; line-height: 1.6; color: #333;'>" +
+                        "<div style='max-width: 600px; margin: 0 auto; padding: 20px; border: 1px solid #eee; border-radius: 10px;'>"
+                        +
+                        "<h2 style='color: #4f46e5;'>Hello %s,</h2>" +
+                        "<p>Your booking request for <strong>%s</strong> has been updated.</p>" +
+                        "<div style='background: #f9fafb; padding: 20px; border-radius: 8px; margin: 20px 0; border-left: 4px solid %s;'>"
+                        +
+                        "<p style='margin: 5px 0;'><strong>Status:</strong> <span style='color: %s; font-weight: bold;'>%s</span></p>"
+                        +
+                        "<p style='margin: 5px 0;'><strong>Date:</strong> %s</p>" +
+                        "<p style='margin: 5px 0;'><strong>Time:</strong> %s</p>" +
+                        "</div>" +
+                        "<p>%s</p>" +
+                        "<hr style='border: none; border-top: 1px solid #eee; margin: 20px 0;'>" +
+                        "<p style='font-size: 12px; color: #999;'>Sent with ❤️ from ECanopy Society Management System.</p>"
+                        +
+                        "</div></body></html>",
+                residentName, amenityName, statusColor, statusColor, status, date, time,
+                status.equalsIgnoreCase("APPROVED")
+                        ? "Please ensure you follow the amenity rules during your visit."
+                        : "If you have any questions, please contact the society office.");
+    }
 }
@@ -0,0 +1,331 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.FileUploadProperties;
+import com.ecanopy.entity.StoredFile;
+import com.ecanopy.exception.BadRequestException;
+import com.ecanopy.repository.ComplaintAttachmentRepository;
+import com.ecanopy.repository.ItemRepository;
+import com.ecanopy.repository.StoredFileRepository;
+import com.ecanopy.repository.VisitorRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-addressed storage for uploaded files.
+ *
+ * Files are stored once per unique SHA-256 under {@code <blob-directory>/<first two hex chars>/<sha>.<ext>}
+ * and served as {@code /uploads/blobs/...}. Entities holding a blob URL call {@link #retain(String)} /
+ * {@link #release(String)} so the nightly GC can delete blobs nobody points at any more.
+ * URLs outside the blob namespace (legacy UUID_ uploads) are ignored by the reference counting.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FileStorageService {
+
+    public static final String BLOB_URL_PREFIX = "/uploads/blobs/";
+    public static final String GZIP_SUFFIX = ".gz";
+
+    // Plain-text data formats, the only uploads worth precompressing; one is only ever stored,
+    // and so precompressed, once file.upload.allowed-extensions lists it (the default does not)
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of(".txt", ".csv", ".json");
+    private static final long MIN_COMPRESS_SIZE = 1024;
+    // Blob files the GC has set aside while it deletes their row; .tmp, so they are never served
+    private static final String SET_ASIDE_SUFFIX = ".gc.tmp";
+
+    private final StoredFileRepository storedFileRepository;
+    private final VisitorRepository visitorRepository;
+    private final ItemRepository itemRepository;
+    private final ComplaintAttachmentRepository complaintAttachmentRepository;
+    private final FileUploadProperties fileUploadProperties;
+    private final ImageDerivativeService imageDerivativeService;
+
+    /**
+     * Store the upload, returning the URL of the (possibly pre-existing) blob.
+     * A freshly stored blob starts with refCount 0; it survives until the GC grace
+     * period elapses unless an entity retains it first.
+     */
+    public String store(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new BadRequestException("File is empty");
+        }
+        String filename = StringUtils.cleanPath(file.getOriginalFilename() != null ? file.getOriginalFilename() : "");
+        if (filename.contains("..")) {
+            throw new BadRequestException("Filename contains invalid path sequence " + filename);
+        }
+        String extension = extensionOf(filename);
+        // Blobs are served from the app origin, so anything a browser would run (html, svg, js) stays out
+        if (!allowedExtensions().contains(extension)) {
+            throw new BadRequestException("File type not allowed; allowed types are "
+                    + fileUploadProperties.getAllowedExtensions());
+        }
+        Path blobRoot = blobRoot();
+        Path temp = null;
+        try {
+            Files.createDirectories(blobRoot);
+            temp = Files.createTempFile(blobRoot, "upload-", ".tmp");
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size;
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest);
+                    OutputStream out = Files.newOutputStream(temp)) {
+                size = in.transferTo(out);
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            String relativePath = sha256.substring(0, 2) + "/" + sha256 + extension;
+
+            Optional<StoredFile> existing = storedFileRepository.findBySha256(sha256);
+            // Restart the grace period so a concurrent GC pass does not reap it; a targeted
+            // UPDATE, so a retain/release racing this upload keeps its refCount change.
+            // Nothing touched means the GC removed the row meanwhile: store it afresh.
+            if (existing.isPresent()
+                    && storedFileRepository.touch(existing.get().getStoredFileId(), LocalDateTime.now()) == 1) {
+                StoredFile storedFile = existing.get();
+                Path target = blobRoot.resolve(storedFile.getRelativePath());
+                if (Files.exists(target)) {
+                    Files.deleteIfExists(temp);
+                } else {
+                    // Row survived but the file was lost: restore it from this upload
+                    moveIntoPlace(temp, target);
+                }
+                return BLOB_URL_PREFIX + storedFile.getRelativePath();
+            }
+
+            moveIntoPlace(temp, blobRoot.resolve(relativePath));
+            if (size >= MIN_COMPRESS_SIZE && COMPRESSIBLE_EXTENSIONS.contains(extension)) {
+                writeGzipSibling(blobRoot.resolve(relativePath), size);
+            }
+            StoredFile storedFile;
+            try {
+                storedFile = storedFileRepository.saveAndFlush(StoredFile.builder()
+                        .sha256(sha256)
+                        .relativePath(relativePath)
+                        .contentType(file.getContentType())
+                        .fileSize(size)
+                        .refCount(0)
+                        .updatedAt(LocalDateTime.now())
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                // Same content uploaded concurrently; the other request's row wins
+                return storedFileRepository.findBySha256(sha256)
+                        .map(s -> BLOB_URL_PREFIX + s.getRelativePath())
+                        .orElseThrow(() -> e);
+            }
+            imageDerivativeService.scheduleDerivatives(sha256, storedFile.getRelativePath());
+            return BLOB_URL_PREFIX + relativePath;
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not store file " + file.getOriginalFilename() + ". Please try again!", ex);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Best effort; stale temp files are harmless
+                }
+            }
+        }
+    }
+
+    /** Record a new reference to the blob behind {@code url}. No-op for non-blob URLs. */
+    @Transactional
+    public void retain(String url) {
+        String sha256 = sha256Of(url);
+        if (sha256 != null) {
+            storedFileRepository.incrementRefCount(sha256, LocalDateTime.now());
+        }
+    }
+
+    /** Drop a reference to the blob behind {@code url}. No-op for non-blob URLs. */
+    @Transactional
+    public void release(String url) {
+        String sha256 = sha256Of(url);
+        if (sha256 != null) {
+            storedFileRepository.decrementRefCount(sha256, LocalDateTime.now());
+        }
+    }
+
+    /** Move one reference from {@code oldUrl} to {@code newUrl}. */
+    @Transactional
+    public void replace(String oldUrl, String newUrl) {
+        if (oldUrl != null && oldUrl.equals(newUrl)) {
+            return;
+        }
+        retain(newUrl);
+        release(oldUrl);
+    }
+
+    /**
+     * Delete blobs that have had no references for the configured grace period.
+     * Reference counts are re-verified against the owning tables before deleting,
+     * so a missed retain() can never cause a referenced file to disappear.
+     */
+    @Scheduled(cron = "#{@fileUploadProperties.gc.cron}")
+    public void collectGarbage() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(fileUploadProperties.getGc().getGraceHours());
+        int batchSize = fileUploadProperties.getGc().getBatchSize();
+        Path blobRoot = blobRoot();
+        int deleted = 0;
+        int repaired = 0;
+        long lastSeenId = 0;
+
+        while (true) {
+            List<StoredFile> candidates = storedFileRepository
+                    .findByRefCountLessThanEqualAndUpdatedAtBeforeAndStoredFileIdGreaterThanOrderByStoredFileIdAsc(
+                            0, cutoff, lastSeenId, PageRequest.of(0, batchSize));
+            if (candidates.isEmpty()) {
+                break;
+            }
+            for (StoredFile candidate : candidates) {
+                lastSeenId = candidate.getStoredFileId();
+                String url = BLOB_URL_PREFIX + candidate.getRelativePath();
+                long references = visitorRepository.countByPhotoUrl(url)
+                        + itemRepository.countByImageUrl(url)
+                        + itemRepository.countByVideoUrl(url)
+                        + complaintAttachmentRepository.countByFilePath(url);
+                if (references > 0) {
+                    storedFileRepository.resetRefCount(candidate.getStoredFileId(), (int) references,
+                            LocalDateTime.now());
+                    repaired++;
+                    continue;
+                }
+                try {
+                    if (delete(blobRoot, candidate, cutoff)) {
+                        deleted++;
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not delete orphaned blob {}: {}", candidate.getRelativePath(), e.getMessage());
+                }
+            }
+        }
+        if (deleted > 0 || repaired > 0) {
+            log.info("Blob GC finished: {} orphaned blobs deleted, {} reference counts repaired", deleted, repaired);
+        }
+    }
+
+    private Set<String> allowedExtensions() {
+        return StringUtils.commaDelimitedListToSet(fileUploadProperties.getAllowedExtensions()).stream()
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .map(extension -> "." + extension.toLowerCase())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Delete an orphaned blob's files and row. The files are moved aside before the row goes:
+     * a store() of the same content that then finds no row writes a fresh file, which this
+     * never touches. If the row survives (retained or re-uploaded meanwhile), they are put back.
+     */
+    private boolean delete(Path blobRoot, StoredFile candidate, LocalDateTime cutoff) throws IOException {
+        List<Path> setAside = new ArrayList<>();
+        boolean deleted = false;
+        try {
+            for (String suffix : List.of("", GZIP_SUFFIX)) {
+                Path file = blobRoot.resolve(candidate.getRelativePath() + suffix);
+                if (Files.exists(file)) {
+                    Path aside = file.resolveSibling(file.getFileName() + SET_ASIDE_SUFFIX);
+                    moveIntoPlace(file, aside);
+                    setAside.add(aside);
+                }
+            }
+            deleted = storedFileRepository.deleteIfUnreferenced(candidate.getStoredFileId(), cutoff) == 1;
+        } finally {
+            for (Path aside : setAside) {
+                String name = aside.getFileName().toString();
+                Path file = aside.resolveSibling(name.substring(0, name.length() - SET_ASIDE_SUFFIX.length()));
+                // Kept row but the file is there again: a concurrent store() put the same content back
+                if (deleted || Files.exists(file)) {
+                    Files.deleteIfExists(aside);
+                } else {
+                    moveIntoPlace(aside, file);
+                }
+            }
+        }
+        if (deleted) {
+            imageDerivativeService.deleteDerivatives(candidate.getSha256());
+        }
+        return deleted;
+    }
+
+    private Path blobRoot() {
+        return Paths.get(fileUploadProperties.getBlobDirectory()).toAbsolutePath().normalize();
+    }
+
+    private void moveIntoPlace(Path temp, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Precompressed copy served to clients sending Accept-Encoding: gzip, so the
+     * media handler never compresses on the fly. Dropped if it saves under 10%.
+     */
+    private void writeGzipSibling(Path blob, long size) {
+        Path gzip = blob.resolveSibling(blob.getFileName() + GZIP_SUFFIX);
+        try {
+            Path temp = Files.createTempFile(blob.getParent(), "gzip-", ".tmp");
+            try {
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                    Files.copy(blob, out);
+                }
+                if (Files.size(temp) < size * 0.9) {
+                    moveIntoPlace(temp, gzip);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("Could not precompress {}: {}", blob.getFileName(), e.getMessage());
+        }
+    }
+
+    private static String sha256Of(String url) {
+        if (url == null || !url.startsWith(BLOB_URL_PREFIX)) {
+            return null;
+        }
+        String name = url.substring(url.lastIndexOf('/') + 1);
+        int dot = name.indexOf('.');
+        String sha256 = dot >= 0 ? name.substring(0, dot) : name;
+        return sha256.length() == 64 ? sha256 : null;
+    }
+
+    private static String extensionOf(String filename) {
+        String extension = StringUtils.getFilenameExtension(filename);
+        if (extension == null || extension.length() > 10 || !extension.matches("[A-Za-z0-9]+")) {
+            return "";
+        }
+        return "." + extension.toLowerCase();
+    }
+}
@@ -0,0 +1,940 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.DomainMetrics;
+import com.ecanopy.config.GuardSyncProperties;
+import com.ecanopy.config.QrTokenProperties;
+import com.ecanopy.dto.request.GuardScanBatchRequest;
+import com.ecanopy.dto.request.GuardScanEventRequest;
+import com.ecanopy.dto.response.GuardScanBatchResponse;
+import com.ecanopy.dto.response.GuardSyncSnapshotResponse;
+import com.ecanopy.entity.User;
+import com.ecanopy.entity.enums.AccessType;
+import com.ecanopy.entity.enums.ApprovalStatus;
+import com.ecanopy.entity.enums.GuardScanStatus;
+import com.ecanopy.entity.enums.GuardScanType;
+import com.ecanopy.entity.enums.HelpType;
+import com.ecanopy.entity.enums.QrSubjectType;
+import com.ecanopy.entity.enums.VisitorCategory;
+import com.ecanopy.exception.BadRequestException;
+import com.ecanopy.exception.ForbiddenException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Offline guard devices
+ * A device keeps a copy of its society's pass data (pre-approval codes, staff pass codes,
+ * frequent visitors and QR revocations), refreshed by deltas on the updated_at columns,
+ * and queues the scans it makes while the gate is offline. QR signatures cannot be checked
+ * on the device; they are verified here, as of the time of the scan.
+ *
+ * An uploaded batch is resolved with a handful of IN-list lookups, then written in one
+ * transaction with JDBC batches into access_logs, daily_help_logs and visitor_logs, and
+ * recorded in guard_scan_events under the device's event id, so a re-sent batch returns the
+ * original results. Conflicts are resolved per event, in scan-time order:
+ * - a pass that was expired, revoked or out of its validity window at scan time is rejected
+ * - a pre-approval code is used by the first scan that commits, later ones are rejected
+ * - ENTRY/EXIT follows the guard's choice when given, otherwise toggles the subject's
+ *   presence; an ENTRY of someone inside (EXIT of someone outside) is a duplicate
+ * - a second scan of the same subject within ecanopy.sync.repeat-scan-window is a duplicate
+ * - a visitor exit for a log already closed is a duplicate
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GuardSyncService {
+
+    private static final String DEFAULT_GATE = "Main Gate";
+    private static final String PRE_APPROVAL_PURPOSE = "Digital Pre-Approved Entry";
+    private static final int MAX_REASON = 200;
+
+    private static final String PRE_APPROVAL_SELECT = "SELECT p.id, p.code, p.visitor_name, p.visitor_phone, "
+            + "p.category, p.flat_id, f.flat_number, p.valid_from, p.valid_until, p.is_used, bl.society_id "
+            + "FROM pre_approvals p "
+            + "JOIN flats f ON f.flat_id = p.flat_id "
+            + "JOIN buildings bl ON bl.building_id = f.building_id ";
+    private static final String STAFF_SELECT = "SELECT help_id, name, help_type, pass_code, is_active, society_id "
+            + "FROM domestic_helps ";
+    private static final String FREQUENT_VISITOR_SELECT = "SELECT fv.id, fv.visitor_id, v.full_name, v.phone, "
+            + "fv.category, fv.purpose, fv.flat_id, f.flat_number, fv.valid_from, fv.valid_until, fv.is_active, "
+            + "bl.society_id "
+            + "FROM frequent_visitors fv "
+            + "JOIN visitors v ON v.visitor_id = fv.visitor_id "
+            + "JOIN flats f ON f.flat_id = fv.flat_id "
+            + "JOIN buildings bl ON bl.building_id = f.building_id ";
+    private static final String REVOCATIONS = "SELECT subject_type, subject_id, revoked_at FROM qr_revocations "
+            + "WHERE society_id = ? AND revoked_at > ?";
+    // Staff delete always revokes the staff's gate passes, so a revocation without a staff row is a removal
+    private static final String REMOVED_STAFF = "SELECT r.subject_id FROM qr_revocations r "
+            + "LEFT JOIN domestic_helps h ON h.help_id = r.subject_id "
+            + "WHERE r.subject_type = 'HELP' AND r.society_id = ? AND r.revoked_at > ? AND h.help_id IS NULL";
+    private static final String VISITOR_LOGS = "SELECT l.log_id, l.out_time, bl.society_id FROM visitor_logs l "
+            + "JOIN flats f ON f.flat_id = l.flat_id "
+            + "JOIN buildings bl ON bl.building_id = f.building_id "
+            + "WHERE l.log_id IN (%s)";
+
+    private static final String INSERT_ACCESS_LOG = "INSERT INTO access_logs "
+            + "(user_id, domestic_help_id, access_type, timestamp, scanned_by) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_HELP_LOG = "INSERT INTO daily_help_logs "
+            + "(help_id, guard_id, entry_time, exit_time) VALUES (?, ?, ?, ?)";
+    private static final String CLOSE_HELP_LOG = "UPDATE daily_help_logs SET exit_time = GREATEST(entry_time, ?) "
+            + "WHERE log_id = ? AND exit_time IS NULL";
+    private static final String USE_PRE_APPROVAL = "UPDATE pre_approvals SET is_used = TRUE, updated_at = ? "
+            + "WHERE id = ? AND is_used = FALSE";
+    private static final String INSERT_VISITOR_LOG = "INSERT INTO visitor_logs (category, purpose, in_time, out_time, "
+            + "status, visitor_id, flat_id, checked_in_by_user_id, gate_entry) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String CLOSE_VISITOR_LOG = "UPDATE visitor_logs SET out_time = GREATEST(in_time, ?) "
+            + "WHERE log_id = ? AND out_time IS NULL";
+    private static final String INSERT_EVENT = "INSERT INTO guard_scan_events (event_id, device_id, society_id, "
+            + "scan_type, subject_key, access_type, status, reason, log_id, occurred_at, received_at, scanned_by) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final QrTokenService qrTokenService;
+    private final QrTokenProperties qrTokenProperties;
+    private final PresenceRegistry presenceRegistry;
+    private final HelpAttendanceService helpAttendanceService;
+    private final OccupancyService occupancyService;
+    private final OverstayMonitor overstayMonitor;
+    private final ActivePassIndex activePassIndex;
+    private final VisitorSearchIndex visitorSearchIndex;
+    private final VisitorDirectory visitorDirectory;
+    private final GuardSyncProperties syncProperties;
+    private final DomainMetrics metrics;
+
+    private record PreApprovalRow(long id, String visitorName, String visitorPhone, VisitorCategory category,
+            long flatId, LocalDateTime validFrom, LocalDateTime validUntil, boolean used, long societyId) {
+    }
+
+    private record StaffRow(long helpId, boolean active, long societyId) {
+    }
+
+    private record FrequentVisitorRow(long id, long visitorId, VisitorCategory category, String purpose,
+            long flatId, LocalDate validFrom, LocalDate validUntil, boolean active, long societyId) {
+    }
+
+    /** A row to insert; its id is known once the batch has run. */
+    private abstract static class Row {
+        Long id;
+    }
+
+    private static final class AccessRow extends Row {
+        Long userId;
+        Long helpId;
+        AccessType accessType;
+        LocalDateTime at;
+    }
+
+    private static final class HelpLogRow extends Row {
+        long helpId;
+        LocalDateTime entryTime;
+        LocalDateTime exitTime;
+    }
+
+    private static final class VisitorLogRow extends Row {
+        Scan checkIn;
+        Long visitorId;
+        String visitorName;
+        String visitorPhone;
+        long flatId;
+        VisitorCategory category;
+        String purpose;
+        LocalDateTime inTime;
+        LocalDateTime outTime;
+        String gate;
+        boolean cancelled;
+    }
+
+    /** One uploaded event and what became of it. */
+    private static final class Scan {
+        final GuardScanEventRequest request;
+        LocalDateTime at;
+        String subjectKey;
+        PresenceRegistry.Subject subject;
+        QrSubjectType qrType;
+        PreApprovalRow preApproval;
+        FrequentVisitorRow frequentVisitor;
+        Long exitLogId; // VISITOR_EXIT of a committed log
+        Scan exitOf; // VISITOR_EXIT of a check-in in the same batch
+        Row row;
+        Long closedLogId; // visitor log closed by this scan
+        GuardScanStatus status;
+        AccessType accessType;
+        String reason;
+        boolean replayed;
+
+        Scan(GuardScanEventRequest request) {
+            this.request = request;
+        }
+
+        boolean pending() {
+            return status == null;
+        }
+
+        void finish(GuardScanStatus status, String reason) {
+            this.status = status;
+            this.reason = reason != null && reason.length() > MAX_REASON ? reason.substring(0, MAX_REASON) : reason;
+        }
+
+        Long logId() {
+            return row != null ? row.id : closedLogId;
+        }
+    }
+
+    /**
+     * Pass data for a guard device: everything currently usable, or (with since) every row
+     * changed after the previous cursor.
+     */
+    public GuardSyncSnapshotResponse snapshot(Long societyId, LocalDateTime since) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean full = since == null;
+        LocalDateTime revokedSince = full ? now.minus(longestTokenLifetime()) : since;
+
+        List<GuardSyncSnapshotResponse.PreApprovalPass> preApprovals = full
+                ? jdbcTemplate.query(PRE_APPROVAL_SELECT + "WHERE bl.society_id = ? AND p.is_used = FALSE "
+                        + "AND p.valid_until > ? ORDER BY p.id", (rs, i) -> preApprovalPass(rs), societyId, now)
+                : jdbcTemplate.query(PRE_APPROVAL_SELECT + "WHERE bl.society_id = ? AND p.updated_at > ? "
+                        + "ORDER BY p.id", (rs, i) -> preApprovalPass(rs), societyId, since);
+        List<GuardSyncSnapshotResponse.StaffPass> staff = full
+                ? jdbcTemplate.query(STAFF_SELECT + "WHERE society_id = ? ORDER BY help_id",
+                        (rs, i) -> staffPass(rs), societyId)
+                : jdbcTemplate.query(STAFF_SELECT + "WHERE society_id = ? AND updated_at > ? ORDER BY help_id",
+                        (rs, i) -> staffPass(rs), societyId, since);
+        List<GuardSyncSnapshotResponse.FrequentVisitorPass> frequentVisitors = full
+                ? jdbcTemplate.query(FREQUENT_VISITOR_SELECT + "WHERE bl.society_id = ? AND fv.is_active = TRUE "
+                        + "AND fv.valid_until >= ? ORDER BY fv.id", (rs, i) -> frequentVisitorPass(rs), societyId,
+                        now.toLocalDate())
+                : jdbcTemplate.query(FREQUENT_VISITOR_SELECT + "WHERE bl.society_id = ? AND fv.updated_at > ? "
+                        + "ORDER BY fv.id", (rs, i) -> frequentVisitorPass(rs), societyId, since);
+        List<GuardSyncSnapshotResponse.Revocation> revocations = jdbcTemplate.query(REVOCATIONS,
+                (rs, i) -> GuardSyncSnapshotResponse.Revocation.builder()
+                        .subjectType(QrSubjectType.valueOf(rs.getString("subject_type")))
+                        .subjectId(rs.getLong("subject_id"))
+                        .revokedAt(rs.getTimestamp("revoked_at").toLocalDateTime())
+                        .build(),
+                societyId, revokedSince);
+        List<Long> removedStaffIds = full
+                ? List.of()
+                : jdbcTemplate.queryForList(REMOVED_STAFF, Long.class, societyId, since);
+
+        return GuardSyncSnapshotResponse.builder()
+                .societyId(societyId)
+                .full(full)
+                .cursor(now.minus(syncProperties.getCursorOverlap()))
+                .preApprovals(preApprovals)
+                .staff(staff)
+                .frequentVisitors(frequentVisitors)
+                .revocations(revocations)
+                .removedStaffIds(removedStaffIds)
+                .build();
+    }
+
+    /**
+     * Apply a batch of scans made by a guard device of the guard's society. Events already
+     * seen (same event id) return their original result and are not applied again.
+     */
+    public GuardScanBatchResponse ingest(GuardScanBatchRequest request, User guard) {
+        Long societyId = guard.getSocietyId();
+        if (societyId == null) {
+            throw new ForbiddenException("Guard is not associated with any society");
+        }
+        if (request.getEvents().size() > syncProperties.getMaxBatch()) {
+            throw new BadRequestException("At most " + syncProperties.getMaxBatch() + " events per upload");
+        }
+        DomainMetrics.Recording metric = metrics.record(DomainMetrics.GUARD_SYNC);
+        metric.society(societyId);
+        try {
+            List<Scan> scans;
+            try {
+                scans = ingest(request, guard, societyId);
+            } catch (DuplicateKeyException e) {
+                // The same events were uploaded concurrently (a retry racing the original): replay them
+                scans = ingest(request, guard, societyId);
+            }
+            return metric.success(response(scans));
+        } catch (RuntimeException e) {
+            throw metric.failure(e);
+        }
+    }
+
+    private List<Scan> ingest(GuardScanBatchRequest request, User guard, long societyId) {
+        long started = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        List<Scan> scans = request.getEvents().stream().map(Scan::new).toList();
+
+        replayKnownEvents(scans, societyId);
+        checkTimes(scans, now);
+        resolveQr(scans, societyId);
+        resolveStaff(scans, societyId);
+        resolvePreApprovals(scans, societyId);
+        resolveFrequentVisitors(scans, societyId);
+        resolveVisitorExits(scans, societyId);
+
+        transactionTemplate.executeWithoutResult(status -> apply(scans, request.getDeviceId(), guard, societyId, now));
+        log.info("Guard sync: {} events from device {} of society {} in {} ms", scans.size(),
+                request.getDeviceId(), societyId, (System.nanoTime() - started) / 1_000_000);
+        return scans;
+    }
+
+    /** Same event id uploaded before (or earlier in this batch): return what happened then. */
+    private void replayKnownEvents(List<Scan> scans, long societyId) {
+        Map<String, Scan> firstById = new HashMap<>();
+        for (Scan scan : scans) {
+            Scan first = firstById.putIfAbsent(scan.request.getEventId(), scan);
+            if (first != null) {
+                scan.replayed = true;
+                scan.finish(GuardScanStatus.DUPLICATE, "Event uploaded twice in this batch");
+            }
+        }
+        String sql = "SELECT event_id, access_type, status, reason, log_id FROM guard_scan_events "
+                + "WHERE society_id = ? AND event_id IN (" + placeholders(firstById.size()) + ")";
+        List<Object> args = new ArrayList<>();
+        args.add(societyId);
+        args.addAll(firstById.keySet());
+        jdbcTemplate.query(sql, rs -> {
+            Scan scan = firstById.get(rs.getString("event_id"));
+            scan.replayed = true;
+            scan.finish(GuardScanStatus.valueOf(rs.getString("status")), rs.getString("reason"));
+            String accessType = rs.getString("access_type");
+            scan.accessType = accessType != null ? AccessType.valueOf(accessType) : null;
+            long logId = rs.getLong("log_id");
+            scan.closedLogId = rs.wasNull() ? null : logId;
+        }, args.toArray());
+    }
+
+    private void checkTimes(List<Scan> scans, LocalDateTime now) {
+        LocalDateTime oldest = now.minus(syncProperties.getMaxEventAge());
+        LocalDateTime latest = now.plus(syncProperties.getClockSkew());
+        for (Scan scan : pending(scans)) {
+            LocalDateTime at = scan.request.getOccurredAt().truncatedTo(ChronoUnit.SECONDS);
+            if (at.isAfter(latest)) {
+                scan.finish(GuardScanStatus.REJECTED, "Scan time is in the future");
+            } else if (at.isBefore(oldest)) {
+                scan.finish(GuardScanStatus.REJECTED, "Scan is older than " + syncProperties.getMaxEventAge());
+            } else {
+                scan.at = at.isAfter(now) ? now : at; // small clock drift: count it as now
+            }
+        }
+    }
+
+    private void resolveQr(List<Scan> scans, long societyId) {
+        for (Scan scan : pending(scans, GuardScanType.QR)) {
+            try {
+                QrTokenService.QrToken qr = qrTokenService.verify(scan.request.getValue(), epochSecond(scan.at));
+                if (qr.societyId() != societyId) {
+                    scan.finish(GuardScanStatus.REJECTED, "QR code belongs to another society");
+                    continue;
+                }
+                scan.qrType = qr.type();
+                PresenceRegistry.Kind kind = qr.type() == QrSubjectType.RESIDENT
+                        ? PresenceRegistry.Kind.RESIDENT
+                        : PresenceRegistry.Kind.HELP;
+                scan.subject = new PresenceRegistry.Subject(societyId, kind, qr.subjectId());
+                scan.subjectKey = kind.name() + ":" + qr.subjectId();
+            } catch (BadRequestException | ForbiddenException e) {
+                scan.finish(GuardScanStatus.REJECTED, e.getMessage());
+            }
+        }
+    }
+
+    private void resolveStaff(List<Scan> scans, long societyId) {
+        List<Scan> staffScans = pending(scans, GuardScanType.STAFF_PASS_CODE);
+        Map<String, StaffRow> byCode = lookup(STAFF_SELECT + "WHERE pass_code IN (%s)",
+                values(staffScans, scan -> scan.request.getValue()),
+                rs -> rs.getString("pass_code"),
+                rs -> new StaffRow(rs.getLong("help_id"), rs.getBoolean("is_active"), rs.getLong("society_id")));
+        for (Scan scan : staffScans) {
+            StaffRow staff = byCode.get(scan.request.getValue());
+            if (staff == null || staff.societyId() != societyId) {
+                scan.finish(GuardScanStatus.REJECTED, "Invalid Pass Code");
+            } else if (!staff.active()) {
+                scan.finish(GuardScanStatus.REJECTED, "Staff member is inactive");
+            } else {
+                scan.subject = new PresenceRegistry.Subject(societyId, PresenceRegistry.Kind.STAFF_PASS_CODE,
+                        staff.helpId());
+                scan.subjectKey = PresenceRegistry.Kind.STAFF_PASS_CODE.name() + ":" + staff.helpId();
+            }
+        }
+    }
+
+    private void resolvePreApprovals(List<Scan> scans, long societyId) {
+        List<Scan> passScans = pending(scans, GuardScanType.PRE_APPROVAL);
+        Map<String, PreApprovalRow> byCode = lookup(PRE_APPROVAL_SELECT + "WHERE p.code IN (%s)",
+                values(passScans, scan -> scan.request.getValue()),
+                rs -> rs.getString("code"),
+                rs -> new PreApprovalRow(rs.getLong("id"), rs.getString("visitor_name"),
+                        rs.getString("visitor_phone"), VisitorCategory.valueOf(rs.getString("category")),
+                        rs.getLong("flat_id"), rs.getTimestamp("valid_from").toLocalDateTime(),
+                        rs.getTimestamp("valid_until").toLocalDateTime(), rs.getBoolean("is_used"),
+                        rs.getLong("society_id")));
+        for (Scan scan : passScans) {
+            PreApprovalRow pass = byCode.get(scan.request.getValue());
+            if (pass == null || pass.societyId() != societyId) {
+                scan.finish(GuardScanStatus.REJECTED, "Invalid or Used Pass Code");
+            } else if (pass.used()) {
+                scan.finish(GuardScanStatus.REJECTED, "Pass Code already used");
+            } else if (scan.at.isBefore(pass.validFrom()) || scan.at.isAfter(pass.validUntil())) {
+                scan.finish(GuardScanStatus.REJECTED, "Pass Code was expired or not yet active at scan time");
+            } else {
+                scan.preApproval = pass;
+                scan.subjectKey = GuardScanType.PRE_APPROVAL.name() + ":" + pass.id();
+            }
+        }
+    }
+
+    private void resolveFrequentVisitors(List<Scan> scans, long societyId) {
+        List<Scan> visitorScans = pending(scans, GuardScanType.FREQUENT_VISITOR);
+        List<Object> ids = new ArrayList<>();
+        for (Scan scan : visitorScans) {
+            Long id = parseId(scan.request.getValue());
+            if (id == null) {
+                scan.finish(GuardScanStatus.REJECTED, "Invalid frequent visitor id");
+            } else {
+                ids.add(id);
+            }
+        }
+        Map<Long, FrequentVisitorRow> byId = lookup(FREQUENT_VISITOR_SELECT + "WHERE fv.id IN (%s)", ids,
+                rs -> rs.getLong("id"),
+                rs -> new FrequentVisitorRow(rs.getLong("id"), rs.getLong("visitor_id"),
+                        VisitorCategory.valueOf(rs.getString("category")), rs.getString("purpose"),
+                        rs.getLong("flat_id"), rs.getDate("valid_from").toLocalDate(),
+                        rs.getDate("valid_until").toLocalDate(), rs.getBoolean("is_active"),
+                        rs.getLong("society_id")));
+        for (Scan scan : pending(visitorScans)) {
+            FrequentVisitorRow visitor = byId.get(parseId(scan.request.getValue()));
+            LocalDate day = scan.at.toLocalDate();
+            if (visitor == null || visitor.societyId() != societyId) {
+                scan.finish(GuardScanStatus.REJECTED, "Frequent visitor not found");
+            } else if (!visitor.active() || day.isBefore(visitor.validFrom()) || day.isAfter(visitor.validUntil())) {
+                scan.finish(GuardScanStatus.REJECTED, "Frequent visitor pass was not valid at scan time");
+            } else {
+                scan.frequentVisitor = visitor;
+                scan.subjectKey = GuardScanType.FREQUENT_VISITOR.name() + ":" + visitor.id();
+            }
+        }
+    }
+
+    /** The log to close: a check-in earlier in this batch, a check-in event uploaded before, or a log id. */
+    private void resolveVisitorExits(List<Scan> scans, long societyId) {
+        List<Scan> exits = pending(scans, GuardScanType.VISITOR_EXIT);
+        if (exits.isEmpty()) {
+            return;
+        }
+        Map<String, Scan> checkIns = new HashMap<>();
+        for (Scan scan : scans) {
+            if (!scan.replayed && (scan.request.getType() == GuardScanType.PRE_APPROVAL
+                    || scan.request.getType() == GuardScanType.FREQUENT_VISITOR)) {
+                checkIns.put(scan.request.getEventId(), scan);
+            }
+        }
+        List<Scan> unresolved = new ArrayList<>();
+        for (Scan scan : exits) {
+            Scan checkIn = checkIns.get(scan.request.getValue());
+            if (checkIn != null) {
+                scan.exitOf = checkIn;
+            } else {
+                unresolved.add(scan);
+            }
+        }
+        Map<String, Long> uploadedCheckIns = lookup("SELECT event_id, log_id FROM guard_scan_events "
+                + "WHERE society_id = " + societyId + " AND log_id IS NOT NULL AND event_id IN (%s)",
+                values(unresolved, scan -> scan.request.getValue()),
+                rs -> rs.getString("event_id"), rs -> rs.getLong("log_id"));
+        for (Scan scan : unresolved) {
+            Long logId = uploadedCheckIns.get(scan.request.getValue());
+            scan.exitLogId = logId != null ? logId : parseId(scan.request.getValue());
+            if (scan.exitLogId == null) {
+                scan.finish(GuardScanStatus.REJECTED, "Visitor log not found");
+            }
+        }
+
+        List<Scan> byLogId = pending(unresolved);
+        Map<Long, Object[]> logs = lookup(VISITOR_LOGS, values(byLogId, scan -> scan.exitLogId),
+                rs -> rs.getLong("log_id"),
+                rs -> new Object[] { rs.getTimestamp("out_time"), rs.getLong("society_id") });
+        for (Scan scan : byLogId) {
+            Object[] visitorLog = logs.get(scan.exitLogId);
+            if (visitorLog == null || (long) visitorLog[1] != societyId) {
+                scan.finish(GuardScanStatus.REJECTED, "Visitor log not found");
+            } else if (visitorLog[0] != null) {
+                scan.accessType = AccessType.EXIT;
+                scan.closedLogId = scan.exitLogId;
+                scan.finish(GuardScanStatus.DUPLICATE, "Visitor already checked out");
+            } else {
+                scan.subjectKey = GuardScanType.VISITOR_EXIT.name() + ":" + scan.exitLogId;
+            }
+        }
+    }
+
+    /** Decide every pending scan in scan-time order, then write the batch. Runs in one transaction. */
+    private void apply(List<Scan> scans, String deviceId, User guard, long societyId, LocalDateTime now) {
+        List<Scan> ordered = new ArrayList<>(pending(scans));
+        ordered.sort(Comparator.comparing(scan -> scan.at));
+
+        Set<PresenceRegistry.Subject> subjects = new HashSet<>();
+        ordered.forEach(scan -> {
+            if (scan.subject != null) {
+                subjects.add(scan.subject);
+            }
+        });
+        PresenceRegistry.Batch presence = subjects.isEmpty() ? null : presenceRegistry.lockAll(subjects);
+        Map<String, List<LocalDateTime>> recentScans = recentScans(ordered);
+
+        // Presence within the batch: a committed entry log id, a new entry row, or null (outside)
+        Map<PresenceRegistry.Subject, Object> inside = new HashMap<>();
+        Set<Long> usedPreApprovals = new HashSet<>();
+        List<AccessRow> accessRows = new ArrayList<>();
+        List<HelpLogRow> helpRows = new ArrayList<>();
+        List<Object[]> helpCloses = new ArrayList<>();
+        List<VisitorLogRow> visitorRows = new ArrayList<>();
+        List<Scan> visitorCloses = new ArrayList<>();
+
+        for (Scan scan : ordered) {
+            if (scan.subject != null) {
+                List<LocalDateTime> times = recentScans.computeIfAbsent(scan.subjectKey, key -> new ArrayList<>());
+                if (isRepeat(times, scan.at)) {
+                    scan.finish(GuardScanStatus.DUPLICATE, "Repeat scan within "
+                            + syncProperties.getRepeatScanWindow().toSeconds() + "s");
+                    continue;
+                }
+                Object state = inside.containsKey(scan.subject)
+                        ? inside.get(scan.subject)
+                        : presence.entryLogId(scan.subject);
+                AccessType action = scan.request.getDirection() != null
+                        ? scan.request.getDirection()
+                        : state != null ? AccessType.EXIT : AccessType.ENTRY;
+                scan.accessType = action;
+                if ((action == AccessType.ENTRY) == (state != null)) {
+                    scan.finish(GuardScanStatus.DUPLICATE,
+                            action == AccessType.ENTRY ? "Already inside" : "Already outside");
+                    continue;
+                }
+                if (scan.subject.kind() == PresenceRegistry.Kind.STAFF_PASS_CODE) {
+                    if (action == AccessType.ENTRY) {
+                        HelpLogRow row = new HelpLogRow();
+                        row.helpId = scan.subject.subjectId();
+                        row.entryTime = scan.at;
+                        helpRows.add(row);
+                        scan.row = row;
+                        inside.put(scan.subject, row);
+                    } else {
+                        if (state instanceof HelpLogRow row) {
+                            row.exitTime = scan.at; // entered earlier in this batch
+                            scan.row = row;
+                        } else {
+                            helpCloses.add(new Object[] { Timestamp.valueOf(scan.at), state });
+                            scan.closedLogId = (Long) state;
+                        }
+                        inside.put(scan.subject, null);
+                    }
+                } else {
+                    AccessRow row = new AccessRow();
+                    if (scan.qrType == QrSubjectType.RESIDENT) {
+                        row.userId = scan.subject.subjectId();
+                    } else {
+                        row.helpId = scan.subject.subjectId();
+                    }
+                    row.accessType = action;
+                    row.at = scan.at;
+                    accessRows.add(row);
+                    scan.row = row;
+                    inside.put(scan.subject, action == AccessType.ENTRY ? row : null);
+                }
+                times.add(scan.at);
+                scan.finish(GuardScanStatus.APPLIED, null);
+            } else if (scan.preApproval != null || scan.frequentVisitor != null) {
+                VisitorLogRow row = new VisitorLogRow();
+                row.checkIn = scan;
+                if (scan.preApproval != null) {
+                    if (!usedPreApprovals.add(scan.preApproval.id())) {
+                        scan.finish(GuardScanStatus.DUPLICATE, "Pass Code already used in this upload");
+                        continue;
+                    }
+                    row.visitorName = scan.preApproval.visitorName();
+                    row.visitorPhone = scan.preApproval.visitorPhone();
+                    row.flatId = scan.preApproval.flatId();
+                    row.category = scan.preApproval.category();
+                    row.purpose = PRE_APPROVAL_PURPOSE;
+                } else {
+                    row.visitorId = scan.frequentVisitor.visitorId();
+                    row.flatId = scan.frequentVisitor.flatId();
+                    row.category = scan.frequentVisitor.category();
+                    row.purpose = scan.frequentVisitor.purpose();
+                }
+                row.inTime = scan.at;
+                row.gate = scan.request.getGate() != null && !scan.request.getGate().isBlank()
+                        ? scan.request.getGate().trim()
+                        : DEFAULT_GATE;
+                visitorRows.add(row);
+                scan.row = row;
+                scan.accessType = AccessType.ENTRY;
+                scan.finish(GuardScanStatus.APPLIED, null);
+            } else if (scan.exitOf != null) {
+                scan.accessType = AccessType.EXIT;
+                if (!(scan.exitOf.row instanceof VisitorLogRow row) || scan.exitOf.status != GuardScanStatus.APPLIED) {
+                    scan.finish(GuardScanStatus.REJECTED, "Check-in of this visitor was not applied");
+                } else if (row.outTime != null) {
+                    scan.finish(GuardScanStatus.DUPLICATE, "Visitor already checked out");
+                } else {
+                    row.outTime = scan.at;
+                    scan.row = row;
+                    scan.finish(GuardScanStatus.APPLIED, null);
+                }
+            } else if (scan.exitLogId != null) {
+                scan.accessType = AccessType.EXIT;
+                scan.closedLogId = scan.exitLogId;
+                visitorCloses.add(scan);
+                scan.finish(GuardScanStatus.APPLIED, null);
+            }
+        }
+
+        usePreApprovals(visitorRows, now);
+        for (Scan scan : ordered) {
+            if (scan.exitOf != null && scan.exitOf.row == null && scan.status == GuardScanStatus.APPLIED) {
+                scan.row = null;
+                scan.finish(GuardScanStatus.REJECTED, "Check-in of this visitor was not applied");
+            }
+        }
+        insertVisitorLogs(visitorRows, guard, now);
+        closeVisitorLogs(visitorCloses);
+        insertAccessLogs(accessRows, guard);
+        insertHelpLogs(helpRows, helpCloses, guard, societyId);
+        insertEvents(scans, deviceId, guard, societyId, now);
+
+        if (presence != null) {
+            inside.forEach((subject, state) -> presence.set(subject,
+                    state instanceof Row row ? row.id : (Long) state));
+        }
+        for (VisitorLogRow row : visitorRows) {
+            if (!row.cancelled && row.outTime == null) {
+                occupancyService.visitorIn(societyId, row.id, row.gate);
+            }
+            if (!row.cancelled && row.checkIn.preApproval != null) {
+                activePassIndex.preApprovalUsed(row.flatId, row.checkIn.preApproval.id());
+            }
+            if (!row.cancelled) {
+                visitorSearchIndex.visited(societyId, row.visitorId);
+            }
+        }
+        for (Scan scan : visitorCloses) {
+            if (scan.status == GuardScanStatus.APPLIED) {
+                occupancyService.visitorOut(societyId, scan.exitLogId);
+                overstayMonitor.visitorOut(scan.exitLogId);
+            }
+        }
+    }
+
+    /** Scan times of the batch's subjects already applied from earlier uploads, around the batch. */
+    private Map<String, List<LocalDateTime>> recentScans(List<Scan> ordered) {
+        Map<String, List<LocalDateTime>> times = new HashMap<>();
+        List<Object> keys = values(ordered.stream().filter(scan -> scan.subject != null).toList(),
+                scan -> scan.subjectKey);
+        if (keys.isEmpty()) {
+            return times;
+        }
+        Duration window = syncProperties.getRepeatScanWindow();
+        List<Object> args = new ArrayList<>(keys);
+        args.add(ordered.get(0).at.minus(window));
+        args.add(ordered.get(ordered.size() - 1).at.plus(window));
+        jdbcTemplate.query("SELECT subject_key, occurred_at FROM guard_scan_events WHERE status = 'APPLIED' "
+                + "AND subject_key IN (" + placeholders(keys.size()) + ") AND occurred_at BETWEEN ? AND ?",
+                rs -> {
+                    times.computeIfAbsent(rs.getString("subject_key"), key -> new ArrayList<>())
+                            .add(rs.getTimestamp("occurred_at").toLocalDateTime());
+                }, args.toArray());
+        return times;
+    }
+
+    private boolean isRepeat(List<LocalDateTime> times, LocalDateTime at) {
+        Duration window = syncProperties.getRepeatScanWindow();
+        return times.stream().anyMatch(time -> Duration.between(time, at).abs().compareTo(window) < 0);
+    }
+
+    /** Claim the pre-approval codes; a code used meanwhile (live scan, other device) loses. */
+    private void usePreApprovals(List<VisitorLogRow> rows, LocalDateTime now) {
+        List<VisitorLogRow> claims = rows.stream().filter(row -> row.checkIn.preApproval != null).toList();
+        if (claims.isEmpty()) {
+            return;
+        }
+        int[] counts = jdbcTemplate.batchUpdate(USE_PRE_APPROVAL, claims.stream()
+                .map(row -> new Object[] { Timestamp.valueOf(now), row.checkIn.preApproval.id() })
+                .toList());
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                VisitorLogRow row = claims.get(i);
+                row.cancelled = true;
+                row.checkIn.row = null;
+                row.checkIn.finish(GuardScanStatus.REJECTED, "Pass Code already used");
+            }
+        }
+    }
+
+    private void insertVisitorLogs(List<VisitorLogRow> rows, User guard, LocalDateTime now) {
+        List<VisitorLogRow> live = rows.stream().filter(row -> !row.cancelled).toList();
+        if (live.isEmpty()) {
+            return;
+        }
+        // Pre-approved visitors are found by phone, or created
+        List<VisitorLogRow> unknown = live.stream().filter(row -> row.visitorId == null).toList();
+        Map<String, String> names = new LinkedHashMap<>();
+        unknown.forEach(row -> names.putIfAbsent(row.visitorPhone, row.visitorName));
+        Map<String, Long> byPhone = visitorDirectory.resolve(names, now);
+        unknown.forEach(row -> row.visitorId = byPhone.get(row.visitorPhone));
+
+        List<Long> ids = insert(INSERT_VISITOR_LOG, "log_id", live.stream()
+                .map(row -> new Object[] { row.category.name(), row.purpose, Timestamp.valueOf(row.inTime),
+                        row.outTime != null ? Timestamp.valueOf(row.outTime) : null, ApprovalStatus.APPROVED.name(),
+                        row.visitorId, row.flatId, guard.getId(), row.gate })
+                .toList());
+        for (int j = 0; j < live.size(); j++) {
+            live.get(j).id = ids.get(j);
+        }
+    }
+
+    private void closeVisitorLogs(List<Scan> closes) {
+        if (closes.isEmpty()) {
+            return;
+        }
+        int[] counts = jdbcTemplate.batchUpdate(CLOSE_VISITOR_LOG, closes.stream()
+                .map(scan -> new Object[] { Timestamp.valueOf(scan.at), scan.exitLogId })
+                .toList());
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                closes.get(i).finish(GuardScanStatus.DUPLICATE, "Visitor already checked out");
+            }
+        }
+    }
+
+    private void insertAccessLogs(List<AccessRow> rows, User guard) {
+        List<Long> ids = insert(INSERT_ACCESS_LOG, "id", rows.stream()
+                .map(row -> new Object[] { row.userId, row.helpId, row.accessType.name(), Timestamp.valueOf(row.at),
+                        guard.getEmail() })
+                .toList());
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).id = ids.get(i);
+        }
+    }
+
+    private void insertHelpLogs(List<HelpLogRow> rows, List<Object[]> closes, User guard, long societyId) {
+        List<Long> ids = insert(INSERT_HELP_LOG, "log_id", rows.stream()
+                .map(row -> new Object[] { row.helpId, guard.getId(), Timestamp.valueOf(row.entryTime),
+                        row.exitTime != null ? Timestamp.valueOf(row.exitTime) : null })
+                .toList());
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).id = ids.get(i);
+        }
+        // Visits closed by this batch go to the attendance rollups
+        List<HelpAttendanceService.Visit> visits = new ArrayList<>();
+        for (HelpLogRow row : rows) {
+            if (row.exitTime != null) {
+                visits.add(new HelpAttendanceService.Visit(row.helpId, societyId, row.entryTime, row.exitTime));
+            }
+        }
+        if (!closes.isEmpty()) {
+            int[] counts = jdbcTemplate.batchUpdate(CLOSE_HELP_LOG, closes);
+            List<Object> closed = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    closed.add(closes.get(i)[1]);
+                }
+            }
+            lookup("SELECT log_id, help_id, entry_time, exit_time FROM daily_help_logs WHERE log_id IN (%s)", closed,
+                    rs -> rs.getLong("log_id"),
+                    rs -> new HelpAttendanceService.Visit(rs.getLong("help_id"), societyId,
+                            rs.getTimestamp("entry_time").toLocalDateTime(),
+                            rs.getTimestamp("exit_time").toLocalDateTime()))
+                    .values().forEach(visits::add);
+        }
+        helpAttendanceService.record(visits);
+    }
+
+    private void insertEvents(List<Scan> scans, String deviceId, User guard, long societyId, LocalDateTime now) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Scan scan : scans) {
+            if (scan.replayed) {
+                continue;
+            }
+            LocalDateTime occurredAt = scan.at != null
+                    ? scan.at
+                    : scan.request.getOccurredAt().truncatedTo(ChronoUnit.SECONDS);
+            rows.add(new Object[] { scan.request.getEventId(), deviceId, societyId, scan.request.getType().name(),
+                    scan.subjectKey, scan.accessType != null ? scan.accessType.name() : null, scan.status.name(),
+                    scan.reason, scan.logId(), Timestamp.valueOf(occurredAt), Timestamp.valueOf(now),
+                    guard.getEmail() });
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_EVENT, rows);
+        }
+    }
+
+    /** Batch insert returning the generated keys, in row order. */
+    private List<Long> insert(String sql, String keyColumn, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sql, new String[] { keyColumn }),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        Object[] values = rows.get(i);
+                        for (int column = 0; column < values.length; column++) {
+                            statement.setObject(column + 1, values[column]);
+                        }
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                }, keys);
+        List<Long> ids = keys.getKeyList().stream()
+                .map(key -> ((Number) key.values().iterator().next()).longValue())
+                .toList();
+        if (ids.size() != rows.size()) {
+            throw new IllegalStateException("Expected " + rows.size() + " generated keys, got " + ids.size());
+        }
+        return ids;
+    }
+
+    private GuardScanBatchResponse response(List<Scan> scans) {
+        Map<GuardScanStatus, Long> counts = scans.stream()
+                .collect(Collectors.groupingBy(scan -> scan.status, Collectors.counting()));
+        return GuardScanBatchResponse.builder()
+                .applied(counts.getOrDefault(GuardScanStatus.APPLIED, 0L).intValue())
+                .duplicates(counts.getOrDefault(GuardScanStatus.DUPLICATE, 0L).intValue())
+                .rejected(counts.getOrDefault(GuardScanStatus.REJECTED, 0L).intValue())
+                .results(scans.stream()
+                        .map(scan -> GuardScanBatchResponse.Result.builder()
+                                .eventId(scan.request.getEventId())
+                                .status(scan.status)
+                                .accessType(scan.accessType)
+                                .reason(scan.reason)
+                                .logId(scan.logId())
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    /** Reads one value of the current row. */
+    @FunctionalInterface
+    private interface Column<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    private <K, V> Map<K, V> lookup(String sql, Collection<Object> keys, Column<K> key, Column<V> value) {
+        Map<K, V> rows = new HashMap<>();
+        if (keys.isEmpty()) {
+            return rows;
+        }
+        jdbcTemplate.query(String.format(sql, placeholders(keys.size())),
+                rs -> {
+                    rows.put(key.read(rs), value.read(rs));
+                }, keys.toArray());
+        return rows;
+    }
+
+    private static List<Scan> pending(List<Scan> scans) {
+        return scans.stream().filter(Scan::pending).toList();
+    }
+
+    private static List<Scan> pending(List<Scan> scans, GuardScanType type) {
+        return scans.stream().filter(scan -> scan.pending() && scan.request.getType() == type).toList();
+    }
+
+    private static <T> List<Object> values(List<T> items, Function<T, Object> value) {
+        return items.stream().map(value).distinct().collect(Collectors.toList());
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static Long parseId(String value) {
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long epochSecond(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    private Duration longestTokenLifetime() {
+        return qrTokenProperties.getHelpTtl().compareTo(qrTokenProperties.getResidentTtl()) > 0
+                ? qrTokenProperties.getHelpTtl()
+                : qrTokenProperties.getResidentTtl();
+    }
+
+    private static GuardSyncSnapshotResponse.PreApprovalPass preApprovalPass(ResultSet rs)
+            throws SQLException {
+        return GuardSyncSnapshotResponse.PreApprovalPass.builder()
+                .id(rs.getLong("id"))
+                .code(rs.getString("code"))
+                .visitorName(rs.getString("visitor_name"))
+                .visitorPhone(rs.getString("visitor_phone"))
+                .category(VisitorCategory.valueOf(rs.getString("category")))
+                .flatId(rs.getLong("flat_id"))
+                .flatNumber(rs.getString("flat_number"))
+                .validFrom(rs.getTimestamp("valid_from").toLocalDateTime())
+                .validUntil(rs.getTimestamp("valid_until").toLocalDateTime())
+                .used(rs.getBoolean("is_used"))
+                .build();
+    }
+
+    private static GuardSyncSnapshotResponse.StaffPass staffPass(ResultSet rs) throws SQLException {
+        return GuardSyncSnapshotResponse.StaffPass.builder()
+                .helpId(rs.getLong("help_id"))
+                .name(rs.getString("name"))
+                .helpType(HelpType.valueOf(rs.getString("help_type")))
+                .passCode(rs.getString("pass_code"))
+                .active(rs.getBoolean("is_active"))
+                .build();
+    }
+
+    private static GuardSyncSnapshotResponse.FrequentVisitorPass frequentVisitorPass(ResultSet rs)
+            throws SQLException {
+        return GuardSyncSnapshotResponse.FrequentVisitorPass.builder()
+                .id(rs.getLong("id"))
+                .visitorName(rs.getString("full_name"))
+                .visitorPhone(rs.getString("phone"))
+                .category(VisitorCategory.valueOf(rs.getString("category")))
+                .flatId(rs.getLong("flat_id"))
+                .flatNumber(rs.getString("flat_number"))
+                .validFrom(rs.getDate("valid_from").toLocalDate())
+                .validUntil(rs.getDate("valid_until").toLocalDate())
+                .active(rs.getBoolean("is_active"))
+                .build();
+    }
+}
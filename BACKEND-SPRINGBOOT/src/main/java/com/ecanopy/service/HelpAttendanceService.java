@@ -0,0 +1,291 @@
+package com.ecanopy.service;
+
+import com.ecanopy.dto.response.HelpAttendanceReportResponse;
+import com.ecanopy.entity.User;
+import com.ecanopy.entity.enums.HelpType;
+import com.ecanopy.exception.ForbiddenException;
+import com.ecanopy.exception.NotFoundException;
+import com.ecanopy.repository.ResidentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Domestic help attendance
+ * Each closed visit is added to help_attendance_daily (visits, minutes present) for the
+ * days it spans, when the exit scan is recorded, so the monthly reports only read the
+ * rollup rows of that month, however long the log history grows.
+ *
+ * Rows are added to with an UPDATE, and inserted when the day has none yet. Callers hold
+ * the staff member's presence lock (PresenceRegistry), so two visits of the same staff
+ * member never race for the same day's row.
+ *
+ * The table is rebuilt once from the closed daily_help_logs rows on the first startup, in
+ * one transaction that also inserts its backfill_markers row: an interrupted rebuild leaves
+ * no marker and runs again, and a second instance starting meanwhile waits on the marker
+ * and skips it. The rebuild first deletes the rows recorded by instances already running,
+ * whose row locks make their concurrent exit scans wait and add on top of the rebuilt rows.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HelpAttendanceService implements SmartInitializingSingleton {
+
+    private static final int BACKFILL_BATCH = 1000;
+    private static final String BACKFILL_MARKER = "help_attendance_daily";
+    private static final Set<String> MANAGER_ROLES = Set.of("ROLE_ADMIN", "ROLE_RWA_PRESIDENT",
+            "ROLE_RWA_SECRETARY", "ROLE_SUPER_ADMIN");
+
+    private static final String ADD = "UPDATE help_attendance_daily SET visits = visits + ?, "
+            + "minutes_present = minutes_present + ? WHERE help_id = ? AND attendance_date = ?";
+    private static final String INSERT = "INSERT INTO help_attendance_daily "
+            + "(help_id, society_id, attendance_date, visits, minutes_present) VALUES (?, ?, ?, ?, ?)";
+    private static final String CLOSED_VISITS = "SELECT l.help_id, h.society_id, l.entry_time, l.exit_time "
+            + "FROM daily_help_logs l JOIN domestic_helps h ON h.help_id = l.help_id "
+            + "WHERE l.exit_time IS NOT NULL ORDER BY l.help_id";
+    private static final String SOCIETY_REPORT = "SELECT a.help_id, h.name, h.help_type, COUNT(*) AS days_present, "
+            + "SUM(a.visits) AS visits, SUM(a.minutes_present) AS minutes_present "
+            + "FROM help_attendance_daily a JOIN domestic_helps h ON h.help_id = a.help_id "
+            + "WHERE a.society_id = ? AND a.attendance_date BETWEEN ? AND ? "
+            + "GROUP BY a.help_id, h.name, h.help_type ORDER BY h.name, a.help_id";
+    // Staff linked to the flat, with their rollup rows of the month (none when absent all month)
+    private static final String FLAT_REPORT = "SELECT h.help_id, h.name, h.help_type, a.attendance_date, a.visits, "
+            + "a.minutes_present "
+            + "FROM flat_domestic_helps fh JOIN domestic_helps h ON h.help_id = fh.help_id "
+            + "LEFT JOIN help_attendance_daily a ON a.help_id = h.help_id AND a.attendance_date BETWEEN ? AND ? "
+            + "WHERE fh.flat_id = ? ORDER BY h.name, h.help_id, a.attendance_date";
+    private static final String FLAT_SOCIETY = "SELECT bl.society_id FROM flats f "
+            + "JOIN buildings bl ON bl.building_id = f.building_id WHERE f.flat_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ResidentRepository residentRepository;
+
+    /** A closed visit of a staff member. */
+    public record Visit(long helpId, long societyId, LocalDateTime entryTime, LocalDateTime exitTime) {
+    }
+
+    private record DayKey(long helpId, LocalDate date) {
+    }
+
+    private static final class DayTotal {
+        final long societyId;
+        int visits;
+        int minutes;
+
+        DayTotal(long societyId) {
+            this.societyId = societyId;
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Integer done = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM backfill_markers WHERE name = ?",
+                Integer.class, BACKFILL_MARKER);
+        if (done != null && done > 0) {
+            return;
+        }
+        long started = System.nanoTime();
+        Integer inserted;
+        try {
+            inserted = transactionTemplate.execute(status -> {
+                try {
+                    // Waits while another instance's backfill is open; fails once it committed
+                    jdbcTemplate.update("INSERT INTO backfill_markers (name, completed_at) VALUES (?, ?)",
+                            BACKFILL_MARKER, Timestamp.valueOf(LocalDateTime.now()));
+                } catch (DuplicateKeyException e) {
+                    return null;
+                }
+                return backfill();
+            });
+        } catch (RuntimeException e) {
+            log.warn("Help attendance roll-up failed, retried on the next start: {}", e.getMessage());
+            return;
+        }
+        if (inserted == null) {
+            log.info("Help attendance already rolled up by another instance");
+            return;
+        }
+        if (inserted > 0) {
+            log.info("Help attendance rolled up from the log history: {} staff-days in {} ms", inserted,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    private int backfill() {
+        jdbcTemplate.update("DELETE FROM help_attendance_daily");
+        Map<DayKey, DayTotal> days = new LinkedHashMap<>();
+        long[] previousHelp = { -1 };
+        int[] inserted = { 0 };
+        jdbcTemplate.query(CLOSED_VISITS, rs -> {
+            long helpId = rs.getLong("help_id");
+            // Ordered by staff, so a staff member's days are complete once the next one starts
+            if (helpId != previousHelp[0] && days.size() >= BACKFILL_BATCH) {
+                inserted[0] += insert(days);
+                days.clear();
+            }
+            previousHelp[0] = helpId;
+            addVisit(days, new Visit(helpId, rs.getLong("society_id"),
+                    rs.getTimestamp("entry_time").toLocalDateTime(),
+                    rs.getTimestamp("exit_time").toLocalDateTime()));
+        });
+        return inserted[0] + insert(days);
+    }
+
+    /** Add closed visits to the daily rollups, in the caller's transaction. */
+    public void record(Collection<Visit> visits) {
+        if (visits.isEmpty()) {
+            return;
+        }
+        Map<DayKey, DayTotal> days = new LinkedHashMap<>();
+        visits.forEach(visit -> addVisit(days, visit));
+
+        List<Map.Entry<DayKey, DayTotal>> entries = new ArrayList<>(days.entrySet());
+        int[] counts = jdbcTemplate.batchUpdate(ADD, entries.stream()
+                .map(entry -> new Object[] { entry.getValue().visits, entry.getValue().minutes,
+                        entry.getKey().helpId(), Date.valueOf(entry.getKey().date()) })
+                .toList());
+        Map<DayKey, DayTotal> missing = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                missing.put(entries.get(i).getKey(), entries.get(i).getValue());
+            }
+        }
+        insert(missing);
+    }
+
+    /** Drop the rollups of a removed staff member, whose logs go with them. */
+    public void deleteHelp(Long helpId) {
+        jdbcTemplate.update("DELETE FROM help_attendance_daily WHERE help_id = ?", helpId);
+    }
+
+    /** Days present, visits and minutes of every staff member of the society seen in the month. */
+    public HelpAttendanceReportResponse societyReport(Long societyId, YearMonth month) {
+        List<HelpAttendanceReportResponse.Staff> staff = jdbcTemplate.query(SOCIETY_REPORT,
+                (rs, i) -> HelpAttendanceReportResponse.Staff.builder()
+                        .helpId(rs.getLong("help_id"))
+                        .name(rs.getString("name"))
+                        .helpType(HelpType.valueOf(rs.getString("help_type")))
+                        .daysPresent(rs.getInt("days_present"))
+                        .visits(rs.getInt("visits"))
+                        .minutesPresent(rs.getInt("minutes_present"))
+                        .build(),
+                societyId, Date.valueOf(month.atDay(1)), Date.valueOf(month.atEndOfMonth()));
+        return HelpAttendanceReportResponse.builder()
+                .societyId(societyId)
+                .month(month)
+                .staff(staff)
+                .build();
+    }
+
+    /** Day-by-day attendance in the month of each staff member linked to the flat. */
+    public HelpAttendanceReportResponse flatReport(Long flatId, YearMonth month, User user) {
+        Long societyId = jdbcTemplate.query(FLAT_SOCIETY, rs -> rs.next() ? rs.getLong(1) : null, flatId);
+        if (societyId == null) {
+            throw new NotFoundException("Flat not found");
+        }
+        requireFlatAccess(user, flatId, societyId);
+
+        Map<Long, HelpAttendanceReportResponse.Staff> staff = new LinkedHashMap<>();
+        jdbcTemplate.query(FLAT_REPORT, rs -> {
+            long helpId = rs.getLong("help_id");
+            HelpAttendanceReportResponse.Staff row = staff.get(helpId);
+            if (row == null) {
+                row = HelpAttendanceReportResponse.Staff.builder()
+                        .helpId(helpId)
+                        .name(rs.getString("name"))
+                        .helpType(HelpType.valueOf(rs.getString("help_type")))
+                        .days(new ArrayList<>())
+                        .build();
+                staff.put(helpId, row);
+            }
+            Date date = rs.getDate("attendance_date");
+            if (date != null) {
+                HelpAttendanceReportResponse.Day day = HelpAttendanceReportResponse.Day.builder()
+                        .date(date.toLocalDate())
+                        .visits(rs.getInt("visits"))
+                        .minutesPresent(rs.getInt("minutes_present"))
+                        .build();
+                row.getDays().add(day);
+                row.setDaysPresent(row.getDaysPresent() + 1);
+                row.setVisits(row.getVisits() + day.getVisits());
+                row.setMinutesPresent(row.getMinutesPresent() + day.getMinutesPresent());
+            }
+        }, Date.valueOf(month.atDay(1)), Date.valueOf(month.atEndOfMonth()), flatId);
+
+        return HelpAttendanceReportResponse.builder()
+                .societyId(societyId)
+                .flatId(flatId)
+                .month(month)
+                .staff(new ArrayList<>(staff.values()))
+                .build();
+    }
+
+    /** Managers see the flats of their society; residents only their own flat. */
+    private void requireFlatAccess(User user, Long flatId, Long societyId) {
+        if (hasRole(user, "ROLE_SUPER_ADMIN")) {
+            return;
+        }
+        if (user.getAuthorities().stream().anyMatch(authority -> MANAGER_ROLES.contains(authority.getAuthority()))
+                && societyId.equals(user.getSocietyId())) {
+            return;
+        }
+        boolean ownFlat = residentRepository.findByUserId(user.getId())
+                .map(resident -> resident.getFlat() != null && flatId.equals(resident.getFlat().getFlatId()))
+                .orElse(false);
+        if (!ownFlat) {
+            throw new ForbiddenException("Not your flat");
+        }
+    }
+
+    private int insert(Map<DayKey, DayTotal> days) {
+        if (days.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT, days.entrySet().stream()
+                .map(entry -> new Object[] { entry.getKey().helpId(), entry.getValue().societyId,
+                        Date.valueOf(entry.getKey().date()), entry.getValue().visits, entry.getValue().minutes })
+                .toList());
+        return days.size();
+    }
+
+    /** Split the visit at midnight; the visit itself counts on the day it started. */
+    private static void addVisit(Map<DayKey, DayTotal> days, Visit visit) {
+        LocalDateTime entry = visit.entryTime();
+        LocalDateTime exit = visit.exitTime().isBefore(entry) ? entry : visit.exitTime();
+        for (LocalDate date = entry.toLocalDate(); !date.isAfter(exit.toLocalDate()); date = date.plusDays(1)) {
+            boolean first = date.equals(entry.toLocalDate());
+            LocalDateTime from = first ? entry : date.atStartOfDay();
+            LocalDateTime to = date.equals(exit.toLocalDate()) ? exit : date.plusDays(1).atStartOfDay();
+            int minutes = (int) Duration.between(from, to).toMinutes();
+            if (!first && minutes == 0) {
+                continue; // left at midnight
+            }
+            DayTotal total = days.computeIfAbsent(new DayKey(visit.helpId(), date),
+                    key -> new DayTotal(visit.societyId()));
+            total.visits += first ? 1 : 0;
+            total.minutes += minutes;
+        }
+    }
+
+    private static boolean hasRole(User user, String role) {
+        return user.getAuthorities().stream().anyMatch(authority -> authority.getAuthority().equals(role));
+    }
+}
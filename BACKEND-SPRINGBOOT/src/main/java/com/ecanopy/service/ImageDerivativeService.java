@@ -0,0 +1,329 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.FileUploadProperties;
+import com.ecanopy.repository.StoredFileRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thumbnail / web-size derivatives of image blobs.
+ *
+ * Variants live at {@code <variants-directory>/<size>/<sha>.jpg} and are served as
+ * {@code /uploads/variants/<size>/<sha>.jpg}. They are generated right after upload on a
+ * small bounded pool, and lazily on first request if that was skipped (queue full,
+ * restart, blob uploaded before this existed).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageDerivativeService {
+
+    public static final String VARIANT_URL_PREFIX = "/uploads/variants/";
+
+    // Formats ImageIO can decode out of the box
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "bmp");
+
+    // Refuse to decode anything larger than this (decompression bombs)
+    private static final long MAX_SOURCE_PIXELS = 50_000_000L;
+
+    private final FileUploadProperties fileUploadProperties;
+    private final StoredFileRepository storedFileRepository;
+
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    private ExecutorService workers;
+
+    public enum Size {
+        THUMB("thumb"),
+        WEB("web");
+
+        private final String path;
+
+        Size(String path) {
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public static Optional<Size> fromPath(String path) {
+            for (Size size : values()) {
+                if (size.path.equals(path)) {
+                    return Optional.of(size);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        FileUploadProperties.Variants config = fileUploadProperties.getVariants();
+        AtomicInteger threadCount = new AtomicInteger();
+        // Private pool on purpose: exposing an Executor bean would replace Boot's applicationTaskExecutor
+        workers = new ThreadPoolExecutor(config.getWorkerThreads(), config.getWorkerThreads(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(config.getQueueCapacity()),
+                r -> {
+                    Thread t = new Thread(r, "image-variants-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Size-qualified URL for an uploaded image. Non-image and legacy (non-blob) URLs
+     * are returned unchanged so clients can always fall back to the original.
+     */
+    public String variantUrl(String url, Size size) {
+        String sha256 = imageSha256Of(url);
+        if (sha256 == null) {
+            return url;
+        }
+        return VARIANT_URL_PREFIX + size.getPath() + "/" + sha256 + ".jpg";
+    }
+
+    /** Queue all variants for a freshly stored image blob; silently skipped when the pool is saturated. */
+    public void scheduleDerivatives(String sha256, String relativePath) {
+        if (!isImage(relativePath)) {
+            return;
+        }
+        for (Size size : Size.values()) {
+            try {
+                generateAsync(size, sha256, relativePath);
+            } catch (RejectedExecutionException e) {
+                log.debug("Variant queue full, {} {} will be generated on first request", size, sha256);
+            }
+        }
+    }
+
+    /**
+     * Path of the requested variant, generating it if needed. Empty when the source blob
+     * is unknown, not an image, or could not be processed in time.
+     */
+    public Optional<Path> resolve(Size size, String sha256) {
+        Path target = variantPath(size, sha256);
+        if (Files.exists(target)) {
+            return Optional.of(target);
+        }
+        Optional<String> relativePath = storedFileRepository.findBySha256(sha256)
+                .map(s -> s.getRelativePath())
+                .filter(this::isImage);
+        if (relativePath.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.ofNullable(generateAsync(size, sha256, relativePath.get())
+                    .get(fileUploadProperties.getVariants().getLazyTimeoutSeconds(), TimeUnit.SECONDS));
+        } catch (RejectedExecutionException | TimeoutException e) {
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (Exception e) {
+            log.warn("Could not generate {} variant for {}: {}", size, sha256, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** URL of the original blob, used as a fallback when a variant cannot be produced. */
+    public Optional<String> originalUrl(String sha256) {
+        return storedFileRepository.findBySha256(sha256)
+                .map(s -> FileStorageService.BLOB_URL_PREFIX + s.getRelativePath());
+    }
+
+    /** Remove every variant of a blob; called when the blob itself is garbage-collected. */
+    public void deleteDerivatives(String sha256) {
+        for (Size size : Size.values()) {
+            try {
+                Files.deleteIfExists(variantPath(size, sha256));
+            } catch (IOException e) {
+                log.warn("Could not delete {} variant of {}: {}", size, sha256, e.getMessage());
+            }
+        }
+    }
+
+    private CompletableFuture<Path> generateAsync(Size size, String sha256, String relativePath) {
+        String key = size.getPath() + "/" + sha256;
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    created.complete(generate(size, sha256, relativePath));
+                } catch (Throwable t) {
+                    created.completeExceptionally(t);
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, created);
+            throw e;
+        }
+        return created;
+    }
+
+    private Path generate(Size size, String sha256, String relativePath) throws IOException {
+        Path target = variantPath(size, sha256);
+        if (Files.exists(target)) {
+            return target;
+        }
+        Path source = Paths.get(fileUploadProperties.getBlobDirectory()).toAbsolutePath().normalize()
+                .resolve(relativePath);
+        BufferedImage original = read(source);
+        if (original == null) {
+            throw new IOException("Unsupported or oversized image " + relativePath);
+        }
+        BufferedImage scaled = scaleToFit(original, maxEdge(size));
+
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), sha256, ".tmp");
+        try {
+            writeJpeg(scaled, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return target;
+    }
+
+    private BufferedImage read(Path source) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                // Check dimensions from the header before allocating the raster
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_SOURCE_PIXELS) {
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Downscale so the longest edge is at most {@code maxEdge}, halving repeatedly
+     * first so bilinear filtering keeps thumbnails from aliasing. Never upscales.
+     */
+    private static BufferedImage scaleToFit(BufferedImage source, int maxEdge) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double ratio = Math.min(1.0, (double) maxEdge / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+
+        BufferedImage current = source;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            // RGB canvas with white fill flattens PNG transparency for JPEG output
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(fileUploadProperties.getVariants().getJpegQuality());
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private int maxEdge(Size size) {
+        FileUploadProperties.Variants config = fileUploadProperties.getVariants();
+        return size == Size.THUMB ? config.getThumbSize() : config.getWebSize();
+    }
+
+    private Path variantPath(Size size, String sha256) {
+        return Paths.get(fileUploadProperties.getVariants().getDirectory()).toAbsolutePath().normalize()
+                .resolve(size.getPath()).resolve(sha256 + ".jpg");
+    }
+
+    private boolean isImage(String pathOrUrl) {
+        int dot = pathOrUrl.lastIndexOf('.');
+        return dot >= 0 && IMAGE_EXTENSIONS.contains(pathOrUrl.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private String imageSha256Of(String url) {
+        if (url == null || !url.startsWith(FileStorageService.BLOB_URL_PREFIX) || !isImage(url)) {
+            return null;
+        }
+        String name = url.substring(url.lastIndexOf('/') + 1);
+        String sha256 = name.substring(0, name.indexOf('.'));
+        return sha256.length() == 64 ? sha256 : null;
+    }
+}
@@ -13,21 +13,40 @@ import java.util.List;
 public class ItemService {
 
     private final ItemRepository itemRepository;
+    private final FileStorageService fileStorageService;
+    private final ImageDerivativeService imageDerivativeService;
 
+    @Transactional
     public Item saveItem(Item item) {
-        return itemRepository.save(item);
+        Item saved = itemRepository.save(item);
+        fileStorageService.retain(saved.getImageUrl());
+        fileStorageService.retain(saved.getVideoUrl());
+        return withThumbnail(saved);
     }
 
     public List<Item> getAllItems() {
-        return itemRepository.findAll();
+        List<Item> items = itemRepository.findAll();
+        items.forEach(this::withThumbnail);
+        return items;
     }
 
     public List<Item> getItemsByCategory(String category) {
-        return itemRepository.findByCategory(category);
+        List<Item> items = itemRepository.findByCategory(category);
+        items.forEach(this::withThumbnail);
+        return items;
     }
 
     @Transactional
     public void deleteItem(Long itemId) {
-        itemRepository.deleteById(itemId);
+        itemRepository.findById(itemId).ifPresent(item -> {
+            fileStorageService.release(item.getImageUrl());
+            fileStorageService.release(item.getVideoUrl());
+            itemRepository.delete(item);
+        });
+    }
+
+    private Item withThumbnail(Item item) {
+        item.setThumbnailUrl(imageDerivativeService.variantUrl(item.getImageUrl(), ImageDerivativeService.Size.THUMB));
+        return item;
     }
 }
@@ -0,0 +1,219 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.OccupancyProperties;
+import com.ecanopy.dto.response.OccupancyResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live occupancy, per society
+ * Visitors, staff and residents currently inside, kept as membership sets that are updated
+ * as gate events commit: visitor check-in/check-out from VisitorService, and presence
+ * transitions from PresenceRegistry (QR scans and staff pass codes). Visitors are rebuilt
+ * from the open visitor_logs rows before the application starts serving; staff and
+ * residents are replayed by PresenceRegistry's own rebuild.
+ *
+ * A snapshot only reads the set sizes and per-gate counters, so it costs the same whatever
+ * the size of the log tables. Subscribers get a snapshot when they connect and again after
+ * every change; changes arriving while a push is queued are folded into that push. Pushes
+ * are written by the "occupancy-push" pool of SseStreams, one queue per stream.
+ */
+@Service
+@Slf4j
+public class OccupancyService implements SmartInitializingSingleton {
+
+    private static final String UNSPECIFIED_GATE = "Unspecified";
+    private static final String VISITORS_INSIDE = "SELECT l.log_id, l.gate_entry, bl.society_id "
+            + "FROM visitor_logs l "
+            + "JOIN flats f ON f.flat_id = l.flat_id "
+            + "JOIN buildings bl ON bl.building_id = f.building_id "
+            + "WHERE l.out_time IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OccupancyProperties occupancyProperties;
+    private final Map<Long, Occupancy> societies = new ConcurrentHashMap<>();
+    private final SseStreams<Long> streams; // society id -> streams
+    // Societies with a push queued; a change for one of them needs no further push
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    public OccupancyService(JdbcTemplate jdbcTemplate, OccupancyProperties occupancyProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.occupancyProperties = occupancyProperties;
+        this.streams = new SseStreams<>("occupancy-push", occupancyProperties.getPushThreads(),
+                occupancyProperties.getMaxStreamsPerUser());
+    }
+
+    private static final class Occupancy {
+        final Map<Long, String> visitors = new ConcurrentHashMap<>(); // visitor log id -> gate
+        final Map<String, AtomicInteger> visitorsByGate = new ConcurrentHashMap<>();
+        final Map<Long, Integer> staff = new ConcurrentHashMap<>(); // help id -> presence tracks inside
+        final Set<Long> residents = ConcurrentHashMap.newKeySet();
+        volatile long updatedAt = System.currentTimeMillis();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long started = System.nanoTime();
+        int[] inside = { 0 };
+        jdbcTemplate.query(VISITORS_INSIDE, rs -> {
+            addVisitor(occupancy(rs.getLong("society_id")), rs.getLong("log_id"), rs.getString("gate_entry"));
+            inside[0]++;
+        });
+        log.info("Occupancy rebuilt: {} visitors inside in {} ms", inside[0],
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        streams.shutdown();
+    }
+
+    /** A visitor log was opened; counted once the surrounding transaction commits. */
+    public void visitorIn(Long societyId, Long logId, String gate) {
+        if (societyId == null || logId == null) {
+            return;
+        }
+        Transactions.afterCommit(() -> {
+            Occupancy occupancy = occupancy(societyId);
+            if (addVisitor(occupancy, logId, gate)) {
+                changed(societyId, occupancy);
+            }
+        });
+    }
+
+    /** A visitor log was closed; uncounted once the surrounding transaction commits. */
+    public void visitorOut(Long societyId, Long logId) {
+        if (societyId == null || logId == null) {
+            return;
+        }
+        Transactions.afterCommit(() -> {
+            Occupancy occupancy = occupancy(societyId);
+            String gate = occupancy.visitors.remove(logId);
+            if (gate != null) {
+                occupancy.visitorsByGate.get(gate).decrementAndGet();
+                changed(societyId, occupancy);
+            }
+        });
+    }
+
+    /**
+     * A gate subject went in or out. Called by PresenceRegistry with committed state only,
+     * once per change of a presence track, so staff seen on both the QR and the pass-code
+     * track are counted once and leave when both tracks are out.
+     */
+    void presenceChanged(long societyId, PresenceRegistry.Kind kind, long subjectId, boolean inside) {
+        if (societyId == 0) {
+            return; // subject without a society
+        }
+        Occupancy occupancy = occupancy(societyId);
+        if (kind == PresenceRegistry.Kind.RESIDENT) {
+            if (inside) {
+                occupancy.residents.add(subjectId);
+            } else {
+                occupancy.residents.remove(subjectId);
+            }
+        } else {
+            occupancy.staff.compute(subjectId, (id, tracks) -> {
+                if (inside) {
+                    return tracks == null ? 1 : tracks + 1;
+                }
+                return tracks == null || tracks <= 1 ? null : Integer.valueOf(tracks - 1);
+            });
+        }
+        changed(societyId, occupancy);
+    }
+
+    public OccupancyResponse snapshot(Long societyId) {
+        Occupancy occupancy = societies.get(societyId);
+        if (occupancy == null) {
+            return OccupancyResponse.builder()
+                    .societyId(societyId)
+                    .visitorsByGate(Map.of())
+                    .updatedAt(LocalDateTime.now())
+                    .build();
+        }
+        Map<String, Integer> byGate = new TreeMap<>();
+        occupancy.visitorsByGate.forEach((gate, count) -> {
+            if (count.get() > 0) {
+                byGate.put(gate, count.get());
+            }
+        });
+        int visitors = occupancy.visitors.size();
+        int staff = occupancy.staff.size();
+        int residents = occupancy.residents.size();
+        return OccupancyResponse.builder()
+                .societyId(societyId)
+                .visitors(visitors)
+                .staff(staff)
+                .residents(residents)
+                .total(visitors + staff + residents)
+                .visitorsByGate(byGate)
+                .updatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(occupancy.updatedAt), ZoneId.systemDefault()))
+                .build();
+    }
+
+    /**
+     * Open an event stream for a society: an "occupancy" event with the current snapshot,
+     * then one after every change. Past the per-user cap the user's oldest stream is closed.
+     */
+    public SseEmitter subscribe(Long societyId, Long userId) {
+        SseEmitter emitter = streams.open(societyId, userId, occupancyProperties.getStreamTimeout().toMillis()).emitter;
+        schedulePush(societyId);
+        return emitter;
+    }
+
+    /** Keep idle streams open through proxies, and find the ones whose client has gone. */
+    @Scheduled(fixedDelayString = "${ecanopy.occupancy.heartbeat:25s}")
+    public void heartbeat() {
+        streams.heartbeat();
+    }
+
+    private void changed(long societyId, Occupancy occupancy) {
+        occupancy.updatedAt = System.currentTimeMillis();
+        if (streams.hasStreams(societyId)) {
+            schedulePush(societyId);
+        }
+    }
+
+    private void schedulePush(long societyId) {
+        if (pending.add(societyId)) {
+            streams.execute(() -> push(societyId));
+        }
+    }
+
+    private void push(long societyId) {
+        pending.remove(societyId); // changes from here on queue another push
+        if (!streams.hasStreams(societyId)) {
+            return;
+        }
+        OccupancyResponse snapshot = snapshot(societyId);
+        streams.broadcast(societyId, () -> SseEmitter.event().name("occupancy").data(snapshot));
+    }
+
+    private static boolean addVisitor(Occupancy occupancy, long logId, String gate) {
+        String key = gate == null || gate.isBlank() ? UNSPECIFIED_GATE : gate.trim();
+        if (occupancy.visitors.putIfAbsent(logId, key) != null) {
+            return false;
+        }
+        occupancy.visitorsByGate.computeIfAbsent(key, g -> new AtomicInteger()).incrementAndGet();
+        return true;
+    }
+
+    private Occupancy occupancy(long societyId) {
+        return societies.computeIfAbsent(societyId, id -> new Occupancy());
+    }
+}
@@ -0,0 +1,293 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.OverstayProperties;
+import com.ecanopy.dto.response.VisitorResponse;
+import com.ecanopy.entity.User;
+import com.ecanopy.entity.VisitorLog;
+import com.ecanopy.entity.enums.VisitorCategory;
+import com.ecanopy.exception.ForbiddenException;
+import com.ecanopy.repository.ResidentRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Overstay alerts
+ * Open visitor logs with an expected checkout time wait in a hashed timing wheel: a ring of
+ * buckets, one per tick, where each log sits in the bucket of its deadline. Every tick the
+ * "overstay-wheel" thread visits one bucket, fires the logs that are due and leaves the
+ * others for a later turn of the wheel, so no query runs against visitor_logs to find
+ * overstays. Check-ins add logs and check-outs remove them once their transaction commits;
+ * the wheel is rebuilt from the open rows before the application starts serving.
+ *
+ * A fired log stays overdue until checkout. Guards and managers follow a society, residents
+ * their own flat: a stream gets the visitors already overdue when it connects, then an
+ * "overstay" event as each deadline passes and "overstay-cleared" when the visitor leaves.
+ * The wheel thread only queues those events; the "overstay-push" pool of SseStreams writes
+ * them, so a slow client never delays a tick.
+ */
+@Service
+@Slf4j
+public class OverstayMonitor implements SmartInitializingSingleton {
+
+    private static final String OPEN_WITH_DEADLINE = "SELECT l.log_id, l.category, l.in_time, l.expected_out_time, "
+            + "l.gate_entry, l.flat_id, f.flat_number, bl.society_id, v.visitor_id, v.full_name "
+            + "FROM visitor_logs l "
+            + "JOIN visitors v ON v.visitor_id = l.visitor_id "
+            + "JOIN flats f ON f.flat_id = l.flat_id "
+            + "JOIN buildings bl ON bl.building_id = f.building_id "
+            + "WHERE l.out_time IS NULL AND l.expected_out_time IS NOT NULL";
+    private static final Set<String> SOCIETY_ROLES = Set.of("ROLE_SUPER_ADMIN", "ROLE_SECURITY_GUARD",
+            "ROLE_ADMIN", "ROLE_RWA_PRESIDENT", "ROLE_RWA_SECRETARY");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OverstayProperties overstayProperties;
+    private final ResidentRepository residentRepository;
+    private final long tickMillis;
+    private final List<Map<Long, Entry>> wheel; // bucket per tick, log id -> entry
+    private final Map<Long, Entry> scheduled = new HashMap<>(); // log id -> entry waiting in the wheel
+    private final Map<Long, Entry> overdue = new LinkedHashMap<>(); // log id -> fired entry, in firing order
+    // ReentrantLock rather than a monitor, so virtual request threads are not pinned
+    private final ReentrantLock lock = new ReentrantLock();
+    private long lastTick;
+    private final SseStreams<Topic> streams;
+    // Runs the wheel and nothing else; stream writes happen on the SseStreams pool
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "overstay-wheel");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public OverstayMonitor(JdbcTemplate jdbcTemplate, OverstayProperties overstayProperties,
+            ResidentRepository residentRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.overstayProperties = overstayProperties;
+        this.residentRepository = residentRepository;
+        this.tickMillis = Math.max(1, overstayProperties.getTick().toMillis());
+        int size = Math.max(1, overstayProperties.getWheelSize());
+        this.wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            wheel.add(new HashMap<>());
+        }
+        this.streams = new SseStreams<>("overstay-push", overstayProperties.getPushThreads(),
+                overstayProperties.getMaxStreamsPerUser());
+    }
+
+    /** What a stream follows: a society, or one flat. */
+    private record Topic(boolean flat, long id) {
+    }
+
+    private static final class Entry {
+        final long societyId;
+        final long flatId;
+        final VisitorResponse visitor;
+        final long deadlineTick;
+
+        Entry(long societyId, long flatId, VisitorResponse visitor, long deadlineTick) {
+            this.societyId = societyId;
+            this.flatId = flatId;
+            this.visitor = visitor;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long started = System.nanoTime();
+        int[] loaded = { 0 };
+        lock.lock();
+        try {
+            lastTick = currentTick();
+            jdbcTemplate.query(OPEN_WITH_DEADLINE, rs -> {
+                VisitorResponse visitor = VisitorResponse.builder()
+                        .logId(rs.getLong("log_id"))
+                        .visitorId(rs.getLong("visitor_id"))
+                        .name(rs.getString("full_name"))
+                        .category(rs.getString("category") != null
+                                ? VisitorCategory.valueOf(rs.getString("category")) : null)
+                        .inTime(rs.getTimestamp("in_time").toLocalDateTime())
+                        .expectedOutTime(rs.getTimestamp("expected_out_time").toLocalDateTime())
+                        .flatId(rs.getLong("flat_id"))
+                        .flatNumber(rs.getString("flat_number"))
+                        .gateEntry(rs.getString("gate_entry"))
+                        .build();
+                schedule(rs.getLong("society_id"), visitor);
+                loaded[0]++;
+            });
+        } finally {
+            lock.unlock();
+        }
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        log.info("Overstay wheel rebuilt: {} open visits with an expected checkout in {} ms", loaded[0],
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+        streams.shutdown();
+    }
+
+    /** A visitor log was opened; watched once the surrounding transaction commits. */
+    public void visitorIn(Long societyId, VisitorLog visitorLog) {
+        if (societyId == null || visitorLog.getLogId() == null || visitorLog.getExpectedOutTime() == null) {
+            return;
+        }
+        VisitorResponse visitor = VisitorResponse.builder()
+                .logId(visitorLog.getLogId())
+                .visitorId(visitorLog.getVisitor().getVisitorId())
+                .name(visitorLog.getVisitor().getFullName())
+                .category(visitorLog.getCategory())
+                .inTime(visitorLog.getInTime())
+                .expectedOutTime(visitorLog.getExpectedOutTime())
+                .flatId(visitorLog.getFlat().getFlatId())
+                .flatNumber(visitorLog.getFlat().getFlatNumber())
+                .gateEntry(visitorLog.getGateEntry())
+                .build();
+        Transactions.afterCommit(() -> {
+            lock.lock();
+            try {
+                schedule(societyId, visitor);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /** A visitor log was closed; dropped from the wheel, or cleared if already overdue, after commit. */
+    public void visitorOut(Long logId) {
+        if (logId == null) {
+            return;
+        }
+        Transactions.afterCommit(() -> {
+            lock.lock();
+            try {
+                Entry waiting = scheduled.remove(logId);
+                if (waiting != null) {
+                    wheel.get(slot(waiting.deadlineTick)).remove(logId);
+                }
+                Entry cleared = overdue.remove(logId);
+                if (cleared != null) {
+                    publish(cleared, "overstay-cleared", Map.of("logId", logId));
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Open an overstay stream: the society's for guards and managers (any society for a
+     * super admin, who must name one), the own flat's for residents. Past the per-user cap
+     * the user's oldest stream is closed.
+     */
+    public SseEmitter subscribe(User user, Long requestedSocietyId) {
+        if (user.getAuthorities().stream().anyMatch(authority -> SOCIETY_ROLES.contains(authority.getAuthority()))) {
+            long societyId = SocietyScope.resolve(user, requestedSocietyId);
+            return subscribe(new Topic(false, societyId), user.getId(), entry -> entry.societyId == societyId);
+        }
+        // A scalar read: the stream is excluded from open-in-view, so no entity outlives it
+        Long flatId = residentRepository.findFlatIdByUserId(user.getId())
+                .orElseThrow(() -> new ForbiddenException("User is not a resident of any flat"));
+        return subscribe(new Topic(true, flatId), user.getId(), entry -> entry.flatId == flatId);
+    }
+
+    /** Keep idle streams open through proxies, and find the ones whose client has gone. */
+    @Scheduled(fixedDelayString = "${ecanopy.overstay.heartbeat:25s}")
+    public void heartbeat() {
+        streams.heartbeat();
+    }
+
+    /** Wheel thread: fire the due entries of every bucket passed since the previous tick. */
+    private void tick() {
+        lock.lock();
+        try {
+            long now = currentTick();
+            // After a long pause each bucket is visited once, not once per missed tick
+            for (long tick = Math.max(lastTick + 1, now - wheel.size() + 1); tick <= now; tick++) {
+                Iterator<Entry> bucket = wheel.get(slot(tick)).values().iterator();
+                while (bucket.hasNext()) {
+                    Entry entry = bucket.next();
+                    if (entry.deadlineTick <= now) {
+                        bucket.remove();
+                        scheduled.remove(entry.visitor.getLogId());
+                        overdue.put(entry.visitor.getLogId(), entry);
+                        log.debug("Visitor log {} of flat {} overstayed", entry.visitor.getLogId(), entry.flatId);
+                        publish(entry, "overstay", entry.visitor);
+                    }
+                }
+            }
+            lastTick = Math.max(lastTick, now);
+        } catch (RuntimeException e) {
+            log.warn("Overstay wheel tick failed: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Called with the lock held. A deadline already passed fires on the next tick. */
+    private void schedule(long societyId, VisitorResponse visitor) {
+        long logId = visitor.getLogId();
+        if (scheduled.containsKey(logId) || overdue.containsKey(logId)) {
+            return;
+        }
+        long deadlineMillis = visitor.getExpectedOutTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long deadlineTick = Math.max(lastTick + 1, -Math.floorDiv(-deadlineMillis, tickMillis));
+        Entry entry = new Entry(societyId, visitor.getFlatId(), visitor, deadlineTick);
+        scheduled.put(logId, entry);
+        wheel.get(slot(deadlineTick)).put(logId, entry);
+    }
+
+    private SseEmitter subscribe(Topic topic, long userId, Predicate<Entry> scope) {
+        // Opened and replayed under the lock, so each overstay firing or clearing reaches the
+        // stream exactly once, after the replay
+        lock.lock();
+        try {
+            SseStreams<Topic>.Stream stream = streams.open(topic, userId,
+                    overstayProperties.getStreamTimeout().toMillis());
+            streams.sendAll(stream, overdue.values().stream()
+                    .filter(scope)
+                    .sorted(Comparator.comparing(entry -> entry.visitor.getExpectedOutTime()))
+                    .<Supplier<SseEmitter.SseEventBuilder>>map(entry ->
+                            () -> SseEmitter.event().name("overstay").data(entry.visitor))
+                    .toList());
+            return stream.emitter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Called with the lock held; only queues the event on the streams. */
+    private void publish(Entry entry, String name, Object data) {
+        streams.broadcast(new Topic(false, entry.societyId), () -> SseEmitter.event().name(name).data(data));
+        streams.broadcast(new Topic(true, entry.flatId), () -> SseEmitter.event().name(name).data(data));
+    }
+
+    private long currentTick() {
+        return Math.floorDiv(System.currentTimeMillis(), tickMillis);
+    }
+
+    private int slot(long tick) {
+        return (int) Math.floorMod(tick, (long) wheel.size());
+    }
+}
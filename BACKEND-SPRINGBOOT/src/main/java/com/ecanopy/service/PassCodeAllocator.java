@@ -0,0 +1,339 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.PassCodeProperties;
+import com.ecanopy.exception.ServiceUnavailableException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Staff pass codes
+ * The 6-digit code space is split into 1000 blocks of 1000. An instance leases blocks in
+ * pass_code_blocks, reads the codes of a block already in use with a single range query,
+ * and hands the free ones out in shuffled order from memory, so allocating a code costs no
+ * database round trip. Leases are renewed while a block is in use and released on
+ * shutdown; a block that ran out is marked exhausted and a random other one is claimed.
+ *
+ * Claims run on a background thread, started when fewer than LOW_WATER codes are left, so
+ * the next block is usually ready before the current one runs out. Request threads never
+ * wait for the database under the allocator lock: with open-in-view they hold a connection
+ * already, and a claim made on one of them could starve the pool.
+ *
+ * The unique constraint on domestic_helps.pass_code stays the final guard: a code taken
+ * meanwhile by hand on another instance fails the insert, and the caller takes the next one.
+ */
+@Component
+@Slf4j
+public class PassCodeAllocator implements SmartInitializingSingleton {
+
+    static final int BLOCK_SIZE = 1000;
+    static final int BLOCKS = 1000;
+    private static final int LOW_WATER = 100;
+    private static final long WAIT_SECONDS = 5;
+
+    private static final String BLOCKS_SQL = "SELECT block_no, leased_until, exhausted FROM pass_code_blocks";
+    private static final String INSERT_BLOCK = "INSERT INTO pass_code_blocks (block_no, owner, leased_until, exhausted) "
+            + "VALUES (?, ?, ?, FALSE)";
+    private static final String TAKE_OVER_BLOCK = "UPDATE pass_code_blocks SET owner = ?, leased_until = ? "
+            + "WHERE block_no = ? AND exhausted = FALSE AND leased_until < ?";
+    private static final String RENEW_BLOCK = "UPDATE pass_code_blocks SET leased_until = ? "
+            + "WHERE block_no = ? AND owner = ?";
+    private static final String RELEASE_BLOCK = "UPDATE pass_code_blocks SET leased_until = ?, exhausted = ? "
+            + "WHERE block_no = ? AND owner = ?";
+    // Deleted staff free codes of exhausted blocks; reopened only once nothing else is left
+    private static final String REOPEN_BLOCKS = "UPDATE pass_code_blocks SET exhausted = FALSE "
+            + "WHERE exhausted = TRUE AND leased_until < ?";
+    private static final String USED_CODES = "SELECT pass_code FROM domestic_helps WHERE pass_code BETWEEN ? AND ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PassCodeProperties passCodeProperties;
+    private final String owner = UUID.randomUUID().toString();
+    private final SecureRandom random = new SecureRandom();
+    // ReentrantLock rather than a monitor, so waiting virtual threads are not pinned
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition refilled = lock.newCondition();
+    private final Deque<Block> blocks = new ArrayDeque<>(); // head is handed out first
+    private final List<Integer> spent = new ArrayList<>(); // used up, release pending
+    private boolean refillQueued;
+    private boolean outOfCodes;
+    private final ExecutorService claimer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "pass-code-claim");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public PassCodeAllocator(JdbcTemplate jdbcTemplate, PassCodeProperties passCodeProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passCodeProperties = passCodeProperties;
+    }
+
+    private static final class Block {
+        final int blockNo;
+        final Deque<String> free;
+
+        Block(int blockNo, List<String> free) {
+            this.blockNo = blockNo;
+            this.free = new ArrayDeque<>(free);
+        }
+    }
+
+    /** Claim the first block in the background once the schema is ready. */
+    @Override
+    public void afterSingletonsInstantiated() {
+        lock.lock();
+        try {
+            requestRefill();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** A pass code no staff member had when its block was claimed. */
+    public String next() {
+        lock.lock();
+        try {
+            long waitNanos = TimeUnit.SECONDS.toNanos(WAIT_SECONDS);
+            while (true) {
+                String code = poll();
+                if (code != null) {
+                    if (remaining() < LOW_WATER) {
+                        requestRefill();
+                    }
+                    return code;
+                }
+                if (outOfCodes) {
+                    outOfCodes = false; // the next request tries again
+                    throw new ServiceUnavailableException("No free staff pass codes left");
+                }
+                requestRefill();
+                if (waitNanos <= 0) {
+                    throw new ServiceUnavailableException("Staff pass codes are not available yet, try again");
+                }
+                waitNanos = refilled.awaitNanos(waitNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for a staff pass code", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** A code assigned by hand; it is not handed out by this instance any more. */
+    public void markUsed(String code) {
+        lock.lock();
+        try {
+            blocks.forEach(block -> block.free.remove(code));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ecanopy.pass-codes.renew-interval:10m}")
+    public void renew() {
+        List<Integer> leased;
+        lock.lock();
+        try {
+            leased = blocks.stream().map(block -> block.blockNo).toList();
+        } finally {
+            lock.unlock();
+        }
+        for (int blockNo : leased) {
+            if (jdbcTemplate.update(RENEW_BLOCK, Timestamp.valueOf(leaseEnd()), blockNo, owner) == 0) {
+                // Lease expired and taken over (e.g. after a long pause): stop handing out its codes
+                log.warn("Pass code block {} was taken over by another instance", blockNo);
+                lock.lock();
+                try {
+                    blocks.removeIf(block -> block.blockNo == blockNo);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        claimer.shutdownNow();
+        lock.lock();
+        try {
+            spent.forEach(blockNo -> release(blockNo, true));
+            blocks.forEach(block -> release(block.blockNo, block.free.isEmpty()));
+            blocks.clear();
+        } catch (RuntimeException e) {
+            log.debug("Pass code blocks not released: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String poll() {
+        while (!blocks.isEmpty()) {
+            String code = blocks.peekFirst().free.poll();
+            if (code != null) {
+                return code;
+            }
+            spent.add(blocks.pollFirst().blockNo);
+        }
+        return null;
+    }
+
+    private int remaining() {
+        return blocks.stream().mapToInt(block -> block.free.size()).sum();
+    }
+
+    /** Called with the lock held. */
+    private void requestRefill() {
+        if (refillQueued) {
+            return;
+        }
+        try {
+            claimer.execute(this::refill);
+            refillQueued = true;
+        } catch (RejectedExecutionException e) {
+            log.debug("Pass code claim skipped, shutting down");
+        }
+    }
+
+    /** Background: release used-up blocks and, when running low, claim another. */
+    private void refill() {
+        List<Integer> releasing;
+        boolean low;
+        lock.lock();
+        try {
+            releasing = new ArrayList<>(spent);
+            spent.clear();
+            low = remaining() < LOW_WATER;
+        } finally {
+            lock.unlock();
+        }
+        Block claimed = null;
+        boolean none = false;
+        try {
+            releasing.forEach(blockNo -> release(blockNo, true));
+            if (low) {
+                claimed = claim();
+                if (claimed == null && reopenExhausted()) {
+                    claimed = claim();
+                }
+                none = claimed == null;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Claiming a pass code block failed: {}", e.getMessage());
+        }
+        lock.lock();
+        try {
+            refillQueued = false;
+            if (claimed != null) {
+                blocks.addLast(claimed);
+            }
+            outOfCodes = none && remaining() == 0;
+            refilled.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Lease a random block with free codes: one never claimed, or one whose lease expired. */
+    private Block claim() {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Integer, Boolean> known = new HashMap<>(); // block -> claimable
+        jdbcTemplate.query(BLOCKS_SQL, rs -> {
+            known.put(rs.getInt("block_no"), !rs.getBoolean("exhausted")
+                    && rs.getTimestamp("leased_until").toLocalDateTime().isBefore(now));
+        });
+        List<Integer> candidates = new ArrayList<>();
+        for (int blockNo = 0; blockNo < BLOCKS; blockNo++) {
+            if (known.getOrDefault(blockNo, true)) {
+                candidates.add(blockNo);
+            }
+        }
+        Collections.shuffle(candidates, random);
+
+        for (int blockNo : candidates) {
+            if (!lease(blockNo, known.containsKey(blockNo), now)) {
+                continue; // another instance got there first
+            }
+            List<String> codes = freeCodes(blockNo);
+            if (codes.isEmpty()) {
+                release(blockNo, true);
+                continue;
+            }
+            Collections.shuffle(codes, random);
+            log.info("Claimed pass code block {} with {} free codes", blockNo, codes.size());
+            return new Block(blockNo, codes);
+        }
+        return null;
+    }
+
+    private boolean lease(int blockNo, boolean exists, LocalDateTime now) {
+        Timestamp until = Timestamp.valueOf(leaseEnd());
+        if (exists) {
+            return jdbcTemplate.update(TAKE_OVER_BLOCK, owner, until, blockNo, Timestamp.valueOf(now)) == 1;
+        }
+        try {
+            return jdbcTemplate.update(INSERT_BLOCK, blockNo, owner, until) == 1;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private List<String> freeCodes(int blockNo) {
+        String first = format(blockNo * BLOCK_SIZE);
+        String last = format(blockNo * BLOCK_SIZE + BLOCK_SIZE - 1);
+        Set<String> used = new HashSet<>(jdbcTemplate.queryForList(USED_CODES, String.class, first, last));
+        List<String> codes = new ArrayList<>(BLOCK_SIZE);
+        for (int code = blockNo * BLOCK_SIZE; code < (blockNo + 1) * BLOCK_SIZE; code++) {
+            String value = format(code);
+            if (!used.contains(value)) {
+                codes.add(value);
+            }
+        }
+        return codes;
+    }
+
+    /** Give the block back; exhausted blocks are skipped by claims until reopened. */
+    private void release(int blockNo, boolean exhausted) {
+        jdbcTemplate.update(RELEASE_BLOCK, Timestamp.valueOf(LocalDateTime.now()), exhausted, blockNo, owner);
+    }
+
+    private boolean reopenExhausted() {
+        int reopened = jdbcTemplate.update(REOPEN_BLOCKS, Timestamp.valueOf(LocalDateTime.now()));
+        if (reopened > 0) {
+            log.info("Reopened {} exhausted pass code blocks", reopened);
+        }
+        return reopened > 0;
+    }
+
+    private LocalDateTime leaseEnd() {
+        return LocalDateTime.now().plus(passCodeProperties.getLease());
+    }
+
+    private static String format(int code) {
+        return String.format("%06d", code);
+    }
+}
@@ -0,0 +1,78 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.PassExpiryProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pass expiry
+ * Flags pre-approvals and frequent visitor passes whose validity has ended, in batches of
+ * ecanopy.passes.sweep-batch rows found through the (expired, valid_until) indexes, so
+ * queries for live passes no longer need validity range predicates and each UPDATE holds
+ * few row locks. Flagging bumps updated_at, which is how ActivePassIndex on every instance
+ * and guard devices learn about it.
+ *
+ * The flag is separate from is_used and is_active: offline scans made before a pass ended
+ * are still checked against its validity at scan time when they are uploaded.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PassExpirySweeper {
+
+    private static final String EXPIRED_PRE_APPROVALS = "SELECT id FROM pre_approvals "
+            + "WHERE expired = FALSE AND valid_until < ? ORDER BY valid_until LIMIT ?";
+    private static final String EXPIRE_PRE_APPROVALS = "UPDATE pre_approvals SET expired = TRUE, updated_at = ? "
+            + "WHERE expired = FALSE AND id IN (%s)";
+    private static final String EXPIRED_FREQUENT_VISITORS = "SELECT id FROM frequent_visitors "
+            + "WHERE expired = FALSE AND valid_until < ? ORDER BY valid_until LIMIT ?";
+    private static final String EXPIRE_FREQUENT_VISITORS = "UPDATE frequent_visitors SET expired = TRUE, "
+            + "updated_at = ? WHERE expired = FALSE AND id IN (%s)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PassExpiryProperties passExpiryProperties;
+
+    @Scheduled(initialDelayString = "${ecanopy.passes.sweep-initial-delay:30s}",
+            fixedDelayString = "${ecanopy.passes.sweep-interval:15m}")
+    public void sweep() {
+        long started = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        int preApprovals = expire(EXPIRED_PRE_APPROVALS, EXPIRE_PRE_APPROVALS, Timestamp.valueOf(now), now);
+        // Frequent visitor passes are valid through their last day
+        int frequentVisitors = expire(EXPIRED_FREQUENT_VISITORS, EXPIRE_FREQUENT_VISITORS,
+                Date.valueOf(now.toLocalDate()), now);
+        if (preApprovals > 0 || frequentVisitors > 0) {
+            log.info("Pass expiry: flagged {} pre-approvals and {} frequent visitor passes in {} ms",
+                    preApprovals, frequentVisitors, (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    private int expire(String select, String update, Object cutoff, LocalDateTime now) {
+        int batch = Math.max(1, passExpiryProperties.getSweepBatch());
+        int total = 0;
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList(select, Long.class, cutoff, batch);
+            if (ids.isEmpty()) {
+                return total;
+            }
+            List<Object> args = new ArrayList<>(ids.size() + 1);
+            args.add(Timestamp.valueOf(now));
+            args.addAll(ids);
+            total += jdbcTemplate.update(String.format(update, String.join(", ", Collections.nCopies(ids.size(), "?"))),
+                    args.toArray());
+            if (ids.size() < batch) {
+                return total;
+            }
+        }
+    }
+}
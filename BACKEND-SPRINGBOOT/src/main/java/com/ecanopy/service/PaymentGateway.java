@@ -0,0 +1,34 @@
+package com.ecanopy.service;
+
+import com.razorpay.RazorpayException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Optional;
+
+/**
+ * Payment gateway order API. RazorpayGateway talks to Razorpay, StubPaymentGateway
+ * (profile "stub-gateway") answers locally; callers go through ResilientPaymentGateway.
+ */
+public interface PaymentGateway {
+
+    Order createOrder(long amountPaise, String currency, String receipt) throws RazorpayException;
+
+    /** The captured payment for an order, if the payer completed it. */
+    Optional<CapturedPayment> findCapturedPayment(String orderId) throws RazorpayException;
+
+    @Data
+    @AllArgsConstructor
+    class Order {
+        private String id;
+        private long amount; // paise
+        private String currency;
+    }
+
+    @Data
+    @AllArgsConstructor
+    class CapturedPayment {
+        private String id;
+        private long amount; // paise
+    }
+}
@@ -0,0 +1,87 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.RazorpayProperties;
+import com.ecanopy.dto.response.PaymentOrderResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for create-order: repeats of a request (same bill, payer and Idempotency-Key)
+ * arriving while the order is being created, or within razorpay.order-dedup-ttl after it
+ * succeeded, get the same response without touching the database or the gateway. Failures
+ * are not remembered, so a retry goes through, and a bill's entries are dropped once it is
+ * paid here, so a replay reaches PaymentService's checks. Any other request misses the cache
+ * and is validated there (key used for another bill, bill already paid).
+ *
+ * Per instance only; PaymentService's unique active_bill_id column covers the cluster.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentOrderDeduplicator {
+
+    private final RazorpayProperties razorpayProperties;
+    private final ConcurrentHashMap<Key, Entry> recent = new ConcurrentHashMap<>();
+
+    /** One create-order request: the bill, the paying user and the client's Idempotency-Key (may be null). */
+    public record Key(Long billId, Long userId, String idempotencyKey) {
+    }
+
+    public PaymentOrderResponse execute(Key key, Supplier<PaymentOrderResponse> createOrder) {
+        long now = System.nanoTime();
+        recent.values().removeIf(entry -> entry.isExpired(now));
+
+        Entry mine = new Entry();
+        Entry current = recent.compute(key, (k, existing) -> existing != null && !existing.isExpired(now) ? existing : mine);
+        if (current != mine) {
+            log.debug("Deduplicated create-order for bill {}", key.billId());
+            return join(current.result);
+        }
+
+        try {
+            PaymentOrderResponse response = createOrder.get();
+            mine.expiresAt = System.nanoTime() + razorpayProperties.getOrderDedupTtl().toNanos();
+            mine.result.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            recent.remove(key, mine);
+            mine.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /** Forget the orders remembered for these bills, once they are paid. */
+    public void forget(Collection<Long> billIds) {
+        if (!billIds.isEmpty()) {
+            recent.keySet().removeIf(key -> billIds.contains(key.billId()));
+        }
+    }
+
+    private static PaymentOrderResponse join(CompletableFuture<PaymentOrderResponse> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static final class Entry {
+        final CompletableFuture<PaymentOrderResponse> result = new CompletableFuture<>();
+        // In flight until completed: never expires before the creating request finishes
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        boolean isExpired(long now) {
+            return expiresAt != Long.MAX_VALUE && now - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.RazorpayProperties;
+import com.ecanopy.entity.Payment;
+import com.ecanopy.entity.PaymentWebhookEvent;
+import com.ecanopy.entity.enums.PaymentStatus;
+import com.ecanopy.entity.enums.WebhookEventStatus;
+import com.ecanopy.exception.ServiceUnavailableException;
+import com.ecanopy.repository.PaymentRepository;
+import com.ecanopy.repository.PaymentWebhookEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Applies queued gateway events to payments and bills, and sweeps stale orders.
+ *
+ * Each reconcile batch is one transaction of a few set-based statements: captures are
+ * deduplicated by razorpayPaymentId (within the batch and against payments already recorded
+ * by /verify or an earlier event), then payments and their bills are updated with JDBC
+ * batches. Every UPDATE is guarded by the current status, so replays and a concurrent
+ * /verify are harmless. A batch that fails is retried event by event to isolate the bad one.
+ *
+ * Only an open order (CREATED or PENDING) whose captured amount equals the payment amount
+ * is settled. A capture for a closed order or for a different amount is not applied: the
+ * payment is flagged in its remarks for someone to refund or settle by hand.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentReconciler {
+
+    static final String PAYMENT_CAPTURED = "payment.captured";
+    static final String ORDER_PAID = "order.paid";
+    static final String PAYMENT_FAILED = "payment.failed";
+
+    private static final Set<PaymentStatus> SETTLED = EnumSet.of(PaymentStatus.SUCCESS, PaymentStatus.COMPLETED);
+    private static final Set<PaymentStatus> OPEN = EnumSet.of(PaymentStatus.CREATED, PaymentStatus.PENDING);
+
+    private static final String SETTLE_PAYMENT = "UPDATE payments SET status = 'SUCCESS', razorpay_payment_id = ?, "
+            + "transaction_id = ?, paid_at = ?, active_bill_id = NULL "
+            + "WHERE razorpay_order_id = ? AND status IN ('CREATED', 'PENDING') AND amount = ?";
+    // Only the bill of a payment this capture settled, for the full payment amount
+    private static final String SETTLE_BILL = "UPDATE maintenance_bills SET status = 'PAID', paid_date = ? "
+            + "WHERE status <> 'PAID' AND bill_id = (SELECT p.bill_id FROM payments p WHERE p.razorpay_order_id = ? "
+            + "AND p.razorpay_payment_id = ? AND p.status = 'SUCCESS' AND p.amount = ?)";
+    private static final String FLAG_PAYMENT = "UPDATE payments SET remarks = ? "
+            + "WHERE razorpay_order_id = ? AND status NOT IN ('SUCCESS', 'COMPLETED')";
+    private static final String NOTE_FAILED_ATTEMPT = "UPDATE payments SET remarks = ? "
+            + "WHERE razorpay_order_id = ? AND status = 'CREATED'";
+    private static final String MARK_EVENT = "UPDATE payment_webhook_events SET status = ?, processed_at = ?, "
+            + "last_error = ?, attempts = attempts + 1 WHERE webhook_event_id = ?";
+    private static final String EXPIRE_ORDER = "UPDATE payments SET status = 'FAILED', remarks = ?, active_bill_id = NULL "
+            + "WHERE payment_id = ? AND status = 'CREATED'";
+    private static final String RELEASE_RESERVATIONS = "UPDATE payments SET status = 'FAILED', remarks = ?, "
+            + "active_bill_id = NULL, idempotency_key = NULL WHERE status = 'RESERVED' AND created_at < ?";
+
+    private final PaymentWebhookEventRepository eventRepository;
+    private final PaymentRepository paymentRepository;
+    private final ResilientPaymentGateway paymentGateway;
+    private final PaymentOrderDeduplicator orderDeduplicator;
+    private final RazorpayProperties razorpayProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Drain PENDING events in batches of razorpay.webhook.batch-size.
+     */
+    @Scheduled(fixedDelayString = "${razorpay.webhook.reconcile-interval:5s}")
+    public void reconcile() {
+        int batchSize = razorpayProperties.getWebhook().getBatchSize();
+        while (true) {
+            List<PaymentWebhookEvent> batch = eventRepository.findByStatusOrderByWebhookEventIdAsc(
+                    WebhookEventStatus.PENDING, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                List<Long> paidBills = new ArrayList<>();
+                int settled = transactionTemplate.execute(status -> applyBatch(batch, paidBills));
+                orderDeduplicator.forget(paidBills);
+                log.info("Reconciled {} payment events, {} payments settled", batch.size(), settled);
+            } catch (RuntimeException e) {
+                log.warn("Reconciling a batch of {} payment events failed, retrying one by one: {}",
+                        batch.size(), e.getMessage());
+                batch.forEach(this::applyAlone);
+                return; // anything still PENDING waits for the next run
+            }
+            if (batch.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private void applyAlone(PaymentWebhookEvent event) {
+        try {
+            List<Long> paidBills = new ArrayList<>();
+            transactionTemplate.execute(status -> applyBatch(List.of(event), paidBills));
+            orderDeduplicator.forget(paidBills);
+        } catch (RuntimeException e) {
+            boolean giveUp = event.getAttempts() + 1 >= razorpayProperties.getWebhook().getMaxAttempts();
+            log.warn("Payment event {} failed (attempt {}): {}", event.getExternalEventId(),
+                    event.getAttempts() + 1, e.getMessage());
+            jdbcTemplate.update(MARK_EVENT,
+                    (giveUp ? WebhookEventStatus.FAILED : WebhookEventStatus.PENDING).name(),
+                    giveUp ? Timestamp.valueOf(LocalDateTime.now()) : null,
+                    truncate(e.getMessage()), event.getWebhookEventId());
+        }
+    }
+
+    /**
+     * Applies the events and marks them; returns the number of payments settled and adds the
+     * ids of the bills they pay to paidBills.
+     */
+    private int applyBatch(List<PaymentWebhookEvent> batch, List<Long> paidBills) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Map<Long, String> ignored = new LinkedHashMap<>();
+        Map<String, PaymentWebhookEvent> captures = new LinkedHashMap<>();
+        List<PaymentWebhookEvent> failedAttempts = new ArrayList<>();
+
+        // 1. Sort events; one capture per razorpayPaymentId
+        for (PaymentWebhookEvent event : batch) {
+            switch (event.getEventType()) {
+                case PAYMENT_CAPTURED, ORDER_PAID -> {
+                    if (event.getRazorpayPaymentId() == null || event.getRazorpayOrderId() == null) {
+                        ignored.put(event.getWebhookEventId(), "No payment in payload");
+                    } else {
+                        PaymentWebhookEvent first = captures.putIfAbsent(event.getRazorpayPaymentId(), event);
+                        if (first != null) {
+                            ignored.put(event.getWebhookEventId(), "Duplicate of event " + first.getExternalEventId());
+                        }
+                    }
+                }
+                case PAYMENT_FAILED -> {
+                    if (event.getRazorpayOrderId() == null) {
+                        ignored.put(event.getWebhookEventId(), "No order in payload");
+                    } else {
+                        failedAttempts.add(event);
+                    }
+                }
+                default -> ignored.put(event.getWebhookEventId(), "Unhandled event type");
+            }
+        }
+
+        // 2. Drop captures already recorded, and those whose order is unknown or settled;
+        //    flag those for a closed order or another amount
+        List<PaymentWebhookEvent> settle = new ArrayList<>();
+        List<Object[]> flags = new ArrayList<>();
+        if (!captures.isEmpty()) {
+            Set<String> recorded = new HashSet<>(paymentRepository.findRecordedRazorpayPaymentIds(captures.keySet()));
+            Map<String, Payment> unsettled = new HashMap<>();
+            paymentRepository.findByRazorpayOrderIdIn(
+                    captures.values().stream().map(PaymentWebhookEvent::getRazorpayOrderId).toList()).stream()
+                    .filter(payment -> !SETTLED.contains(payment.getStatus()))
+                    .forEach(payment -> unsettled.put(payment.getRazorpayOrderId(), payment));
+            for (PaymentWebhookEvent event : captures.values()) {
+                Payment payment = unsettled.remove(event.getRazorpayOrderId());
+                String flag = payment != null ? flagOf(payment, event) : null;
+                if (recorded.contains(event.getRazorpayPaymentId())) {
+                    ignored.put(event.getWebhookEventId(), "Payment already recorded");
+                } else if (payment == null) {
+                    ignored.put(event.getWebhookEventId(), "No unsettled payment for order");
+                } else if (flag != null) {
+                    log.warn("Payment {} for order {} not settled: {}", event.getRazorpayPaymentId(),
+                            event.getRazorpayOrderId(), flag);
+                    ignored.put(event.getWebhookEventId(), flag);
+                    flags.add(new Object[] { truncate(flag + " (" + event.getRazorpayPaymentId() + ")"),
+                            event.getRazorpayOrderId() });
+                } else {
+                    settle.add(event);
+                    paidBills.add(payment.getMaintenanceBill().getBillId());
+                }
+            }
+        }
+
+        // 3. Bulk updates: payments, then their bills
+        if (!settle.isEmpty()) {
+            Date paidDate = Date.valueOf(LocalDate.now());
+            jdbcTemplate.batchUpdate(SETTLE_PAYMENT, settle.stream()
+                    .map(e -> new Object[] { e.getRazorpayPaymentId(), e.getRazorpayPaymentId(), now,
+                            e.getRazorpayOrderId(), fromPaise(e.getAmount()) })
+                    .toList());
+            jdbcTemplate.batchUpdate(SETTLE_BILL, settle.stream()
+                    .map(e -> new Object[] { paidDate, e.getRazorpayOrderId(), e.getRazorpayPaymentId(),
+                            fromPaise(e.getAmount()) })
+                    .toList());
+        }
+        if (!flags.isEmpty()) {
+            jdbcTemplate.batchUpdate(FLAG_PAYMENT, flags);
+        }
+        // A failed attempt leaves the order open: the payer can retry it from checkout
+        if (!failedAttempts.isEmpty()) {
+            jdbcTemplate.batchUpdate(NOTE_FAILED_ATTEMPT, failedAttempts.stream()
+                    .map(e -> new Object[] { "Payment attempt failed at gateway", e.getRazorpayOrderId() })
+                    .toList());
+        }
+
+        // 4. Mark every event of the batch
+        List<Object[]> marks = new ArrayList<>(batch.size());
+        for (PaymentWebhookEvent event : batch) {
+            String reason = ignored.get(event.getWebhookEventId());
+            marks.add(new Object[] {
+                    (reason != null ? WebhookEventStatus.IGNORED : WebhookEventStatus.PROCESSED).name(),
+                    now, reason, event.getWebhookEventId() });
+        }
+        jdbcTemplate.batchUpdate(MARK_EVENT, marks);
+        return settle.size();
+    }
+
+    /**
+     * Release abandoned reservations and close CREATED orders older than
+     * razorpay.webhook.stale-after. Each stale order is checked with the gateway first: a
+     * capture whose webhook never arrived is queued as a synthetic event, anything else is
+     * marked FAILED so the bill can take a new order.
+     */
+    @Scheduled(fixedDelayString = "${razorpay.webhook.sweep-interval:10m}")
+    public void sweepStalePayments() {
+        int released = jdbcTemplate.update(RELEASE_RESERVATIONS, "Reservation abandoned",
+                Timestamp.valueOf(LocalDateTime.now().minus(PaymentService.RESERVATION_TIMEOUT)));
+
+        RazorpayProperties.Webhook webhook = razorpayProperties.getWebhook();
+        LocalDateTime cutoff = LocalDateTime.now().minus(webhook.getStaleAfter());
+        int expired = 0;
+        int recovered = 0;
+        long lastSeenId = 0;
+
+        sweep:
+        while (true) {
+            List<Payment> stale = paymentRepository.findByStatusAndCreatedAtBeforeAndPaymentIdGreaterThanOrderByPaymentIdAsc(
+                    PaymentStatus.CREATED, cutoff, lastSeenId, PageRequest.of(0, webhook.getBatchSize()));
+            if (stale.isEmpty()) {
+                break;
+            }
+            List<Object[]> expire = new ArrayList<>();
+            for (Payment payment : stale) {
+                lastSeenId = payment.getPaymentId();
+                Optional<PaymentGateway.CapturedPayment> captured = Optional.empty();
+                if (payment.getRazorpayOrderId() != null) {
+                    try {
+                        captured = paymentGateway.findCapturedPayment(payment.getRazorpayOrderId());
+                    } catch (ServiceUnavailableException e) {
+                        log.warn("Stale payment sweep paused, gateway unavailable: {}", e.getMessage());
+                        expired += expire(expire);
+                        break sweep;
+                    }
+                }
+                if (captured.isPresent()) {
+                    recovered += enqueueRecovered(payment, captured.get()) ? 1 : 0;
+                } else {
+                    expire.add(new Object[] { "Order abandoned unpaid", payment.getPaymentId() });
+                }
+            }
+            expired += expire(expire);
+        }
+        if (released > 0 || expired > 0 || recovered > 0) {
+            log.info("Payment sweep: {} reservations released, {} orders expired, {} missed captures queued",
+                    released, expired, recovered);
+        }
+    }
+
+    /** Why the capture cannot settle the payment, or null when it can. */
+    private static String flagOf(Payment payment, PaymentWebhookEvent capture) {
+        if (!OPEN.contains(payment.getStatus())) {
+            return "Captured after the order was closed (" + payment.getStatus() + ")";
+        }
+        if (capture.getAmount() == null || payment.getAmount().compareTo(fromPaise(capture.getAmount())) != 0) {
+            return "Captured " + capture.getAmount() + " paise, order is for " + payment.getAmount();
+        }
+        return null;
+    }
+
+    private static BigDecimal fromPaise(Long paise) {
+        return paise == null ? null : BigDecimal.valueOf(paise, 2);
+    }
+
+    private int expire(List<Object[]> payments) {
+        if (payments.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(EXPIRE_ORDER, payments);
+        return payments.size();
+    }
+
+    private boolean enqueueRecovered(Payment payment, PaymentGateway.CapturedPayment captured) {
+        String externalEventId = "sweep:" + captured.getId();
+        if (eventRepository.existsByExternalEventId(externalEventId)) {
+            return false;
+        }
+        try {
+            eventRepository.save(PaymentWebhookEvent.builder()
+                    .externalEventId(externalEventId)
+                    .eventType(PAYMENT_CAPTURED)
+                    .razorpayOrderId(payment.getRazorpayOrderId())
+                    .razorpayPaymentId(captured.getId())
+                    .amount(captured.getAmount())
+                    .payload(objectMapper.createObjectNode()
+                            .put("source", "sweep")
+                            .put("order_id", payment.getRazorpayOrderId())
+                            .put("payment_id", captured.getId())
+                            .put("amount", captured.getAmount())
+                            .toString())
+                    .build());
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+}
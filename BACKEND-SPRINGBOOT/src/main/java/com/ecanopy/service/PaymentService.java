@@ -1,31 +1,34 @@
 package com.ecanopy.service;
 
+import com.ecanopy.config.DomainMetrics;
 import com.ecanopy.dto.request.PaymentOrderRequest;
 import com.ecanopy.dto.request.PaymentVerificationRequest;
 import com.ecanopy.dto.response.PaymentOrderResponse;
+import com.ecanopy.entity.Flat;
 import com.ecanopy.entity.MaintenanceBill;
 import com.ecanopy.entity.Payment;
 import com.ecanopy.entity.User;
 import com.ecanopy.entity.enums.BillStatus;
 import com.ecanopy.entity.enums.PaymentStatus;
+import com.ecanopy.exception.BadRequestException;
 import com.ecanopy.exception.NotFoundException;
+import com.ecanopy.exception.ServiceUnavailableException;
 import com.ecanopy.repository.MaintenanceBillRepository;
 import com.ecanopy.repository.PaymentRepository;
 import com.ecanopy.repository.UserRepository;
-import com.razorpay.Order;
-import com.razorpay.RazorpayClient;
-import com.razorpay.RazorpayException;
 import lombok.RequiredArgsConstructor;
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Payment Service
@@ -35,17 +38,22 @@ import java.time.LocalDateTime;
 @RequiredArgsConstructor
 public class PaymentService {
 
-    private final RazorpayClient razorpayClient;
+    private final ResilientPaymentGateway paymentGateway;
     private final PaymentRepository paymentRepository;
     private final MaintenanceBillRepository billRepository;
     private final UserRepository userRepository;
+    private final DomainMetrics metrics;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentOrderDeduplicator orderDeduplicator;
+    private final RazorpaySignatureVerifier signatureVerifier;
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+    // Well past the gateway time limiter: a RESERVED row older than this was abandoned mid-call
+    static final Duration RESERVATION_TIMEOUT = Duration.ofMinutes(2);
 
     @Value("${razorpay.key.id}")
     private String keyId;
 
-    @Value("${razorpay.key.secret}")
-    private String keySecret;
-
     @Value("${razorpay.currency}")
     private String currency;
 
@@ -55,12 +63,66 @@ public class PaymentService {
     /**
      * Create Razorpay payment order
      * 
-     * @param request Payment order request with billId and userId
+     * Reserve-call-confirm: the payment row is reserved and the order is recorded in two
+     * short transactions, and the gateway round trip in between runs with no transaction
+     * (and no pooled connection) held, so a slow gateway cannot drain the Hikari pool.
+     * 
+     * Repeats do not create new orders: concurrent or just-finished requests for the same bill
+     * share one result (PaymentOrderDeduplicator), a known Idempotency-Key returns the order it
+     * produced, and a bill's live CREATED order is reused while its amount still matches. The
+     * unique active_bill_id column keeps it to one live order per bill across instances.
+     * 
+     * @param request        Payment order request with billId and userId
+     * @param idempotencyKey Optional client key identifying this payment attempt
      * @return Payment order response with orderId, amount, key for frontend
      */
-    @Transactional
-    public PaymentOrderResponse createPaymentOrder(PaymentOrderRequest request) throws RazorpayException {
-        // 1. Fetch bill
+    public PaymentOrderResponse createPaymentOrder(PaymentOrderRequest request, String idempotencyKey) {
+        if (idempotencyKey != null && idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must be at most " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        return orderDeduplicator.execute(
+                new PaymentOrderDeduplicator.Key(request.getBillId(), request.getUserId(), idempotencyKey),
+                () -> createOrReuseOrder(request, idempotencyKey));
+    }
+
+    private PaymentOrderResponse createOrReuseOrder(PaymentOrderRequest request, String idempotencyKey) {
+        // 1. Reserve a payment row for the bill, unless an order can be reused
+        Reservation reservation;
+        try {
+            reservation = transactionTemplate.execute(status -> reservePayment(request, idempotencyKey));
+        } catch (DataIntegrityViolationException e) {
+            // Another instance reserved the bill (or used the key) between our lookup and insert
+            reservation = transactionTemplate.execute(status -> findReusableOrder(request, idempotencyKey))
+                    .orElseThrow(() -> new ServiceUnavailableException(
+                            "A payment order for this bill is already being created, please retry"));
+        }
+        if (reservation.reusedOrderId != null) {
+            return orderResponse(reservation.reusedOrderId, reservation.amountPaise);
+        }
+
+        // 2. Create the gateway order outside any transaction
+        Reservation reserved = reservation;
+        DomainMetrics.Recording metric = metrics.record(DomainMetrics.PAYMENT_ORDER);
+        metric.society(reserved.societyId);
+        PaymentGateway.Order order;
+        try {
+            order = metric.success(paymentGateway.createOrder(reserved.amountPaise, currency,
+                    "bill_" + reserved.billId));
+        } catch (RuntimeException e) {
+            metric.failure(e);
+            transactionTemplate.executeWithoutResult(status -> releaseReservation(reserved.paymentId, e));
+            throw e;
+        }
+
+        // 3. Confirm the reservation with the gateway order id
+        transactionTemplate.executeWithoutResult(status -> confirmReservation(reserved.paymentId, order.getId()));
+
+        // 4. Return order details for frontend
+        return orderResponse(order.getId(), order.getAmount());
+    }
+
+    private Reservation reservePayment(PaymentOrderRequest request, String idempotencyKey) {
+        // 1. Fetch bill; a paid bill gets no order, not even a replayed one
         MaintenanceBill bill = billRepository.findById(request.getBillId())
                 .orElseThrow(() -> new NotFoundException("Bill not found"));
 
@@ -68,40 +130,122 @@ public class PaymentService {
             throw new RuntimeException("Bill already paid");
         }
 
+        Optional<Reservation> reusable = findReusableOrder(request, idempotencyKey);
+        if (reusable.isPresent()) {
+            return reusable.get();
+        }
+
         // 2. Fetch user
         User user = userRepository.findById(request.getUserId())
                 .orElseThrow(() -> new NotFoundException("User not found"));
 
-        // 3. Create Razorpay Order
-        JSONObject orderRequest = new JSONObject();
-        // Convert amount to paise (₹100 = 10000 paise)
-        orderRequest.put("amount", bill.getTotalAmount().multiply(new BigDecimal(100)).intValue());
-        orderRequest.put("currency", currency);
-        orderRequest.put("receipt", "bill_" + bill.getBillId());
-
-        Order razorpayOrder = razorpayClient.orders.create(orderRequest);
+        // 3. Retire a live payment that can no longer be reused (amount changed, stale reservation)
+        paymentRepository.findByActiveBillId(bill.getBillId()).ifPresent(live -> {
+            if (live.getStatus() == PaymentStatus.RESERVED
+                    && live.getCreatedAt().isAfter(LocalDateTime.now().minus(RESERVATION_TIMEOUT))) {
+                throw new ServiceUnavailableException("A payment order for this bill is already being created, please retry");
+            }
+            live.setStatus(PaymentStatus.FAILED);
+            live.setRemarks("Superseded by a new order");
+            live.setActiveBillId(null);
+            paymentRepository.saveAndFlush(live);
+        });
 
-        // 4. Save Payment record with CREATED status
-        Payment payment = Payment.builder()
+        // 4. Save Payment record with RESERVED status until the gateway answers
+        Payment payment = paymentRepository.saveAndFlush(Payment.builder()
                 .amount(bill.getTotalAmount())
-                .status(PaymentStatus.CREATED)
-                .razorpayOrderId(razorpayOrder.get("id"))
+                .status(PaymentStatus.RESERVED)
                 .maintenanceBill(bill)
                 .paidByUser(user)
-                .build();
+                .activeBillId(bill.getBillId())
+                .idempotencyKey(idempotencyKey)
+                .build());
+
+        Flat flat = bill.getFlat();
+        Long societyId = flat != null && flat.getBuilding() != null && flat.getBuilding().getSociety() != null
+                ? flat.getBuilding().getSociety().getSocietyId()
+                : null;
+        return new Reservation(payment.getPaymentId(), bill.getBillId(), toPaise(bill.getTotalAmount()), societyId, null);
+    }
+
+    /**
+     * The order this idempotency key already produced, or the bill's live CREATED order if its
+     * amount still matches the bill.
+     */
+    private Optional<Reservation> findReusableOrder(PaymentOrderRequest request, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            Optional<Payment> replay = paymentRepository.findByIdempotencyKey(idempotencyKey);
+            if (replay.isPresent()) {
+                Payment payment = replay.get();
+                if (!payment.getMaintenanceBill().getBillId().equals(request.getBillId())) {
+                    throw new BadRequestException("Idempotency-Key was already used for another bill");
+                }
+                if (payment.getRazorpayOrderId() != null) {
+                    return Optional.of(reused(payment));
+                }
+            }
+        }
 
+        return paymentRepository.findByActiveBillId(request.getBillId())
+                .filter(live -> live.getStatus() == PaymentStatus.CREATED && live.getRazorpayOrderId() != null)
+                .filter(live -> live.getAmount().compareTo(live.getMaintenanceBill().getTotalAmount()) == 0)
+                .map(this::reused);
+    }
+
+    private Reservation reused(Payment payment) {
+        return new Reservation(payment.getPaymentId(), payment.getMaintenanceBill().getBillId(),
+                toPaise(payment.getAmount()), null, payment.getRazorpayOrderId());
+    }
+
+    private void confirmReservation(Long paymentId, String razorpayOrderId) {
+        Payment payment = paymentRepository.findById(paymentId)
+                .orElseThrow(() -> new NotFoundException("Payment not found"));
+        payment.setRazorpayOrderId(razorpayOrderId);
+        payment.setStatus(PaymentStatus.CREATED);
         paymentRepository.save(payment);
+    }
 
-        // 5. Return order details for frontend
+    private void releaseReservation(Long paymentId, RuntimeException cause) {
+        paymentRepository.findById(paymentId).ifPresent(payment -> {
+            payment.setStatus(PaymentStatus.FAILED);
+            payment.setRemarks("Order creation failed: " + cause.getMessage());
+            payment.setActiveBillId(null);
+            payment.setIdempotencyKey(null); // the client may retry with the same key
+            paymentRepository.save(payment);
+        });
+    }
+
+    private PaymentOrderResponse orderResponse(String orderId, long amountPaise) {
         return PaymentOrderResponse.builder()
-                .orderId(razorpayOrder.get("id"))
-                .amount(razorpayOrder.get("amount"))
-                .currency(razorpayOrder.get("currency"))
+                .orderId(orderId)
+                .amount(amountPaise)
+                .currency(currency)
                 .key(keyId)
                 .companyName(companyName)
                 .build();
     }
 
+    // Convert amount to paise (₹100 = 10000 paise)
+    private static long toPaise(BigDecimal amount) {
+        return amount.multiply(new BigDecimal(100)).longValue();
+    }
+
+    private static final class Reservation {
+        final Long paymentId;
+        final Long billId;
+        final long amountPaise;
+        final Long societyId;
+        final String reusedOrderId;
+
+        Reservation(Long paymentId, Long billId, long amountPaise, Long societyId, String reusedOrderId) {
+            this.paymentId = paymentId;
+            this.billId = billId;
+            this.amountPaise = amountPaise;
+            this.societyId = societyId;
+            this.reusedOrderId = reusedOrderId;
+        }
+    }
+
     /**
      * Verify payment signature and update payment status
      * 
@@ -110,19 +254,26 @@ public class PaymentService {
      */
     @Transactional
     public Payment verifyAndUpdatePayment(PaymentVerificationRequest request) {
-        // 1. Verify signature
-        String generatedSignature = generateSignature(
-                request.getRazorpayOrderId(),
-                request.getRazorpayPaymentId());
+        DomainMetrics.Recording metric = metrics.record(DomainMetrics.PAYMENT_VERIFY);
+        try {
+            return metric.success(verifyAndUpdatePayment(request, metric));
+        } catch (RuntimeException e) {
+            throw metric.failure(e);
+        }
+    }
 
-        if (!generatedSignature.equals(request.getRazorpaySignature())) {
+    private Payment verifyAndUpdatePayment(PaymentVerificationRequest request, DomainMetrics.Recording metric) {
+        // 1. Verify signature
+        if (!signatureVerifier.verifyPayment(request.getRazorpayOrderId(), request.getRazorpayPaymentId(),
+                request.getRazorpaySignature())) {
             // Mark payment as failed
             Payment payment = paymentRepository.findByRazorpayOrderId(request.getRazorpayOrderId())
                     .orElseThrow(() -> new NotFoundException("Payment not found"));
             payment.setStatus(PaymentStatus.FAILED);
             payment.setRemarks("Signature verification failed");
             paymentRepository.save(payment);
-            throw new RuntimeException("Invalid payment signature");
+            metric.society(payment.getMaintenanceBill().getFlat());
+            throw new IllegalArgumentException("Invalid payment signature");
         }
 
         // 2. Find payment by order ID
@@ -135,41 +286,17 @@ public class PaymentService {
         payment.setStatus(PaymentStatus.SUCCESS);
         payment.setPaidAt(LocalDateTime.now());
         payment.setTransactionId(request.getRazorpayPaymentId()); // Store payment ID as transaction ID
+        payment.setActiveBillId(null);
 
         // 4. Update bill status
         MaintenanceBill bill = payment.getMaintenanceBill();
+        metric.society(bill.getFlat());
         bill.setStatus(BillStatus.PAID);
         bill.setPaidDate(LocalDate.now());
+        Long billId = bill.getBillId();
+        Transactions.afterCommit(() -> orderDeduplicator.forget(List.of(billId)));
 
         billRepository.save(bill);
         return paymentRepository.save(payment);
     }
-
-    /**
-     * Generate HMAC SHA256 signature for verification
-     * 
-     * @param orderId   Razorpay order ID
-     * @param paymentId Razorpay payment ID
-     * @return Generated signature
-     */
-    private String generateSignature(String orderId, String paymentId) {
-        try {
-            String payload = orderId + "|" + paymentId;
-            Mac mac = Mac.getInstance("HmacSHA256");
-            SecretKeySpec secretKeySpec = new SecretKeySpec(keySecret.getBytes(), "HmacSHA256");
-            mac.init(secretKeySpec);
-            byte[] hash = mac.doFinal(payload.getBytes());
-
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1)
-                    hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (Exception e) {
-            throw new RuntimeException("Error generating signature", e);
-        }
-    }
 }
@@ -0,0 +1,107 @@
+package com.ecanopy.service;
+
+import com.ecanopy.entity.PaymentWebhookEvent;
+import com.ecanopy.exception.BadRequestException;
+import com.ecanopy.exception.ServiceUnavailableException;
+import com.ecanopy.exception.UnauthorizedException;
+import com.ecanopy.repository.PaymentWebhookEventRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * Razorpay webhook intake
+ * Verifies the X-Razorpay-Signature over the raw body and queues the event in
+ * payment_webhook_events; PaymentReconciler applies it. Nothing else happens on the
+ * request thread, so Razorpay gets its 200 in a few milliseconds.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentWebhookService {
+
+    private static final int MAX_EVENT_ID_LENGTH = 100;
+
+    private final PaymentWebhookEventRepository eventRepository;
+    private final RazorpaySignatureVerifier signatureVerifier;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Queue a signed webhook delivery. Redeliveries (same event id) are accepted and dropped.
+     *
+     * @param body      Raw request body, exactly as signed
+     * @param signature X-Razorpay-Signature header
+     * @param eventId   X-Razorpay-Event-Id header; a digest of the body is used when absent
+     */
+    public void enqueue(byte[] body, String signature, String eventId) {
+        if (!signatureVerifier.isWebhookConfigured()) {
+            throw new ServiceUnavailableException("Payment webhooks are not configured");
+        }
+        if (!signatureVerifier.verifyWebhook(body, signature)) {
+            throw new UnauthorizedException("Invalid webhook signature");
+        }
+
+        JsonNode event;
+        try {
+            event = objectMapper.readTree(body);
+        } catch (IOException e) {
+            throw new BadRequestException("Malformed webhook payload");
+        }
+        String eventType = event.path("event").asText("");
+        if (eventType.isEmpty()) {
+            throw new BadRequestException("Webhook payload has no event type");
+        }
+
+        String externalEventId = eventId != null && !eventId.isBlank() ? eventId : "sha256:" + sha256Hex(body);
+        if (externalEventId.length() > MAX_EVENT_ID_LENGTH) {
+            throw new BadRequestException("Webhook event id is too long");
+        }
+        if (eventRepository.existsByExternalEventId(externalEventId)) {
+            log.debug("Dropping redelivered webhook event {}", externalEventId);
+            return;
+        }
+
+        // payment.* events carry payload.payment.entity; order.paid carries both payment and order
+        JsonNode payment = event.path("payload").path("payment").path("entity");
+        String orderId = text(payment, "order_id");
+        if (orderId == null) {
+            orderId = text(event.path("payload").path("order").path("entity"), "id");
+        }
+
+        try {
+            eventRepository.save(PaymentWebhookEvent.builder()
+                    .externalEventId(externalEventId)
+                    .eventType(eventType)
+                    .razorpayOrderId(orderId)
+                    .razorpayPaymentId(text(payment, "id"))
+                    .amount(payment.hasNonNull("amount") ? payment.get("amount").asLong() : null)
+                    .payload(new String(body, StandardCharsets.UTF_8))
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // Concurrent redelivery inserted it first
+            log.debug("Dropping redelivered webhook event {}", externalEventId);
+        }
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value != null && value.isTextual() && !value.asText().isEmpty() ? value.asText() : null;
+    }
+
+    private static String sha256Hex(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.PenaltyProperties;
+import com.ecanopy.dto.request.PenaltyRuleRequest;
+import com.ecanopy.dto.response.PenaltyRunResponse;
+import com.ecanopy.entity.PenaltyRule;
+import com.ecanopy.entity.PenaltyRun;
+import com.ecanopy.entity.enums.PenaltyRunStatus;
+import com.ecanopy.exception.NotFoundException;
+import com.ecanopy.exception.ServiceUnavailableException;
+import com.ecanopy.repository.PenaltyRuleRepository;
+import com.ecanopy.repository.PenaltyRunRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Late fees for overdue maintenance bills
+ *
+ * A run walks the active societies in id order, a chunk at a time. Societies of a chunk that
+ * share a rule are updated together by two set-based statements, and the chunk commits with
+ * the run's checkpoint, so a crashed run resumes after the last committed society.
+ *
+ * The penalty is a function of the bill amount, its due date, the rule and the run date
+ * (late fee plus monthly interest per started month overdue), never of the previous value,
+ * so re-running a date or a chunk is harmless and only bills whose penalty changed are written.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PenaltyService {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private static final String ACTIVE_SOCIETIES = "SELECT society_id FROM societies "
+            + "WHERE is_active = TRUE AND society_id > ? ORDER BY society_id";
+    private static final String OPEN_BILLS = "status IN ('PENDING', 'PARTIAL', 'OVERDUE') AND due_date < ? "
+            + "AND flat_id IN (SELECT f.flat_id FROM flats f JOIN buildings bl ON bl.building_id = f.building_id "
+            + "WHERE bl.society_id IN (%s))";
+
+    private final PenaltyRunRepository runRepository;
+    private final PenaltyRuleRepository ruleRepository;
+    private final PenaltyProperties penaltyProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /** Effective rule; societies with equal rules are updated by the same statements. */
+    private record Rule(int graceDays, BigDecimal lateFee, BigDecimal monthlyRate, int maxMonths, boolean active) {
+    }
+
+    @Scheduled(cron = "${ecanopy.penalty.cron:0 30 1 * * *}")
+    public void nightly() {
+        if (penaltyProperties.isEnabled() && !running.get()) {
+            run();
+        }
+    }
+
+    /**
+     * Finish today's run if the application stopped (or the run failed) part way through.
+     */
+    @Scheduled(initialDelayString = "${ecanopy.penalty.resume-delay:1m}",
+            fixedDelayString = "${ecanopy.penalty.resume-interval:15m}")
+    public void resumeInterrupted() {
+        if (!penaltyProperties.isEnabled() || running.get()) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        runRepository.findByRunDate(today)
+                .filter(run -> run.getStatus() != PenaltyRunStatus.COMPLETED)
+                .ifPresent(run -> {
+                    log.info("Resuming penalty run for {} after society {}", today, run.getLastSocietyId());
+                    run();
+                });
+    }
+
+    /**
+     * Compute penalties of all overdue bills as of today, resuming today's run if it was
+     * interrupted. A completed run is returned as is. There is no choosing the date: a past
+     * one would charge interest again for months a later run already counted.
+     */
+    public PenaltyRunResponse run() {
+        if (!running.compareAndSet(false, true)) {
+            throw new ServiceUnavailableException("A penalty run is already in progress");
+        }
+        try {
+            return toResponse(execute(LocalDate.now()));
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public PenaltyRunResponse getLatestRun() {
+        return runRepository.findFirstByOrderByRunDateDesc()
+                .map(this::toResponse)
+                .orElseThrow(() -> new NotFoundException("No penalty run yet"));
+    }
+
+    public PenaltyRuleRequest getRule(Long societyId) {
+        return ruleRepository.findBySocietyId(societyId)
+                .map(rule -> PenaltyRuleRequest.builder()
+                        .graceDays(rule.getGraceDays())
+                        .lateFee(rule.getLateFee())
+                        .monthlyInterestPercent(rule.getMonthlyInterestPercent())
+                        .maxMonths(rule.getMaxMonths())
+                        .isActive(rule.getIsActive())
+                        .build())
+                .orElseGet(() -> PenaltyRuleRequest.builder()
+                        .graceDays(penaltyProperties.getGraceDays())
+                        .lateFee(penaltyProperties.getLateFee())
+                        .monthlyInterestPercent(penaltyProperties.getMonthlyInterestPercent())
+                        .maxMonths(penaltyProperties.getMaxMonths())
+                        .isActive(true)
+                        .build());
+    }
+
+    /**
+     * Set a society's rule; it applies from the next run.
+     */
+    public PenaltyRuleRequest saveRule(Long societyId, PenaltyRuleRequest request) {
+        PenaltyRule rule = ruleRepository.findBySocietyId(societyId)
+                .orElseGet(() -> PenaltyRule.builder().societyId(societyId).build());
+        rule.setGraceDays(request.getGraceDays());
+        rule.setLateFee(request.getLateFee());
+        rule.setMonthlyInterestPercent(request.getMonthlyInterestPercent());
+        rule.setMaxMonths(request.getMaxMonths());
+        rule.setIsActive(request.getIsActive());
+        ruleRepository.save(rule);
+        return getRule(societyId);
+    }
+
+    private PenaltyRun execute(LocalDate runDate) {
+        long started = System.nanoTime();
+        PenaltyRun run = runRepository.findByRunDate(runDate)
+                .orElseGet(() -> runRepository.save(PenaltyRun.builder().runDate(runDate).build()));
+        if (run.getStatus() == PenaltyRunStatus.COMPLETED) {
+            return run;
+        }
+        Long runId = run.getPenaltyRunId();
+
+        List<Long> remaining = jdbcTemplate.queryForList(ACTIVE_SOCIETIES, Long.class, run.getLastSocietyId());
+        run = transactionTemplate.execute(status -> {
+            PenaltyRun current = runRepository.findById(runId).orElseThrow();
+            current.setStatus(PenaltyRunStatus.RUNNING);
+            current.setSocietiesTotal(current.getSocietiesDone() + remaining.size());
+            current.setLastError(null);
+            current.setUpdatedAt(LocalDateTime.now());
+            return current;
+        });
+
+        int chunkSize = Math.max(1, penaltyProperties.getChunkSize());
+        for (int from = 0; from < remaining.size(); from += chunkSize) {
+            List<Long> chunk = remaining.subList(from, Math.min(from + chunkSize, remaining.size()));
+            try {
+                run = transactionTemplate.execute(status -> applyChunk(runId, runDate, chunk));
+            } catch (RuntimeException e) {
+                log.error("Penalty run for {} failed after society {}: {}", runDate, run.getLastSocietyId(),
+                        e.getMessage());
+                return finish(runId, PenaltyRunStatus.FAILED, e.getMessage());
+            }
+            log.info("Penalty run for {}: {}/{} societies, {} bills updated", runDate, run.getSocietiesDone(),
+                    run.getSocietiesTotal(), run.getBillsUpdated());
+        }
+
+        run = finish(runId, PenaltyRunStatus.COMPLETED, null);
+        log.info("Penalty run for {} completed: {} societies, {} bills updated in {} ms", runDate,
+                run.getSocietiesDone(), run.getBillsUpdated(), (System.nanoTime() - started) / 1_000_000);
+        return run;
+    }
+
+    private PenaltyRun applyChunk(Long runId, LocalDate runDate, List<Long> societyIds) {
+        Map<Long, PenaltyRule> custom = ruleRepository.findBySocietyIdIn(societyIds).stream()
+                .collect(Collectors.toMap(PenaltyRule::getSocietyId, Function.identity()));
+        Map<Rule, List<Long>> byRule = new LinkedHashMap<>();
+        for (Long societyId : societyIds) {
+            byRule.computeIfAbsent(effectiveRule(custom.get(societyId)), r -> new ArrayList<>()).add(societyId);
+        }
+
+        long updated = 0;
+        for (Map.Entry<Rule, List<Long>> group : byRule.entrySet()) {
+            updated += applyRule(group.getKey(), group.getValue(), runDate);
+        }
+
+        PenaltyRun run = runRepository.findById(runId).orElseThrow();
+        run.setLastSocietyId(societyIds.get(societyIds.size() - 1));
+        run.setSocietiesDone(run.getSocietiesDone() + societyIds.size());
+        run.setBillsUpdated(run.getBillsUpdated() + updated);
+        run.setUpdatedAt(LocalDateTime.now());
+        return run;
+    }
+
+    /**
+     * Update the open bills of some societies that share a rule.
+     *
+     * MySQL evaluates single-table UPDATE assignments left to right (later ones see earlier
+     * results) where H2 and the SQL standard use the old row, so neither statement reads a
+     * column it has already assigned: the first strips stale penalties (and marks the bill
+     * overdue), the second adds the new penalty to bills left at zero.
+     *
+     * @return bills whose penalty or status changed
+     */
+    private int applyRule(Rule rule, List<Long> societyIds, LocalDate runDate) {
+        String placeholders = String.join(", ", Collections.nCopies(societyIds.size(), "?"));
+        String openBills = OPEN_BILLS.formatted(placeholders);
+        Date cutoff = Date.valueOf(runDate.minusDays(rule.graceDays()));
+
+        if (!rule.active()) {
+            List<Object> args = new ArrayList<>(List.of(cutoff));
+            args.addAll(societyIds);
+            return jdbcTemplate.update("UPDATE maintenance_bills SET status = 'OVERDUE' WHERE status = 'PENDING' AND "
+                    + openBills, args.toArray());
+        }
+
+        // Penalty of a bill whose amount without penalties is `base`, as of the run date
+        String penalty = "ROUND(? + %s * ? * LEAST(?, FLOOR((TIMESTAMPDIFF(DAY, due_date, ?) - ? - 1) / 30) + 1), 2)";
+        Object[] penaltyArgs = { rule.lateFee(), rule.monthlyRate(), rule.maxMonths(), Date.valueOf(runDate),
+                rule.graceDays() };
+
+        String strip = "UPDATE maintenance_bills SET total_amount = total_amount - penalties, penalties = 0, "
+                + "status = CASE WHEN status = 'PENDING' THEN 'OVERDUE' ELSE status END "
+                + "WHERE " + openBills + " AND (status = 'PENDING' OR penalties <> "
+                + penalty.formatted("(total_amount - penalties)") + ")";
+        List<Object> stripArgs = new ArrayList<>(List.of(cutoff));
+        stripArgs.addAll(societyIds);
+        stripArgs.addAll(List.of(penaltyArgs));
+        int changed = jdbcTemplate.update(strip, stripArgs.toArray());
+
+        String newPenalty = penalty.formatted("total_amount");
+        String apply = "UPDATE maintenance_bills SET penalties = " + newPenalty + ", "
+                + "total_amount = total_amount + " + newPenalty + " "
+                + "WHERE " + openBills + " AND penalties = 0 AND " + newPenalty + " > 0";
+        List<Object> applyArgs = new ArrayList<>(List.of(penaltyArgs));
+        applyArgs.addAll(List.of(penaltyArgs));
+        applyArgs.add(cutoff);
+        applyArgs.addAll(societyIds);
+        applyArgs.addAll(List.of(penaltyArgs));
+        jdbcTemplate.update(apply, applyArgs.toArray());
+
+        return changed;
+    }
+
+    private Rule effectiveRule(PenaltyRule rule) {
+        if (rule == null) {
+            return new Rule(penaltyProperties.getGraceDays(), penaltyProperties.getLateFee(),
+                    monthlyRate(penaltyProperties.getMonthlyInterestPercent()), penaltyProperties.getMaxMonths(), true);
+        }
+        return new Rule(rule.getGraceDays(), rule.getLateFee(), monthlyRate(rule.getMonthlyInterestPercent()),
+                rule.getMaxMonths(), Boolean.TRUE.equals(rule.getIsActive()));
+    }
+
+    private static BigDecimal monthlyRate(BigDecimal percent) {
+        return percent.divide(BigDecimal.valueOf(100), 6, RoundingMode.HALF_UP).stripTrailingZeros();
+    }
+
+    private PenaltyRun finish(Long runId, PenaltyRunStatus status, String error) {
+        return transactionTemplate.execute(tx -> {
+            PenaltyRun run = runRepository.findById(runId).orElseThrow();
+            run.setStatus(status);
+            run.setLastError(error == null ? null
+                    : error.substring(0, Math.min(error.length(), MAX_ERROR_LENGTH)));
+            run.setUpdatedAt(LocalDateTime.now());
+            if (status == PenaltyRunStatus.COMPLETED) {
+                run.setFinishedAt(run.getUpdatedAt());
+            }
+            return run;
+        });
+    }
+
+    private PenaltyRunResponse toResponse(PenaltyRun run) {
+        return PenaltyRunResponse.builder()
+                .penaltyRunId(run.getPenaltyRunId())
+                .runDate(run.getRunDate())
+                .status(run.getStatus())
+                .societiesTotal(run.getSocietiesTotal())
+                .societiesDone(run.getSocietiesDone())
+                .billsUpdated(run.getBillsUpdated())
+                .lastSocietyId(run.getLastSocietyId())
+                .lastError(run.getLastError())
+                .startedAt(run.getStartedAt())
+                .updatedAt(run.getUpdatedAt())
+                .finishedAt(run.getFinishedAt())
+                .build();
+    }
+}
@@ -0,0 +1,250 @@
+package com.ecanopy.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Who is inside, per society
+ * Holds each gate subject's current state, so a scan knows whether it is an ENTRY or an
+ * EXIT without reading the latest log row. The state is the id of the log row that let the
+ * subject in (null while outside), and is rebuilt from access_logs and daily_help_logs
+ * before the application starts serving.
+ *
+ * A scan runs with the subject's lock held until its transaction completes, so two guards
+ * scanning the same pass at once are serialized, and the new state only becomes visible
+ * once the log row is committed. The lock is a ReentrantLock rather than a monitor so
+ * virtual threads waiting on it are not pinned.
+ *
+ * Committed changes between outside and inside are reported to OccupancyService, which
+ * keeps the live per-society counts.
+ *
+ * Single node only: the state and the locks live in this JVM. With two instances behind
+ * a load balancer, scans of one subject could be routed to both, each would decide ENTRY or
+ * EXIT from its own copy, and neither would see the other's logs until a restart. Running
+ * more than one instance needs the gate endpoints pinned to one of them, or this state moved
+ * to a shared store.
+ */
+@Component
+@Slf4j
+public class PresenceRegistry implements SmartInitializingSingleton {
+
+    /** Independent presence tracks: each is toggled by its own kind of scan and log table. */
+    public enum Kind {
+        RESIDENT, // QR gate pass, access_logs.user_id
+        HELP, // QR gate pass, access_logs.domestic_help_id
+        STAFF_PASS_CODE // Staff pass code, open daily_help_logs row
+    }
+
+    /** Outcome of a scan: the response, and the entry log id from now on (null = outside). */
+    public record Transition<T>(T response, Long entryLogId) {
+    }
+
+    /** One presence track of one subject. */
+    public record Subject(Long societyId, Kind kind, long subjectId) {
+    }
+
+    private static final long NO_SOCIETY = 0L;
+    private static final Kind[] KINDS = Kind.values();
+
+    // Last row per access_logs subject, kept when it is an ENTRY. The resident's society is a
+    // scalar subquery, so a user with several residents rows still yields one row per log.
+    private static final String ACCESS_INSIDE = "SELECT a.id, a.user_id, a.domestic_help_id, "
+            + "COALESCE(u.society_id, (SELECT MIN(bl.society_id) FROM residents r "
+            + "JOIN flats f ON f.flat_id = r.flat_id JOIN buildings bl ON bl.building_id = f.building_id "
+            + "WHERE r.user_id = a.user_id), h.society_id) AS society_id "
+            + "FROM access_logs a "
+            + "JOIN (SELECT MAX(id) AS id FROM access_logs GROUP BY user_id, domestic_help_id) last ON last.id = a.id "
+            + "LEFT JOIN users u ON u.id = a.user_id "
+            + "LEFT JOIN domestic_helps h ON h.help_id = a.domestic_help_id "
+            + "WHERE a.access_type = 'ENTRY'";
+    private static final String STAFF_INSIDE = "SELECT l.log_id, l.help_id, h.society_id "
+            + "FROM daily_help_logs l JOIN domestic_helps h ON h.help_id = l.help_id "
+            + "WHERE l.exit_time IS NULL ORDER BY l.log_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OccupancyService occupancyService;
+    private final Map<Long, Map<Long, Presence>> societies = new ConcurrentHashMap<>();
+
+    public PresenceRegistry(JdbcTemplate jdbcTemplate, OccupancyService occupancyService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.occupancyService = occupancyService;
+    }
+
+    private static final class Presence {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile Long entryLogId;
+    }
+
+    /**
+     * Rebuild from the log tables once every bean (and so the schema) is ready, before the
+     * web server starts.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        long started = System.nanoTime();
+        int[] inside = { 0 };
+        jdbcTemplate.query(ACCESS_INSIDE, rs -> {
+            long userId = rs.getLong("user_id");
+            boolean resident = !rs.wasNull();
+            long subjectId = resident ? userId : rs.getLong("domestic_help_id");
+            long societyId = rs.getLong("society_id");
+            Kind kind = resident ? Kind.RESIDENT : Kind.HELP;
+            presence(societyId, kind, subjectId).entryLogId = rs.getLong("id");
+            occupancyService.presenceChanged(societyId, kind, subjectId, true);
+            inside[0]++;
+        });
+        jdbcTemplate.query(STAFF_INSIDE, rs -> {
+            // Ordered by log id, so the latest open log wins, as the old per-scan query picked
+            long societyId = rs.getLong("society_id");
+            long helpId = rs.getLong("help_id");
+            Presence presence = presence(societyId, Kind.STAFF_PASS_CODE, helpId);
+            if (presence.entryLogId == null) {
+                occupancyService.presenceChanged(societyId, Kind.STAFF_PASS_CODE, helpId, true);
+                inside[0]++;
+            }
+            presence.entryLogId = rs.getLong("log_id");
+        });
+        log.info("Presence rebuilt: {} subjects inside across {} societies in {} ms", inside[0], societies.size(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Record a scan. The action gets the subject's entry log id (null while outside), writes
+     * its log row and returns the new state, which is applied when the surrounding
+     * transaction commits (immediately without one) and discarded on rollback.
+     */
+    public <T> T scan(Long societyId, Kind kind, long subjectId, Function<Long, Transition<T>> action) {
+        Presence presence = presence(societyId, kind, subjectId);
+        presence.lock.lock();
+        boolean unlockOnCompletion = false;
+        try {
+            Transition<T> transition = action.apply(presence.entryLogId);
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        try {
+                            if (status == STATUS_COMMITTED) {
+                                apply(societyId, kind, subjectId, presence, transition.entryLogId());
+                            }
+                        } finally {
+                            presence.lock.unlock();
+                        }
+                    }
+                });
+                unlockOnCompletion = true;
+            } else {
+                apply(societyId, kind, subjectId, presence, transition.entryLogId());
+            }
+            return transition.response();
+        } finally {
+            if (!unlockOnCompletion) {
+                presence.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Lock several subjects until the current transaction completes, for scans applied in
+     * bulk (offline guard uploads). Locks are taken in a fixed order, so concurrent batches
+     * cannot deadlock; states set on the batch are applied on commit, as with scan().
+     */
+    public Batch lockAll(Collection<Subject> subjects) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("lockAll requires a transaction");
+        }
+        List<Subject> ordered = new ArrayList<>(new LinkedHashSet<>(subjects));
+        ordered.sort(Comparator.comparingLong((Subject subject) -> society(subject.societyId()))
+                .thenComparingLong(subject -> subject.subjectId() * KINDS.length + subject.kind().ordinal()));
+        Batch batch = new Batch();
+        try {
+            for (Subject subject : ordered) {
+                Presence presence = presence(subject.societyId(), subject.kind(), subject.subjectId());
+                presence.lock.lock();
+                batch.locked.put(subject, presence);
+            }
+        } catch (RuntimeException e) {
+            batch.unlock();
+            throw e;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        batch.staged.forEach((subject, entryLogId) -> apply(subject.societyId(), subject.kind(),
+                                subject.subjectId(), batch.locked.get(subject), entryLogId));
+                    }
+                } finally {
+                    batch.unlock();
+                }
+            }
+        });
+        return batch;
+    }
+
+    /** Subjects locked by lockAll, with the states staged for commit. */
+    public static final class Batch {
+        private final Map<Subject, Presence> locked = new LinkedHashMap<>();
+        private final Map<Subject, Long> staged = new HashMap<>();
+
+        private Batch() {
+        }
+
+        /** Entry log id of the subject as staged so far (null = outside). */
+        public Long entryLogId(Subject subject) {
+            return staged.containsKey(subject) ? staged.get(subject) : presence(subject).entryLogId;
+        }
+
+        public void set(Subject subject, Long entryLogId) {
+            presence(subject);
+            staged.put(subject, entryLogId);
+        }
+
+        private Presence presence(Subject subject) {
+            Presence presence = locked.get(subject);
+            if (presence == null) {
+                throw new IllegalArgumentException("Subject not locked: " + subject);
+            }
+            return presence;
+        }
+
+        private void unlock() {
+            locked.values().forEach(presence -> presence.lock.unlock());
+        }
+    }
+
+    /** Set the committed state; called with the subject's lock held. */
+    private void apply(Long societyId, Kind kind, long subjectId, Presence presence, Long entryLogId) {
+        boolean wasInside = presence.entryLogId != null;
+        presence.entryLogId = entryLogId;
+        if (wasInside != (entryLogId != null)) {
+            occupancyService.presenceChanged(society(societyId), kind, subjectId, entryLogId != null);
+        }
+    }
+
+    private Presence presence(Long societyId, Kind kind, long subjectId) {
+        return societies.computeIfAbsent(society(societyId), id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(subjectId * KINDS.length + kind.ordinal(), key -> new Presence());
+    }
+
+    private static long society(Long societyId) {
+        return societyId != null ? societyId : NO_SOCIETY;
+    }
+}
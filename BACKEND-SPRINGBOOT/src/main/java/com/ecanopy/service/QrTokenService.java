@@ -0,0 +1,252 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.JwtProperties;
+import com.ecanopy.config.QrTokenProperties;
+import com.ecanopy.dto.response.QrTokenResponse;
+import com.ecanopy.entity.QrRevocation;
+import com.ecanopy.entity.enums.QrSubjectType;
+import com.ecanopy.exception.BadRequestException;
+import com.ecanopy.exception.ForbiddenException;
+import com.ecanopy.repository.QrRevocationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Signed gate pass tokens
+ * Format: "Q2." + base64url(payload) + "." + base64url(mac), where the payload is
+ * type (1 byte), subject id and society id (8 bytes each), issued-at (epoch milliseconds,
+ * 8 bytes), expiry (epoch seconds, 4 bytes) and the display name (UTF-8), and the mac is
+ * HMAC-SHA256 over the version byte and payload, truncated to 128 bits. Issue and revocation
+ * times are compared to the millisecond, so a pass re-issued right after a revocation is
+ * valid.
+ *
+ * A scan is verified entirely in memory: one pooled HMAC, an expiry check and a lookup in
+ * the revocation set, which holds only revocations younger than the longest token lifetime
+ * and is reloaded from qr_revocations every ecanopy.qr.revocation-refresh.
+ */
+@Service
+@Slf4j
+public class QrTokenService {
+
+    static final String PREFIX = "Q2.";
+    private static final byte VERSION = 2;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 16;
+    private static final int FIXED_LENGTH = 1 + 8 + 8 + 8 + 4;
+    private static final int MAX_NAME_CHARS = 24;
+    private static final int POOL_SIZE = 64;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final QrSubjectType[] TYPES = QrSubjectType.values();
+
+    /** A verified token. societyId is 0 when the subject had no society at issue time. */
+    public record QrToken(QrSubjectType type, long subjectId, long societyId, String name, long issuedAt,
+            long expiresAt) {
+    }
+
+    private final QrRevocationRepository revocationRepository;
+    private final QrTokenProperties qrTokenProperties;
+    private final Mac prototype;
+    private final BlockingQueue<Mac> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+    // subject key -> revokedAt (epoch milliseconds)
+    private final Map<Long, Long> revoked = new ConcurrentHashMap<>();
+
+    public QrTokenService(QrRevocationRepository revocationRepository, QrTokenProperties qrTokenProperties,
+            JwtProperties jwtProperties) {
+        this.revocationRepository = revocationRepository;
+        this.qrTokenProperties = qrTokenProperties;
+        this.prototype = keyedMac(qrTokenProperties.getSecret(), jwtProperties.getSecret());
+    }
+
+    public QrTokenResponse issue(QrSubjectType type, Long subjectId, Long societyId, String name) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now / 1000 + (type == QrSubjectType.HELP
+                ? qrTokenProperties.getHelpTtl()
+                : qrTokenProperties.getResidentTtl()).toSeconds();
+        byte[] nameBytes = truncate(name).getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer payload = ByteBuffer.allocate(FIXED_LENGTH + nameBytes.length)
+                .put((byte) type.ordinal())
+                .putLong(subjectId)
+                .putLong(societyId != null ? societyId : 0L)
+                .putLong(now)
+                .putInt((int) expiresAt)
+                .put(nameBytes);
+        byte[] mac = Arrays.copyOf(sign(VERSION, payload.array()), MAC_LENGTH);
+
+        return QrTokenResponse.builder()
+                .token(PREFIX + ENCODER.encodeToString(payload.array()) + "." + ENCODER.encodeToString(mac))
+                .subjectType(type)
+                .subjectId(subjectId)
+                .expiresAt(LocalDateTime.ofInstant(Instant.ofEpochSecond(expiresAt), ZoneId.systemDefault()))
+                .build();
+    }
+
+    /**
+     * Verify a scanned token.
+     *
+     * @throws BadRequestException not a Q2 token, or expired
+     * @throws ForbiddenException  bad signature, or revoked
+     */
+    public QrToken verify(String token) {
+        return verify(token, System.currentTimeMillis(), Instant.now().getEpochSecond());
+    }
+
+    /**
+     * Verify a token as of a past scan (epoch seconds), for scans uploaded by offline guard
+     * devices: it must not have expired by then, nor been revoked before then. A revocation
+     * within the second of the scan counts as before it.
+     */
+    public QrToken verify(String token, long scannedAt) {
+        return verify(token, scannedAt * 1000 + 999, scannedAt);
+    }
+
+    private QrToken verify(String token, long scannedAtMillis, long scannedAt) {
+        if (token == null || !token.startsWith(PREFIX)) {
+            throw new BadRequestException("Unsupported QR code");
+        }
+        int dot = token.indexOf('.', PREFIX.length());
+        byte[] payload;
+        byte[] mac;
+        try {
+            payload = DECODER.decode(token.substring(PREFIX.length(), dot < 0 ? token.length() : dot));
+            mac = dot < 0 ? new byte[0] : DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid QR code");
+        }
+        if (payload.length < FIXED_LENGTH || mac.length != MAC_LENGTH || !matches(sign(VERSION, payload), mac)) {
+            throw new ForbiddenException("QR code signature is invalid");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        int type = buffer.get();
+        if (type < 0 || type >= TYPES.length) {
+            throw new BadRequestException("Unsupported QR code");
+        }
+        long subjectId = buffer.getLong();
+        long societyId = buffer.getLong();
+        long issuedAtMillis = buffer.getLong();
+        long expiresAt = Integer.toUnsignedLong(buffer.getInt());
+        String name = new String(payload, FIXED_LENGTH, payload.length - FIXED_LENGTH, StandardCharsets.UTF_8);
+
+        if (expiresAt <= scannedAt) {
+            throw new BadRequestException("QR code has expired");
+        }
+        Long revokedAt = revoked.get(key(TYPES[type], subjectId));
+        if (revokedAt != null && issuedAtMillis <= revokedAt && scannedAtMillis >= revokedAt) {
+            throw new ForbiddenException("QR code has been revoked");
+        }
+        return new QrToken(TYPES[type], subjectId, societyId, name, issuedAtMillis / 1000, expiresAt);
+    }
+
+    /**
+     * Refuse every token of the subject issued so far; passes issued afterwards are valid.
+     */
+    public void revoke(QrSubjectType type, Long subjectId, Long societyId, String revokedBy) {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        QrRevocation revocation = revocationRepository.findBySubjectTypeAndSubjectId(type, subjectId)
+                .orElseGet(() -> QrRevocation.builder().subjectType(type).subjectId(subjectId).build());
+        revocation.setSocietyId(societyId);
+        revocation.setRevokedAt(now);
+        revocation.setRevokedBy(revokedBy);
+        revocationRepository.save(revocation);
+        revoked.merge(key(type, subjectId), epochMilli(now), Math::max);
+    }
+
+    /**
+     * Pick up revocations made on other instances and drop those no token can outlive.
+     * Revocations are never lifted, so entries are merged rather than replaced.
+     */
+    @Scheduled(fixedDelayString = "${ecanopy.qr.revocation-refresh:1m}")
+    public void refreshRevocations() {
+        Duration longest = qrTokenProperties.getHelpTtl().compareTo(qrTokenProperties.getResidentTtl()) > 0
+                ? qrTokenProperties.getHelpTtl()
+                : qrTokenProperties.getResidentTtl();
+        LocalDateTime since = LocalDateTime.now().minus(longest);
+        for (QrRevocation revocation : revocationRepository.findByRevokedAtAfter(since)) {
+            revoked.merge(key(revocation.getSubjectType(), revocation.getSubjectId()),
+                    epochMilli(revocation.getRevokedAt()), Math::max);
+        }
+        long cutoff = epochMilli(since);
+        revoked.values().removeIf(revokedAt -> revokedAt < cutoff);
+        log.debug("{} QR revocations active", revoked.size());
+    }
+
+    private static long key(QrSubjectType type, long subjectId) {
+        return subjectId * TYPES.length + type.ordinal();
+    }
+
+    private static long epochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String truncate(String name) {
+        if (name == null) {
+            return "";
+        }
+        return name.length() <= MAX_NAME_CHARS ? name : name.substring(0, MAX_NAME_CHARS);
+    }
+
+    private byte[] sign(byte version, byte[] payload) {
+        Mac mac = pool.poll();
+        if (mac == null) {
+            try {
+                mac = (Mac) prototype.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(ALGORITHM + " provider does not support cloning", e);
+            }
+        }
+        try {
+            mac.update(version);
+            return mac.doFinal(payload);
+        } finally {
+            pool.offer(mac); // doFinal resets it; dropped when the pool is full
+        }
+    }
+
+    /** Constant-time comparison of the truncated mac. */
+    private static boolean matches(byte[] computed, byte[] received) {
+        int diff = 0;
+        for (int i = 0; i < MAC_LENGTH; i++) {
+            diff |= computed[i] ^ received[i];
+        }
+        return diff == 0;
+    }
+
+    private static Mac keyedMac(String secret, String jwtSecret) {
+        try {
+            byte[] key;
+            if (secret != null && !secret.isBlank()) {
+                key = secret.getBytes(StandardCharsets.UTF_8);
+            } else {
+                // Separate key derived from the JWT secret, so no extra configuration is required
+                Mac derive = Mac.getInstance(ALGORITHM);
+                derive.init(new SecretKeySpec(jwtSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+                key = derive.doFinal("ecanopy-qr-token".getBytes(StandardCharsets.UTF_8));
+            }
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key, ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise " + ALGORITHM, e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.ecanopy.service;
+
+import com.razorpay.RazorpayClient;
+import com.razorpay.RazorpayException;
+import lombok.RequiredArgsConstructor;
+import org.json.JSONObject;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+@Component
+@Profile("!stub-gateway")
+@RequiredArgsConstructor
+public class RazorpayGateway implements PaymentGateway {
+
+    private final RazorpayClient razorpayClient;
+
+    @Override
+    public Order createOrder(long amountPaise, String currency, String receipt) throws RazorpayException {
+        JSONObject orderRequest = new JSONObject();
+        orderRequest.put("amount", amountPaise);
+        orderRequest.put("currency", currency);
+        orderRequest.put("receipt", receipt);
+
+        com.razorpay.Order order = razorpayClient.orders.create(orderRequest);
+        return new Order(order.get("id"), ((Number) order.get("amount")).longValue(), order.get("currency"));
+    }
+
+    @Override
+    public Optional<CapturedPayment> findCapturedPayment(String orderId) throws RazorpayException {
+        for (com.razorpay.Payment payment : razorpayClient.orders.fetchPayments(orderId)) {
+            if ("captured".equals(payment.get("status"))) {
+                return Optional.of(new CapturedPayment(payment.get("id"), ((Number) payment.get("amount")).longValue()));
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,209 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.RazorpayProperties;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Razorpay HMAC-SHA256 signatures: the checkout signature over "orderId|paymentId"
+ * (key secret) and the webhook signature over the raw body (webhook secret).
+ *
+ * Keys are decoded once, and initialised Mac instances are cloned from a prototype and
+ * kept in a small pool together with their scratch buffers, so a verification does no
+ * provider lookup, key setup or allocation. A pool rather than thread-locals, because with
+ * the "virtual" profile every request runs on a fresh virtual thread. The received hex
+ * signature is decoded and compared bytewise in constant time (MessageDigest.isEqual).
+ */
+@Component
+public class RazorpaySignatureVerifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+    private static final int POOL_SIZE = 64;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[HEX[i]] = (byte) i;
+            HEX_VALUES[Character.toUpperCase(HEX[i])] = (byte) i;
+        }
+    }
+
+    private final Hmac paymentHmac;
+    private final Hmac webhookHmac;
+
+    public RazorpaySignatureVerifier(RazorpayProperties razorpayProperties) {
+        String keySecret = razorpayProperties.getKey().getSecret();
+        String webhookSecret = razorpayProperties.getWebhook().getSecret();
+        this.paymentHmac = hasText(keySecret) ? new Hmac(keySecret) : null;
+        this.webhookHmac = hasText(webhookSecret) ? new Hmac(webhookSecret) : null;
+    }
+
+    public boolean isWebhookConfigured() {
+        return webhookHmac != null;
+    }
+
+    /**
+     * Checkout signature: HMAC of "orderId|paymentId" with the key secret.
+     */
+    public boolean verifyPayment(String orderId, String paymentId, String signature) {
+        if (orderId == null || paymentId == null) {
+            return false;
+        }
+        Signer signer = require(paymentHmac, "razorpay.key.secret").borrow();
+        try {
+            signer.update(orderId);
+            signer.mac.update((byte) '|');
+            signer.update(paymentId);
+            return signer.matches(signature);
+        } finally {
+            paymentHmac.release(signer);
+        }
+    }
+
+    /**
+     * Webhook signature: HMAC of the raw request body with the webhook secret.
+     */
+    public boolean verifyWebhook(byte[] body, String signature) {
+        Signer signer = require(webhookHmac, "razorpay.webhook.secret").borrow();
+        try {
+            signer.mac.update(body);
+            return signer.matches(signature);
+        } finally {
+            webhookHmac.release(signer);
+        }
+    }
+
+    /**
+     * Lowercase hex checkout signature, as Razorpay computes it.
+     */
+    public String paymentSignature(String orderId, String paymentId) {
+        Signer signer = require(paymentHmac, "razorpay.key.secret").borrow();
+        try {
+            signer.update(orderId);
+            signer.mac.update((byte) '|');
+            signer.update(paymentId);
+            signer.finish();
+            char[] hex = new char[MAC_LENGTH * 2];
+            for (int i = 0; i < MAC_LENGTH; i++) {
+                hex[2 * i] = HEX[(signer.computed[i] >> 4) & 0x0f];
+                hex[2 * i + 1] = HEX[signer.computed[i] & 0x0f];
+            }
+            return new String(hex);
+        } finally {
+            paymentHmac.release(signer);
+        }
+    }
+
+    private static Hmac require(Hmac hmac, String property) {
+        if (hmac == null) {
+            throw new IllegalStateException(property + " is not configured");
+        }
+        return hmac;
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    /** One secret: the keyed prototype and a pool of ready clones. */
+    private static final class Hmac {
+        private final Mac prototype;
+        private final BlockingQueue<Signer> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+        Hmac(String secret) {
+            try {
+                prototype = Mac.getInstance(ALGORITHM);
+                prototype.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot initialise " + ALGORITHM, e);
+            }
+        }
+
+        Signer borrow() {
+            Signer signer = pool.poll();
+            return signer != null ? signer : new Signer(newMac());
+        }
+
+        void release(Signer signer) {
+            signer.mac.reset();
+            pool.offer(signer); // dropped when the pool is full
+        }
+
+        private Mac newMac() {
+            try {
+                return (Mac) prototype.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(ALGORITHM + " provider does not support cloning", e);
+            }
+        }
+    }
+
+    /** A keyed Mac with its reusable buffers; used by one caller at a time. */
+    private static final class Signer {
+        final Mac mac;
+        final byte[] computed = new byte[MAC_LENGTH];
+        final byte[] received = new byte[MAC_LENGTH];
+        byte[] ascii = new byte[64];
+
+        Signer(Mac mac) {
+            this.mac = mac;
+        }
+
+        /** Feeds a Razorpay id; ids are ASCII, anything else goes through UTF-8. */
+        void update(String value) {
+            int length = value.length();
+            if (ascii.length < length) {
+                ascii = new byte[Math.max(length, ascii.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    mac.update(ascii, 0, i);
+                    mac.update(value.substring(i).getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                ascii[i] = (byte) c;
+            }
+            mac.update(ascii, 0, length);
+        }
+
+        void finish() {
+            try {
+                mac.doFinal(computed, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot compute " + ALGORITHM, e);
+            }
+        }
+
+        boolean matches(String signature) {
+            finish();
+            if (signature == null || signature.length() != MAC_LENGTH * 2) {
+                return false;
+            }
+            for (int i = 0; i < MAC_LENGTH; i++) {
+                int high = nibble(signature.charAt(2 * i));
+                int low = nibble(signature.charAt(2 * i + 1));
+                if (high < 0 || low < 0) {
+                    return false;
+                }
+                received[i] = (byte) ((high << 4) | low);
+            }
+            return MessageDigest.isEqual(computed, received);
+        }
+
+        private static int nibble(char c) {
+            return c < 128 ? HEX_VALUES[c] : -1;
+        }
+    }
+}
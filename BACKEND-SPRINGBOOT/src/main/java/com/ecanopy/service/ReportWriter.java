@@ -0,0 +1,47 @@
+package com.ecanopy.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Row-at-a-time tabular writer for exports. Nothing is buffered beyond the underlying
+ * stream's buffer, so memory use does not depend on the number of rows.
+ */
+interface ReportWriter extends AutoCloseable {
+
+    DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /** Writes one row; Numbers become numeric cells, dates ISO text, null an empty cell. */
+    void row(Object... values) throws IOException;
+
+    /** Finishes the document and flushes; does not close the response stream. */
+    @Override
+    void close() throws IOException;
+
+    static ReportWriter csv(OutputStream out) throws IOException {
+        return new CsvReportWriter(out);
+    }
+
+    static ReportWriter xlsx(OutputStream out, String sheetName) throws IOException {
+        return new XlsxReportWriter(out, sheetName);
+    }
+
+    static String text(Object value) {
+        if (value instanceof java.sql.Timestamp timestamp) {
+            return timestamp.toLocalDateTime().format(TIMESTAMP);
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return dateTime.format(TIMESTAMP);
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate().toString();
+        }
+        if (value instanceof LocalDate date) {
+            return date.toString();
+        }
+        return String.valueOf(value);
+    }
+}
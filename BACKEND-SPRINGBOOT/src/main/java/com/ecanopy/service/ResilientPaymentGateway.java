@@ -0,0 +1,84 @@
+package com.ecanopy.service;
+
+import com.ecanopy.exception.ServiceUnavailableException;
+import com.razorpay.RazorpayException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkhead;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Gateway calls behind the "razorpay" resilience4j instances (configured under resilience4j.*):
+ *
+ * - thread-pool bulkhead: at most N calls in flight, the rest queue briefly or are rejected
+ * - time limiter: callers stop waiting after the timeout (the worker finishes on its own)
+ * - circuit breaker: fails fast while the gateway is erroring or slow
+ *
+ * Every rejection surfaces as ServiceUnavailableException (HTTP 503). State and call metrics
+ * are published by resilience4j's Micrometer binding.
+ */
+@Component
+@Slf4j
+public class ResilientPaymentGateway {
+
+    private static final String INSTANCE = "razorpay";
+
+    private final PaymentGateway delegate;
+    private final CircuitBreaker circuitBreaker;
+    private final ThreadPoolBulkhead bulkhead;
+    private final TimeLimiter timeLimiter;
+
+    public ResilientPaymentGateway(PaymentGateway delegate,
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            ThreadPoolBulkheadRegistry bulkheadRegistry,
+            TimeLimiterRegistry timeLimiterRegistry) {
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(INSTANCE);
+        this.bulkhead = bulkheadRegistry.bulkhead(INSTANCE);
+        this.timeLimiter = timeLimiterRegistry.timeLimiter(INSTANCE);
+    }
+
+    public PaymentGateway.Order createOrder(long amountPaise, String currency, String receipt) {
+        return call("creating order for " + receipt, () -> delegate.createOrder(amountPaise, currency, receipt));
+    }
+
+    public Optional<PaymentGateway.CapturedPayment> findCapturedPayment(String orderId) {
+        return call("fetching payments of " + orderId, () -> delegate.findCapturedPayment(orderId));
+    }
+
+    private <T> T call(String operation, Callable<T> gatewayCall) {
+        try {
+            return circuitBreaker.executeCallable(() -> timeLimiter.executeFutureSupplier(
+                    () -> bulkhead.executeCallable(gatewayCall).toCompletableFuture()));
+        } catch (CallNotPermittedException e) {
+            throw new ServiceUnavailableException("Payment gateway is temporarily unavailable, please retry shortly", e);
+        } catch (BulkheadFullException e) {
+            throw new ServiceUnavailableException("Payment gateway is busy, please retry shortly", e);
+        } catch (TimeoutException e) {
+            log.warn("Payment gateway timed out {}", operation);
+            throw new ServiceUnavailableException("Payment gateway timed out, please retry", e);
+        } catch (Exception e) {
+            Throwable cause = e;
+            while ((cause instanceof ExecutionException || cause instanceof CompletionException) && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            log.error("Payment gateway failed {}: {}", operation, cause.getMessage());
+            if (cause instanceof RazorpayException) {
+                throw new ServiceUnavailableException("Payment gateway error: " + cause.getMessage(), cause);
+            }
+            throw new ServiceUnavailableException("Payment gateway error, please retry", cause);
+        }
+    }
+}
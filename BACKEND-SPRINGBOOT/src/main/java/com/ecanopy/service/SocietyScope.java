@@ -0,0 +1,37 @@
+package com.ecanopy.service;
+
+import com.ecanopy.entity.User;
+import com.ecanopy.exception.BadRequestException;
+import com.ecanopy.exception.ForbiddenException;
+
+/**
+ * The society a society-wide request reads: any society for a super admin, who must name
+ * one, otherwise the user's own.
+ */
+public final class SocietyScope {
+
+    private SocietyScope() {
+    }
+
+    /**
+     * @throws BadRequestException a super admin named no society
+     * @throws ForbiddenException  the user has no society, or named another one
+     */
+    public static Long resolve(User user, Long requestedSocietyId) {
+        boolean superAdmin = user.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_SUPER_ADMIN".equals(authority.getAuthority()));
+        if (superAdmin) {
+            if (requestedSocietyId == null) {
+                throw new BadRequestException("societyId is required");
+            }
+            return requestedSocietyId;
+        }
+        if (user.getSocietyId() == null) {
+            throw new ForbiddenException("User is not associated with any society");
+        }
+        if (requestedSocietyId != null && !requestedSocietyId.equals(user.getSocietyId())) {
+            throw new ForbiddenException("Not your society");
+        }
+        return user.getSocietyId();
+    }
+}
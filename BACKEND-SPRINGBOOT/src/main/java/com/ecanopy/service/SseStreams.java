@@ -0,0 +1,221 @@
+package com.ecanopy.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Server-sent event streams grouped by topic (a society, a flat)
+ * Sending only queues the event on each stream; a small pool of "name-N" threads drains the
+ * queues, one stream at a time, so a stream gets its events in order, a slow client holds up
+ * only its own stream, and the caller (a wheel tick, a committing gate event) never waits on
+ * a socket. A stream more than MAX_QUEUED sends behind is closed, and its EventSource
+ * reconnects to a fresh replay. A user keeps at most maxPerUser streams; opening another
+ * closes their oldest.
+ */
+@Slf4j
+final class SseStreams<K> {
+
+    private static final int MAX_QUEUED = 64;
+
+    private final String name;
+    private final int maxPerUser;
+    private final ExecutorService writers;
+    private final Map<K, Set<Stream>> topics = new ConcurrentHashMap<>();
+    private final Map<Long, Deque<Stream>> users = new HashMap<>(); // user id -> streams, oldest first
+    // ReentrantLock rather than a monitor, so virtual request threads are not pinned
+    private final ReentrantLock lock = new ReentrantLock();
+
+    SseStreams(String name, int threads, int maxPerUser) {
+        this.name = name;
+        this.maxPerUser = Math.max(1, maxPerUser);
+        AtomicInteger count = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** One client connection. */
+    final class Stream {
+        final SseEmitter emitter;
+        final K topic;
+        final long userId;
+        final Queue<List<Supplier<SseEmitter.SseEventBuilder>>> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed;
+
+        Stream(SseEmitter emitter, K topic, long userId) {
+            this.emitter = emitter;
+            this.topic = topic;
+            this.userId = userId;
+        }
+    }
+
+    /** Open a stream on a topic for a user, closing the user's oldest stream if over the cap. */
+    Stream open(K topic, long userId, long timeoutMillis) {
+        Stream stream = new Stream(new SseEmitter(timeoutMillis), topic, userId);
+        Stream evicted = null;
+        lock.lock();
+        try {
+            Deque<Stream> own = users.computeIfAbsent(userId, id -> new ArrayDeque<>());
+            if (own.size() >= maxPerUser) {
+                evicted = own.pollFirst();
+            }
+            own.addLast(stream);
+        } finally {
+            lock.unlock();
+        }
+        topics.computeIfAbsent(topic, t -> ConcurrentHashMap.newKeySet()).add(stream);
+        Runnable remove = () -> remove(stream);
+        stream.emitter.onCompletion(remove);
+        stream.emitter.onTimeout(remove);
+        stream.emitter.onError(e -> remove.run());
+        if (evicted != null) {
+            log.debug("User {} opened more than {} {} streams; closing the oldest", userId, maxPerUser, name);
+            close(evicted);
+        }
+        return stream;
+    }
+
+    /** Queue an event for one stream. */
+    void send(Stream stream, Supplier<SseEmitter.SseEventBuilder> event) {
+        sendAll(stream, List.of(event));
+    }
+
+    /** Queue several events for one stream as a single send, e.g. the replay of a new stream. */
+    void sendAll(Stream stream, List<Supplier<SseEmitter.SseEventBuilder>> events) {
+        if (stream.closed || events.isEmpty()) {
+            return;
+        }
+        if (stream.queued.incrementAndGet() > MAX_QUEUED) {
+            log.debug("{} stream of user {} fell {} sends behind; closing it", name, stream.userId, MAX_QUEUED);
+            close(stream);
+            return;
+        }
+        stream.queue.add(events);
+        drain(stream);
+    }
+
+    /** Queue an event for every stream of a topic; the builder is made afresh per stream. */
+    void broadcast(K topic, Supplier<SseEmitter.SseEventBuilder> event) {
+        Set<Stream> streams = topics.get(topic);
+        if (streams != null) {
+            streams.forEach(stream -> send(stream, event));
+        }
+    }
+
+    /** Queue a keep-alive comment on every idle stream, which also finds the ones whose client has gone. */
+    void heartbeat() {
+        topics.values().forEach(streams -> streams.forEach(stream -> {
+            if (stream.queued.get() == 0) {
+                send(stream, () -> SseEmitter.event().comment("keep-alive"));
+            }
+        }));
+    }
+
+    boolean isEmpty() {
+        return topics.isEmpty();
+    }
+
+    boolean hasStreams(K topic) {
+        return topics.containsKey(topic);
+    }
+
+    /** Run a task on the writer pool, e.g. to build an event off the caller's thread. */
+    void execute(Runnable task) {
+        try {
+            writers.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("{} task skipped, shutting down", name);
+        }
+    }
+
+    void shutdown() {
+        writers.shutdownNow();
+        topics.values().forEach(streams -> streams.forEach(stream -> complete(stream.emitter)));
+    }
+
+    /** Stop queueing to the stream; the writer completes it once it is done with the current event. */
+    private void close(Stream stream) {
+        if (stream.closed) {
+            return;
+        }
+        stream.closed = true;
+        remove(stream);
+        drain(stream);
+    }
+
+    private void drain(Stream stream) {
+        if (stream.draining.compareAndSet(false, true)) {
+            execute(() -> write(stream));
+        }
+    }
+
+    /** Writer thread: send the stream's queued events, then let go of it. */
+    private void write(Stream stream) {
+        do {
+            List<Supplier<SseEmitter.SseEventBuilder>> events;
+            while ((events = stream.queue.poll()) != null && !stream.closed) {
+                stream.queued.decrementAndGet();
+                try {
+                    for (Supplier<SseEmitter.SseEventBuilder> event : events) {
+                        stream.emitter.send(event.get());
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away or the stream already completed; the container completes it
+                    stream.closed = true;
+                    remove(stream);
+                }
+            }
+            if (stream.closed) {
+                stream.queue.clear();
+                complete(stream.emitter);
+            }
+            stream.draining.set(false);
+        } while (!stream.closed && !stream.queue.isEmpty() && stream.draining.compareAndSet(false, true));
+    }
+
+    private void remove(Stream stream) {
+        topics.computeIfPresent(stream.topic, (topic, streams) -> {
+            streams.remove(stream);
+            return streams.isEmpty() ? null : streams;
+        });
+        lock.lock();
+        try {
+            Deque<Stream> own = users.get(stream.userId);
+            if (own != null && own.remove(stream) && own.isEmpty()) {
+                users.remove(stream.userId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void complete(SseEmitter emitter) {
+        try {
+            emitter.complete();
+        } catch (IllegalStateException e) {
+            // Request already finished, e.g. the client went away without the container noticing
+        }
+    }
+}
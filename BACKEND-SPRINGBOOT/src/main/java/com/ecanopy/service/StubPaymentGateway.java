@@ -0,0 +1,48 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.RazorpayProperties;
+import com.razorpay.RazorpayException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-in for Razorpay with configurable latency and failure rate
+ * (razorpay.stub.*), for exercising the timeout, bulkhead and circuit breaker.
+ */
+@Component
+@Profile("stub-gateway")
+@RequiredArgsConstructor
+@Slf4j
+public class StubPaymentGateway implements PaymentGateway {
+
+    private final RazorpayProperties razorpayProperties;
+
+    @Override
+    public Order createOrder(long amountPaise, String currency, String receipt) throws RazorpayException {
+        RazorpayProperties.Stub stub = razorpayProperties.getStub();
+        try {
+            Thread.sleep(stub.getLatency().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RazorpayException("Stub gateway interrupted");
+        }
+        if (ThreadLocalRandom.current().nextDouble() < stub.getFailureRate()) {
+            throw new RazorpayException("Stub gateway failure for " + receipt);
+        }
+        String orderId = "order_stub_" + UUID.randomUUID().toString().replace("-", "").substring(0, 14);
+        log.debug("Stub gateway created {} for {} ({} paise)", orderId, receipt, amountPaise);
+        return new Order(orderId, amountPaise, currency);
+    }
+
+    @Override
+    public Optional<CapturedPayment> findCapturedPayment(String orderId) {
+        // Stub orders are never paid; the sweep expires them
+        return Optional.empty();
+    }
+}
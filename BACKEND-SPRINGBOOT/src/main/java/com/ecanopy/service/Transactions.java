@@ -0,0 +1,30 @@
+package com.ecanopy.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Transaction hooks shared by the in-memory indexes and caches.
+ */
+final class Transactions {
+
+    private Transactions() {
+    }
+
+    /**
+     * Run the change once the surrounding transaction commits, so a rollback leaves the
+     * in-memory state untouched; without a transaction it runs at once.
+     */
+    static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.VisitorDirectoryProperties;
+import com.ecanopy.entity.Visitor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Visitor identities
+ * Visitors are keyed by their normalised phone number, unique in the visitors table. The
+ * phones of recent visitors are kept in a bounded LRU (ecanopy.visitors.phone-cache-size)
+ * with their visitor id and photo, so the check-in of a repeat visitor (couriers, cabs,
+ * maids) writes the visitor row with one UPDATE instead of reading it first. The UPDATE
+ * matches on id, phone and the cached photo, so a stale entry (rolled back insert, photo
+ * changed on another instance) updates nothing and the visitor is read and cached again.
+ * New phones are inserted directly; losing the insert to a concurrent one falls back to
+ * the lookup, and batches (guard device uploads) are upserted with one statement.
+ *
+ * Phones stored by earlier versions are normalised at startup: every spelling of a phone is
+ * merged into its oldest visitor (logs and passes moved over), who keeps the normalised
+ * phone. The unique constraint is then created if the table does not have it yet, which
+ * also covers schemas managed with ddl-auto=validate.
+ */
+@Component
+@Slf4j
+public class VisitorDirectory implements SmartInitializingSingleton {
+
+    private static final String FIND = "SELECT visitor_id, photo_url FROM visitors WHERE phone = ? "
+            + "ORDER BY visitor_id LIMIT 1";
+    private static final String FIND_ALL = "SELECT visitor_id, phone, photo_url FROM visitors WHERE phone IN (%s)";
+    private static final String INSERT = "INSERT INTO visitors (full_name, phone, photo_url, id_proof_type, "
+            + "id_proof_number, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+    // Existing phones are left as they are: offline uploads carry no newer details
+    private static final String UPSERT = "INSERT INTO visitors (full_name, phone, created_at) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE visitor_id = visitor_id";
+    private static final String PHONES = "SELECT visitor_id, phone FROM visitors";
+    private static final String DUPLICATE_PHONES = "SELECT phone, MIN(visitor_id) AS visitor_id FROM visitors "
+            + "GROUP BY phone HAVING COUNT(*) > 1";
+    private static final String ADD_UNIQUE_PHONE = "ALTER TABLE visitors ADD CONSTRAINT uk_visitors_phone UNIQUE (phone)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FileStorageService fileStorageService;
+    private final VisitorSearchIndex visitorSearchIndex;
+    private final Map<String, Identity> byPhone;
+    // ReentrantLock rather than a monitor, so virtual request threads are not pinned
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public VisitorDirectory(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            FileStorageService fileStorageService, VisitorSearchIndex visitorSearchIndex,
+            VisitorDirectoryProperties visitorDirectoryProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.fileStorageService = fileStorageService;
+        this.visitorSearchIndex = visitorSearchIndex;
+        int capacity = Math.max(1, visitorDirectoryProperties.getPhoneCacheSize());
+        this.byPhone = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Identity> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    private record Identity(long visitorId, String photoUrl) {
+    }
+
+    /**
+     * The visitor row after a check-in: the visitor (detached, holding the values written) and,
+     * for a visitor seen before, the photo they had until now.
+     */
+    public record Upsert(Visitor visitor, boolean created, String previousPhotoUrl) {
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Phones not in normalised form, by the phone they normalise to
+        Map<String, List<Long>> legacy = new LinkedHashMap<>();
+        jdbcTemplate.query(PHONES, rs -> {
+            String phone = rs.getString("phone");
+            String key = normalizePhone(phone);
+            if (key != null && !key.isEmpty() && !key.equals(phone)) {
+                legacy.computeIfAbsent(key, k -> new ArrayList<>()).add(rs.getLong("visitor_id"));
+            }
+        });
+        int merged = 0;
+        for (Map.Entry<String, List<Long>> entry : legacy.entrySet()) {
+            merged += transactionTemplate.execute(status -> normalize(entry.getKey(), entry.getValue()));
+        }
+
+        // Same phone stored twice before the constraint existed
+        List<Object[]> duplicates = jdbcTemplate.query(DUPLICATE_PHONES,
+                (rs, i) -> new Object[] { rs.getString("phone"), rs.getLong("visitor_id") });
+        for (Object[] duplicate : duplicates) {
+            merged += transactionTemplate.execute(status -> merge((String) duplicate[0], (Long) duplicate[1]));
+        }
+        if (!legacy.isEmpty() || !duplicates.isEmpty()) {
+            log.info("Normalised {} legacy visitor phones, merged {} duplicate visitors",
+                    legacy.values().stream().mapToInt(List::size).sum(), merged);
+        }
+
+        if (!hasUniquePhone()) {
+            try {
+                jdbcTemplate.execute(ADD_UNIQUE_PHONE);
+                log.info("Added unique constraint uk_visitors_phone");
+            } catch (DataAccessException e) {
+                log.warn("Unique visitor phone constraint not added: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Digits only, without the +91 / 0 trunk prefix of a ten digit number, so the same
+     * phone typed differently is the same visitor.
+     */
+    public static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        String digits = phone.replaceAll("[^0-9]", "");
+        if (digits.length() == 12 && digits.startsWith("91")) {
+            return digits.substring(2);
+        }
+        if (digits.length() == 11 && digits.startsWith("0")) {
+            return digits.substring(1);
+        }
+        return digits;
+    }
+
+    /**
+     * Create the visitor, or update their name (and the photo and ID proof, when given) if
+     * the phone is known. Call inside the check-in transaction.
+     */
+    public Upsert upsert(String phone, String name, String photoUrl, String idProofType, String idProofNumber) {
+        String key = normalizePhone(phone);
+        Identity cached = cached(key);
+        if (cached != null) {
+            if (update(cached.visitorId(), key, name, photoUrl, idProofType, idProofNumber, cached) == 1) {
+                return updated(key, cached, name, photoUrl, idProofType, idProofNumber);
+            }
+            evict(key);
+        }
+        for (int attempt = 0; attempt < 2; attempt++) {
+            List<Identity> found = jdbcTemplate.query(FIND,
+                    (rs, i) -> new Identity(rs.getLong("visitor_id"), rs.getString("photo_url")), key);
+            if (!found.isEmpty()) {
+                Identity current = found.get(0);
+                update(current.visitorId(), key, name, photoUrl, idProofType, idProofNumber, null);
+                return updated(key, current, name, photoUrl, idProofType, idProofNumber);
+            }
+            try {
+                long visitorId = insert(key, name, photoUrl, idProofType, idProofNumber);
+                put(key, new Identity(visitorId, photoUrl));
+                return new Upsert(visitor(visitorId, key, name, photoUrl, idProofType, idProofNumber), true, null);
+            } catch (DuplicateKeyException e) {
+                // Inserted meanwhile by another check-in: read it
+            }
+        }
+        throw new IllegalStateException("Visitor with phone " + key + " could not be created");
+    }
+
+    /**
+     * Visitor ids for a batch of phones (phone -> name), creating the unknown ones, in three
+     * statements at most whatever the batch size. Known visitors keep their details.
+     */
+    public Map<String, Long> resolve(Map<String, String> namesByPhone, LocalDateTime now) {
+        Map<String, String> names = new LinkedHashMap<>();
+        namesByPhone.forEach((phone, name) -> names.putIfAbsent(normalizePhone(phone), name));
+        Map<String, Long> ids = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (String key : names.keySet()) {
+            Identity cached = cached(key);
+            if (cached != null) {
+                ids.put(key, cached.visitorId());
+            } else {
+                unknown.add(key);
+            }
+        }
+        find(unknown, ids);
+        List<String> missing = unknown.stream().filter(key -> !ids.containsKey(key)).toList();
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT, missing.stream()
+                    .map(key -> new Object[] { names.get(key), key, Timestamp.valueOf(now) })
+                    .toList());
+            find(missing, ids);
+        }
+        Map<String, Long> result = new HashMap<>();
+        namesByPhone.keySet().forEach(phone -> result.put(phone, ids.get(normalizePhone(phone))));
+        return result;
+    }
+
+    private void find(Collection<String> keys, Map<String, Long> ids) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.query(String.format(FIND_ALL, String.join(", ", Collections.nCopies(keys.size(), "?"))), rs -> {
+            String key = rs.getString("phone");
+            long visitorId = rs.getLong("visitor_id");
+            Long known = ids.get(key);
+            if (known == null || visitorId < known) {
+                ids.put(key, visitorId);
+                put(key, new Identity(visitorId, rs.getString("photo_url")));
+            }
+        }, keys.toArray());
+    }
+
+    /** Rows updated: 0 when the cached identity (expected) no longer matches the row. */
+    private int update(long visitorId, String phone, String name, String photoUrl, String idProofType,
+            String idProofNumber, Identity expected) {
+        StringBuilder sql = new StringBuilder("UPDATE visitors SET full_name = ?");
+        List<Object> args = new ArrayList<>();
+        args.add(name);
+        if (photoUrl != null) {
+            sql.append(", photo_url = ?");
+            args.add(photoUrl);
+        }
+        if (idProofType != null) {
+            sql.append(", id_proof_type = ?, id_proof_number = ?");
+            args.add(idProofType);
+            args.add(idProofNumber);
+        }
+        sql.append(" WHERE visitor_id = ? AND phone = ?");
+        args.add(visitorId);
+        args.add(phone);
+        if (expected != null) {
+            // The previous photo is handed back for its file reference, so it must be the current one
+            if (expected.photoUrl() == null) {
+                sql.append(" AND photo_url IS NULL");
+            } else {
+                sql.append(" AND photo_url = ?");
+                args.add(expected.photoUrl());
+            }
+        }
+        return jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    private long insert(String phone, String name, String photoUrl, String idProofType, String idProofNumber) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, name);
+            ps.setString(2, phone);
+            ps.setString(3, photoUrl);
+            ps.setString(4, idProofType);
+            ps.setString(5, idProofNumber);
+            ps.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
+            return ps;
+        }, keys);
+        return keys.getKeyAs(Number.class).longValue();
+    }
+
+    private Upsert updated(String phone, Identity previous, String name, String photoUrl, String idProofType,
+            String idProofNumber) {
+        String photo = photoUrl != null ? photoUrl : previous.photoUrl();
+        put(phone, new Identity(previous.visitorId(), photo));
+        return new Upsert(visitor(previous.visitorId(), phone, name, photo, idProofType, idProofNumber), false,
+                previous.photoUrl());
+    }
+
+    private static Visitor visitor(long visitorId, String phone, String name, String photoUrl, String idProofType,
+            String idProofNumber) {
+        return Visitor.builder()
+                .visitorId(visitorId)
+                .fullName(name)
+                .phone(phone)
+                .photoUrl(photoUrl)
+                .idProofType(idProofType)
+                .idProofNumber(idProofNumber)
+                .build();
+    }
+
+    /** Merge the phone's other visitors into the oldest one. */
+    private int merge(String phone, long visitorId) {
+        Map<Long, String> others = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT visitor_id, photo_url FROM visitors WHERE phone = ? AND visitor_id <> ?",
+                rs -> {
+                    others.put(rs.getLong("visitor_id"), rs.getString("photo_url"));
+                }, phone, visitorId);
+        if (others.isEmpty()) {
+            return 0;
+        }
+        visitorSearchIndex.visitorsMerged(visitorId, others.keySet());
+        absorb(visitorId, others);
+        return others.size();
+    }
+
+    /**
+     * Give the visitors stored under legacy spellings of the phone (and the one already holding
+     * it, if any) a single row: the oldest keeps the normalised phone, the others are merged in.
+     */
+    private int normalize(String phone, List<Long> legacyIds) {
+        List<Object> args = new ArrayList<>();
+        args.add(phone);
+        args.addAll(legacyIds);
+        Map<Long, String> others = new TreeMap<>();
+        jdbcTemplate.query("SELECT visitor_id, photo_url FROM visitors WHERE phone = ? OR visitor_id IN ("
+                + String.join(", ", Collections.nCopies(legacyIds.size(), "?")) + ")", rs -> {
+                    others.put(rs.getLong("visitor_id"), rs.getString("photo_url"));
+                }, args.toArray());
+        if (others.isEmpty()) {
+            return 0;
+        }
+        // Every row is re-keyed in the search index, the kept one too (its phone changes)
+        List<Long> rekeyed = new ArrayList<>(others.keySet());
+        long visitorId = rekeyed.get(0);
+        others.remove(visitorId);
+        visitorSearchIndex.visitorsMerged(visitorId, rekeyed);
+        if (!others.isEmpty()) {
+            absorb(visitorId, others);
+        }
+        jdbcTemplate.update("UPDATE visitors SET phone = ? WHERE visitor_id = ?", phone, visitorId);
+        return others.size();
+    }
+
+    /** Move the logs and passes of the other visitors (id -> photo) to the kept one, and drop them. */
+    private void absorb(long visitorId, Map<Long, String> others) {
+        String in = String.join(", ", Collections.nCopies(others.size(), "?"));
+        List<Object> args = new ArrayList<>();
+        args.add(visitorId);
+        args.addAll(others.keySet());
+        jdbcTemplate.update("UPDATE visitor_logs SET visitor_id = ? WHERE visitor_id IN (" + in + ")", args.toArray());
+        // A flat's pass moves over unless the oldest visitor holds one for that flat already
+        List<Object> passArgs = new ArrayList<>();
+        passArgs.add(visitorId);
+        passArgs.add(Timestamp.valueOf(LocalDateTime.now()));
+        passArgs.addAll(others.keySet());
+        passArgs.add(visitorId);
+        jdbcTemplate.update("UPDATE frequent_visitors SET visitor_id = ?, updated_at = ? WHERE visitor_id IN (" + in
+                + ") AND flat_id NOT IN (SELECT flat_id FROM (SELECT flat_id FROM frequent_visitors "
+                + "WHERE visitor_id = ?) kept)", passArgs.toArray());
+        jdbcTemplate.update("DELETE FROM frequent_visitors WHERE visitor_id IN (" + in + ")",
+                others.keySet().toArray());
+        jdbcTemplate.update("DELETE FROM visitors WHERE visitor_id IN (" + in + ")", others.keySet().toArray());
+        others.values().forEach(fileStorageService::release);
+    }
+
+    /** Whether the visitors table has a unique index on phone alone, whatever it is called. */
+    private boolean hasUniquePhone() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            // Unquoted identifiers are stored lower case by MySQL and upper case by H2
+            for (String table : List.of("visitors", "VISITORS")) {
+                Map<String, List<String>> columns = new HashMap<>();
+                try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, table, true, false)) {
+                    while (rs.next()) {
+                        String index = rs.getString("INDEX_NAME");
+                        String column = rs.getString("COLUMN_NAME");
+                        if (index != null && column != null) {
+                            columns.computeIfAbsent(index, name -> new ArrayList<>()).add(column.toLowerCase(Locale.ROOT));
+                        }
+                    }
+                }
+                if (columns.values().stream().anyMatch(List.of("phone")::equals)) {
+                    return true;
+                }
+            }
+            return false;
+        }));
+    }
+
+    private Identity cached(String phone) {
+        lock.lock();
+        try {
+            return byPhone.get(phone);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(String phone, Identity identity) {
+        lock.lock();
+        try {
+            byPhone.put(phone, identity);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict(String phone) {
+        lock.lock();
+        try {
+            byPhone.remove(phone);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
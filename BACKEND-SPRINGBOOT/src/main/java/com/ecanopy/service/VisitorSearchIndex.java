@@ -0,0 +1,457 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.VisitorSearchProperties;
+import com.ecanopy.exception.BadRequestException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Visitor search
+ * Every visitor seen in a society has a row in visitor_search_docs (normalised name and
+ * phone, latest log) and its trigrams in visitor_search_grams, so a search reads the gram
+ * rows of the society for the few trigrams of the term, and checks the candidates' keys
+ * with LIKE, instead of a '%term%' scan over every visitor log of the society. One and two
+ * character terms use the word prefix grams ("  a", " ab") and match the start of a word.
+ *
+ * Check-ins made here queue their (society, visitor) pair as the transaction commits, and a
+ * single background thread writes the rows, so check-ins never wait on the index. Logs
+ * written elsewhere (other instances, bulk imports) are picked up every
+ * ecanopy.visitor-search.catch-up-interval from the logs above a high-water mark, which
+ * starts at the newest indexed log. Each run goes back ecanopy.visitor-search.catch-up-overlap
+ * log ids below the mark, for logs that committed after higher ids did, and skips logs a doc
+ * already covers. The mark never passes a pair that failed to index, so the next run retries
+ * it. An empty index is filled that way on the first run; until that backfill has finished,
+ * check-ins are left to it.
+ */
+@Component
+@Slf4j
+public class VisitorSearchIndex implements SmartInitializingSingleton {
+
+    public static final String NAME = "N";
+    public static final String PHONE = "P";
+    private static final int CATCH_UP_BATCH = 1000;
+    private static final Pattern LATIN_ACCENTS = Pattern.compile("(\\p{IsLatin})\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{M}\\p{N}]+");
+
+    private static final String HIGH_WATER = "SELECT COALESCE(MAX(last_log_id), 0) FROM visitor_search_docs";
+    // Logs above the cursor whose pair has no doc yet, or a doc built from an older log
+    private static final String NEW_LOGS = "SELECT l.log_id, l.visitor_id, bl.society_id FROM visitor_logs l "
+            + "JOIN flats f ON f.flat_id = l.flat_id JOIN buildings bl ON bl.building_id = f.building_id "
+            + "LEFT JOIN visitor_search_docs d ON d.society_id = bl.society_id AND d.visitor_id = l.visitor_id "
+            + "WHERE l.log_id > ? AND (d.last_log_id IS NULL OR d.last_log_id < l.log_id) "
+            + "ORDER BY l.log_id LIMIT ?";
+    private static final String VISITOR = "SELECT full_name, phone FROM visitors WHERE visitor_id = ?";
+    // Walks the visitor's logs newest first on (visitor_id, in_time) until one is at a flat of the society
+    private static final String LATEST_LOG = "SELECT l.log_id, l.in_time FROM visitor_logs l "
+            + "WHERE l.visitor_id = ? AND l.flat_id IN (SELECT f.flat_id FROM flats f "
+            + "JOIN buildings bl ON bl.building_id = f.building_id WHERE bl.society_id = ?) "
+            + "ORDER BY l.in_time DESC, l.log_id DESC LIMIT 1";
+    private static final String DOC = "SELECT name_key, phone_key, last_log_id FROM visitor_search_docs "
+            + "WHERE society_id = ? AND visitor_id = ?";
+    private static final String OTHER_SOCIETIES = "SELECT society_id FROM visitor_search_docs "
+            + "WHERE visitor_id = ? AND society_id <> ?";
+    private static final String INSERT_DOC = "INSERT INTO visitor_search_docs "
+            + "(society_id, visitor_id, name_key, phone_key, last_log_id, last_seen_at) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_DOC = "UPDATE visitor_search_docs SET name_key = ?, phone_key = ?, "
+            + "last_log_id = ?, last_seen_at = ? WHERE society_id = ? AND visitor_id = ?";
+    private static final String DELETE_DOC = "DELETE FROM visitor_search_docs WHERE society_id = ? AND visitor_id = ?";
+    private static final String DELETE_GRAMS = "DELETE FROM visitor_search_grams WHERE visitor_id = ? AND society_id = ?";
+    private static final String INSERT_GRAM = "INSERT INTO visitor_search_grams (society_id, visitor_id, kind, gram) "
+            + "VALUES (?, ?, ?, ?)";
+    // Candidates holding every gram of the term, checked against the key and paged by latest visit
+    private static final String SEARCH = "SELECT d.visitor_id, d.last_log_id FROM ("
+            + "SELECT g.visitor_id FROM visitor_search_grams g WHERE g.society_id = ? AND g.kind = ? "
+            + "AND g.gram IN (%s) GROUP BY g.visitor_id HAVING COUNT(DISTINCT g.gram) = ?) m "
+            + "JOIN visitor_search_docs d ON d.society_id = ? AND d.visitor_id = m.visitor_id "
+            + "WHERE %s ORDER BY d.last_seen_at DESC, d.visitor_id DESC LIMIT ? OFFSET ?";
+    private static final String RECENT = "SELECT d.visitor_id, d.last_log_id FROM visitor_search_docs d "
+            + "WHERE d.society_id = ? ORDER BY d.last_seen_at DESC, d.visitor_id DESC LIMIT ? OFFSET ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VisitorSearchProperties visitorSearchProperties;
+    // ReentrantLock rather than a monitor, so virtual request threads are not pinned
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<Key> pending = new LinkedHashSet<>();
+    private boolean drainQueued;
+    private boolean catchUpQueued;
+    private volatile long highWater;
+    private volatile boolean backfilled;
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "visitor-search-index");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public VisitorSearchIndex(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            VisitorSearchProperties visitorSearchProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.visitorSearchProperties = visitorSearchProperties;
+    }
+
+    private record Key(long societyId, long visitorId) {
+    }
+
+    private record Doc(String nameKey, String phoneKey, long lastLogId) {
+    }
+
+    /** A page of matches: the latest log of each matching visitor, most recent first. */
+    public record Page(int page, int size, List<Long> logIds, boolean hasMore) {
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        highWater = jdbcTemplate.queryForObject(HIGH_WATER, Long.class);
+        backfilled = highWater > 0;
+        catchUp();
+    }
+
+    /** The visitor checked in at a flat of the society; indexed after the transaction commits. */
+    public void visited(Long societyId, Long visitorId) {
+        if (societyId == null || visitorId == null) {
+            return;
+        }
+        Key key = new Key(societyId, visitorId);
+        Transactions.afterCommit(() -> {
+            if (backfilled) {
+                queue(List.of(key));
+            } // else the backfill reaches this log too
+        });
+    }
+
+    /**
+     * Duplicate visitors were merged into one (logs moved over), or a visitor's phone changed:
+     * the search rows of mergedIds are dropped and visitorId is indexed again in their
+     * societies, after the transaction commits. mergedIds may include visitorId itself.
+     */
+    public void visitorsMerged(long visitorId, Collection<Long> mergedIds) {
+        String in = String.join(", ", Collections.nCopies(mergedIds.size(), "?"));
+        Object[] ids = mergedIds.toArray();
+        List<Key> keys = jdbcTemplate.queryForList("SELECT DISTINCT society_id FROM visitor_search_docs "
+                + "WHERE visitor_id IN (" + in + ")", Long.class, ids).stream()
+                .map(societyId -> new Key(societyId, visitorId))
+                .toList();
+        jdbcTemplate.update("DELETE FROM visitor_search_grams WHERE visitor_id IN (" + in + ")", ids);
+        jdbcTemplate.update("DELETE FROM visitor_search_docs WHERE visitor_id IN (" + in + ")", ids);
+        if (!keys.isEmpty()) {
+            Transactions.afterCommit(() -> queue(keys));
+        }
+    }
+
+    /**
+     * Visitors of the society whose name (kind NAME) or phone (kind PHONE) contains the term;
+     * a term of one or two characters matches the start of a word. Page numbers start at 0;
+     * the size defaults to ecanopy.visitor-search.default-page-size.
+     */
+    public Page search(long societyId, String kind, String term, Integer page, Integer size) {
+        int pageNo = pageNo(page);
+        int pageSize = pageSize(size);
+        String key = PHONE.equals(kind) ? phoneKey(term) : nameKey(term);
+        if (key.isEmpty()) {
+            throw new BadRequestException(PHONE.equals(kind) ? "Phone search needs at least one digit"
+                    : "Name search needs at least one letter or digit");
+        }
+        String column = PHONE.equals(kind) ? "d.phone_key" : "d.name_key";
+        Set<String> grams = new LinkedHashSet<>();
+        List<Object> args = new ArrayList<>();
+        String verify;
+        if (key.codePointCount(0, key.length()) >= 3) {
+            addTrigrams(grams, key);
+            verify = column + " LIKE ?";
+            args.add("%" + key + "%");
+        } else {
+            grams.add(prefixGram(key));
+            if (PHONE.equals(kind)) {
+                verify = column + " LIKE ?";
+                args.add(key + "%");
+            } else {
+                verify = "(" + column + " LIKE ? OR " + column + " LIKE ?)";
+                args.add(key + "%");
+                args.add("% " + key + "%");
+            }
+        }
+        List<Object> all = new ArrayList<>();
+        all.add(societyId);
+        all.add(kind);
+        all.addAll(grams);
+        all.add(grams.size());
+        all.add(societyId);
+        all.addAll(args);
+        all.add(pageSize + 1);
+        all.add((long) pageNo * pageSize);
+        String sql = String.format(SEARCH, String.join(", ", Collections.nCopies(grams.size(), "?")), verify);
+        return page(jdbcTemplate.query(sql, (rs, i) -> rs.getLong("last_log_id"), all.toArray()), pageNo, pageSize);
+    }
+
+    /** The society's visitors, most recently seen first. */
+    public Page recent(long societyId, Integer page, Integer size) {
+        int pageNo = pageNo(page);
+        int pageSize = pageSize(size);
+        return page(jdbcTemplate.query(RECENT, (rs, i) -> rs.getLong("last_log_id"),
+                societyId, pageSize + 1, (long) pageNo * pageSize), pageNo, pageSize);
+    }
+
+    @Scheduled(initialDelayString = "${ecanopy.visitor-search.catch-up-interval:1m}",
+            fixedDelayString = "${ecanopy.visitor-search.catch-up-interval:1m}")
+    public void catchUp() {
+        lock.lock();
+        try {
+            if (!catchUpQueued) {
+                catchUpQueued = submit(this::indexNewLogs);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        indexer.shutdownNow();
+    }
+
+    private void queue(List<Key> keys) {
+        lock.lock();
+        try {
+            pending.addAll(keys);
+            if (!drainQueued) {
+                drainQueued = submit(this::drain);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Indexer thread: index the pairs queued by check-ins. */
+    private void drain() {
+        while (true) {
+            List<Key> keys;
+            lock.lock();
+            try {
+                if (pending.isEmpty()) {
+                    drainQueued = false;
+                    return;
+                }
+                keys = new ArrayList<>(pending);
+                pending.clear();
+            } finally {
+                lock.unlock();
+            }
+            keys.forEach(this::indexSafely);
+        }
+    }
+
+    /** Indexer thread: index the pairs of logs from the overlap window below the high-water mark, in log order. */
+    private void indexNewLogs() {
+        lock.lock();
+        try {
+            catchUpQueued = false;
+        } finally {
+            lock.unlock();
+        }
+        long started = System.nanoTime();
+        int indexed = 0;
+        long from = Math.max(0, highWater - visitorSearchProperties.getCatchUpOverlap());
+        long failedAt = Long.MAX_VALUE; // first log of a pair that could not be indexed
+        try {
+            while (true) {
+                Map<Key, Long> keys = new LinkedHashMap<>(); // pair -> its first log in the batch
+                long[] last = { from };
+                int[] rows = { 0 };
+                jdbcTemplate.query(NEW_LOGS, rs -> {
+                    keys.putIfAbsent(new Key(rs.getLong("society_id"), rs.getLong("visitor_id")),
+                            rs.getLong("log_id"));
+                    last[0] = rs.getLong("log_id");
+                    rows[0]++;
+                }, from, CATCH_UP_BATCH);
+                for (Map.Entry<Key, Long> entry : keys.entrySet()) {
+                    if (indexSafely(entry.getKey())) {
+                        indexed++;
+                    } else {
+                        failedAt = Math.min(failedAt, entry.getValue());
+                    }
+                }
+                from = last[0];
+                highWater = Math.max(highWater, Math.min(from, failedAt - 1));
+                if (rows[0] < CATCH_UP_BATCH) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Visitor search catch-up stopped at log {}: {}", from, e.getMessage());
+            return;
+        }
+        if (!backfilled) {
+            backfilled = true;
+            log.info("Visitor search index backfilled: {} visitors in {} ms", indexed,
+                    (System.nanoTime() - started) / 1_000_000);
+        } else if (indexed > 0) {
+            log.debug("Visitor search index caught up {} visitors", indexed);
+        }
+    }
+
+    /** Returns false when the pair could not be indexed; the failure is logged. */
+    private boolean indexSafely(Key key) {
+        try {
+            List<Key> affected = transactionTemplate.execute(status -> index(key));
+            // A renamed visitor (or a changed phone) is re-keyed in the other societies as well
+            if (affected != null) {
+                affected.forEach(other -> transactionTemplate.execute(status -> index(other)));
+            }
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Indexing visitor {} of society {} for search failed: {}", key.visitorId(), key.societyId(),
+                    e.getMessage());
+            return false;
+        }
+    }
+
+    /** Bring the pair's doc and grams up to date; returns the visitor's other societies when its keys changed. */
+    private List<Key> index(Key key) {
+        List<String[]> visitor = jdbcTemplate.query(VISITOR,
+                (rs, i) -> new String[] { rs.getString("full_name"), rs.getString("phone") }, key.visitorId());
+        List<Object[]> latest = jdbcTemplate.query(LATEST_LOG,
+                (rs, i) -> new Object[] { rs.getLong("log_id"), rs.getTimestamp("in_time") },
+                key.visitorId(), key.societyId());
+        List<Doc> docs = jdbcTemplate.query(DOC, (rs, i) -> new Doc(rs.getString("name_key"),
+                rs.getString("phone_key"), rs.getLong("last_log_id")), key.societyId(), key.visitorId());
+        Doc doc = docs.isEmpty() ? null : docs.get(0);
+        if (visitor.isEmpty() || latest.isEmpty()) {
+            if (doc != null) {
+                jdbcTemplate.update(DELETE_GRAMS, key.visitorId(), key.societyId());
+                jdbcTemplate.update(DELETE_DOC, key.societyId(), key.visitorId());
+            }
+            return List.of();
+        }
+        String nameKey = nameKey(visitor.get(0)[0]);
+        String phoneKey = phoneKey(visitor.get(0)[1]);
+        long lastLogId = (Long) latest.get(0)[0];
+        Timestamp lastSeenAt = (Timestamp) latest.get(0)[1];
+        boolean keysChanged = doc == null || !doc.nameKey().equals(nameKey) || !doc.phoneKey().equals(phoneKey);
+        if (doc == null) {
+            jdbcTemplate.update(INSERT_DOC, key.societyId(), key.visitorId(), nameKey, phoneKey, lastLogId,
+                    lastSeenAt);
+        } else if (keysChanged || doc.lastLogId() != lastLogId) {
+            jdbcTemplate.update(UPDATE_DOC, nameKey, phoneKey, lastLogId, lastSeenAt, key.societyId(),
+                    key.visitorId());
+        }
+        if (!keysChanged) {
+            return List.of();
+        }
+        jdbcTemplate.update(DELETE_GRAMS, key.visitorId(), key.societyId());
+        List<Object[]> rows = new ArrayList<>();
+        grams(nameKey).forEach(gram -> rows.add(new Object[] { key.societyId(), key.visitorId(), NAME, gram }));
+        grams(phoneKey).forEach(gram -> rows.add(new Object[] { key.societyId(), key.visitorId(), PHONE, gram }));
+        jdbcTemplate.batchUpdate(INSERT_GRAM, rows);
+        if (doc == null) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList(OTHER_SOCIETIES, Long.class, key.visitorId(), key.societyId()).stream()
+                .map(societyId -> new Key(societyId, key.visitorId()))
+                .toList();
+    }
+
+    private boolean submit(Runnable task) {
+        try {
+            indexer.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.warn("Visitor search indexing failed: {}", e.getMessage());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.debug("Visitor search indexing skipped, shutting down");
+            return false;
+        }
+    }
+
+    private static Page page(List<Long> logIds, int page, int size) {
+        boolean hasMore = logIds.size() > size;
+        return new Page(page, size, hasMore ? logIds.subList(0, size) : logIds, hasMore);
+    }
+
+    private static int pageNo(Integer page) {
+        if (page != null && page < 0) {
+            throw new BadRequestException("page must not be negative");
+        }
+        return page != null ? page : 0;
+    }
+
+    private int pageSize(Integer size) {
+        if (size == null) {
+            return visitorSearchProperties.getDefaultPageSize();
+        }
+        if (size < 1 || size > visitorSearchProperties.getMaxPageSize()) {
+            throw new BadRequestException("size must be between 1 and " + visitorSearchProperties.getMaxPageSize());
+        }
+        return size;
+    }
+
+    /**
+     * Lower case letters and digits of any script, accents dropped from Latin letters, words
+     * separated by single spaces. Marks on other scripts stay: in Devanagari or Tamil they are
+     * the vowel signs.
+     */
+    static String nameKey(String name) {
+        if (name == null) {
+            return "";
+        }
+        String plain = LATIN_ACCENTS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("$1");
+        String lower = Normalizer.normalize(plain, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+        return SEPARATORS.matcher(lower).replaceAll(" ").trim();
+    }
+
+    static String phoneKey(String phone) {
+        return phone == null ? "" : phone.replaceAll("[^0-9]", "");
+    }
+
+    /** Trigrams of the key, plus "  x" and " xy" for the start of each word, counted in code points. */
+    static Set<String> grams(String key) {
+        Set<String> grams = new LinkedHashSet<>();
+        addTrigrams(grams, key);
+        for (String word : key.split(" ")) {
+            if (!word.isEmpty()) {
+                grams.add(prefixGram(word.substring(0, word.offsetByCodePoints(0, 1))));
+                if (word.codePointCount(0, word.length()) >= 2) {
+                    grams.add(prefixGram(word.substring(0, word.offsetByCodePoints(0, 2))));
+                }
+            }
+        }
+        return grams;
+    }
+
+    private static void addTrigrams(Set<String> grams, String key) {
+        int[] codePoints = key.codePoints().toArray();
+        for (int i = 0; i + 3 <= codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 3));
+        }
+    }
+
+    private static String prefixGram(String prefix) {
+        return " ".repeat(3 - prefix.codePointCount(0, prefix.length())) + prefix;
+    }
+}
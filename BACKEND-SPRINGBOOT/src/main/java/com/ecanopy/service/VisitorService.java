@@ -1,7 +1,9 @@
 package com.ecanopy.service;
 
+import com.ecanopy.config.DomainMetrics;
 import com.ecanopy.dto.request.VisitorRequest;
 import com.ecanopy.dto.response.VisitorResponse;
+import com.ecanopy.dto.response.VisitorSearchResponse;
 import com.ecanopy.entity.*;
 import com.ecanopy.entity.enums.ApprovalStatus;
 import com.ecanopy.entity.enums.VisitorCategory;
@@ -22,39 +24,46 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class VisitorService {
 
-    private final VisitorRepository visitorRepository;
+    private final VisitorDirectory visitorDirectory;
     private final VisitorLogRepository visitorLogRepository;
     private final FlatRepository flatRepository;
     private final PreApprovalRepository preApprovalRepository;
-    private final FrequentVisitorRepository frequentVisitorRepository;
+    private final ActivePassIndex activePassIndex;
     private final VisitorApprovalRepository visitorApprovalRepository;
     private final ResidentRepository residentRepository;
     private final UserRepository userRepository;
     private final EmailService emailService;
+    private final FileStorageService fileStorageService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final DomainMetrics metrics;
+    private final OccupancyService occupancyService;
+    private final OverstayMonitor overstayMonitor;
+    private final VisitorSearchIndex visitorSearchIndex;
 
     @Transactional
     public java.util.Map<String, Object> checkInByPreApprovalCode(String code, String scannedBy) {
+        DomainMetrics.Recording metric = metrics.record(DomainMetrics.VISITOR_CHECK_IN, "channel", "pass_code");
+        try {
+            return metric.success(checkInByPreApprovalCode(code, scannedBy, metric));
+        } catch (RuntimeException e) {
+            throw metric.failure(e);
+        }
+    }
+
+    private java.util.Map<String, Object> checkInByPreApprovalCode(String code, String scannedBy,
+            DomainMetrics.Recording metric) {
         PreApproval pa = preApprovalRepository.findByCodeAndIsUsedFalse(code)
                 .orElseThrow(() -> new NotFoundException("Invalid or Used Pass Code"));
+        metric.society(pa.getFlat());
 
         LocalDateTime now = LocalDateTime.now();
         if (now.isBefore(pa.getValidFrom()) || now.isAfter(pa.getValidUntil())) {
             throw new com.ecanopy.exception.BadRequestException("Pass Code is expired or not yet active");
         }
 
-        // Logic checkInVisitor
-        Visitor visitor = visitorRepository.findByPhone(pa.getVisitorPhone())
-                .map(existing -> {
-                    existing.setFullName(pa.getVisitorName()); // Update name if changed
-                    return visitorRepository.save(existing);
-                })
-                .orElseGet(() -> {
-                    Visitor v = new Visitor();
-                    v.setFullName(pa.getVisitorName());
-                    v.setPhone(pa.getVisitorPhone());
-                    v.setCreatedAt(now);
-                    return visitorRepository.save(v);
-                });
+        // Logic checkInVisitor: create the visitor, or update their name if changed
+        Visitor visitor = visitorDirectory.upsert(pa.getVisitorPhone(), pa.getVisitorName(), null, null, null)
+                .visitor();
 
         User guard = userRepository.findByEmail(scannedBy).orElse(null);
 
@@ -69,9 +78,12 @@ public class VisitorService {
         log.setStatus(ApprovalStatus.APPROVED);
 
         visitorLogRepository.save(log);
+        occupancyService.visitorIn(societyId(pa.getFlat()), log.getLogId(), log.getGateEntry());
+        visitorSearchIndex.visited(societyId(pa.getFlat()), visitor.getVisitorId());
 
         pa.setUsed(true);
         preApprovalRepository.save(pa);
+        activePassIndex.preApprovalUsed(pa.getFlat().getFlatId(), pa.getId());
 
         java.util.Map<String, Object> response = new java.util.HashMap<>();
         response.put("name", pa.getVisitorName());
@@ -83,34 +95,33 @@ public class VisitorService {
 
     @Transactional
     public VisitorResponse checkInVisitor(VisitorRequest request) {
-        // 1. Find or Create Visitor
-        Visitor visitor = visitorRepository.findByPhone(request.getPhone())
-                .map(existingVisitor -> {
-                    existingVisitor.setFullName(request.getName());
-                    if (request.getImageUrl() != null && !request.getImageUrl().isEmpty()) {
-                        existingVisitor.setPhotoUrl(request.getImageUrl());
-                    }
-                    // Update ID proof if provided
-                    if (request.getIdProofType() != null) {
-                        existingVisitor.setIdProofType(request.getIdProofType());
-                        existingVisitor.setIdProofNumber(request.getIdProofNumber());
-                    }
-                    return visitorRepository.save(existingVisitor);
-                })
-                .orElseGet(() -> {
-                    Visitor newVisitor = new Visitor();
-                    newVisitor.setFullName(request.getName());
-                    newVisitor.setPhone(request.getPhone());
-                    newVisitor.setPhotoUrl(request.getImageUrl());
-                    newVisitor.setIdProofType(request.getIdProofType());
-                    newVisitor.setIdProofNumber(request.getIdProofNumber());
-                    newVisitor.setCreatedAt(LocalDateTime.now());
-                    return visitorRepository.save(newVisitor);
-                });
+        DomainMetrics.Recording metric = metrics.record(DomainMetrics.VISITOR_CHECK_IN, "channel", "walk_in");
+        try {
+            return metric.success(checkInVisitor(request, metric));
+        } catch (RuntimeException e) {
+            throw metric.failure(e);
+        }
+    }
+
+    private VisitorResponse checkInVisitor(VisitorRequest request, DomainMetrics.Recording metric) {
+        // 1. Create or update the visitor (photo and ID proof only when provided); repeat
+        // visitors are usually written without being read first
+        String photoUrl = request.getImageUrl() != null && !request.getImageUrl().isEmpty()
+                ? request.getImageUrl()
+                : null;
+        VisitorDirectory.Upsert upsert = visitorDirectory.upsert(request.getPhone(), request.getName(), photoUrl,
+                request.getIdProofType(), request.getIdProofNumber());
+        Visitor visitor = upsert.visitor();
+        if (upsert.created()) {
+            fileStorageService.retain(request.getImageUrl());
+        } else if (photoUrl != null) {
+            fileStorageService.replace(upsert.previousPhotoUrl(), photoUrl);
+        }
 
         // 2. Validate Flat
         Flat flat = flatRepository.findById(request.getFlatId())
                 .orElseThrow(() -> new NotFoundException("Flat not found"));
+        metric.society(flat);
 
         // 3. Get current user (security guard)
         User checkedInBy = getCurrentUser();
@@ -138,13 +149,10 @@ public class VisitorService {
 
         boolean isAutoApproved = false;
 
-        // Check if frequent visitor
+        // Check if frequent visitor (in-memory index of the flat's active passes)
         if (visitor.getVisitorId() != null) {
-            boolean isFrequentVisitor = frequentVisitorRepository
-                    .findByVisitor_VisitorIdAndFlat_FlatIdAndIsActiveTrueAndValidFromBeforeAndValidUntilAfter(
-                            visitor.getVisitorId(), flat.getFlatId(),
-                            LocalDate.now(), LocalDate.now())
-                    .isPresent();
+            boolean isFrequentVisitor = activePassIndex.frequentVisitor(flat.getFlatId(), visitor.getVisitorId(),
+                    LocalDate.now());
 
             if (isFrequentVisitor) {
                 log.setStatus(ApprovalStatus.APPROVED);
@@ -154,25 +162,21 @@ public class VisitorService {
 
         // Check for pre-approval (only if not already approved as frequent visitor)
         if (!isAutoApproved) {
-            boolean isPreApproved = preApprovalRepository
-                    .findByVisitorPhoneAndFlat_FlatIdAndIsUsedFalseAndValidFromBeforeAndValidUntilAfter(
-                            request.getPhone(), request.getFlatId(),
-                            LocalDateTime.now(), LocalDateTime.now())
-                    .isPresent();
+            // The index may lag a use on another instance, so the row itself is checked again
+            LocalDateTime now = LocalDateTime.now();
+            PreApproval preApproval = activePassIndex.preApproval(flat.getFlatId(), visitor.getPhone(), now)
+                    .flatMap(preApprovalRepository::findById)
+                    .filter(pa -> !pa.isUsed() && !now.isBefore(pa.getValidFrom()) && !now.isAfter(pa.getValidUntil()))
+                    .orElse(null);
 
-            if (isPreApproved) {
+            if (preApproval != null) {
                 log.setStatus(ApprovalStatus.APPROVED);
                 isAutoApproved = true;
 
                 // Mark pre-approval as used
-                preApprovalRepository
-                        .findByVisitorPhoneAndFlat_FlatIdAndIsUsedFalseAndValidFromBeforeAndValidUntilAfter(
-                                request.getPhone(), request.getFlatId(),
-                                LocalDateTime.now(), LocalDateTime.now())
-                        .ifPresent(pa -> {
-                            pa.setUsed(true);
-                            preApprovalRepository.save(pa);
-                        });
+                preApproval.setUsed(true);
+                preApprovalRepository.save(preApproval);
+                activePassIndex.preApprovalUsed(flat.getFlatId(), preApproval.getId());
             }
         }
 
@@ -182,6 +186,9 @@ public class VisitorService {
         }
 
         VisitorLog savedLog = visitorLogRepository.save(log);
+        occupancyService.visitorIn(societyId(flat), savedLog.getLogId(), savedLog.getGateEntry());
+        overstayMonitor.visitorIn(societyId(flat), savedLog);
+        visitorSearchIndex.visited(societyId(flat), visitor.getVisitorId());
 
         // 6. Notify Residents and Create Approvals
         List<Resident> residents = residentRepository.findByFlat_FlatIdAndIsActiveTrue(flat.getFlatId());
@@ -235,8 +242,18 @@ public class VisitorService {
 
     @Transactional
     public VisitorResponse checkOutVisitor(Long logId) {
+        DomainMetrics.Recording metric = metrics.record(DomainMetrics.VISITOR_CHECK_OUT);
+        try {
+            return metric.success(checkOutVisitor(logId, metric));
+        } catch (RuntimeException e) {
+            throw metric.failure(e);
+        }
+    }
+
+    private VisitorResponse checkOutVisitor(Long logId, DomainMetrics.Recording metric) {
         VisitorLog log = visitorLogRepository.findById(logId)
                 .orElseThrow(() -> new NotFoundException("Visitor log not found"));
+        metric.society(log.getFlat());
 
         if (log.getOutTime() != null) {
             throw new IllegalStateException("Visitor already checked out");
@@ -244,6 +261,8 @@ public class VisitorService {
 
         log.setOutTime(LocalDateTime.now());
         VisitorLog savedLog = visitorLogRepository.save(log);
+        occupancyService.visitorOut(societyId(log.getFlat()), logId);
+        overstayMonitor.visitorOut(logId);
         return mapToVisitorResponse(savedLog);
     }
 
@@ -281,26 +300,35 @@ public class VisitorService {
                 .collect(Collectors.toList());
     }
 
-    // Search visitors by name
-    public List<VisitorResponse> searchVisitorsByName(Long societyId, String name) {
-        return visitorLogRepository
-                .findByFlat_Building_Society_SocietyIdAndVisitor_FullNameContainingIgnoreCaseOrderByInTimeDesc(
-                        societyId, name)
-                .stream()
-                .map(this::mapToVisitorResponse)
-                .collect(Collectors.toList());
-    }
-
-    // Search visitors by phone
-    public List<VisitorResponse> searchVisitorsByPhone(Long societyId, String phone) {
-        return visitorLogRepository
-                .findByFlat_Building_Society_SocietyIdAndVisitor_PhoneContainingOrderByInTimeDesc(
-                        societyId, phone)
-                .stream()
-                .map(this::mapToVisitorResponse)
-                .collect(Collectors.toList());
+    // Search visitors by name or phone through the search index: one row per visitor (their latest
+    // visit in the society), paged; without a term, the society's most recently seen visitors
+    public VisitorSearchResponse searchVisitors(User user, Long requestedSocietyId, String name, String phone,
+            Integer page, Integer size) {
+        Long societyId = SocietyScope.resolve(user, requestedSocietyId);
+        VisitorSearchIndex.Page found;
+        if (name != null && !name.isBlank()) {
+            found = visitorSearchIndex.search(societyId, VisitorSearchIndex.NAME, name, page, size);
+        } else if (phone != null && !phone.isBlank()) {
+            found = visitorSearchIndex.search(societyId, VisitorSearchIndex.PHONE, phone, page, size);
+        } else {
+            found = visitorSearchIndex.recent(societyId, page, size);
+        }
+        java.util.Map<Long, VisitorLog> logs = visitorLogRepository.findAllById(found.logIds()).stream()
+                .collect(Collectors.toMap(VisitorLog::getLogId, log -> log));
+        return VisitorSearchResponse.builder()
+                .societyId(societyId)
+                .page(found.page())
+                .size(found.size())
+                .hasMore(found.hasMore())
+                .results(found.logIds().stream()
+                        .map(logs::get)
+                        .filter(java.util.Objects::nonNull)
+                        .map(this::mapToVisitorResponse)
+                        .collect(Collectors.toList()))
+                .build();
     }
 
+    // Super admins name the society; everyone else searches their own
     // Filter visitors by category
     public List<VisitorResponse> filterVisitorsByCategory(Long societyId, VisitorCategory category) {
         return visitorLogRepository
@@ -321,10 +349,11 @@ public class VisitorService {
                 .collect(Collectors.toList());
     }
 
-    // Get overstaying visitors
+    // Get overstaying visitors: read from the database, so every instance answers the same
+    // (OverstayMonitor's wheel only drives this instance's streams)
     public List<VisitorResponse> getOverstayingVisitors(Long societyId) {
         return visitorLogRepository
-                .findByOutTimeIsNullAndExpectedOutTimeBeforeAndFlat_Building_Society_SocietyId(
+                .findByOutTimeIsNullAndExpectedOutTimeBeforeAndFlat_Building_Society_SocietyIdOrderByExpectedOutTimeAsc(
                         LocalDateTime.now(), societyId)
                 .stream()
                 .map(this::mapToVisitorResponse)
@@ -347,6 +376,8 @@ public class VisitorService {
             // Auto-checkout rejected visitors
             if (log.getOutTime() == null) {
                 log.setOutTime(LocalDateTime.now());
+                occupancyService.visitorOut(societyId(log.getFlat()), logId);
+                overstayMonitor.visitorOut(logId);
             }
         }
 
@@ -386,11 +417,14 @@ public class VisitorService {
 
         preApproval.setResident(resident);
         preApproval.setFlat(flat);
+        preApproval.setVisitorPhone(VisitorDirectory.normalizePhone(preApproval.getVisitorPhone()));
 
         String code = generateUniqueCode();
         preApproval.setCode(code);
 
-        return preApprovalRepository.save(preApproval);
+        PreApproval saved = preApprovalRepository.save(preApproval);
+        activePassIndex.preApprovalAdded(saved);
+        return saved;
     }
 
     private String generateUniqueCode() {
@@ -412,7 +446,7 @@ public class VisitorService {
                 .collect(Collectors.toList());
     }
 
-    private VisitorResponse mapToVisitorResponse(VisitorLog log) {
+    VisitorResponse mapToVisitorResponse(VisitorLog log) {
         String statusString = log.getStatus().name();
         if (log.getOutTime() != null) {
             statusString = "CHECKED_OUT";
@@ -428,6 +462,8 @@ public class VisitorService {
                 .category(log.getCategory())
                 .purpose(log.getPurpose())
                 .imageUrl(log.getVisitor().getPhotoUrl())
+                .thumbnailUrl(imageDerivativeService.variantUrl(log.getVisitor().getPhotoUrl(),
+                        ImageDerivativeService.Size.THUMB))
                 .vehicleNumber(log.getVehicleNumber())
                 .inTime(log.getInTime())
                 .outTime(log.getOutTime())
@@ -440,6 +476,12 @@ public class VisitorService {
                 .build();
     }
 
+    private static Long societyId(Flat flat) {
+        return flat != null && flat.getBuilding() != null && flat.getBuilding().getSociety() != null
+                ? flat.getBuilding().getSociety().getSocietyId()
+                : null;
+    }
+
     private User getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.getName() != null) {
@@ -0,0 +1,147 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.DomainMetrics;
+import com.ecanopy.config.DomainMetricsProperties;
+import com.ecanopy.config.RazorpayProperties;
+import com.ecanopy.dto.request.PaymentOrderRequest;
+import com.ecanopy.dto.response.PaymentOrderResponse;
+import com.ecanopy.entity.MaintenanceBill;
+import com.ecanopy.entity.Payment;
+import com.ecanopy.entity.User;
+import com.ecanopy.entity.enums.BillStatus;
+import com.ecanopy.entity.enums.PaymentStatus;
+import com.ecanopy.exception.BadRequestException;
+import com.ecanopy.repository.MaintenanceBillRepository;
+import com.ecanopy.repository.PaymentRepository;
+import com.ecanopy.repository.UserRepository;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Create-order flow against the stub gateway, with the repositories mocked out.
+ */
+class PaymentServiceTest {
+
+    private static final long BILL_ID = 42L;
+    private static final long USER_ID = 7L;
+
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final MaintenanceBillRepository billRepository = mock(MaintenanceBillRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final MaintenanceBill bill = MaintenanceBill.builder()
+            .billId(BILL_ID)
+            .totalAmount(new BigDecimal("1500.00"))
+            .build();
+
+    private PaymentOrderDeduplicator orderDeduplicator;
+    private PaymentService paymentService;
+    private Payment saved;
+
+    @BeforeEach
+    void setUp() {
+        RazorpayProperties razorpayProperties = new RazorpayProperties();
+        razorpayProperties.getStub().setLatency(Duration.ZERO);
+        ResilientPaymentGateway gateway = new ResilientPaymentGateway(new StubPaymentGateway(razorpayProperties),
+                CircuitBreakerRegistry.ofDefaults(), ThreadPoolBulkheadRegistry.ofDefaults(),
+                TimeLimiterRegistry.ofDefaults());
+
+        orderDeduplicator = new PaymentOrderDeduplicator(razorpayProperties);
+        paymentService = new PaymentService(gateway, paymentRepository, billRepository, userRepository,
+                new DomainMetrics(new SimpleMeterRegistry(), new DomainMetricsProperties()),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                orderDeduplicator,
+                mock(RazorpaySignatureVerifier.class));
+        ReflectionTestUtils.setField(paymentService, "keyId", "rzp_test");
+        ReflectionTestUtils.setField(paymentService, "currency", "INR");
+        ReflectionTestUtils.setField(paymentService, "companyName", "ECanopy");
+
+        when(billRepository.findById(BILL_ID)).thenReturn(Optional.of(bill));
+        when(userRepository.findById(USER_ID)).thenReturn(Optional.of(new User()));
+        when(paymentRepository.findByActiveBillId(anyLong())).thenReturn(Optional.empty());
+        when(paymentRepository.saveAndFlush(any(Payment.class))).thenAnswer(invocation -> {
+            saved = invocation.getArgument(0);
+            saved.setPaymentId(1L);
+            return saved;
+        });
+        when(paymentRepository.findById(1L)).thenAnswer(invocation -> Optional.ofNullable(saved));
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void overdueBillCanStillBePaid() {
+        bill.setStatus(BillStatus.OVERDUE);
+
+        PaymentOrderResponse response = paymentService.createPaymentOrder(orderRequest(BILL_ID), null);
+
+        assertThat(response.getOrderId()).startsWith("order_stub_");
+        assertThat(response.getAmount()).isEqualTo(150_000L);
+        assertThat(saved.getStatus()).isEqualTo(PaymentStatus.CREATED);
+        assertThat(saved.getRazorpayOrderId()).isEqualTo(response.getOrderId());
+    }
+
+    @Test
+    void idempotencyKeyOfAnotherBillIsRejected() {
+        bill.setStatus(BillStatus.PENDING);
+        MaintenanceBill other = MaintenanceBill.builder()
+                .billId(BILL_ID + 1)
+                .status(BillStatus.PENDING)
+                .totalAmount(new BigDecimal("900.00"))
+                .build();
+        when(billRepository.findById(BILL_ID + 1)).thenReturn(Optional.of(other));
+        paymentService.createPaymentOrder(orderRequest(BILL_ID), "key-1");
+        when(paymentRepository.findByIdempotencyKey("key-1")).thenReturn(Optional.of(saved));
+
+        assertThatThrownBy(() -> paymentService.createPaymentOrder(orderRequest(BILL_ID + 1), "key-1"))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Idempotency-Key was already used for another bill");
+    }
+
+    @Test
+    void replayForAPaidBillIsRejected() {
+        bill.setStatus(BillStatus.PENDING);
+        paymentService.createPaymentOrder(orderRequest(BILL_ID), "key-2");
+        when(paymentRepository.findByIdempotencyKey("key-2")).thenReturn(Optional.of(saved));
+        bill.setStatus(BillStatus.PAID);
+        orderDeduplicator.forget(List.of(BILL_ID)); // as PaymentService/PaymentReconciler do on payment
+
+        assertThatThrownBy(() -> paymentService.createPaymentOrder(orderRequest(BILL_ID), "key-2"))
+                .hasMessage("Bill already paid");
+    }
+
+    @Test
+    void paidBillIsRejected() {
+        bill.setStatus(BillStatus.PAID);
+
+        assertThatThrownBy(() -> paymentService.createPaymentOrder(orderRequest(BILL_ID), null))
+                .hasMessage("Bill already paid");
+        verify(paymentRepository, never()).saveAndFlush(any(Payment.class));
+    }
+
+    private static PaymentOrderRequest orderRequest(long billId) {
+        PaymentOrderRequest request = new PaymentOrderRequest();
+        request.setBillId(billId);
+        request.setUserId(USER_ID);
+        return request;
+    }
+}
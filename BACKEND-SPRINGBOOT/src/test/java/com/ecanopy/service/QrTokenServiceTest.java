@@ -0,0 +1,65 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.JwtProperties;
+import com.ecanopy.config.QrTokenProperties;
+import com.ecanopy.entity.QrRevocation;
+import com.ecanopy.entity.enums.QrSubjectType;
+import com.ecanopy.exception.ForbiddenException;
+import com.ecanopy.repository.QrRevocationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Revocation of gate passes, down to passes issued within the same second.
+ */
+class QrTokenServiceTest {
+
+    private final QrRevocationRepository revocationRepository = mock(QrRevocationRepository.class);
+
+    private QrTokenService qrTokenService;
+
+    @BeforeEach
+    void setUp() {
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.setSecret("test-jwt-secret");
+        qrTokenService = new QrTokenService(revocationRepository, new QrTokenProperties(), jwtProperties);
+        when(revocationRepository.findBySubjectTypeAndSubjectId(any(), any())).thenReturn(Optional.empty());
+        when(revocationRepository.save(any(QrRevocation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void passReissuedRightAfterARevocationIsValid() throws InterruptedException {
+        String revokedPass = qrTokenService.issue(QrSubjectType.RESIDENT, 11L, 2L, "Asha").getToken();
+        Thread.sleep(2);
+        qrTokenService.revoke(QrSubjectType.RESIDENT, 11L, 2L, "secretary@ecanopy.com");
+        Thread.sleep(2);
+
+        String newPass = qrTokenService.issue(QrSubjectType.RESIDENT, 11L, 2L, "Asha").getToken();
+
+        assertThatThrownBy(() -> qrTokenService.verify(revokedPass))
+                .isInstanceOf(ForbiddenException.class)
+                .hasMessage("QR code has been revoked");
+        assertThat(qrTokenService.verify(newPass).subjectId()).isEqualTo(11L);
+    }
+
+    @Test
+    void offlineScanBeforeTheRevocationIsAccepted() {
+        String pass = qrTokenService.issue(QrSubjectType.HELP, 5L, 2L, "Sunita").getToken();
+        long issuedAt = Instant.now().getEpochSecond();
+
+        qrTokenService.revoke(QrSubjectType.HELP, 5L, 2L, null);
+
+        assertThat(qrTokenService.verify(pass, issuedAt - 1).type()).isEqualTo(QrSubjectType.HELP);
+        assertThatThrownBy(() -> qrTokenService.verify(pass, Instant.now().getEpochSecond()))
+                .hasMessage("QR code has been revoked");
+    }
+}
@@ -0,0 +1,111 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.RazorpayProperties;
+import com.ecanopy.exception.ServiceUnavailableException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadConfig;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Timeout, bulkhead and circuit breaker paths against the stub gateway, with the "razorpay"
+ * instances shrunk so each path is reached in a few calls.
+ */
+class ResilientPaymentGatewayTest {
+
+    private final RazorpayProperties razorpayProperties = new RazorpayProperties();
+    private final StubPaymentGateway stub = new StubPaymentGateway(razorpayProperties);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    private ThreadPoolBulkheadRegistry bulkheadRegistry;
+    private ResilientPaymentGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        razorpayProperties.getStub().setLatency(Duration.ZERO);
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .ignoreExceptions(BulkheadFullException.class)
+                .build());
+        bulkheadRegistry = ThreadPoolBulkheadRegistry.of(ThreadPoolBulkheadConfig.custom()
+                .coreThreadPoolSize(1)
+                .maxThreadPoolSize(1)
+                .queueCapacity(1)
+                .build());
+        TimeLimiterRegistry timeLimiterRegistry = TimeLimiterRegistry.of(TimeLimiterConfig.custom()
+                .timeoutDuration(Duration.ofMillis(300))
+                .cancelRunningFuture(true)
+                .build());
+        gateway = new ResilientPaymentGateway(stub, circuitBreakerRegistry, bulkheadRegistry, timeLimiterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void slowGatewayTimesOut() {
+        razorpayProperties.getStub().setLatency(Duration.ofSeconds(2));
+
+        assertThatThrownBy(() -> gateway.createOrder(100_000L, "INR", "bill_1"))
+                .isInstanceOf(ServiceUnavailableException.class)
+                .hasMessage("Payment gateway timed out, please retry")
+                .hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void fullBulkheadRejectsWithoutWaiting() throws InterruptedException {
+        razorpayProperties.getStub().setLatency(Duration.ofMillis(250));
+        // One call on the bulkhead's only thread, one in its queue
+        callers.submit(() -> gateway.createOrder(100_000L, "INR", "bill_1"));
+        callers.submit(() -> gateway.createOrder(100_000L, "INR", "bill_2"));
+        for (int i = 0; i < 100 && bulkheadRegistry.bulkhead("razorpay").getMetrics().getRemainingQueueCapacity() > 0;
+                i++) {
+            Thread.sleep(5);
+        }
+
+        long started = System.nanoTime();
+        assertThatThrownBy(() -> gateway.createOrder(100_000L, "INR", "bill_3"))
+                .isInstanceOf(ServiceUnavailableException.class)
+                .hasMessage("Payment gateway is busy, please retry shortly")
+                .hasCauseInstanceOf(BulkheadFullException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(200));
+    }
+
+    @Test
+    void failingGatewayOpensTheCircuit() {
+        razorpayProperties.getStub().setFailureRate(1.0);
+        for (int i = 1; i <= 4; i++) {
+            String receipt = "bill_" + i;
+            assertThatThrownBy(() -> gateway.createOrder(100_000L, "INR", receipt))
+                    .isInstanceOf(ServiceUnavailableException.class)
+                    .hasMessage("Payment gateway error: Stub gateway failure for " + receipt);
+        }
+
+        razorpayProperties.getStub().setFailureRate(0.0);
+        assertThatThrownBy(() -> gateway.createOrder(100_000L, "INR", "bill_5"))
+                .isInstanceOf(ServiceUnavailableException.class)
+                .hasMessage("Payment gateway is temporarily unavailable, please retry shortly")
+                .hasCauseInstanceOf(CallNotPermittedException.class);
+    }
+}
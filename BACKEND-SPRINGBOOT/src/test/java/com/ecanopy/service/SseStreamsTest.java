@@ -0,0 +1,71 @@
+package com.ecanopy.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Per-user cap and non-blocking sends of the shared SSE fan-out.
+ */
+class SseStreamsTest {
+
+    private final SseStreams<Long> streams = new SseStreams<>("test-push", 2, 2);
+
+    @AfterEach
+    void tearDown() {
+        streams.shutdown();
+    }
+
+    @Test
+    void openingPastTheCapClosesTheUsersOldestStream() {
+        SseStreams<Long>.Stream first = streams.open(1L, 7L, 60_000);
+        SseStreams<Long>.Stream second = streams.open(2L, 7L, 60_000);
+        SseStreams<Long>.Stream other = streams.open(1L, 8L, 60_000);
+
+        SseStreams<Long>.Stream third = streams.open(3L, 7L, 60_000);
+
+        assertThat(first.closed).isTrue();
+        assertThat(second.closed).isFalse();
+        assertThat(third.closed).isFalse();
+        assertThat(other.closed).isFalse();
+        assertThat(streams.hasStreams(1L)).isTrue(); // user 8 still follows it
+        assertThat(streams.hasStreams(2L)).isTrue();
+    }
+
+    @Test
+    void aStuckStreamDoesNotHoldUpTheCallerOrOtherStreams() throws InterruptedException {
+        SseStreams<Long>.Stream stuck = streams.open(1L, 7L, 60_000);
+        SseStreams<Long>.Stream healthy = streams.open(1L, 8L, 60_000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(1);
+        streams.send(stuck, () -> {
+            awaitQuietly(release);
+            return SseEmitter.event().comment("slow");
+        });
+
+        streams.send(healthy, () -> {
+            delivered.countDown();
+            return SseEmitter.event().comment("fast");
+        });
+
+        assertThat(delivered.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i <= 64; i++) {
+            streams.broadcast(1L, () -> SseEmitter.event().comment("tick"));
+        }
+        assertThat(stuck.closed).isTrue(); // fell too far behind
+        release.countDown();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
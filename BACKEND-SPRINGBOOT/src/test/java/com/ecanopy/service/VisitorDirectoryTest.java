@@ -0,0 +1,109 @@
+package com.ecanopy.service;
+
+import com.ecanopy.config.VisitorDirectoryProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Startup clean-up of visitors.phone on an H2 schema that predates the unique constraint.
+ */
+class VisitorDirectoryTest {
+
+    private final FileStorageService fileStorageService = mock(FileStorageService.class);
+    private final VisitorSearchIndex visitorSearchIndex = mock(VisitorSearchIndex.class);
+
+    private JdbcTemplate jdbcTemplate;
+    private VisitorDirectory visitorDirectory;
+
+    @BeforeEach
+    void setUp() {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(), "jdbc:h2:mem:"
+                + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE visitors (visitor_id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "full_name VARCHAR(100) NOT NULL, phone VARCHAR(20) NOT NULL, id_proof_type VARCHAR(50), "
+                + "id_proof_number VARCHAR(50), photo_url VARCHAR(255), created_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE visitor_logs (log_id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "visitor_id BIGINT NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE frequent_visitors (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "visitor_id BIGINT NOT NULL, flat_id BIGINT NOT NULL, updated_at TIMESTAMP)");
+        visitorDirectory = new VisitorDirectory(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), fileStorageService,
+                visitorSearchIndex, new VisitorDirectoryProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void legacySpellingsAreMergedIntoTheOldestVisitor() {
+        visitor(1, "9000000001", "/uploads/a.jpg");
+        visitor(2, "09000000001", "/uploads/b.jpg");
+        visitor(3, "+91 90000 00001", null);
+        visitor(4, "9000000009", null);
+        visitor(5, "9000000009", "/uploads/c.jpg");
+        jdbcTemplate.update("INSERT INTO visitor_logs (visitor_id) VALUES (2), (3), (5)");
+        jdbcTemplate.update("INSERT INTO frequent_visitors (visitor_id, flat_id) VALUES (1, 10), (2, 10), (3, 11)");
+
+        visitorDirectory.afterSingletonsInstantiated();
+
+        assertThat(jdbcTemplate.queryForList("SELECT visitor_id, phone FROM visitors ORDER BY visitor_id"))
+                .containsExactly(Map.of("visitor_id", 1L, "phone", "9000000001"),
+                        Map.of("visitor_id", 4L, "phone", "9000000009"));
+        assertThat(jdbcTemplate.queryForList("SELECT visitor_id FROM visitor_logs ORDER BY log_id", Long.class))
+                .containsExactly(1L, 1L, 4L);
+        assertThat(jdbcTemplate.queryForList("SELECT flat_id FROM frequent_visitors WHERE visitor_id = 1 "
+                + "ORDER BY flat_id", Long.class)).containsExactly(10L, 11L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM frequent_visitors", Long.class)).isEqualTo(2L);
+        verify(visitorSearchIndex).visitorsMerged(1L, List.of(1L, 2L, 3L));
+        verify(fileStorageService).release("/uploads/b.jpg");
+        verify(fileStorageService).release("/uploads/c.jpg");
+    }
+
+    @Test
+    void olderLegacyRowKeepsTheNormalisedPhone() {
+        visitor(1, "090000-00002", null);
+        visitor(2, "9000000002", null);
+        jdbcTemplate.update("INSERT INTO visitor_logs (visitor_id) VALUES (1), (2)");
+
+        visitorDirectory.afterSingletonsInstantiated();
+
+        assertThat(jdbcTemplate.queryForList("SELECT phone FROM visitors WHERE visitor_id = 1", String.class))
+                .containsExactly("9000000002");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM visitors", Long.class)).isEqualTo(1L);
+        assertThat(jdbcTemplate.queryForList("SELECT DISTINCT visitor_id FROM visitor_logs", Long.class))
+                .containsExactly(1L);
+    }
+
+    @Test
+    void uniqueConstraintIsAddedWithoutDuplicates() {
+        visitor(1, "9000000003", null);
+
+        visitorDirectory.afterSingletonsInstantiated();
+        visitorDirectory.afterSingletonsInstantiated(); // already present: not added twice
+
+        assertThatThrownBy(() -> visitor(2, "9000000003", null)).isInstanceOf(DuplicateKeyException.class);
+    }
+
+    private void visitor(long visitorId, String phone, String photoUrl) {
+        jdbcTemplate.update("INSERT INTO visitors (visitor_id, full_name, phone, photo_url) VALUES (?, ?, ?, ?)",
+                visitorId, "Visitor " + visitorId, phone, photoUrl);
+    }
+}
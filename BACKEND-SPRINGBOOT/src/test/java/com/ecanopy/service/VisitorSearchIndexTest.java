@@ -0,0 +1,27 @@
+package com.ecanopy.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Name keys and grams of visitors named in Latin and Indian scripts.
+ */
+class VisitorSearchIndexTest {
+
+    @Test
+    void latinNamesLoseCaseAccentsAndPunctuation() {
+        assertThat(VisitorSearchIndex.nameKey("  José  D'Souza ")).isEqualTo("jose d souza");
+        assertThat(VisitorSearchIndex.grams("jo")).containsExactly("  j", " jo");
+    }
+
+    @Test
+    void indianScriptNamesKeepTheirLettersAndVowelSigns() {
+        String key = VisitorSearchIndex.nameKey("प्रिया शर्मा");
+
+        assertThat(key).isEqualTo("प्रिया शर्मा");
+        assertThat(VisitorSearchIndex.nameKey("முருகன்")).isEqualTo("முருகன்");
+        assertThat(VisitorSearchIndex.grams(key)).contains("प्र", "  प", " प्", "शर्");
+        assertThat(VisitorSearchIndex.grams(key)).allMatch(gram -> gram.codePointCount(0, gram.length()) == 3);
+    }
+}
@@ -3,6 +3,7 @@ import { useAuth } from '../context/AuthContext';
 import { societyService } from '../services/societyService';
 import { adminService } from '../services/adminService';
 import { residentService } from '../services/residentService';
+import { accessService } from '../services/accessService';
 import Button from '../components/ui/Button';
 import { QRCodeSVG } from 'qrcode.react';
 import {
@@ -29,6 +30,7 @@ export default function DashboardHome() {
     const [adminStats, setAdminStats] = useState(null);
     const [residentStats, setResidentStats] = useState(null);
     const [societyCount, setSocietyCount] = useState(0);
+    const [gatePass, setGatePass] = useState(null);
     const [loading, setLoading] = useState(true);
 
     const isSuperAdmin = user?.roles?.includes('ROLE_SUPER_ADMIN');
@@ -53,6 +55,9 @@ export default function DashboardHome() {
                 } else {
                     const data = await residentService.getDashboardStats();
                     setResidentStats(data);
+                    accessService.getMyPass()
+                        .then(setGatePass)
+                        .catch(error => console.error("Failed to issue gate pass", error));
                 }
             } catch (error) {
                 console.error("Failed to fetch dashboard stats", error);
@@ -237,7 +242,11 @@ export default function DashboardHome() {
                         </div>
                         <div className="bg-white/10 backdrop-blur-2xl p-4 rounded-[2.5rem] border border-white/10 shadow-2xl">
                             <div className="bg-white p-4 rounded-[2rem] shadow-inner mb-4">
-                                <QRCodeSVG value={`RESIDENT:${user.id}:${user.fullName}`} size={160} />
+                                {gatePass ? (
+                                    <QRCodeSVG value={gatePass.token} size={160} />
+                                ) : (
+                                    <div className="w-[160px] h-[160px] rounded-2xl bg-slate-100" />
+                                )}
                             </div>
                             <div className="text-center">
                                 <p className="text-white text-[10px] font-black uppercase tracking-widest opacity-60">Digital Gate Pass</p>
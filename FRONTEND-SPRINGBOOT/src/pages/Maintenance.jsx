@@ -14,6 +14,8 @@ export default function Maintenance() {
     const [rate, setRate] = useState('');
 
     const isSecretary = user?.roles?.some(r => ['ROLE_RWA_SECRETARY', 'ROLE_ADMIN'].includes(r));
+    const canExport = user?.roles?.some(r => ['ROLE_RWA_SECRETARY', 'ROLE_RWA_PRESIDENT', 'ROLE_ADMIN'].includes(r));
+    const [exporting, setExporting] = useState(false);
 
     const fetchBills = async () => {
         setLoading(true);
@@ -31,6 +33,29 @@ export default function Maintenance() {
         fetchBills();
     }, []);
 
+    // Last 12 bill months, streamed by the backend as a spreadsheet
+    const handleExport = async () => {
+        const month = (d) => `${d.getFullYear()}-${String(d.getMonth() + 1).padStart(2, '0')}`;
+        const now = new Date();
+        const from = month(new Date(now.getFullYear(), now.getMonth() - 11, 1));
+        const to = month(now);
+        setExporting(true);
+        try {
+            const blob = await billingService.exportBilling({ from, to });
+            const url = URL.createObjectURL(blob);
+            const link = document.createElement('a');
+            link.href = url;
+            link.download = `bills-${from}_${to}.xlsx`;
+            link.click();
+            URL.revokeObjectURL(url);
+        } catch (error) {
+            console.error("Failed to export bills", error);
+            notify.error('Export failed.');
+        } finally {
+            setExporting(false);
+        }
+    };
+
     const handleGenerate = async (e) => {
         e.preventDefault();
         try {
@@ -55,9 +80,16 @@ export default function Maintenance() {
                     <p className="text-slate-500 mt-1">Manage maintenance billing and society collections</p>
                 </div>
                 <div className="flex gap-3">
-                    <Button variant="outline" className="rounded-2xl border-slate-200 text-slate-600 font-bold px-5">
-                        <Download className="w-4 h-4 mr-2" /> Export PDF
-                    </Button>
+                    {canExport && (
+                        <Button
+                            variant="outline"
+                            onClick={handleExport}
+                            disabled={exporting}
+                            className="rounded-2xl border-slate-200 text-slate-600 font-bold px-5"
+                        >
+                            <Download className="w-4 h-4 mr-2" /> {exporting ? 'Exporting...' : 'Export Excel'}
+                        </Button>
+                    )}
                     {isSecretary && (
                         <Button
                             onClick={() => setShowGenerateForm(!showGenerateForm)}
@@ -1,16 +1,30 @@
-import { useState, useEffect } from 'react';
+import { useState, useEffect, useRef } from 'react';
 import { billingService } from '../services/billingService';
 import { paymentService } from '../services/paymentService';
 import { useAuth } from '../context/AuthContext';
 import Button from '../components/ui/Button';
 import { confirmAction, notify } from '../utils/alerts';
 
+// Open bills a resident can still pay; mirrors BillStatus.OUTSTANDING on the backend
+const PAYABLE_STATUSES = ['PENDING', 'OVERDUE'];
+
 export default function MaintenanceBills() {
     const { user } = useAuth();
     const [bills, setBills] = useState([]);
     const [loading, setLoading] = useState(true);
     const [generating, setGenerating] = useState(false);
     const [ratePerSqFt, setRatePerSqFt] = useState('2.5'); // Default rate
+    // One Idempotency-Key per bill until it is paid, so repeated "Pay Now" clicks reuse the order
+    const paymentKeys = useRef({});
+
+    const paymentKeyFor = (billId) => {
+        if (!paymentKeys.current[billId]) {
+            paymentKeys.current[billId] = window.crypto?.randomUUID
+                ? window.crypto.randomUUID()
+                : `${billId}-${Date.now()}-${Math.random().toString(36).slice(2)}`;
+        }
+        return paymentKeys.current[billId];
+    };
 
     const isManager = user?.roles?.some(r => ['ROLE_ADMIN', 'ROLE_RWA_SECRETARY', 'ROLE_RWA_PRESIDENT'].includes(r));
 
@@ -127,7 +141,7 @@ export default function MaintenanceBills() {
                                                     View Receipt
                                                 </button>
                                             )}
-                                            {isManager && bill.status === 'PENDING' && (
+                                            {isManager && PAYABLE_STATUSES.includes(bill.status) && (
                                                 <button
                                                     onClick={() => handleMarkPaid(bill.billId)}
                                                     className="text-xs text-indigo-600 hover:text-indigo-900 border border-indigo-200 px-2 py-1 rounded bg-indigo-50"
@@ -135,7 +149,7 @@ export default function MaintenanceBills() {
                                                     Mark Paid
                                                 </button>
                                             )}
-                                            {!isManager && bill.status === 'PENDING' && (
+                                            {!isManager && PAYABLE_STATUSES.includes(bill.status) && (
                                                 <button
                                                     onClick={async () => {
                                                         const result = await confirmAction({
@@ -146,7 +160,7 @@ export default function MaintenanceBills() {
 
                                                         if (result.isConfirmed) {
                                                             try {
-                                                                const orderData = await paymentService.createOrder(bill.billId, user.id);
+                                                                const orderData = await paymentService.createOrder(bill.billId, user.id, paymentKeyFor(bill.billId));
                                                                 const options = {
                                                                     key: orderData.key,
                                                                     amount: orderData.amount,
@@ -161,6 +175,7 @@ export default function MaintenanceBills() {
                                                                                 razorpayPaymentId: response.razorpay_payment_id,
                                                                                 razorpaySignature: response.razorpay_signature
                                                                             });
+                                                                            delete paymentKeys.current[bill.billId];
                                                                             notify.success('Payment Verified & Credited!');
                                                                             fetchBills();
                                                                         } catch (err) {
@@ -177,7 +177,8 @@ function ItemCard({ item, currentUser, onDelete }) {
                     />
                 ) : (
                     <img
-                        src={`http://localhost:8080${item.imageUrl}`}
+                        src={`http://localhost:8080${item.thumbnailUrl || item.imageUrl}`}
+                        loading="lazy"
                         alt={item.itemName}
                         className="w-full h-full object-cover"
                     />
@@ -30,12 +30,14 @@ export default function VisitorDashboard() {
     const [showScanner, setShowScanner] = useState(false);
     const [error, setError] = useState('');
     const [searchTerm, setSearchTerm] = useState('');
+    const [searchPage, setSearchPage] = useState(null); // { page, hasMore } while showing search results
     const [filterCategory, setFilterCategory] = useState('');
 
     const fetchVisitors = useCallback(async () => {
         if (!user?.societyId) return;
         try {
             setLoading(true);
+            setSearchPage(null);
             let data;
             if (viewMode === 'active') {
                 data = await visitorService.getActiveVisitors(user.societyId);
@@ -145,16 +147,25 @@ export default function VisitorDashboard() {
         }
     }, [showScanner, fetchVisitors]);
 
-    const handleSearch = async () => {
+    const handleSearch = async (page = 0) => {
         if (!user?.societyId) return;
+        const term = searchTerm.trim();
+        if (!term) {
+            fetchVisitors();
+            return;
+        }
+        // Digits (with +, spaces or dashes) search the phone index, anything else the name index
+        const isPhone = /^[+\d\s-]+$/.test(term);
         try {
             setLoading(true);
             const data = await visitorService.searchVisitors(
                 user.societyId,
-                searchTerm,
-                searchTerm
+                isPhone ? null : term,
+                isPhone ? term : null,
+                page
             );
-            setVisitors(data);
+            setVisitors(data.results);
+            setSearchPage({ page: data.page, hasMore: data.hasMore });
         } catch (err) {
             setError('Search failed');
             notify.error("Search system unavailable");
@@ -172,6 +183,7 @@ export default function VisitorDashboard() {
         }
         try {
             setLoading(true);
+            setSearchPage(null);
             const data = await visitorService.filterByCategory(user.societyId, category);
             setVisitors(data);
         } catch (err) {
@@ -278,12 +290,12 @@ export default function VisitorDashboard() {
                             placeholder="Search by name or phone..."
                             value={searchTerm}
                             onChange={(e) => setSearchTerm(e.target.value)}
-                            onKeyPress={(e) => e.key === 'Enter' && handleSearch()}
+                            onKeyPress={(e) => e.key === 'Enter' && handleSearch(0)}
                             className="w-full pl-12 pr-4 py-4 bg-slate-50 border border-slate-100 rounded-2xl focus:ring-4 focus:ring-indigo-500/10 focus:border-indigo-500 outline-none transition-all font-bold text-slate-700 placeholder:text-slate-300"
                         />
                     </div>
                     <div className="flex gap-2">
-                        <Button onClick={handleSearch} className="rounded-lg bg-gray-900 px-6 font-medium">Search</Button>
+                        <Button onClick={() => handleSearch(0)} className="rounded-lg bg-gray-900 px-6 font-medium">Search</Button>
                         <Button variant="ghost" className="rounded-2xl text-slate-400" onClick={() => { setSearchTerm(''); fetchVisitors(); }}>
                             <RefreshCw className="w-4 h-4" />
                         </Button>
@@ -382,7 +394,8 @@ export default function VisitorDashboard() {
                                                 <div className="relative">
                                                     {v.imageUrl ? (
                                                         <img
-                                                            src={`http://localhost:8080${v.imageUrl}`}
+                                                            src={`http://localhost:8080${v.thumbnailUrl || v.imageUrl}`}
+                                                            loading="lazy"
                                                             alt={v.name}
                                                             className="w-12 h-12 rounded-2xl object-cover ring-4 ring-slate-100 shadow-lg"
                                                         />
@@ -454,6 +467,29 @@ export default function VisitorDashboard() {
                             </tbody>
                         </table>
                     </div>
+                    {searchPage && (searchPage.page > 0 || searchPage.hasMore) && (
+                        <div className="flex items-center justify-between px-10 py-4 border-t border-slate-50">
+                            <span className="text-xs text-gray-500">Page {searchPage.page + 1}</span>
+                            <div className="flex gap-2">
+                                <Button
+                                    variant="ghost"
+                                    className="rounded-lg"
+                                    disabled={searchPage.page === 0}
+                                    onClick={() => handleSearch(searchPage.page - 1)}
+                                >
+                                    Previous
+                                </Button>
+                                <Button
+                                    variant="ghost"
+                                    className="rounded-lg"
+                                    disabled={!searchPage.hasMore}
+                                    onClick={() => handleSearch(searchPage.page + 1)}
+                                >
+                                    Next
+                                </Button>
+                            </div>
+                        </div>
+                    )}
                 </div>
             )}
         </div>
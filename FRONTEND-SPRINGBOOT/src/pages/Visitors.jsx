@@ -243,7 +243,7 @@ export default function Visitors() {
                         <div className="flex gap-4">
                             {pendingApprovals.slice(0, 3).map(v => (
                                 <div key={v.logId} className="w-14 h-14 rounded-2xl border-2 border-white shadow-lg overflow-hidden ring-4 ring-amber-50">
-                                    <img src={v.imageUrl ? `http://localhost:8080${v.imageUrl}` : `https://ui-avatars.com/api/?name=${v.name}&background=random`} className="w-full h-full object-cover" alt="" />
+                                    <img src={v.imageUrl ? `http://localhost:8080${v.thumbnailUrl || v.imageUrl}` : `https://ui-avatars.com/api/?name=${v.name}&background=random`} className="w-full h-full object-cover" alt="" />
                                 </div>
                             ))}
                             {pendingApprovals.length > 3 && (
@@ -293,7 +293,7 @@ export default function Visitors() {
                                     <div className="relative">
                                         <div className="w-20 h-20 rounded-[2rem] bg-slate-100 overflow-hidden shadow-inner group-hover:scale-105 transition-transform duration-500 border-2 border-white shadow-xl">
                                             {visitor.imageUrl ? (
-                                                <img src={`http://localhost:8080${visitor.imageUrl}`} className="w-full h-full object-cover" alt="" />
+                                                <img src={`http://localhost:8080${visitor.thumbnailUrl || visitor.imageUrl}`} loading="lazy" className="w-full h-full object-cover" alt="" />
                                             ) : (
                                                 <div className="w-full h-full flex items-center justify-center bg-slate-50">
                                                     <User className="w-8 h-8 text-slate-200" />
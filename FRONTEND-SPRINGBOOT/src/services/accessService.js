@@ -4,5 +4,17 @@ export const accessService = {
     validateQr: async (token) => {
         const response = await api.post('/access/validate-qr', { token });
         return response.data;
+    },
+    // Signed gate pass of the logged-in resident: { token, expiresAt }
+    getMyPass: async () => {
+        const response = await api.get('/access/qr-token');
+        return response.data;
+    },
+    issueStaffPass: async (staffId) => {
+        const response = await api.post(`/access/qr-token/staff/${staffId}`);
+        return response.data;
+    },
+    revokePass: async (subjectType, subjectId) => {
+        await api.post(`/access/qr-token/revoke?subjectType=${subjectType}&subjectId=${subjectId}`);
     }
 };
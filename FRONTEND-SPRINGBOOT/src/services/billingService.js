@@ -24,5 +24,14 @@ export const billingService = {
     payOnline: async (id) => {
         const response = await api.post(`/billing/${id}/pay-online`);
         return response.data;
+    },
+
+    // from / to are bill months as 'YYYY-MM'; dataset BILLS | PAYMENTS, format CSV | XLSX
+    exportBilling: async ({ dataset = 'BILLS', format = 'XLSX', from, to }) => {
+        const response = await api.get('/billing/export', {
+            params: { dataset, format, from, to },
+            responseType: 'blob'
+        });
+        return response.data;
     }
 };
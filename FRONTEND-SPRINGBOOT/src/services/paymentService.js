@@ -1,8 +1,10 @@
 import api from './api';
 
 export const paymentService = {
-    createOrder: async (billId, userId) => {
-        const response = await api.post('/payments/create-order', { billId, userId });
+    createOrder: async (billId, userId, idempotencyKey) => {
+        // Same key for retries of one payment attempt, so the backend returns the same order
+        const response = await api.post('/payments/create-order', { billId, userId },
+            idempotencyKey ? { headers: { 'Idempotency-Key': idempotencyKey } } : undefined);
         return response.data;
     },
     verifyPayment: async (paymentData) => {
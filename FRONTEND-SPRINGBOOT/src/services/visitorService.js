@@ -23,8 +23,9 @@ export const visitorService = {
         const response = await api.get(`/visitors/flat/${flatId}`);
         return response.data;
     },
-    searchVisitors: async (societyId, name = null, phone = null) => {
-        const params = { societyId };
+    // One page of matches: { societyId, page, size, hasMore, results }
+    searchVisitors: async (societyId, name = null, phone = null, page = 0, size = 20) => {
+        const params = { societyId, page, size };
         if (name) params.name = name;
         if (phone) params.phone = phone;
         const response = await api.get('/visitors/search', { params });